@@ -44,4 +44,13 @@ public interface Cache<K extends Serializable, V> {
    * @return true if expired or null otherwise false
    */
   boolean shouldRefresh(K key);
+
+  /**
+   * @param key of the value
+   * @return a small token that changes every time a value is added for the key, null if there is no value or if this
+   *     cache does not keep versions
+   */
+  default String getVersion(final K key) {
+    return null;
+  }
 }
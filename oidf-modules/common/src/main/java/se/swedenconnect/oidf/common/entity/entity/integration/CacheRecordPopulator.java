@@ -23,6 +23,10 @@ import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.M
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Responsible for populating cache from registry.
@@ -34,9 +38,10 @@ public class CacheRecordPopulator {
   private final RecordRegistryIntegration integration;
   private Boolean notified = false;
   private final UUID instanceId;
+  private final Executor executor;
 
   /**
-   * Constructor.
+   * Constructor fetching records on virtual threads.
    * @param source to populate
    * @param integration to get information from
    * @param instanceId key for fetching information
@@ -45,18 +50,44 @@ public class CacheRecordPopulator {
       final CachedRecordSource source,
       final RecordRegistryIntegration integration,
       final UUID instanceId) {
+    this(source, integration, instanceId, Executors.newVirtualThreadPerTaskExecutor());
+  }
+
+  /**
+   * Constructor.
+   * @param source to populate
+   * @param integration to get information from
+   * @param instanceId key for fetching information
+   * @param executor for fetching entity records while modules are fetched
+   */
+  public CacheRecordPopulator(
+      final CachedRecordSource source,
+      final RecordRegistryIntegration integration,
+      final UUID instanceId,
+      final Executor executor) {
 
     this.source = source;
     this.integration = integration;
     this.instanceId = instanceId;
+    this.executor = executor;
   }
 
   /**
    * @return state
    */
   public CompositeRecord reload() {
-    final Expirable<List<EntityRecord>> entityRecords = this.integration.getEntityRecords(this.instanceId);
+    final CompletableFuture<Expirable<List<EntityRecord>>> entityRecordsRequest =
+        CompletableFuture.supplyAsync(() -> this.integration.getEntityRecords(this.instanceId), this.executor);
     final Expirable<ModuleRecord> modules = this.integration.getModules(this.instanceId);
+    final Expirable<List<EntityRecord>> entityRecords;
+    try {
+      entityRecords = entityRecordsRequest.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof final RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
     final CompositeRecord compositeRecord = new CompositeRecord(entityRecords, modules);
     this.source.addRecord(compositeRecord);
     //Clear notification
@@ -33,15 +33,22 @@ import java.util.Optional;
 
 /**
  * Cache backed implementation of {@link RecordSource}.
+ * <p>
+ * The record is kept locally and checked against the cache every {@code 10} seconds. When the cache keeps versions,
+ * see {@link Cache#getVersion}, only the version is read and the record is fetched again only when the
+ * version has changed.
  *
  * @author Felix Hellman
  */
 public class CachedRecordSource implements RecordSource {
 
   private static final Duration TTL = Duration.ofSeconds(10);
+  private static final Object NO_RECORD = new Object();
+  private static final String RECORD_KEY = "record";
 
   private final Cache<String, CompositeRecord> cache;
   private volatile CompositeRecord localRecord;
+  private volatile String localVersion;
   private volatile Instant localRecordFetchedAt = Instant.MIN;
 
   /**
@@ -57,7 +64,7 @@ public class CachedRecordSource implements RecordSource {
    * @param record to add
    */
   public void addRecord(final CompositeRecord record) {
-    this.cache.add("record", new Expirable<>(record.getExpiration(), record.getIssuedAt(), record));
+    this.cache.add(RECORD_KEY, new Expirable<>(record.getExpiration(), record.getIssuedAt(), record));
   }
 
   private Optional<CompositeRecord> getRecord() {
@@ -65,9 +72,15 @@ public class CachedRecordSource implements RecordSource {
     if (this.localRecord != null && Duration.between(this.localRecordFetchedAt, now).compareTo(TTL) < 0) {
       return Optional.of(this.localRecord);
     }
-    final CompositeRecord fetched = this.cache.get("record");
+    final String version = this.cache.getVersion(RECORD_KEY);
+    if (this.localRecord != null && version != null && version.equals(this.localVersion)) {
+      this.localRecordFetchedAt = now;
+      return Optional.of(this.localRecord);
+    }
+    final CompositeRecord fetched = this.cache.get(RECORD_KEY);
     if (fetched != null) {
       this.localRecord = fetched;
+      this.localVersion = version;
       this.localRecordFetchedAt = now;
     }
     return Optional.ofNullable(fetched);
@@ -155,10 +168,18 @@ public class CachedRecordSource implements RecordSource {
     return 0;
   }
 
+  /**
+   * @return the composite record currently served, records that are re-read from the cache are new revisions
+   */
+  @Override
+  public Object getRevision() {
+    return this.getRecord().map(Object.class::cast).orElse(NO_RECORD);
+  }
+
   /**
    * @return true if the cache should be reloaded
    */
   public boolean shouldRefresh() {
-    return this.cache.shouldRefresh("record");
+    return this.cache.shouldRefresh(RECORD_KEY);
   }
 }
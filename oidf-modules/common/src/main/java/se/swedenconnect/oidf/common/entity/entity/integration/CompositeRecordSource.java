@@ -19,6 +19,7 @@ package se.swedenconnect.oidf.common.entity.entity.integration;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustAnchorProperties;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustMarkProperties;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.TrustMarkType;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustMarkIssuerProperties;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.TrustMarkSubjectProperty;
@@ -27,16 +28,23 @@ import se.swedenconnect.oidf.common.entity.tree.NodeKey;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Combines multiple record sources and sorts them by priority.
+ * <p>
+ * The records of all sources are combined into an immutable, indexed view that is built once per revision of the
+ * sources, see {@link RecordSource#getRevision()}. Lookups by entity, issuer and trust mark type are hash lookups and
+ * the returned lists are the same instances until a source changes.
  *
  * @author Felix Hellman
  */
 public class CompositeRecordSource implements RecordSource {
   private final List<RecordSource> recordSources;
+  private volatile Index index;
 
   /**
    * Constructor.
@@ -50,53 +58,37 @@ public class CompositeRecordSource implements RecordSource {
 
   @Override
   public List<TrustMarkIssuerProperties> getTrustMarkIssuerProperties() {
-    return this.recordSources.stream()
-        .flatMap(r -> r.getTrustMarkIssuerProperties().stream())
-        .toList();
+    return this.index().trustMarkIssuers;
   }
 
   @Override
   public List<TrustAnchorProperties> getTrustAnchorProperties() {
-    return this.recordSources.stream()
-        .flatMap(r -> r.getTrustAnchorProperties().stream())
-        .toList();
+    return this.index().trustAnchors;
   }
 
   @Override
   public List<ResolverProperties> getResolverProperties() {
-    return this.recordSources.stream()
-        .flatMap(r -> r.getResolverProperties().stream())
-        .toList();
+    return this.index().resolvers;
   }
 
   @Override
   public Optional<EntityRecord> getEntity(final NodeKey key) {
-    return this.recordSources.stream()
-        .map(s -> s.getEntity(key))
-        .filter(Optional::isPresent)
-        .findFirst()
-        .orElse(Optional.empty());
+    return Optional.ofNullable(this.index().entitiesById.get(key.entityId()));
   }
 
   @Override
   public List<EntityRecord> getAllEntities() {
-    return this.recordSources.stream()
-        .flatMap(r -> r.getAllEntities().stream())
-        .toList();
+    return this.index().entities;
   }
 
   @Override
   public List<TrustAnchorProperties.SubordinateListingProperty> findSubordinates(final String issuer) {
-    return this.recordSources.stream()
-        .flatMap(r -> r.findSubordinates(issuer).stream())
-        .toList();
+    return this.index().subordinatesByIssuer.getOrDefault(issuer, List.of());
   }
 
   @Override
   public List<TrustMarkSubjectProperty> getTrustMarkSubjects(final EntityID issuer, final TrustMarkType id) {
-    return this.recordSources.stream()
-        .flatMap(r -> r.getTrustMarkSubjects(issuer, id).stream())
-        .toList();
+    return this.index().subjectsByTrustMark.getOrDefault(new TrustMarkKey(issuer, id), List.of());
   }
 
   @Override
@@ -104,15 +96,98 @@ public class CompositeRecordSource implements RecordSource {
       final EntityID issuer,
       final TrustMarkType id,
       final EntityID subject) {
-    return this.recordSources.stream()
-        .map(s -> s.getTrustMarkSubject(issuer, id, subject))
-        .filter(Optional::isPresent)
-        .findFirst()
-        .orElse(Optional.empty());
+    return Optional.ofNullable(this.index().subjectsBySubject.get(new SubjectKey(issuer, id, subject.getValue())));
   }
 
   @Override
   public int priority() {
     return 0;
   }
+
+  /**
+   * @return the current indexed view, a new instance whenever any of the sources has changed
+   */
+  @Override
+  public Object getRevision() {
+    return this.index();
+  }
+
+  private Index index() {
+    final Index current = this.index;
+    if (current != null && current.isCurrent(this.recordSources)) {
+      return current;
+    }
+    final Object[] revisions = new Object[this.recordSources.size()];
+    for (int i = 0; i < revisions.length; i++) {
+      revisions[i] = this.recordSources.get(i).getRevision();
+    }
+    final Index built = new Index(this.recordSources, revisions);
+    this.index = built;
+    return built;
+  }
+
+  /**
+   * Immutable view of the records of all sources, in priority order. Lookups return the first match in that order,
+   * the same as querying each source in turn.
+   */
+  private static final class Index {
+    private final Object[] revisions;
+    private final List<TrustMarkIssuerProperties> trustMarkIssuers;
+    private final List<TrustAnchorProperties> trustAnchors;
+    private final List<ResolverProperties> resolvers;
+    private final List<EntityRecord> entities;
+    private final Map<String, EntityRecord> entitiesById = new HashMap<>();
+    private final Map<String, List<TrustAnchorProperties.SubordinateListingProperty>> subordinatesByIssuer =
+        new HashMap<>();
+    private final Map<TrustMarkKey, List<TrustMarkSubjectProperty>> subjectsByTrustMark = new HashMap<>();
+    private final Map<SubjectKey, TrustMarkSubjectProperty> subjectsBySubject = new HashMap<>();
+
+    private Index(final List<RecordSource> sources, final Object[] revisions) {
+      this.revisions = revisions;
+      this.trustMarkIssuers = sources.stream().flatMap(r -> r.getTrustMarkIssuerProperties().stream()).toList();
+      this.trustAnchors = sources.stream().flatMap(r -> r.getTrustAnchorProperties().stream()).toList();
+      this.resolvers = sources.stream().flatMap(r -> r.getResolverProperties().stream()).toList();
+      this.entities = sources.stream().flatMap(r -> r.getAllEntities().stream()).toList();
+
+      for (final EntityRecord entity : this.entities) {
+        this.entitiesById.putIfAbsent(entity.getEntityIdentifier().getValue(), entity);
+      }
+      final Map<String, List<TrustAnchorProperties.SubordinateListingProperty>> subordinates = new HashMap<>();
+      for (final TrustAnchorProperties trustAnchor : this.trustAnchors) {
+        subordinates.computeIfAbsent(trustAnchor.getEntityIdentifier().getValue(), issuer -> new ArrayList<>())
+            .addAll(Optional.ofNullable(trustAnchor.getSubordinates()).orElse(List.of()));
+      }
+      subordinates.forEach((issuer, listing) -> this.subordinatesByIssuer.put(issuer, List.copyOf(listing)));
+
+      final Map<TrustMarkKey, List<TrustMarkSubjectProperty>> subjects = new HashMap<>();
+      for (final TrustMarkIssuerProperties issuer : this.trustMarkIssuers) {
+        for (final TrustMarkProperties trustMark : Optional.ofNullable(issuer.trustMarks()).orElse(List.of())) {
+          final TrustMarkKey key = new TrustMarkKey(issuer.entityIdentifier(), trustMark.getTrustMarkType());
+          final List<TrustMarkSubjectProperty> trustMarkSubjects =
+              Optional.ofNullable(trustMark.getTrustMarkSubjects()).orElse(List.of());
+          subjects.computeIfAbsent(key, k -> new ArrayList<>()).addAll(trustMarkSubjects);
+          for (final TrustMarkSubjectProperty subject : trustMarkSubjects) {
+            this.subjectsBySubject.putIfAbsent(new SubjectKey(key.issuer(), key.type(), subject.sub()), subject);
+          }
+        }
+      }
+      subjects.forEach((key, listing) -> this.subjectsByTrustMark.put(key, List.copyOf(listing)));
+    }
+
+    private boolean isCurrent(final List<RecordSource> sources) {
+      for (int i = 0; i < this.revisions.length; i++) {
+        final Object revision = sources.get(i).getRevision();
+        if (revision == null || revision != this.revisions[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private record TrustMarkKey(EntityID issuer, TrustMarkType type) {
+  }
+
+  private record SubjectKey(EntityID issuer, TrustMarkType type, String subject) {
+  }
 }
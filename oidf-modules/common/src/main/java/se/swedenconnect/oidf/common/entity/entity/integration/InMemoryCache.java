@@ -22,6 +22,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -33,6 +34,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class InMemoryCache<K extends Serializable, V> implements Cache<K, V> {
 
   private final ConcurrentHashMap<K, Expirable<V>> cache = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<K, String> versions = new ConcurrentHashMap<>();
 
   private final Clock clock;
 
@@ -46,6 +48,7 @@ public class InMemoryCache<K extends Serializable, V> implements Cache<K, V> {
   @Override
   public void add(final K key, final Expirable<V> value) {
     this.cache.put(key, value);
+    this.versions.put(key, UUID.randomUUID().toString());
   }
 
   @Override
@@ -55,6 +58,11 @@ public class InMemoryCache<K extends Serializable, V> implements Cache<K, V> {
         .orElse(null);
   }
 
+  @Override
+  public String getVersion(final K key) {
+    return this.versions.get(key);
+  }
+
   @Override
   public boolean shouldRefresh(final K key) {
     final Expirable<V> v = this.cache.get(key);
@@ -106,4 +106,9 @@ public class LocalRecordSource implements RecordSource {
   public int priority() {
     return 0;
   }
+
+  @Override
+  public Object getRevision() {
+    return this.properties;
+  }
 }
@@ -88,4 +88,15 @@ public interface RecordSource {
    * @return priotiy of this source, lower takes precedence
    */
   int priority();
+
+  /**
+   * Identifies the records currently served by this source. The same instance is returned for as long as the records
+   * are unchanged, so that combined views and indexes can be reused. The default implementation returns null, meaning
+   * that the records may change at any time.
+   *
+   * @return revision of the records, compared by identity
+   */
+  default Object getRevision() {
+    return null;
+  }
 }
@@ -19,6 +19,7 @@ package se.swedenconnect.oidf.common.entity.entity.integration.properties;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.shaded.gson.annotations.SerializedName;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -36,6 +37,7 @@ import java.time.Duration;
 @ToString
 @Builder
 @NoArgsConstructor
+@EqualsAndHashCode
 public final class ResolverProperties {
   @SerializedName("trust-anchor")
   private String trustAnchor;
@@ -47,6 +49,8 @@ public final class ResolverProperties {
   private String entityIdentifier;
   @SerializedName("step-retry-time")
   private Duration stepRetryTime;
+  @SerializedName("max-concurrent-fetches")
+  private Integer maxConcurrentFetches;
 
   /**
    * @param trustAnchor The trust anchor used by this resolve entity
@@ -62,11 +66,31 @@ public final class ResolverProperties {
       final JWKSet trustedKeys,
       final String entityIdentifier,
       final Duration stepRetryTime) {
+    this(trustAnchor, resolveResponseDuration, trustedKeys, entityIdentifier, stepRetryTime, null);
+  }
+
+  /**
+   * @param trustAnchor The trust anchor used by this resolve entity
+   * @param resolveResponseDuration The validity duration of issued resolve responses
+   * @param trustedKeys Keys trusted by this resolver to validate Entity Statement chains
+   * @param entityIdentifier for the resolver
+   * @param stepRetryTime time to wait before retrying a step that has failed
+   * @param maxConcurrentFetches number of subordinate statements fetched at the same time by this resolver
+   *
+   */
+  public ResolverProperties(
+      final String trustAnchor,
+      final Duration resolveResponseDuration,
+      final JWKSet trustedKeys,
+      final String entityIdentifier,
+      final Duration stepRetryTime,
+      final Integer maxConcurrentFetches) {
     this.trustAnchor = trustAnchor;
     this.resolveResponseDuration = resolveResponseDuration;
     this.trustedKeys = trustedKeys;
     this.entityIdentifier = entityIdentifier;
     this.stepRetryTime = stepRetryTime;
+    this.maxConcurrentFetches = maxConcurrentFetches;
   }
 }
 
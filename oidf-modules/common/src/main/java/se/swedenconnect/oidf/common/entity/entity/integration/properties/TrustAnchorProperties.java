@@ -21,6 +21,7 @@ import com.nimbusds.jose.shaded.gson.annotations.SerializedName;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -44,6 +45,7 @@ import java.util.stream.Collectors;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@EqualsAndHashCode
 public class TrustAnchorProperties {
   @SerializedName("entity-identifier")
   private EntityID entityIdentifier;
@@ -101,6 +103,7 @@ public class TrustAnchorProperties {
   @AllArgsConstructor
   @NoArgsConstructor
   @Builder
+  @EqualsAndHashCode
   public static class SubordinateListingProperty {
 
     @SerializedName("crit")
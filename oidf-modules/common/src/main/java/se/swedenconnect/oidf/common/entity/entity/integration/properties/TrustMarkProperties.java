@@ -20,6 +20,7 @@ import com.nimbusds.jose.shaded.gson.annotations.SerializedName;
 import jakarta.annotation.PostConstruct;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -38,6 +39,7 @@ import java.util.List;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@EqualsAndHashCode
 public final class TrustMarkProperties {
   @SerializedName("trust-mark-type")
   private TrustMarkType trustMarkType;
@@ -19,6 +19,7 @@ package se.swedenconnect.oidf.common.entity.entity.integration.registry.records;
 import com.nimbusds.jose.shaded.gson.annotations.SerializedName;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -38,6 +39,7 @@ import java.util.Optional;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
+@EqualsAndHashCode
 public class ConstraintRecord {
   @SerializedName("max-path-length")
   private Long maxPathLength;
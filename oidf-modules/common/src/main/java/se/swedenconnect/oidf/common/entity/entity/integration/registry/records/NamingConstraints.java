@@ -18,6 +18,7 @@ package se.swedenconnect.oidf.common.entity.entity.integration.registry.records;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -37,6 +38,7 @@ import java.util.Optional;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
+@EqualsAndHashCode
 public class NamingConstraints {
   private List<String> permitted;
   private List<String> excluded;
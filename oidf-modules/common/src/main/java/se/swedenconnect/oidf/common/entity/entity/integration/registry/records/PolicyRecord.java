@@ -16,6 +16,7 @@
  */
 package se.swedenconnect.oidf.common.entity.entity.integration.registry.records;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -29,6 +30,7 @@ import java.util.Map;
  */
 @Getter
 @Setter
+@EqualsAndHashCode
 public class PolicyRecord implements Serializable {
 
   /**
@@ -18,16 +18,7 @@ package se.swedenconnect.oidf.common.entity.jwt;
 
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JOSEObjectType;
-import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.JWSHeader;
-import com.nimbusds.jose.JWSSigner;
-import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.crypto.ECDSASigner;
-import com.nimbusds.jose.crypto.ECDSAVerifier;
-import com.nimbusds.jose.crypto.RSASSASigner;
-import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.KeyType;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.oauth2.sdk.ParseException;
@@ -42,12 +33,22 @@ import lombok.Getter;
 public class JWKFederationSigner implements FederationSigner {
 
   private final JWK signKey;
+  private final SigningEngine signingEngine;
 
   /**
    * @param signKey for this signer
    */
   public JWKFederationSigner(final JWK signKey) {
+    this(signKey, SigningEngine.DEFAULT);
+  }
+
+  /**
+   * @param signKey       for this signer
+   * @param signingEngine holding signers and verifiers for the key
+   */
+  public JWKFederationSigner(final JWK signKey, final SigningEngine signingEngine) {
     this.signKey = signKey;
+    this.signingEngine = signingEngine;
   }
 
   /**
@@ -60,43 +61,13 @@ public class JWKFederationSigner implements FederationSigner {
    * @throws ParseException
    */
   public SignedJWT sign(final JOSEObjectType type, final JWTClaimsSet claims) throws JOSEException, ParseException {
-    final JWSSigner signer = this.getSigner(this.signKey);
-    final JWSAlgorithm alg = signer.supportedJWSAlgorithms().stream().findFirst().get();
-    final JWSHeader header = new JWSHeader.Builder(alg)
-        .type(type)
-        .keyID(this.signKey.getKeyID())
-        .build();
-    final SignedJWT signedJWT = new SignedJWT(header, claims);
-    signedJWT.sign(signer);
-    return signedJWT;
-  }
-
-  private JWSSigner getSigner(final JWK signingKey) throws JOSEException {
-    final KeyType keyType = signingKey.getKeyType();
-    if (keyType.equals(KeyType.EC)) {
-      return new ECDSASigner(signingKey.toECKey());
-    }
-    if (keyType.equals(KeyType.RSA)) {
-      return new RSASSASigner(signingKey.toRSAKey());
-    }
-    throw new JOSEException("Unsupported key type");
-  }
-
-  private JWSVerifier getVerifier(final JWK signingKey) throws JOSEException {
-    final KeyType keyType = signingKey.getKeyType();
-    if (keyType.equals(KeyType.EC)) {
-      return new ECDSAVerifier(signingKey.toECKey());
-    }
-    if (keyType.equals(KeyType.RSA)) {
-      return new RSASSAVerifier(signingKey.toRSAKey());
-    }
-    throw new JOSEException("Unsupported key type");
+    return this.signingEngine.sign(this.signKey, type, claims);
   }
 
   @Override
   public boolean verify(final String jwt) {
     try {
-      return SignedJWT.parse(jwt).verify(this.getVerifier(this.signKey));
+      return SignedJWT.parse(jwt).verify(this.signingEngine.verifier(this.signKey));
     } catch (final JOSEException | java.text.ParseException e) {
       throw new RuntimeException(e);
     }
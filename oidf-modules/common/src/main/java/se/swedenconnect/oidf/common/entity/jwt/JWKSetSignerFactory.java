@@ -24,12 +24,15 @@ import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.E
  * @author Felix Hellman
  */
 public class JWKSetSignerFactory implements SignerFactory {
+
+  private final SigningEngine signingEngine;
+
   /**
    * @param entityRecord to sign for
    * @return new signer
    */
   public FederationSigner createSigner(final EntityRecord entityRecord) {
-    return new JWKFederationSigner(entityRecord.getJwks().getKeys().getFirst());
+    return new JWKFederationSigner(entityRecord.getJwks().getKeys().getFirst(), this.signingEngine);
   }
 
   /**
@@ -37,6 +40,15 @@ public class JWKSetSignerFactory implements SignerFactory {
    *
    */
   public JWKSetSignerFactory() {
+    this(SigningEngine.DEFAULT);
+  }
 
+  /**
+   * Constructor.
+   *
+   * @param signingEngine holding signers for the keys of the entity records
+   */
+  public JWKSetSignerFactory(final SigningEngine signingEngine) {
+    this.signingEngine = signingEngine;
   }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.math.BigInteger;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Signs and verifies JWTs with signers and verifiers that are created once per key.
+ * <p>
+ * Signers and verifiers are cached by key. Keys are compared by content, so a key that has been rotated in the key
+ * registry or in an entity record gets new signers. {@link #invalidate()} releases every cached signer. At most
+ * {@link #DEFAULT_MAXIMUM_KEYS} keys are cached for signing and for verifying, the least recently used key is released
+ * when another key is added.
+ *
+ * @author Felix Hellman
+ */
+public class SigningEngine {
+
+  /**
+   * Default number of keys to cache signers and verifiers for.
+   */
+  public static final int DEFAULT_MAXIMUM_KEYS = 1024;
+
+  /**
+   * Engine used by signers that have not been given an engine.
+   */
+  public static final SigningEngine DEFAULT = new SigningEngine(SigningMetrics.NOOP);
+
+  private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+  private final KeyCache<JWK, KeySigner> signers;
+  private final KeyCache<JWK, JWSVerifier> verifiers;
+  private final KeyCache<Key, JWSVerifier> keyVerifiers;
+  private final SigningMetrics metrics;
+
+  /**
+   * Constructor.
+   *
+   * @param metrics to record signatures with
+   */
+  public SigningEngine(final SigningMetrics metrics) {
+    this(metrics, DEFAULT_MAXIMUM_KEYS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param metrics     to record signatures with
+   * @param maximumKeys number of keys to cache signers and verifiers for
+   */
+  public SigningEngine(final SigningMetrics metrics, final int maximumKeys) {
+    this.metrics = metrics;
+    this.signers = new KeyCache<>(maximumKeys);
+    this.verifiers = new KeyCache<>(maximumKeys);
+    this.keyVerifiers = new KeyCache<>(maximumKeys);
+  }
+
+  /**
+   * @return random identifier for the jti claim, drawn from a secure random owned by the calling thread
+   */
+  public static String jwtId() {
+    return new BigInteger(128, RANDOM.get()).toString(16);
+  }
+
+  /**
+   * Signs claims.
+   *
+   * @param key    private key to sign with
+   * @param type   of the jwt
+   * @param claims of the jwt
+   * @return signed jwt
+   * @throws JOSEException if the key is not supported or signing fails
+   */
+  public SignedJWT sign(final JWK key, final JOSEObjectType type, final JWTClaimsSet claims) throws JOSEException {
+    final KeySigner signer = this.signer(key);
+    final SignedJWT signedJWT = new SignedJWT(new JWSHeader.Builder(signer.algorithm())
+        .type(type)
+        .keyID(key.getKeyID())
+        .build(), claims);
+    final long start = System.nanoTime();
+    signedJWT.sign(signer.signer());
+    this.metrics.signed(signer.algorithm(), Duration.ofNanos(System.nanoTime() - start));
+    return signedJWT;
+  }
+
+  /**
+   * @param key to verify with
+   * @return verifier for the key
+   * @throws JOSEException if the key is not supported
+   */
+  public JWSVerifier verifier(final JWK key) throws JOSEException {
+    final JWSVerifier cached = this.verifiers.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final JWSVerifier verifier = createVerifier(key);
+    this.verifiers.put(key, verifier);
+    return verifier;
+  }
+
+  /**
+   * @param header of the jwt to verify
+   * @param key    to verify with, compared by content
+   * @return verifier for the key
+   * @throws JOSEException if the key is not supported
+   */
+  public JWSVerifier verifier(final JWSHeader header, final Key key) throws JOSEException {
+    final JWSVerifier cached = this.keyVerifiers.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final JWSVerifier verifier = new DefaultJWSVerifierFactory().createJWSVerifier(header, key);
+    this.keyVerifiers.put(key, verifier);
+    return verifier;
+  }
+
+  /**
+   * Releases every cached signer and verifier, e.g. when keys or entity records have been reloaded.
+   */
+  public void invalidate() {
+    this.signers.clear();
+    this.verifiers.clear();
+    this.keyVerifiers.clear();
+  }
+
+  /**
+   * @return number of keys with a cached signer or verifier
+   */
+  public int size() {
+    return this.signers.size() + this.verifiers.size() + this.keyVerifiers.size();
+  }
+
+  private KeySigner signer(final JWK key) throws JOSEException {
+    final KeySigner cached = this.signers.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final JWSSigner signer = createSigner(key);
+    final KeySigner created = new KeySigner(signer, signer.supportedJWSAlgorithms().stream().findFirst().get());
+    this.signers.put(key, created);
+    return created;
+  }
+
+  private static JWSSigner createSigner(final JWK key) throws JOSEException {
+    final KeyType keyType = key.getKeyType();
+    if (keyType.equals(KeyType.EC)) {
+      return new ECDSASigner(key.toECKey());
+    }
+    if (keyType.equals(KeyType.RSA)) {
+      return new RSASSASigner(key.toRSAKey());
+    }
+    throw new JOSEException("Unsupported key type");
+  }
+
+  private static JWSVerifier createVerifier(final JWK key) throws JOSEException {
+    final KeyType keyType = key.getKeyType();
+    if (keyType.equals(KeyType.EC)) {
+      return new ECDSAVerifier(key.toECKey());
+    }
+    if (keyType.equals(KeyType.RSA)) {
+      return new RSASSAVerifier(key.toRSAKey());
+    }
+    throw new JOSEException("Unsupported key type");
+  }
+
+  private record KeySigner(JWSSigner signer, JWSAlgorithm algorithm) {
+  }
+
+  /**
+   * Least recently used cache of values per key.
+   *
+   * @param <K> type of key
+   * @param <V> type of cached value
+   */
+  private static final class KeyCache<K, V> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, V> values;
+
+    private KeyCache(final int maximumKeys) {
+      this.values = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+          return this.size() > maximumKeys;
+        }
+      };
+    }
+
+    private V get(final K key) {
+      this.lock.lock();
+      try {
+        return this.values.get(key);
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    private void put(final K key, final V value) {
+      this.lock.lock();
+      try {
+        this.values.put(key, value);
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    private void clear() {
+      this.lock.lock();
+      try {
+        this.values.clear();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    private int size() {
+      this.lock.lock();
+      try {
+        return this.values.size();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+
+import java.time.Duration;
+
+/**
+ * Receives measurements from a {@link SigningEngine}. Allows an external metrics implementation to be used for
+ * monitoring, every method does nothing by default.
+ *
+ * @author Felix Hellman
+ */
+public interface SigningMetrics {
+
+  /**
+   * Implementation that discards every measurement.
+   */
+  SigningMetrics NOOP = new SigningMetrics() {
+  };
+
+  /**
+   * Records a signature.
+   *
+   * @param algorithm used for the signature
+   * @param duration  of the signing operation
+   */
+  default void signed(final JWSAlgorithm algorithm, final Duration duration) {
+  }
+}
@@ -19,18 +19,23 @@ package se.swedenconnect.oidf.common.entity.tree;
 import lombok.Getter;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Cache snapshot of underlying {@link VersionedCacheLayer} to lock in a specific version.
+ * <p>
+ * A snapshot that an in memory cache hands out for writing keeps its version from being reclaimed until the snapshot
+ * is closed. Snapshots should always be closed by their holder, closing a snapshot that holds nothing does nothing.
  *
  * @param <T> Datatype for cache
  *
  * @author Felix Hellman
  */
-public class CacheSnapshot<T> {
+public class CacheSnapshot<T> implements AutoCloseable {
   private final VersionedCacheLayer<T> cache;
   @Getter
   private final long version;
+  private volatile Runnable release = () -> {};
 
   /**
    * Constructor.
@@ -75,10 +80,40 @@ public class CacheSnapshot<T> {
     return this.cache.getChildren(parent,this.version);
   }
 
+  /**
+   * @return dense index of this version or empty if the version is not indexed
+   */
+  public Optional<TreeIndex<T>> getIndex() {
+    return this.cache.getIndex(this.version);
+  }
+
+  /**
+   * @return number of writes made to this version after it was published
+   */
+  public long getRevision() {
+    return this.cache.getRevision(this.version);
+  }
+
   /**
    * @return root node of the given tree
    */
   public Node<T> getRoot() {
     return this.cache.getRoot(this.version);
   }
+
+  /**
+   * Releases the version held by this snapshot. Releasing is idempotent, the snapshot can still be read afterward
+   * for as long as the version has not been reclaimed.
+   */
+  @Override
+  public void close() {
+    this.release.run();
+  }
+
+  /**
+   * @param release action to run when this snapshot is closed, must be idempotent
+   */
+  void onClose(final Runnable release) {
+    this.release = release;
+  }
 }
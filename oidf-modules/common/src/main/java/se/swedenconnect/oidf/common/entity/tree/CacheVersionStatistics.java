@@ -0,0 +1,38 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+/**
+ * Statistics for a single version held by a {@link ResolverCache}.
+ *
+ * @param version        of the tree
+ * @param entries        number of entities stored for this version
+ * @param estimatedBytes estimated size of the stored entities (serialized statements)
+ * @param current        true if this is the version currently served
+ * @param pending        true if this is the version currently being loaded
+ * @param pinned         number of snapshots still referencing this version
+ *
+ * @author Felix Hellman
+ */
+public record CacheVersionStatistics(
+    long version,
+    int entries,
+    long estimatedBytes,
+    boolean current,
+    boolean pending,
+    int pinned) {
+}
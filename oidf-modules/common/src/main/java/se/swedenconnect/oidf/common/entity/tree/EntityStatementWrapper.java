@@ -18,26 +18,46 @@ package se.swedenconnect.oidf.common.entity.tree;
 
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
+import net.minidev.json.JSONObject;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement;
 
-import javax.swing.text.html.parser.Entity;
-import java.text.ParseException;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
  * Wrapper for entity statement JWT.
+ * <p>
+ * The statement is parsed at most once per wrapper, subsequent calls return the already parsed values.
  *
  * @author Felix Hellman
  */
-@AllArgsConstructor
 public class EntityStatementWrapper {
 
   @Getter
   private final SignedJWT entityStatement;
+  private volatile ParsedStatement parsed;
+
+  /**
+   * Constructor.
+   *
+   * @param entityStatement signed entity statement
+   */
+  public EntityStatementWrapper(final SignedJWT entityStatement) {
+    this.entityStatement = entityStatement;
+  }
+
+  /**
+   * Constructor for a statement that has already been parsed.
+   *
+   * @param entityStatement parsed entity statement
+   */
+  public EntityStatementWrapper(final EntityStatement entityStatement) {
+    this.entityStatement = entityStatement.getSignedStatement();
+    this.parsed = ParsedStatement.of(entityStatement);
+  }
 
   /**
    * Parses and returns the entity statement from the underlying signed JWT.
@@ -45,11 +65,7 @@ public class EntityStatementWrapper {
    * @return parsed entity statement
    */
   public EntityStatement getEntityStatement() {
-    try {
-      return EntityStatement.parse(this.entityStatement);
-    } catch (final com.nimbusds.oauth2.sdk.ParseException e) {
-      throw new RuntimeException(e);
-    }
+    return this.getParsedStatement().statement();
   }
 
   /**
@@ -58,24 +74,7 @@ public class EntityStatementWrapper {
    * @return list of trust mark JWTs, empty if none present
    */
   public List<SignedJWT> getTrustMarks() {
-    try {
-      final List<Object> trustMarks = this.entityStatement.getJWTClaimsSet().getListClaim("trust_marks");
-      if (trustMarks == null) {
-        return Collections.emptyList();
-      }
-      return trustMarks.stream()
-          .map(e -> (Map<String, Object>) e)
-          .map(entry -> {
-            try {
-              return SignedJWT.parse((String) entry.get("trust_mark"));
-            } catch (final ParseException e) {
-              throw new IllegalArgumentException("Failed to parse trust mark JWT", e);
-            }
-          })
-          .toList();
-    } catch (final ParseException e) {
-      throw new IllegalStateException("Failed to parse entity statement claims", e);
-    }
+    return this.getParsedStatement().trustMarks();
   }
 
   /**
@@ -85,11 +84,20 @@ public class EntityStatementWrapper {
    */
   @SuppressWarnings("unchecked")
   public Optional<Map<String, Object>> getFederationEntityMetadata() {
-    try {
-      return Optional.ofNullable(this.entityStatement.getJWTClaimsSet().getJSONObjectClaim("metadata"))
-          .flatMap(m -> Optional.ofNullable((Map<String, Object>) m.get("federation_entity")));
-    } catch (final ParseException e) {
-      throw new IllegalStateException("Failed to parse entity statement claims", e);
+    final JSONObject metadata = this.getEntityStatement().getClaimsSet().getJSONObjectClaim("metadata");
+    return Optional.ofNullable(metadata)
+        .flatMap(m -> Optional.ofNullable((Map<String, Object>) m.get("federation_entity")));
+  }
+
+  /**
+   * @return the statement with its derived fields, parsed on first access
+   */
+  public ParsedStatement getParsedStatement() {
+    ParsedStatement current = this.parsed;
+    if (Objects.isNull(current)) {
+      current = ParsedStatement.parse(this.entityStatement);
+      this.parsed = current;
     }
+    return current;
   }
 }
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In memory implementation of {@link ResolverCache} where every published version is an immutable
+ * {@link IndexedTreeVersion}.
+ * <p>
+ * A version is written to a thread safe {@link IndexedTreeVersion.Builder} while it is loading and frozen into an
+ * {@link IndexedTreeVersion} when it is published by {@link #useNextVersion()}. Reads of a published version are
+ * plain array lookups.
+ * <p>
+ * Writes to an already published version (e.g. a step that was retried after the tree was published) are collected
+ * in an overlay that reads of the version see at once. The overlay is merged into a new {@link IndexedTreeVersion}
+ * on a background thread when no write has been made for the compaction delay or when it holds
+ * {@link #COMPACTION_THRESHOLD} writes, a burst of writes therefore rebuilds the version once. Readers never merge,
+ * until the merged version is published they keep reading the previous version together with its overlay and the
+ * version has no index, it is traversed by key.
+ * Every such write increases the {@link #getRevision(long) revision} of the version.
+ * Writes to a version that has been reclaimed are dropped.
+ * <p>
+ * Versions are retained in the same way as for {@link VersionedInMemoryCache}.
+ *
+ * @author Felix Hellman
+ */
+@Slf4j
+public class IndexedInMemoryCache implements ResolverCache {
+
+  /**
+   * Default time without writes after which the writes to a published version are merged into the version.
+   */
+  public static final Duration DEFAULT_COMPACTION_DELAY = Duration.ofSeconds(1);
+
+  /**
+   * Number of writes to a published version after which they are merged into the version.
+   */
+  public static final int COMPACTION_THRESHOLD = 1024;
+
+  private final Map<Long, IndexedTreeVersion.Builder> loading = new ConcurrentHashMap<>();
+  private final Map<Long, IndexedTreeVersion> published = new ConcurrentHashMap<>();
+  private final Map<Long, Overlay> overlays = new ConcurrentHashMap<>();
+  private final Map<Long, AtomicLong> revisions = new ConcurrentHashMap<>();
+  //Writers share the read lock, publishing and compacting a version takes the write lock
+  private final ReadWriteLock publishing = new ReentrantReadWriteLock();
+  private final VersionRetention retention;
+  private final Duration compactionDelay;
+  private final ScheduledExecutorService compactor;
+
+  private final AtomicLong integer = new AtomicLong(Instant.now().getEpochSecond());
+  private final AtomicLong pendingVersion = new AtomicLong(Instant.now().getEpochSecond());
+  private volatile IndexedTreeVersion current;
+
+  /**
+   * Constructor retaining {@link VersionedInMemoryCache#DEFAULT_RETAINED_VERSIONS} previous versions.
+   */
+  public IndexedInMemoryCache() {
+    this(VersionedInMemoryCache.DEFAULT_RETAINED_VERSIONS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param retainedVersions number of previous versions to keep in addition to the current and pending version
+   */
+  public IndexedInMemoryCache(final int retainedVersions) {
+    this(retainedVersions, DEFAULT_COMPACTION_DELAY);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param retainedVersions number of previous versions to keep in addition to the current and pending version
+   * @param compactionDelay  time without writes after which writes to a published version are merged into it
+   */
+  public IndexedInMemoryCache(final int retainedVersions, final Duration compactionDelay) {
+    this(retainedVersions, compactionDelay, Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("resolver-cache-compaction-", 0).daemon().factory()));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param retainedVersions number of previous versions to keep in addition to the current and pending version
+   * @param compactionDelay  time without writes after which writes to a published version are merged into it
+   * @param compactor        to merge writes to published versions upon
+   */
+  public IndexedInMemoryCache(
+      final int retainedVersions,
+      final Duration compactionDelay,
+      final ScheduledExecutorService compactor) {
+    this.retention = new VersionRetention(retainedVersions);
+    this.compactionDelay = compactionDelay;
+    this.compactor = compactor;
+  }
+
+  /**
+   * @param version to get
+   * @return published version if present, without the writes that have not been merged into it yet
+   */
+  public Optional<IndexedTreeVersion> getTreeVersion(final long version) {
+    return Optional.ofNullable(this.getPublished(version));
+  }
+
+  @Override
+  public Optional<TreeIndex<ScrapedEntity>> getIndex(final long version) {
+    //The index does not include writes that are not merged yet, the version is traversed by key until they are
+    if (this.overlays.containsKey(version)) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(this.getPublished(version));
+  }
+
+  @Override
+  public List<Node<ScrapedEntity>> getChildren(final Node<ScrapedEntity> parent, final long version) {
+    final IndexedTreeVersion treeVersion = this.getPublished(version);
+    if (Objects.nonNull(treeVersion)) {
+      final Overlay overlay = this.overlays.get(version);
+      final List<Node<ScrapedEntity>> children = treeVersion.getChildren(parent.getKey().getKey());
+      if (Objects.isNull(overlay)) {
+        return children;
+      }
+      final Set<String> keys = new LinkedHashSet<>();
+      children.forEach(child -> keys.add(child.getKey().getKey()));
+      keys.addAll(overlay.writes.getChildKeys(parent.getKey().getKey()));
+      return keys.stream().map(key -> new Node<ScrapedEntity>(new NodeKey(key))).toList();
+    }
+    return Optional.ofNullable(this.loading.get(version))
+        .map(builder -> builder.getChildKeys(parent.getKey().getKey()).stream()
+            .map(key -> new Node<ScrapedEntity>(new NodeKey(key)))
+            .toList())
+        .orElseGet(List::of);
+  }
+
+  @Override
+  public void append(final Node<ScrapedEntity> child, final Node<ScrapedEntity> parent, final long version) {
+    this.write(version, builder -> builder.append(child.getKey().getKey(), parent.getKey().getKey()));
+  }
+
+  @Override
+  public void setData(final String key, final ScrapedEntity data, final long version) {
+    this.write(version, builder -> builder.put(key, data));
+  }
+
+  @Override
+  public Node<ScrapedEntity> getRoot(final long version) {
+    final IndexedTreeVersion treeVersion = this.getPublished(version);
+    if (Objects.nonNull(treeVersion)) {
+      return treeVersion.getRoot();
+    }
+    return Optional.ofNullable(this.loading.get(version))
+        .map(IndexedTreeVersion.Builder::getRoot)
+        .orElse(null);
+  }
+
+  @Override
+  public ScrapedEntity getData(final String key, final long version) {
+    final IndexedTreeVersion treeVersion = this.getPublished(version);
+    if (Objects.nonNull(treeVersion)) {
+      final Overlay overlay = this.overlays.get(version);
+      final ScrapedEntity written = Objects.isNull(overlay) ? null : overlay.writes.get(key);
+      return Objects.nonNull(written) ? written : treeVersion.getData(key);
+    }
+    return Optional.ofNullable(this.loading.get(version))
+        .map(builder -> builder.get(key))
+        .orElse(null);
+  }
+
+  @Override
+  public long getRevision(final long version) {
+    final AtomicLong revision = this.revisions.get(version);
+    return Objects.isNull(revision) ? 0 : revision.get();
+  }
+
+  @Override
+  public long getCurrentVersion() {
+    return this.integer.get();
+  }
+
+  @Override
+  public void useNextVersion() {
+    this.publishing.writeLock().lock();
+    try {
+      final long next = this.pendingVersion.get();
+      final IndexedTreeVersion.Builder builder = this.loading.remove(next);
+      if (Objects.nonNull(builder)) {
+        this.published.put(next, builder.build(next));
+      }
+      this.current = this.published.get(next);
+      this.integer.set(next);
+    } finally {
+      this.publishing.writeLock().unlock();
+    }
+    this.reclaim();
+  }
+
+  @Override
+  public CacheSnapshot<ScrapedEntity> snapshot() {
+    //Only read, the version is retained as the current version or as one of the retained previous versions
+    return new CacheSnapshot<>(this, this.getCurrentVersion());
+  }
+
+  @Override
+  public CacheSnapshot<ScrapedEntity> createNewSnapshot(final Node<ScrapedEntity> root, final ScrapedEntity rootData) {
+    final long version = this.getNextVersion();
+    this.pendingVersion.set(version);
+    final IndexedTreeVersion.Builder builder = new IndexedTreeVersion.Builder().root(root);
+    builder.put(root.getKey().getKey(), rootData);
+    this.loading.put(version, builder);
+    final CacheSnapshot<ScrapedEntity> snapshot = this.retention.pin(new CacheSnapshot<>(this, version));
+    this.reclaim();
+    return snapshot;
+  }
+
+  @Override
+  public List<CacheVersionStatistics> getVersionStatistics() {
+    final long currentVersion = this.getCurrentVersion();
+    final long pending = this.pendingVersion.get();
+    final List<CacheVersionStatistics> statistics = new ArrayList<>();
+    this.published.forEach((version, treeVersion) -> statistics.add(new CacheVersionStatistics(
+        version,
+        treeVersion.entries(),
+        treeVersion.values().stream().mapToLong(ScrapedEntity::estimateSize).sum(),
+        version == currentVersion,
+        version == pending,
+        this.retention.getPins(version))));
+    this.loading.forEach((version, builder) -> statistics.add(new CacheVersionStatistics(
+        version,
+        builder.entries(),
+        builder.values().stream().mapToLong(ScrapedEntity::estimateSize).sum(),
+        version == currentVersion,
+        version == pending,
+        this.retention.getPins(version))));
+    statistics.sort(Comparator.comparingLong(CacheVersionStatistics::version));
+    return statistics;
+  }
+
+  /**
+   * Removes every version that is not current, pending, one of the retained previous versions or still referenced
+   * by a snapshot.
+   */
+  public void reclaim() {
+    final List<Long> versions = Stream.concat(this.published.keySet().stream(), this.loading.keySet().stream())
+        .distinct()
+        .toList();
+    this.retention.reclaimable(versions, this.getCurrentVersion(), this.pendingVersion.get())
+        .forEach(version -> {
+          this.loading.remove(version);
+          this.overlays.remove(version);
+          this.revisions.remove(version);
+          if (Objects.nonNull(this.published.remove(version))) {
+            log.debug("Reclaimed resolver cache version {}", version);
+          }
+        });
+  }
+
+  private IndexedTreeVersion getPublished(final long version) {
+    final IndexedTreeVersion treeVersion = this.current;
+    if (Objects.nonNull(treeVersion) && treeVersion.getVersion() == version) {
+      return treeVersion;
+    }
+    return this.published.get(version);
+  }
+
+  private void write(final long version, final Consumer<IndexedTreeVersion.Builder> write) {
+    this.publishing.readLock().lock();
+    try {
+      final IndexedTreeVersion.Builder builder = this.loading.get(version);
+      if (Objects.nonNull(builder)) {
+        write.accept(builder);
+        return;
+      }
+      if (Objects.nonNull(this.published.get(version))) {
+        final Overlay overlay = this.overlays.computeIfAbsent(version, v -> new Overlay());
+        write.accept(overlay.writes);
+        overlay.written();
+        this.revisions.computeIfAbsent(version, v -> new AtomicLong()).incrementAndGet();
+        if (overlay.scheduled.compareAndSet(false, true)) {
+          this.scheduleCompaction(version, this.compactionDelay);
+        } else if (overlay.count.get() == COMPACTION_THRESHOLD) {
+          this.scheduleCompaction(version, Duration.ZERO);
+        }
+        return;
+      }
+    } finally {
+      this.publishing.readLock().unlock();
+    }
+    log.debug("Dropped write to resolver cache version {} that is no longer held", version);
+  }
+
+  private void scheduleCompaction(final long version, final Duration delay) {
+    this.compactor.schedule(() -> {
+      try {
+        final Overlay overlay = this.overlays.get(version);
+        if (Objects.isNull(overlay)) {
+          return;
+        }
+        final long remaining = overlay.remainingDelay(this.compactionDelay);
+        if (remaining > 0) {
+          this.scheduleCompaction(version, Duration.ofNanos(remaining));
+          return;
+        }
+        this.compact(version);
+      } catch (final RuntimeException e) {
+        log.warn("Failed to merge writes into published resolver cache version {}", version, e);
+      }
+    }, delay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Merges the writes made to a published version into a new immutable version at once, on the calling thread.
+   * Writes are otherwise merged on a background thread once they are due.
+   *
+   * @param version to compact
+   * @return the published version, empty if it is not published
+   */
+  public Optional<IndexedTreeVersion> compact(final long version) {
+    this.publishing.writeLock().lock();
+    try {
+      final IndexedTreeVersion treeVersion = this.published.get(version);
+      final Overlay overlay = this.overlays.get(version);
+      if (Objects.isNull(treeVersion) || Objects.isNull(overlay)) {
+        return Optional.ofNullable(treeVersion);
+      }
+      final IndexedTreeVersion.Builder copy = IndexedTreeVersion.Builder.from(treeVersion);
+      copy.putAll(overlay.writes);
+      final IndexedTreeVersion replacement = copy.build(version);
+      this.published.put(version, replacement);
+      if (Objects.nonNull(this.current) && this.current.getVersion() == version) {
+        this.current = replacement;
+      }
+      //Removed after the replacement is visible so that readers never miss a write
+      this.overlays.remove(version);
+      log.debug("Merged {} writes into published resolver cache version {}", overlay.count.get(), version);
+      return Optional.of(replacement);
+    } finally {
+      this.publishing.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Writes made to a version after it was published.
+   */
+  private static final class Overlay {
+    private final IndexedTreeVersion.Builder writes = new IndexedTreeVersion.Builder();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile long lastWrite = System.nanoTime();
+
+    private void written() {
+      this.count.incrementAndGet();
+      this.lastWrite = System.nanoTime();
+    }
+
+    private long remainingDelay(final Duration delay) {
+      if (this.count.get() >= COMPACTION_THRESHOLD) {
+        return 0;
+      }
+      return delay.toNanos() - (System.nanoTime() - this.lastWrite);
+    }
+  }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable version of a resolver tree.
+ * <p>
+ * Every entity is assigned a dense integer id in breadth first order from the root. Children are stored in
+ * compressed sparse row layout, i.e. the children of {@code id} are
+ * {@code childIds[childOffsets[id]] .. childIds[childOffsets[id + 1] - 1]}.
+ *
+ * @author Felix Hellman
+ */
+public final class IndexedTreeVersion implements TreeIndex<ScrapedEntity> {
+
+  /**
+   * Id returned when a key is not part of this version.
+   */
+  public static final int NOT_FOUND = -1;
+
+  private final long version;
+  private final Node<ScrapedEntity> root;
+  private final Map<String, Integer> ids;
+  private final List<Node<ScrapedEntity>> nodes;
+  private final ScrapedEntity[] data;
+  private final int[] childOffsets;
+  private final int[] childIds;
+  private final List<List<Node<ScrapedEntity>>> children;
+
+  private IndexedTreeVersion(
+      final long version,
+      final Node<ScrapedEntity> root,
+      final Map<String, Integer> ids,
+      final List<Node<ScrapedEntity>> nodes,
+      final ScrapedEntity[] data,
+      final int[] childOffsets,
+      final int[] childIds) {
+    this.version = version;
+    this.root = root;
+    this.ids = ids;
+    this.nodes = nodes;
+    this.data = data;
+    this.childOffsets = childOffsets;
+    this.childIds = childIds;
+    final List<List<Node<ScrapedEntity>>> childNodes = new ArrayList<>(nodes.size());
+    for (int id = 0; id < nodes.size(); id++) {
+      final List<Node<ScrapedEntity>> list = new ArrayList<>(this.childCount(id));
+      for (int i = this.childOffsets[id]; i < this.childOffsets[id + 1]; i++) {
+        list.add(nodes.get(this.childIds[i]));
+      }
+      childNodes.add(Collections.unmodifiableList(list));
+    }
+    this.children = childNodes;
+  }
+
+  /**
+   * @return version of the tree
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * @return number of nodes in this version
+   */
+  @Override
+  public int size() {
+    return this.nodes.size();
+  }
+
+  /**
+   * @param key entity identifier
+   * @return id of the entity or {@link #NOT_FOUND}
+   */
+  @Override
+  public int indexOf(final String key) {
+    return this.ids.getOrDefault(key, NOT_FOUND);
+  }
+
+  /**
+   * @return root node or null if this version has no root
+   */
+  public Node<ScrapedEntity> getRoot() {
+    return this.root;
+  }
+
+  /**
+   * @param id of the node
+   * @return node with the given id
+   */
+  @Override
+  public Node<ScrapedEntity> getNode(final int id) {
+    return this.nodes.get(id);
+  }
+
+  /**
+   * @param id of the node
+   * @return data for the node, can be null if the entity could not be scraped
+   */
+  @Override
+  public ScrapedEntity getData(final int id) {
+    return this.data[id];
+  }
+
+  /**
+   * @param key entity identifier
+   * @return data for the node, can be null
+   */
+  public ScrapedEntity getData(final String key) {
+    final int id = this.indexOf(key);
+    return id == NOT_FOUND ? null : this.data[id];
+  }
+
+  /**
+   * @param id of the parent
+   * @return number of children for the parent
+   */
+  @Override
+  public int childCount(final int id) {
+    return this.childOffsets[id + 1] - this.childOffsets[id];
+  }
+
+  /**
+   * @param id    of the parent
+   * @param index of the child, between 0 and {@link #childCount(int)}
+   * @return id of the child
+   */
+  @Override
+  public int childAt(final int id, final int index) {
+    return this.childIds[this.childOffsets[id] + index];
+  }
+
+  /**
+   * @param key of the parent
+   * @return children of the parent, empty if the key is not part of this version
+   */
+  public List<Node<ScrapedEntity>> getChildren(final String key) {
+    final int id = this.indexOf(key);
+    return id == NOT_FOUND ? List.of() : this.children.get(id);
+  }
+
+  /**
+   * @return number of entities that has data in this version
+   */
+  public int entries() {
+    int entries = 0;
+    for (final ScrapedEntity entity : this.data) {
+      if (Objects.nonNull(entity)) {
+        entries++;
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @return all entities that has data in this version
+   */
+  public List<ScrapedEntity> values() {
+    final List<ScrapedEntity> values = new ArrayList<>(this.data.length);
+    for (final ScrapedEntity entity : this.data) {
+      if (Objects.nonNull(entity)) {
+        values.add(entity);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Mutable and thread safe builder of a tree version, used while a version is loading.
+   */
+  public static final class Builder {
+    private final Map<String, ScrapedEntity> data = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> appended = new ConcurrentHashMap<>();
+    private volatile Node<ScrapedEntity> root;
+
+    /**
+     * @param version to copy data from
+     * @return new builder containing the data of the version
+     */
+    public static Builder from(final IndexedTreeVersion version) {
+      final Builder builder = new Builder();
+      builder.root = version.getRoot();
+      for (int id = 0; id < version.size(); id++) {
+        final String key = version.getNode(id).getKey().getKey();
+        if (Objects.nonNull(version.data[id])) {
+          builder.data.put(key, version.data[id]);
+        }
+        for (int i = 0; i < version.childCount(id); i++) {
+          builder.append(version.getNode(version.childAt(id, i)).getKey().getKey(), key);
+        }
+      }
+      return builder;
+    }
+
+    /**
+     * Adds the data and children of another builder to this builder, data of the other builder replaces data of
+     * this builder.
+     *
+     * @param other builder to add
+     */
+    public void putAll(final Builder other) {
+      this.data.putAll(other.data);
+      other.appended.forEach((parent, children) -> children.forEach(child -> this.append(child, parent)));
+    }
+
+    /**
+     * @param root of the tree
+     * @return this
+     */
+    public Builder root(final Node<ScrapedEntity> root) {
+      this.root = root;
+      return this;
+    }
+
+    /**
+     * @return root of the tree
+     */
+    public Node<ScrapedEntity> getRoot() {
+      return this.root;
+    }
+
+    /**
+     * @param key  of the entity
+     * @param data of the entity
+     */
+    public void put(final String key, final ScrapedEntity data) {
+      this.data.put(key, data);
+    }
+
+    /**
+     * @param key of the entity
+     * @return data or null
+     */
+    public ScrapedEntity get(final String key) {
+      return this.data.get(key);
+    }
+
+    /**
+     * @param child  key of the child
+     * @param parent key of the parent
+     */
+    public void append(final String child, final String parent) {
+      if (!child.equals(parent)) {
+        this.appended.computeIfAbsent(parent, p -> ConcurrentHashMap.newKeySet()).add(child);
+      }
+    }
+
+    /**
+     * @param key of the parent
+     * @return keys of all children of the parent
+     */
+    public Set<String> getChildKeys(final String key) {
+      final Set<String> keys = new LinkedHashSet<>();
+      final ScrapedEntity entity = this.data.get(key);
+      if (Objects.nonNull(entity) && Objects.nonNull(entity.getIntermediate())) {
+        keys.addAll(entity.getIntermediate().subordinates().keySet());
+      }
+      keys.addAll(this.appended.getOrDefault(key, Set.of()));
+      return keys;
+    }
+
+    /**
+     * @return number of entities with data
+     */
+    public int entries() {
+      return this.data.size();
+    }
+
+    /**
+     * @return all entities with data
+     */
+    public List<ScrapedEntity> values() {
+      return List.copyOf(this.data.values());
+    }
+
+    /**
+     * Creates an immutable tree version from the current state of this builder.
+     *
+     * @param version of the tree
+     * @return immutable version
+     */
+    public IndexedTreeVersion build(final long version) {
+      final Map<String, Integer> ids = new HashMap<>();
+      final List<String> keys = new ArrayList<>();
+      final List<Set<String>> childKeys = new ArrayList<>();
+      final Deque<String> queue = new ArrayDeque<>();
+      final List<String> seeds = new ArrayList<>();
+      if (Objects.nonNull(this.root)) {
+        seeds.add(this.root.getKey().getKey());
+      }
+      //Entities that are not reachable from the root are kept so that lookups behave as for the loading version
+      seeds.addAll(this.data.keySet());
+      for (final String seed : seeds) {
+        if (ids.containsKey(seed)) {
+          continue;
+        }
+        ids.put(seed, keys.size());
+        keys.add(seed);
+        queue.add(seed);
+        while (!queue.isEmpty()) {
+          final Set<String> current = this.getChildKeys(queue.poll());
+          childKeys.add(current);
+          for (final String child : current) {
+            if (!ids.containsKey(child)) {
+              ids.put(child, keys.size());
+              keys.add(child);
+              queue.add(child);
+            }
+          }
+        }
+      }
+      final int[] childOffsets = new int[keys.size() + 1];
+      for (int id = 0; id < keys.size(); id++) {
+        childOffsets[id + 1] = childOffsets[id] + childKeys.get(id).size();
+      }
+      final int[] childIds = new int[childOffsets[keys.size()]];
+      for (int id = 0; id < keys.size(); id++) {
+        int offset = childOffsets[id];
+        for (final String child : childKeys.get(id)) {
+          childIds[offset++] = ids.get(child);
+        }
+      }
+      final List<Node<ScrapedEntity>> nodes = new ArrayList<>(keys.size());
+      final ScrapedEntity[] values = new ScrapedEntity[keys.size()];
+      for (int id = 0; id < keys.size(); id++) {
+        final boolean isRoot = id == 0 && Objects.nonNull(this.root);
+        nodes.add(isRoot ? this.root : new Node<>(new NodeKey(keys.get(id))));
+        values[id] = this.data.get(keys.get(id));
+      }
+      return new IndexedTreeVersion(
+          version, this.root, Map.copyOf(ids), List.copyOf(nodes), values, childOffsets, childIds);
+    }
+  }
+}
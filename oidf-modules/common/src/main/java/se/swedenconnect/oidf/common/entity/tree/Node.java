@@ -21,6 +21,7 @@ import lombok.Setter;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BiPredicate;
@@ -134,6 +135,27 @@ public class Node<T> {
       return new NodeSearchContext<>(this.level + 1, this.includeParent, this.cacheSnapshot, this.visisted,
           this.stopOnFirstMatch);
     }
+
+    /**
+     * The visited set is shared and mutated by the whole search, it is therefore not part of equality.
+     *
+     * @param other object to compare with
+     * @return true if the contexts are equal
+     */
+    @Override
+    public boolean equals(final Object other) {
+      return other instanceof final NodeSearchContext<?> context
+          && this.level == context.level
+          && this.includeParent == context.includeParent
+          && this.stopOnFirstMatch == context.stopOnFirstMatch
+          && this.cacheSnapshot == context.cacheSnapshot;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.level, this.includeParent, System.identityHashCode(this.cacheSnapshot),
+          this.stopOnFirstMatch);
+    }
   }
 
   /**
@@ -18,10 +18,19 @@ package se.swedenconnect.oidf.common.entity.tree;
 
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 
+import java.util.List;
+
 /**
  * Cache for Resolver.
  *
  * @author Felix Hellman
  */
 public interface ResolverCache extends SnapshotSource<ScrapedEntity>, VersionedCacheLayer<ScrapedEntity> {
+
+  /**
+   * @return statistics for each version held by this cache, empty if not supported by the implementation
+   */
+  default List<CacheVersionStatistics> getVersionStatistics() {
+    return List.of();
+  }
 }
@@ -17,18 +17,25 @@
 package se.swedenconnect.oidf.common.entity.tree;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * Generic tree structure to do graph-searches upon.
+ * <p>
+ * Traversals are iterative and depth first. The stack and visited set of a traversal are pooled and reused, and
+ * snapshots that have a {@link TreeIndex} are traversed by node id without allocating per node.
  * @param <T>
  *
  * @author Felix Hellman
  */
 public class Tree<T> {
+  private static final int MAX_POOLED_TRAVERSALS = 64;
+
   private final SnapshotSource<T> snapshotSource;
+  private final Queue<TreeTraversal<T>> traversals = new ArrayBlockingQueue<>(MAX_POOLED_TRAVERSALS);
 
   /**
    * Constructor.
@@ -45,7 +52,10 @@ public class Tree<T> {
    * @param snapshot version to add the node to
    */
   public void addChild(final Node<T> node, final NodeKey key, final T data, final CacheSnapshot<T> snapshot) {
-    snapshot.getRoot().addChild(new Node.NodePopulationContext<>(node, snapshot, key, new HashSet<>()));
+    final Node<T> parent = this.find(key, snapshot);
+    if (Objects.nonNull(parent)) {
+      snapshot.append(node, parent);
+    }
     snapshot.setData(node.getKey(), data);
   }
 
@@ -65,15 +75,55 @@ public class Tree<T> {
    * @return a set of matching results
    */
   public Set<SearchResult<T>> search(final SearchRequest<T> request) {
+    final Set<SearchResult<T>> results = new HashSet<>();
+    this.search(request, (node, data, context) -> results.add(new SearchResult<>(node, context)));
+    return results;
+  }
+
+  /**
+   * Performs a search upon the tree and hands every match to a consumer instead of collecting them.
+   * <p>
+   * When {@link SearchRequest#includeParent()} is set, parents are handed to the consumer after their matching
+   * descendants. Every node is handed to the consumer at most once.
+   * @param request defines search parameters
+   * @param consumer of matching nodes
+   */
+  public void search(final SearchRequest<T> request, final SearchConsumer<T> consumer) {
     final Node<T> root = request.snapshot().getRoot();
     if (Objects.isNull(root)) {
       throw new IllegalStateException("Could not find root node for request %s".formatted(request));
     }
-    final HashSet<NodeKey> visisted = new HashSet<>(List.of(root.getKey()));
-    final Node.NodeSearchContext<T> context =
-        new Node.NodeSearchContext<>(0, request.includeParent(), request.snapshot(), visisted,
-            request.stopOnFirstMatch());
-    return root.search(request.predicate(), context);
+    final boolean includeParent = request.includeParent();
+    final boolean stopOnFirstMatch = request.stopOnFirstMatch();
+    final TreeTraversal<T> traversal = this.acquire(request.snapshot());
+    try {
+      final int rootId = traversal.idOf(root);
+      traversal.markVisited(root, rootId);
+      TreeTraversal.Frame<T> frame = traversal.push(root, rootId);
+      this.enterSearch(frame, request, consumer, traversal);
+      while (Objects.nonNull(frame)) {
+        if (frame.hasNextChild() && !(stopOnFirstMatch && frame.isChildMatched())) {
+          final Node<T> child = frame.nextChild();
+          if (traversal.markVisited(child, frame.getChildId())) {
+            frame = traversal.push(child, frame.getChildId());
+            this.enterSearch(frame, request, consumer, traversal);
+          }
+          continue;
+        }
+        if (includeParent && frame.isChildMatched() && !frame.isMatched()) {
+          consumer.accept(frame.getNode(), frame.getData(),
+              traversal.context(frame.getLevel(), includeParent, stopOnFirstMatch));
+        }
+        final boolean found = frame.isMatched() || frame.isChildMatched();
+        frame = traversal.pop();
+        if (found && Objects.nonNull(frame)) {
+          frame.setChildMatched(true);
+        }
+      }
+    }
+    finally {
+      this.release(traversal);
+    }
   }
 
   /**
@@ -81,18 +131,57 @@ public class Tree<T> {
    * @return node data for key
    */
   public T getNode(final NodeKey key) {
-    return this.snapshotSource.snapshot().getData(key);
+    try (final CacheSnapshot<T> snapshot = this.snapshotSource.snapshot()) {
+      return snapshot.getData(key);
+    }
   }
 
   /**
+   * Visits every edge below the nodes that match the search predicate. The visitor is called once per edge, while
+   * nodes that are reachable through more than one edge are only descended into once.
    * @param request that specifies who to visit and what action to perform
    */
   public void visit(final VisitRequest<T> request) {
-    final HashSet<NodeKey> visited = new HashSet<>();
-    final Node.NodeSearchContext<T> context =
-        new Node.NodeSearchContext<>(0, false, request.snapshot(), visited, false);
-    request.snapshot().getRoot()
-        .visit(request.searchPredicate(), request.visitor(), context);
+    final Node<T> root = request.snapshot().getRoot();
+    if (Objects.isNull(root)) {
+      throw new IllegalStateException("Could not find root node for request %s".formatted(request));
+    }
+    final TreeTraversal<T> traversal = this.acquire(request.snapshot());
+    try {
+      final int rootId = traversal.idOf(root);
+      traversal.markVisited(root, rootId);
+      TreeTraversal.Frame<T> frame = traversal.push(root, rootId);
+      this.enterVisit(frame, request, traversal);
+      while (Objects.nonNull(frame)) {
+        if (!frame.hasNextChild()) {
+          frame = traversal.pop();
+          continue;
+        }
+        final Node<T> child = frame.nextChild();
+        request.visitor().accept(frame.getNode(), child);
+        if (traversal.markVisited(child, frame.getChildId())) {
+          frame = traversal.push(child, frame.getChildId());
+          this.enterVisit(frame, request, traversal);
+        }
+      }
+    }
+    finally {
+      this.release(traversal);
+    }
+  }
+
+  /**
+   * Consumer of search matches.
+   * @param <T> type of entity data
+   */
+  @FunctionalInterface
+  public interface SearchConsumer<T> {
+    /**
+     * @param node that matched
+     * @param data of the node, can be null
+     * @param context of the match, the same instance is shared by all matches on the same level
+     */
+    void accept(Node<T> node, T data, Node.NodeSearchContext<T> context);
   }
 
   /**
@@ -117,5 +206,69 @@ public class Tree<T> {
     return this.snapshotSource.snapshot();
   }
 
+  private Node<T> find(final NodeKey key, final CacheSnapshot<T> snapshot) {
+    final Node<T> root = snapshot.getRoot();
+    final TreeTraversal<T> traversal = this.acquire(snapshot);
+    try {
+      final int rootId = traversal.idOf(root);
+      traversal.markVisited(root, rootId);
+      if (key.equals(root.getKey())) {
+        return root;
+      }
+      TreeTraversal.Frame<T> frame = traversal.push(root, rootId);
+      frame.loadChildren();
+      while (Objects.nonNull(frame)) {
+        if (!frame.hasNextChild()) {
+          frame = traversal.pop();
+          continue;
+        }
+        final Node<T> child = frame.nextChild();
+        if (traversal.markVisited(child, frame.getChildId())) {
+          if (key.equals(child.getKey())) {
+            return child;
+          }
+          frame = traversal.push(child, frame.getChildId());
+          frame.loadChildren();
+        }
+      }
+      return null;
+    }
+    finally {
+      this.release(traversal);
+    }
+  }
 
+  private void enterSearch(final TreeTraversal.Frame<T> frame, final SearchRequest<T> request,
+                           final SearchConsumer<T> consumer, final TreeTraversal<T> traversal) {
+    final T data = traversal.data(frame);
+    final Node.NodeSearchContext<T> context =
+        traversal.context(frame.getLevel(), request.includeParent(), request.stopOnFirstMatch());
+    frame.setData(data);
+    if (request.predicate().test(data, context)) {
+      frame.setMatched(true);
+      consumer.accept(frame.getNode(), data, context);
+    }
+    frame.loadChildren();
+  }
+
+  private void enterVisit(final TreeTraversal.Frame<T> frame, final VisitRequest<T> request,
+                          final TreeTraversal<T> traversal) {
+    if (request.searchPredicate().test(frame.getNode(), traversal.context(frame.getLevel(), false, false))) {
+      frame.loadChildren();
+    }
+  }
+
+  private TreeTraversal<T> acquire(final CacheSnapshot<T> snapshot) {
+    TreeTraversal<T> traversal = this.traversals.poll();
+    if (Objects.isNull(traversal)) {
+      traversal = new TreeTraversal<>();
+    }
+    traversal.begin(snapshot);
+    return traversal;
+  }
+
+  private void release(final TreeTraversal<T> traversal) {
+    traversal.end();
+    this.traversals.offer(traversal);
+  }
 }
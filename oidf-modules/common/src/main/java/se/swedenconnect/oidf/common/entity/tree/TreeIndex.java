@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+/**
+ * Dense integer view of an immutable tree version, where every node has an id between 0 and {@link #size()}.
+ * Used by {@link Tree} to traverse a version without allocating per node.
+ *
+ * @param <T> type of entity data
+ *
+ * @author Felix Hellman
+ */
+public interface TreeIndex<T> {
+
+  /**
+   * @return number of nodes in this version
+   */
+  int size();
+
+  /**
+   * @param key entity identifier
+   * @return id of the entity or a negative value if the key is not part of this version
+   */
+  int indexOf(final String key);
+
+  /**
+   * @param id of the node
+   * @return node with the given id
+   */
+  Node<T> getNode(final int id);
+
+  /**
+   * @param id of the node
+   * @return data for the node, can be null
+   */
+  T getData(final int id);
+
+  /**
+   * @param id of the parent
+   * @return number of children for the parent
+   */
+  int childCount(final int id);
+
+  /**
+   * @param id    of the parent
+   * @param index of the child, between 0 and {@link #childCount(int)}
+   * @return id of the child
+   */
+  int childAt(final int id, final int index);
+}
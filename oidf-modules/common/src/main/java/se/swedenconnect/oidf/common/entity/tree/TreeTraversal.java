@@ -0,0 +1,268 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reusable state for an iterative depth first traversal of a {@link Tree}.
+ * <p>
+ * Holds an explicit stack of frames, one per level, and the set of visited nodes. When the snapshot has a
+ * {@link TreeIndex} visited nodes are tracked in a bitmap over node ids and children are read from the index,
+ * otherwise node keys are tracked in a set and children are read from the snapshot. An instance is used by one
+ * traversal at a time and is reused by {@link Tree} between traversals.
+ *
+ * @param <T> type of entity data
+ *
+ * @author Felix Hellman
+ */
+final class TreeTraversal<T> {
+
+  private final List<Frame<T>> frames = new ArrayList<>();
+  private final List<Node.NodeSearchContext<T>> contexts = new ArrayList<>();
+  private final Set<NodeKey> visitedKeys = new HashSet<>();
+  private long[] visitedIds = new long[0];
+  private CacheSnapshot<T> snapshot;
+  private TreeIndex<T> index;
+  private int depth = -1;
+
+  /**
+   * Prepares this instance for a traversal of a snapshot.
+   *
+   * @param snapshot to traverse
+   */
+  void begin(final CacheSnapshot<T> snapshot) {
+    this.snapshot = snapshot;
+    this.index = snapshot.getIndex().orElse(null);
+    this.depth = -1;
+    if (this.index != null) {
+      final int words = (this.index.size() + Long.SIZE - 1) / Long.SIZE;
+      if (this.visitedIds.length < words) {
+        this.visitedIds = new long[words];
+      }
+      else {
+        Arrays.fill(this.visitedIds, 0, words, 0L);
+      }
+    }
+  }
+
+  /**
+   * Releases references to the traversed snapshot so that this instance can be pooled.
+   */
+  void end() {
+    for (int i = 0; i <= this.depth; i++) {
+      this.frames.get(i).clear();
+    }
+    this.depth = -1;
+    this.contexts.clear();
+    this.visitedKeys.clear();
+    this.snapshot = null;
+    this.index = null;
+  }
+
+  /**
+   * @param node to mark as visited
+   * @param id   of the node in the index, ignored when the snapshot is not indexed
+   * @return true if the node had not been visited before
+   */
+  boolean markVisited(final Node<T> node, final int id) {
+    if (this.index == null) {
+      return this.visitedKeys.add(node.getKey());
+    }
+    if (id < 0) {
+      return true;
+    }
+    final int word = id / Long.SIZE;
+    final long bit = 1L << (id % Long.SIZE);
+    if ((this.visitedIds[word] & bit) != 0) {
+      return false;
+    }
+    this.visitedIds[word] |= bit;
+    return true;
+  }
+
+  /**
+   * @param node to find the id of
+   * @return id of the node or a negative value when the snapshot is not indexed
+   */
+  int idOf(final Node<T> node) {
+    return this.index == null ? -1 : this.index.indexOf(node.getKey().getKey());
+  }
+
+  /**
+   * Pushes a node to the stack. Children are not loaded until {@link Frame#loadChildren()} is called.
+   *
+   * @param node to push
+   * @param id   of the node in the index
+   * @return frame of the node
+   */
+  Frame<T> push(final Node<T> node, final int id) {
+    this.depth++;
+    if (this.frames.size() == this.depth) {
+      this.frames.add(new Frame<>(this));
+    }
+    final Frame<T> frame = this.frames.get(this.depth);
+    frame.reset(node, id, this.depth);
+    return frame;
+  }
+
+  /**
+   * @return the frame at the top of the stack
+   */
+  Frame<T> peek() {
+    return this.frames.get(this.depth);
+  }
+
+  /**
+   * Removes the frame at the top of the stack.
+   *
+   * @return the frame below the removed frame or null if the stack is empty
+   */
+  Frame<T> pop() {
+    this.frames.get(this.depth).clear();
+    this.depth--;
+    return this.depth < 0 ? null : this.frames.get(this.depth);
+  }
+
+  /**
+   * @return true if there are no frames on the stack
+   */
+  boolean isEmpty() {
+    return this.depth < 0;
+  }
+
+  /**
+   * Returns the search context for a level. Contexts are created once per level and traversal and may be kept by
+   * search results, they therefore never reference the pooled visited state of this instance.
+   *
+   * @param level         of the tree
+   * @param includeParent of the search
+   * @param stopOnFirstMatch of the search
+   * @return context for the level
+   */
+  Node.NodeSearchContext<T> context(final int level, final boolean includeParent, final boolean stopOnFirstMatch) {
+    while (this.contexts.size() <= level) {
+      this.contexts.add(new Node.NodeSearchContext<>(this.contexts.size(), includeParent, this.snapshot, Set.of(),
+          stopOnFirstMatch));
+    }
+    return this.contexts.get(level);
+  }
+
+  /**
+   * @param frame to get data for
+   * @return data of the node in the frame
+   */
+  T data(final Frame<T> frame) {
+    if (this.index != null && frame.id >= 0) {
+      return this.index.getData(frame.id);
+    }
+    return this.snapshot.getData(frame.node.getKey());
+  }
+
+  /**
+   * A node on the traversal stack together with the position of the next child to process.
+   *
+   * @param <T> type of entity data
+   */
+  static final class Frame<T> {
+    private final TreeTraversal<T> traversal;
+    @Getter
+    private Node<T> node;
+    private int id;
+    @Getter
+    private int level;
+    private List<Node<T>> children;
+    private int childCount;
+    private int next;
+    @Getter
+    private int childId;
+    @Getter
+    @Setter
+    private T data;
+    @Getter
+    @Setter
+    private boolean matched;
+    @Getter
+    @Setter
+    private boolean childMatched;
+
+    private Frame(final TreeTraversal<T> traversal) {
+      this.traversal = traversal;
+    }
+
+    private void reset(final Node<T> node, final int id, final int level) {
+      this.node = node;
+      this.id = id;
+      this.level = level;
+      this.children = null;
+      this.childCount = 0;
+      this.next = 0;
+      this.data = null;
+      this.matched = false;
+      this.childMatched = false;
+    }
+
+    private void clear() {
+      this.node = null;
+      this.children = null;
+      this.data = null;
+    }
+
+    /**
+     * Loads the children of this node so that they can be iterated with {@link #nextChild()}.
+     */
+    void loadChildren() {
+      final TreeIndex<T> index = this.traversal.index;
+      if (index != null && this.id >= 0) {
+        this.childCount = index.childCount(this.id);
+        return;
+      }
+      this.children = this.traversal.snapshot.getChildren(this.node);
+      this.childCount = this.children.size();
+    }
+
+    /**
+     * @return true if there are children left to process
+     */
+    boolean hasNextChild() {
+      return this.next < this.childCount;
+    }
+
+    /**
+     * Moves to the next child of this node. The id of the child is available from {@link #getChildId()}.
+     *
+     * @return the next child
+     */
+    Node<T> nextChild() {
+      final int index = this.next++;
+      if (this.children == null) {
+        this.childId = this.traversal.index.childAt(this.id, index);
+        return this.traversal.index.getNode(this.childId);
+      }
+      final Node<T> child = this.children.get(index);
+      this.childId = this.traversal.idOf(child);
+      return child;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps track of which versions of an in memory tree that are still needed.
+ * <p>
+ * The current version, the pending version and a fixed number of previous versions are always retained, which is
+ * what snapshots that are only read rely upon. Versions referenced by a {@link CacheSnapshot} that has been pinned are
+ * retained until that snapshot is closed, a pinned snapshot must therefore always be closed by its holder.
+ *
+ * @author Felix Hellman
+ */
+class VersionRetention {
+
+  private final Map<Long, Integer> pins = new ConcurrentHashMap<>();
+  private final int retainedVersions;
+
+  /**
+   * Constructor.
+   *
+   * @param retainedVersions number of previous versions to keep in addition to the current and pending version
+   */
+  VersionRetention(final int retainedVersions) {
+    if (retainedVersions < 0) {
+      throw new IllegalArgumentException("Retained versions can not be negative, was %d".formatted(retainedVersions));
+    }
+    this.retainedVersions = retainedVersions;
+  }
+
+  /**
+   * Pins the version of the snapshot until the snapshot is closed.
+   *
+   * @param snapshot to pin
+   * @param <T>      type of snapshot
+   * @return the same snapshot
+   */
+  <T> CacheSnapshot<T> pin(final CacheSnapshot<T> snapshot) {
+    final long version = snapshot.getVersion();
+    this.pins.merge(version, 1, Integer::sum);
+    final AtomicBoolean released = new AtomicBoolean();
+    snapshot.onClose(() -> {
+      if (released.compareAndSet(false, true)) {
+        this.pins.computeIfPresent(version, (v, count) -> count > 1 ? count - 1 : null);
+      }
+    });
+    return snapshot;
+  }
+
+  /**
+   * @param version to check
+   * @return number of open pinned snapshots for the version
+   */
+  int getPins(final long version) {
+    return this.pins.getOrDefault(version, 0);
+  }
+
+  /**
+   * @return number of previous versions to retain
+   */
+  int getRetainedVersions() {
+    return this.retainedVersions;
+  }
+
+  /**
+   * @param versions all versions currently held
+   * @param current  version currently served
+   * @param pending  version currently being loaded
+   * @return versions that can be reclaimed
+   */
+  List<Long> reclaimable(final Collection<Long> versions, final long current, final long pending) {
+    final Set<Long> keep = new HashSet<>(List.of(current, pending));
+    versions.stream()
+        .filter(version -> version < current)
+        .sorted((a, b) -> Long.compare(b, a))
+        .limit(this.retainedVersions)
+        .forEach(keep::add);
+    keep.addAll(this.pins.keySet());
+    return versions.stream()
+        .filter(version -> !keep.contains(version))
+        .toList();
+  }
+}
@@ -18,6 +18,7 @@ package se.swedenconnect.oidf.common.entity.tree;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Underlying cache layer that handles the tree data.
@@ -65,6 +66,25 @@ public interface VersionedCacheLayer<T> {
    */
   T getData(final String key, final long version);
 
+  /**
+   * Gets a dense index of an immutable version, if the implementation has one.
+   * @param version index of which tree to operate upon
+   * @return index of the version or empty if the version is not indexed
+   */
+  default Optional<TreeIndex<T>> getIndex(final long version) {
+    return Optional.empty();
+  }
+
+  /**
+   * Gets the number of writes made to a version after it was published, e.g. by steps that were retried. Values
+   * derived from a version are stale once its revision changes.
+   * @param version index of which tree to operate upon
+   * @return revision of the version, 0 if it has not been written to after it was published
+   */
+  default long getRevision(final long version) {
+    return 0;
+  }
+
   /**
    * @return the current tree index
    */
@@ -16,6 +16,7 @@
  */
 package se.swedenconnect.oidf.common.entity.tree;
 
+import lombok.extern.slf4j.Slf4j;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 
 import java.time.Instant;
@@ -29,40 +30,73 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * In memory implementation of {@link ResolverCache}
+ * <p>
+ * Only a bounded number of versions are kept in memory. The current version, the pending version and
+ * {@link #getRetainedVersions()} previous versions are always kept, as are versions that are still referenced by a
+ * {@link CacheSnapshot} handed out by this cache and not yet closed. Everything else is reclaimed when a new version
+ * is created or published. Writes to a version that has been reclaimed are dropped, writes to a version that has
+ * been published increase its {@link #getRevision(long) revision}.
  *
  * @author Felix Hellman
  */
+@Slf4j
 public class VersionedInMemoryCache implements ResolverCache {
 
-  private final Map<String, List<Node<ScrapedEntity>>> childMap = new ConcurrentHashMap<>();
-  private final Map<String, ScrapedEntity> dataMap = new ConcurrentHashMap<>();
-  private final Map<Long, Node<ScrapedEntity>> rootMap = new ConcurrentHashMap<>();
+  /**
+   * Default number of previous versions to retain.
+   */
+  public static final int DEFAULT_RETAINED_VERSIONS = 1;
+
+  private final Map<Long, VersionData> versions = new ConcurrentHashMap<>();
+  private final VersionRetention retention;
 
   private final AtomicLong integer = new AtomicLong(Instant.now().getEpochSecond());
   private final AtomicLong pendingVersion = new AtomicLong(Instant.now().getEpochSecond());
 
+  /**
+   * Constructor retaining {@link #DEFAULT_RETAINED_VERSIONS} previous versions.
+   */
+  public VersionedInMemoryCache() {
+    this(DEFAULT_RETAINED_VERSIONS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param retainedVersions number of previous versions to keep in addition to the current and pending version
+   */
+  public VersionedInMemoryCache(final int retainedVersions) {
+    this.retention = new VersionRetention(retainedVersions);
+  }
+
   @Override
   public void setData(final String key, final ScrapedEntity data, final long version) {
-    this.dataMap.put(this.getKey(key, version), data);
+    final VersionData versionData = this.versions.get(version);
+    if (Objects.isNull(versionData)) {
+      log.debug("Dropped write of {} to resolver cache version {} that is no longer held", key, version);
+      return;
+    }
+    versionData.data.put(key, data);
+    versionData.written();
   }
 
   @Override
   public Node<ScrapedEntity> getRoot(final long version) {
-    return this.rootMap.get(version);
+    return Optional.ofNullable(this.versions.get(version))
+        .map(versionData -> versionData.root)
+        .orElse(null);
   }
 
   @Override
   public ScrapedEntity getData(final String key, final long version) {
-    return this.dataMap.get(this.getKey(key, version));
-  }
-
-  private String getKey(final String key, final long version) {
-    return "%d:%s".formatted(version, key);
+    return Optional.ofNullable(this.versions.get(version))
+        .map(versionData -> versionData.data.get(key))
+        .orElse(null);
   }
 
   @Override
   public List<Node<ScrapedEntity>> getChildren(final Node<ScrapedEntity> node, final long version) {
-    return Optional.ofNullable(this.dataMap.get(this.getKey(node.getKey().getKey(), version)))
+    return Optional.ofNullable(this.getData(node.getKey().getKey(), version))
         .filter(scrape -> Objects.nonNull(scrape.getIntermediate()))
         .map(scrape -> scrape.getIntermediate().subordinates().keySet().stream()
             .map(key -> new Node<ScrapedEntity>(new NodeKey(key))).toList())
@@ -73,13 +107,26 @@ public class VersionedInMemoryCache implements ResolverCache {
   public synchronized void append(
       final Node<ScrapedEntity> child, final Node<ScrapedEntity> parent,
       final long version) {
-    //Can probably be solved without synchronized using compute if missing ...
-    List<Node<ScrapedEntity>> nodes = this.childMap.get(this.getKey(parent.getKey().getKey(), version));
+    final VersionData versionData = this.versions.get(version);
+    if (Objects.isNull(versionData)) {
+      log.debug("Dropped child {} of resolver cache version {} that is no longer held", child.getKey(), version);
+      return;
+    }
+    final Map<String, List<Node<ScrapedEntity>>> childMap = versionData.children;
+    List<Node<ScrapedEntity>> nodes = childMap.get(parent.getKey().getKey());
     if (Objects.isNull(nodes)) {
       nodes = new ArrayList<>();
     }
     nodes.add(child);
-    this.childMap.put(this.getKey(parent.getKey().getKey(), version), nodes);
+    childMap.put(parent.getKey().getKey(), nodes);
+    versionData.written();
+  }
+
+  @Override
+  public long getRevision(final long version) {
+    return Optional.ofNullable(this.versions.get(version))
+        .map(versionData -> versionData.revision.get())
+        .orElse(0L);
   }
 
   @Override
@@ -89,11 +136,15 @@ public class VersionedInMemoryCache implements ResolverCache {
 
   @Override
   public void useNextVersion() {
-    this.integer.set(this.pendingVersion.get());
+    final long next = this.pendingVersion.get();
+    Optional.ofNullable(this.versions.get(next)).ifPresent(versionData -> versionData.published = true);
+    this.integer.set(next);
+    this.reclaim();
   }
 
   @Override
   public CacheSnapshot<ScrapedEntity> snapshot() {
+    //Only read, the version is retained as the current version or as one of the retained previous versions
     return new CacheSnapshot<>(this, this.getCurrentVersion());
   }
 
@@ -103,8 +154,66 @@ public class VersionedInMemoryCache implements ResolverCache {
       final ScrapedEntity rootData) {
     final long version = this.getNextVersion();
     this.pendingVersion.set(version);
-    this.rootMap.put(version, root);
-    this.setData(root.getKey().getKey(), rootData, version);
-    return new CacheSnapshot<>(this, version);
+    final VersionData versionData = this.versions.computeIfAbsent(version, v -> new VersionData());
+    versionData.root = root;
+    versionData.data.put(root.getKey().getKey(), rootData);
+    final CacheSnapshot<ScrapedEntity> snapshot = this.retention.pin(new CacheSnapshot<>(this, version));
+    this.reclaim();
+    return snapshot;
+  }
+
+  @Override
+  public List<CacheVersionStatistics> getVersionStatistics() {
+    final long current = this.getCurrentVersion();
+    final long pending = this.pendingVersion.get();
+    return this.versions.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .map(entry -> new CacheVersionStatistics(
+            entry.getKey(),
+            entry.getValue().data.size(),
+            entry.getValue().data.values().stream().mapToLong(ScrapedEntity::estimateSize).sum(),
+            entry.getKey() == current,
+            entry.getKey() == pending,
+            this.retention.getPins(entry.getKey())
+        ))
+        .toList();
+  }
+
+  /**
+   * @return number of previous versions retained in addition to the current and pending version
+   */
+  public int getRetainedVersions() {
+    return this.retention.getRetainedVersions();
+  }
+
+  /**
+   * Removes every version that is not current, pending, one of the retained previous versions or still referenced
+   * by a snapshot. Pinned versions are reconsidered the next time this method is called.
+   */
+  public void reclaim() {
+    this.retention.reclaimable(this.versions.keySet(), this.getCurrentVersion(), this.pendingVersion.get())
+        .forEach(version -> {
+          final VersionData removed = this.versions.remove(version);
+          if (Objects.nonNull(removed)) {
+            log.debug("Reclaimed resolver cache version {} containing {} entities", version, removed.data.size());
+          }
+        });
+  }
+
+  /**
+   * All entries that belong to one version of the tree.
+   */
+  private static final class VersionData {
+    private final Map<String, ScrapedEntity> data = new ConcurrentHashMap<>();
+    private final Map<String, List<Node<ScrapedEntity>>> children = new ConcurrentHashMap<>();
+    private final AtomicLong revision = new AtomicLong();
+    private volatile Node<ScrapedEntity> root;
+    private volatile boolean published;
+
+    private void written() {
+      if (this.published) {
+        this.revision.incrementAndGet();
+      }
+    }
   }
 }
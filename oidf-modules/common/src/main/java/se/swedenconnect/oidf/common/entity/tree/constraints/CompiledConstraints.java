@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.constraints;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import lombok.Getter;
+import net.minidev.json.JSONObject;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.ConstraintRecord;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.NamingConstraints;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The constraints claim of an entity statement compiled into an immutable form.
+ * <p>
+ * Constraints are compiled when a statement is parsed and kept with it, see
+ * {@link se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement#compiledConstraints()}.
+ *
+ * @author Felix Hellman
+ */
+@Getter
+public final class CompiledConstraints {
+
+  /**
+   * Maximum number of intermediates below the issuer, null if not constrained.
+   */
+  private final Long maxPathLength;
+
+  /**
+   * Entity types allowed for the leaf, empty if all types are allowed.
+   */
+  private final Set<String> allowedEntityTypes;
+
+  /**
+   * Rules that every subject must match, empty if all names are permitted.
+   */
+  private final NamingConstraintMatcher permitted;
+
+  /**
+   * Rules that no subject may match.
+   */
+  private final NamingConstraintMatcher excluded;
+
+  /**
+   * Reason the constraints could not be compiled, null if they were compiled.
+   */
+  private final String malformed;
+
+  private CompiledConstraints(
+      final Long maxPathLength,
+      final Set<String> allowedEntityTypes,
+      final NamingConstraintMatcher permitted,
+      final NamingConstraintMatcher excluded,
+      final String malformed) {
+    this.maxPathLength = maxPathLength;
+    this.allowedEntityTypes = allowedEntityTypes;
+    this.permitted = permitted;
+    this.excluded = excluded;
+    this.malformed = malformed;
+  }
+
+  /**
+   * @param statement to read the constraints claim from
+   * @return compiled constraints of the statement, empty if the statement has no constraints claim
+   */
+  public static Optional<CompiledConstraints> of(final EntityStatement statement) {
+    return Optional.ofNullable(statement.getClaimsSet().getJSONObjectClaim("constraints"))
+        .map(CompiledConstraints::compile);
+  }
+
+  /**
+   * @param json constraints claim
+   * @return compiled constraints, malformed constraints are reported by {@link #getMalformed()}
+   */
+  public static CompiledConstraints compile(final Map<String, Object> json) {
+    try {
+      final ConstraintRecord constraints = ConstraintRecord.fromJson(json);
+      final NamingConstraints naming = constraints.getNaming();
+      return new CompiledConstraints(
+          constraints.getMaxPathLength(),
+          Optional.ofNullable(constraints.getAllowedEntityTypes()).map(Set::copyOf).orElse(Set.of()),
+          Optional.ofNullable(naming).map(names -> NamingConstraintMatcher.compile(names.getPermitted()))
+              .orElse(NamingConstraintMatcher.EMPTY),
+          Optional.ofNullable(naming).map(names -> NamingConstraintMatcher.compile(names.getExcluded()))
+              .orElse(NamingConstraintMatcher.EMPTY),
+          null);
+    } catch (final IllegalArgumentException | ClassCastException e) {
+      return new CompiledConstraints(null, Set.of(), NamingConstraintMatcher.EMPTY, NamingConstraintMatcher.EMPTY,
+          "Malformed constraints %s".formatted(new JSONObject(json).toJSONString()));
+    }
+  }
+
+  /**
+   * @return true if the constraints could not be compiled
+   */
+  public boolean isMalformed() {
+    return Objects.nonNull(this.malformed);
+  }
+
+  /**
+   * @param entityId to check
+   * @return true if the entity identifier is allowed by the naming constraints
+   */
+  public boolean isNameAllowed(final String entityId) {
+    if (this.excluded.matches(entityId)) {
+      return false;
+    }
+    return this.permitted.isEmpty() || this.permitted.matches(entityId);
+  }
+}
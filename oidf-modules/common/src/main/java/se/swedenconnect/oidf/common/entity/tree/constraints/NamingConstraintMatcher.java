@@ -0,0 +1,157 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.constraints;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable matcher for a list of naming constraint rules.
+ * <p>
+ * Rules are compiled once into a trie of reversed host labels, so that {@code https://.example.com} is stored under
+ * {@code com -> example}. An entity identifier matches a rule when
+ * <ul>
+ * <li>its host equals the rule host or is a subdomain of it, a rule host starting with {@code .} only matches
+ * subdomains</li>
+ * <li>its scheme equals the rule scheme, if the rule has a scheme</li>
+ * <li>its path starts with the rule path, if the rule has a path</li>
+ * </ul>
+ * Rules without a host match any host. Matching never throws, entity identifiers that are not absolute URIs do not
+ * match any rule.
+ *
+ * @author Felix Hellman
+ */
+public final class NamingConstraintMatcher {
+
+  /**
+   * Matcher without rules.
+   */
+  public static final NamingConstraintMatcher EMPTY = new NamingConstraintMatcher(new Node(), List.of(), 0);
+
+  private final Node root;
+  private final List<Rule> anyHost;
+  private final int size;
+
+  private NamingConstraintMatcher(final Node root, final List<Rule> anyHost, final int size) {
+    this.root = root;
+    this.anyHost = anyHost;
+    this.size = size;
+  }
+
+  /**
+   * @param rules to compile
+   * @return matcher for the rules
+   * @throws IllegalArgumentException if a rule is not a valid URI
+   */
+  public static NamingConstraintMatcher compile(final List<String> rules) {
+    if (Objects.isNull(rules) || rules.isEmpty()) {
+      return EMPTY;
+    }
+    final Node root = new Node();
+    final List<Rule> anyHost = new ArrayList<>();
+    for (final String value : rules) {
+      final URI uri = URI.create(value);
+      final String path = Objects.requireNonNullElse(uri.getPath(), "");
+      final String authority = uri.getAuthority();
+      if (Objects.isNull(authority) || authority.isEmpty() || ".".equals(authority)) {
+        anyHost.add(new Rule(uri.getScheme(), path, false));
+        continue;
+      }
+      final boolean subdomainsOnly = authority.startsWith(".");
+      final String host = (subdomainsOnly ? authority.substring(1) : authority).toLowerCase(Locale.ROOT);
+      final String[] labels = host.split("\\.");
+      Node node = root;
+      for (int i = labels.length - 1; i >= 0; i--) {
+        node = node.children.computeIfAbsent(labels[i], label -> new Node());
+      }
+      node.rules.add(new Rule(uri.getScheme(), path, subdomainsOnly));
+    }
+    return new NamingConstraintMatcher(root, List.copyOf(anyHost), rules.size());
+  }
+
+  /**
+   * @return true if this matcher has no rules
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * @param entityId to match
+   * @return true if the entity identifier matches at least one rule
+   */
+  public boolean matches(final String entityId) {
+    if (this.isEmpty() || Objects.isNull(entityId)) {
+      return false;
+    }
+    final int schemeEnd = entityId.indexOf("://");
+    if (schemeEnd <= 0) {
+      return false;
+    }
+    final String scheme = entityId.substring(0, schemeEnd);
+    final int authorityStart = schemeEnd + 3;
+    int authorityEnd = authorityStart;
+    while (authorityEnd < entityId.length() && "/?#".indexOf(entityId.charAt(authorityEnd)) < 0) {
+      authorityEnd++;
+    }
+    int pathEnd = authorityEnd;
+    while (pathEnd < entityId.length() && "?#".indexOf(entityId.charAt(pathEnd)) < 0) {
+      pathEnd++;
+    }
+    final String path = entityId.substring(authorityEnd, pathEnd);
+    for (final Rule rule : this.anyHost) {
+      if (rule.matches(scheme, path)) {
+        return true;
+      }
+    }
+    final String authority = entityId.substring(authorityStart, authorityEnd).toLowerCase(Locale.ROOT);
+    Node node = this.root;
+    int end = authority.length();
+    while (end > 0) {
+      final int start = authority.lastIndexOf('.', end - 1) + 1;
+      node = node.children.get(authority.substring(start, end));
+      if (Objects.isNull(node)) {
+        return false;
+      }
+      final boolean subdomain = start > 0;
+      for (final Rule rule : node.rules) {
+        if ((subdomain || !rule.subdomainsOnly()) && rule.matches(scheme, path)) {
+          return true;
+        }
+      }
+      end = start - 1;
+    }
+    return false;
+  }
+
+  private static final class Node {
+    private final Map<String, Node> children = new HashMap<>();
+    private final List<Rule> rules = new ArrayList<>();
+  }
+
+  private record Rule(String scheme, String path, boolean subdomainsOnly) {
+    boolean matches(final String entityScheme, final String entityPath) {
+      return (Objects.isNull(this.scheme) || this.scheme.equalsIgnoreCase(entityScheme))
+          && entityPath.startsWith(this.path);
+    }
+  }
+}
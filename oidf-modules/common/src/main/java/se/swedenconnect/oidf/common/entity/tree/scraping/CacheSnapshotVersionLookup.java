@@ -16,6 +16,7 @@
  */
 package se.swedenconnect.oidf.common.entity.tree.scraping;
 
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
 import se.swedenconnect.oidf.common.entity.tree.FederationTreeSource;
 
 /**
@@ -46,7 +47,11 @@ public class CacheSnapshotVersionLookup {
    */
   public Long getLatestSnapshotVersion() {
     return this.treeSource.getTrees().stream()
-        .mapToLong(tree -> tree.getCurrentSnapshot().getVersion())
+        .mapToLong(tree -> {
+          try (CacheSnapshot<?> snapshot = tree.getCurrentSnapshot()) {
+            return snapshot.getVersion();
+          }
+        })
         .max()
         .orElse(0L);
   }
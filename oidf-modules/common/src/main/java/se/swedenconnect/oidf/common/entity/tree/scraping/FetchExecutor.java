@@ -0,0 +1,201 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.scraping;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Executes the fetches made while scraping an intermediate.
+ * <p>
+ * The number of fetches in flight is bounded for the whole executor, callers block until a fetch has completed when
+ * the bound is reached. Fetches towards a single host are also limited by {@link HostPermits}, which may be shared by
+ * several executors. Results are handed to the caller as each fetch completes.
+ *
+ * @author Felix Hellman
+ */
+@Slf4j
+public class FetchExecutor {
+
+  /**
+   * Default number of fetches in flight.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_FETCHES = 32;
+
+  private final Executor executor;
+  private final Semaphore permits;
+  private final HostPermits hostPermits;
+  private final Consumer<IntermediateFetchTiming> timingListener;
+
+  /**
+   * Constructor without a separate limit per host.
+   *
+   * @param executor             to run fetches upon
+   * @param maxConcurrentFetches number of fetches in flight
+   * @param timingListener       receives the timings for every scraped intermediate
+   */
+  public FetchExecutor(
+      final Executor executor,
+      final int maxConcurrentFetches,
+      final Consumer<IntermediateFetchTiming> timingListener) {
+    this(executor, maxConcurrentFetches, new HostPermits(Math.max(1, maxConcurrentFetches)), timingListener);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param executor             to run fetches upon
+   * @param maxConcurrentFetches number of fetches in flight
+   * @param hostPermits          limiting the fetches in flight towards a single host
+   * @param timingListener       receives the timings for every scraped intermediate
+   */
+  public FetchExecutor(
+      final Executor executor,
+      final int maxConcurrentFetches,
+      final HostPermits hostPermits,
+      final Consumer<IntermediateFetchTiming> timingListener) {
+    if (maxConcurrentFetches < 1) {
+      throw new IllegalArgumentException("Concurrent fetches must be at least 1");
+    }
+    this.executor = executor;
+    this.permits = new Semaphore(maxConcurrentFetches);
+    this.hostPermits = hostPermits;
+    this.timingListener = timingListener;
+  }
+
+  /**
+   * Creates an executor that logs timings.
+   *
+   * @param executor             to run fetches upon
+   * @param maxConcurrentFetches number of fetches in flight
+   * @param hostPermits          limiting the fetches in flight towards a single host
+   * @return new instance
+   */
+  public static FetchExecutor logging(
+      final Executor executor,
+      final int maxConcurrentFetches,
+      final HostPermits hostPermits) {
+    return new FetchExecutor(executor, maxConcurrentFetches, hostPermits,
+        timing -> log.debug("Scraped {} subordinates of {}, listing took {} ms, fetching took {} ms",
+            timing.subordinates(), timing.intermediate(), timing.listing().toMillis(), timing.fetch().toMillis()));
+  }
+
+  /**
+   * @return executor running on virtual threads that is shared by scrapes that are not given an executor
+   */
+  public static FetchExecutor shared() {
+    return Shared.INSTANCE;
+  }
+
+  /**
+   * Fetches every key from a single endpoint and hands each result to a consumer as soon as it is fetched. Returns
+   * when every fetch has completed. No further fetches are started after a fetch has failed.
+   *
+   * @param endpoint that every key is fetched from, fetches are limited by the permits of its host
+   * @param keys     to fetch
+   * @param fetch    function that fetches a key
+   * @param onResult consumer of fetched results, called concurrently
+   * @param <T>      type of the fetched result
+   * @throws RuntimeException if any fetch failed or the calling thread was interrupted
+   */
+  public <T> void fetchAll(
+      final String endpoint,
+      final Collection<String> keys,
+      final Function<String, T> fetch,
+      final BiConsumer<String, T> onResult) {
+    final Semaphore host = this.hostPermits.forLocation(endpoint);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final List<CompletableFuture<Void>> futures = new ArrayList<>(keys.size());
+    try {
+      for (final String key : keys) {
+        if (Objects.nonNull(failure.get())) {
+          break;
+        }
+        this.permits.acquire();
+        futures.add(CompletableFuture.runAsync(() -> {
+          try {
+            fetch(host, key, fetch, onResult);
+          } catch (final RuntimeException e) {
+            failure.compareAndSet(null, e);
+            throw e;
+          } finally {
+            this.permits.release();
+          }
+        }, this.executor));
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      futures.forEach(future -> future.cancel(true));
+      throw new RuntimeException("Interrupted while fetching subordinates", e);
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+    } catch (final CompletionException e) {
+      throw new RuntimeException(Objects.requireNonNullElse(failure.get(), e.getCause()));
+    }
+  }
+
+  private static <T> void fetch(
+      final Semaphore host,
+      final String key,
+      final Function<String, T> fetch,
+      final BiConsumer<String, T> onResult) {
+    try {
+      host.acquire();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting to fetch %s".formatted(key), e);
+    }
+    try {
+      onResult.accept(key, fetch.apply(key));
+    } finally {
+      host.release();
+    }
+  }
+
+  /**
+   * @return executor that fetches are run upon
+   */
+  public Executor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * @param timing to record
+   */
+  public void record(final IntermediateFetchTiming timing) {
+    this.timingListener.accept(timing);
+  }
+
+  private static final class Shared {
+    private static final FetchExecutor INSTANCE = logging(Executors.newVirtualThreadPerTaskExecutor(),
+        DEFAULT_MAX_CONCURRENT_FETCHES, new HostPermits(DEFAULT_MAX_CONCURRENT_FETCHES));
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.scraping;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of requests that are made at the same time towards a single host.
+ *
+ * @author Felix Hellman
+ */
+public class HostPermits {
+
+  private final int permitsPerHost;
+  private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param permitsPerHost number of requests made at the same time towards a single host
+   */
+  public HostPermits(final int permitsPerHost) {
+    if (permitsPerHost < 1) {
+      throw new IllegalArgumentException("Permits per host must be at least 1");
+    }
+    this.permitsPerHost = permitsPerHost;
+  }
+
+  /**
+   * @param location that a request is made to, an entity identifier or an endpoint
+   * @return permits of the host of the location
+   */
+  public Semaphore forLocation(final String location) {
+    return this.permits.computeIfAbsent(host(location), h -> new Semaphore(this.permitsPerHost));
+  }
+
+  /**
+   * @param location an entity identifier or an endpoint
+   * @return host of the location, or the location itself if it has no host
+   */
+  public static String host(final String location) {
+    if (Objects.isNull(location)) {
+      return "";
+    }
+    try {
+      return Objects.requireNonNullElse(URI.create(location).getHost(), location);
+    } catch (final IllegalArgumentException e) {
+      return location;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.scraping;
+
+import java.time.Duration;
+
+/**
+ * Timings for scraping the subordinates of a single intermediate.
+ *
+ * @param intermediate entity identifier of the intermediate
+ * @param subordinates number of subordinates fetched
+ * @param listing      time spent on the subordinate listing
+ * @param fetch        time spent fetching subordinate statements
+ *
+ * @author Felix Hellman
+ */
+public record IntermediateFetchTiming(String intermediate, int subordinates, Duration listing, Duration fetch) {
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.scraping;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatementClaimsSet;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import se.swedenconnect.oidf.common.entity.tree.constraints.CompiledConstraints;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An entity statement that has been parsed once, together with the fields the resolver reads on every request.
+ *
+ * @param statement           parsed entity statement
+ * @param subject             subject of the statement
+ * @param issuer              issuer of the statement
+ * @param expiration          expiration time of the statement, null if not present
+ * @param jwks                keys of the subject, null if not present
+ * @param constraints         constraints claim, null if not present
+ * @param compiledConstraints constraints claim compiled for validation, null if not present
+ * @param metadataPolicy      metadata_policy claim, null if not present
+ * @param trustMarks          trust marks of the statement, empty if none present
+ *
+ * @author Felix Hellman
+ */
+public record ParsedStatement(
+    EntityStatement statement,
+    String subject,
+    String issuer,
+    Instant expiration,
+    JWKSet jwks,
+    JSONObject constraints,
+    CompiledConstraints compiledConstraints,
+    JSONObject metadataPolicy,
+    List<SignedJWT> trustMarks) {
+
+  /**
+   * Parses a signed entity statement.
+   *
+   * @param jwt to parse
+   * @return parsed statement
+   * @throws IllegalArgumentException if the statement can not be parsed
+   */
+  public static ParsedStatement parse(final SignedJWT jwt) {
+    try {
+      return ParsedStatement.of(EntityStatement.parse(jwt));
+    } catch (final ParseException e) {
+      throw new IllegalArgumentException("Failed to parse entity statement", e);
+    }
+  }
+
+  /**
+   * Derives the precomputed fields from an already parsed entity statement.
+   *
+   * @param statement to derive fields from
+   * @return parsed statement
+   */
+  public static ParsedStatement of(final EntityStatement statement) {
+    final EntityStatementClaimsSet claims = statement.getClaimsSet();
+    return new ParsedStatement(
+        statement,
+        claims.getSubject().getValue(),
+        claims.getIssuer().getValue(),
+        Optional.ofNullable(claims.getExpirationTime()).map(Date::toInstant).orElse(null),
+        claims.getJWKSet(),
+        claims.getJSONObjectClaim("constraints"),
+        CompiledConstraints.of(statement).orElse(null),
+        claims.getMetadataPolicyJSONObject(),
+        parseTrustMarks(claims.getJSONArrayClaim("trust_marks"))
+    );
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<SignedJWT> parseTrustMarks(final JSONArray trustMarks) {
+    if (Objects.isNull(trustMarks)) {
+      return List.of();
+    }
+    return trustMarks.stream()
+        .map(entry -> (Map<String, Object>) entry)
+        .map(entry -> {
+          try {
+            return SignedJWT.parse((String) entry.get("trust_mark"));
+          } catch (final java.text.ParseException e) {
+            throw new IllegalArgumentException("Failed to parse trust mark JWT", e);
+          }
+        })
+        .toList();
+  }
+}
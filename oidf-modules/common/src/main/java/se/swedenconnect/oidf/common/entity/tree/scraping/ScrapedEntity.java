@@ -19,6 +19,7 @@ package se.swedenconnect.oidf.common.entity.tree.scraping;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -27,16 +28,21 @@ import lombok.extern.slf4j.Slf4j;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.EntityConfigurationRequest;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationRequest;
-import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationTrustMarkStatusRequest;
 import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
 import se.swedenconnect.oidf.common.entity.tree.EntityStatementWrapper;
 
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Wrapper for an entity statement in the resolver tree.
@@ -50,6 +56,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @AllArgsConstructor
 public class ScrapedEntity {
   private final EntityID entityID;
+  @Builder.Default
   private final Instant scrapedAt = Instant.now();
   private String ecLocation;
 
@@ -59,29 +66,54 @@ public class ScrapedEntity {
   private Map<String, TrustMarkStatusResponse> trustMarkStatuses = new HashMap<>();
   //Roles
   private ScrapedIntermediate intermediate;
+  @Getter(AccessLevel.NONE)
+  private final transient AtomicReference<ParsedStatement> parsedStatement = new AtomicReference<>();
 
   /**
-   * Resolves the entity statement using the provided federation client.
+   * Resolves the entity statement using the provided federation client and the {@link FetchExecutor#shared() shared}
+   * fetch executor.
    *
    * @param client      the federation client to use for resolution
    */
   public void scrape(final FederationClient client) {
+    this.scrape(client, FetchExecutor.shared());
+  }
+
+  /**
+   * Resolves the entity statement using the provided federation client. Trust mark statuses are only deduplicated
+   * within this entity, share a {@link TrustMarkStatusService} to deduplicate them across entities.
+   *
+   * @param client        the federation client to use for resolution
+   * @param fetchExecutor to fetch subordinate statements with if the entity is an intermediate
+   */
+  public void scrape(final FederationClient client, final FetchExecutor fetchExecutor) {
+    this.scrape(client, fetchExecutor, new TrustMarkStatusService(client, fetchExecutor.getExecutor(), Duration.ZERO));
+  }
+
+  /**
+   * Resolves the entity statement using the provided federation client. Trust mark statuses are requested while the
+   * subordinates of an intermediate are fetched.
+   *
+   * @param client             the federation client to use for resolution
+   * @param fetchExecutor      to fetch subordinate statements with if the entity is an intermediate
+   * @param trustMarkStatuses  to request trust mark statuses with
+   */
+  public void scrape(
+      final FederationClient client,
+      final FetchExecutor fetchExecutor,
+      final TrustMarkStatusService trustMarkStatuses) {
     log.debug("Resolving entity {}", this.entityID);
     this.entityStatement =
         client.entityConfiguration(
             new FederationRequest<>(new EntityConfigurationRequest(this.entityID, this.ecLocation))
         );
-    final EntityStatementWrapper wrapper = new EntityStatementWrapper(this.entityStatement.getSignedStatement());
+    final EntityStatementWrapper wrapper = new EntityStatementWrapper(this.entityStatement);
     final List<SignedJWT> trustMarks = wrapper.getTrustMarks();
+    final Map<String, CompletableFuture<TrustMarkStatusResponse>> statuses = new LinkedHashMap<>();
     trustMarks.forEach(trustMark -> {
       try {
-        final TrustMarkStatusResponse trustMarkStatus = client.trustMarkStatus(
-            new FederationRequest<>(
-                new FederationTrustMarkStatusRequest(trustMark.serialize(), trustMark.getJWTClaimsSet().getIssuer())
-            )
-        );
         final String trustMarkType = trustMark.getJWTClaimsSet().getStringClaim("trust_mark_type");
-        this.trustMarkStatuses.put(trustMarkType, trustMarkStatus);
+        statuses.put(trustMarkType, trustMarkStatuses.status(trustMark));
       } catch (final ParseException e) {
         throw new RuntimeException(e);
       }
@@ -91,8 +123,59 @@ public class ScrapedEntity {
           if (metadata.containsKey("federation_list_endpoint")) {
             log.debug("Entity {} is intermediate, resolving subordinates", this.entityID);
             this.intermediate = new ScrapedIntermediate(new ConcurrentHashMap<>());
-            this.intermediate.scrape(client, metadata);
+            this.intermediate.scrape(client, metadata, this.entityID.getValue(), fetchExecutor);
           }
         });
+    statuses.forEach((trustMarkType, status) ->
+        this.trustMarkStatuses.put(trustMarkType, TrustMarkStatusService.join(status)));
+  }
+
+  /**
+   * @return the entity configuration with its derived fields, parsed once per statement, null if not scraped
+   */
+  public ParsedStatement getParsedStatement() {
+    final EntityStatement statement = this.getEntityStatement();
+    if (Objects.isNull(statement)) {
+      return null;
+    }
+    final ParsedStatement parsed = this.parsedStatement.get();
+    if (Objects.nonNull(parsed) && parsed.statement() == statement) {
+      return parsed;
+    }
+    final ParsedStatement created = ParsedStatement.of(statement);
+    this.parsedStatement.set(created);
+    return created;
+  }
+
+  /**
+   * Estimates the memory held by this entity based on the length of the serialized statements it contains.
+   *
+   * @return estimated size in bytes
+   */
+  public long estimateSize() {
+    long size = estimateSize(Optional.ofNullable(this.getEntityStatement())
+        .map(EntityStatement::getSignedStatement)
+        .orElse(null));
+    if (Objects.nonNull(this.intermediate)) {
+      size += this.intermediate.subordinates().entrySet().stream()
+          .mapToLong(entry -> entry.getKey().length() + estimateSize(entry.getValue()))
+          .sum();
+    }
+    if (Objects.nonNull(this.trustMarkStatuses)) {
+      size += this.trustMarkStatuses.values().stream()
+          .filter(Objects::nonNull)
+          .mapToLong(status -> estimateSize(status.getSignedJWT()))
+          .sum();
+    }
+    return size;
+  }
+
+  private static long estimateSize(final SignedJWT jwt) {
+    if (Objects.isNull(jwt)) {
+      return 0;
+    }
+    return Optional.ofNullable(jwt.getParsedString())
+        .orElseGet(jwt::serialize)
+        .length();
   }
 }
@@ -24,26 +24,90 @@ import se.swedenconnect.oidf.common.entity.entity.integration.federation.Federat
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.FetchRequest;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.SubordinateListingRequest;
 
-import java.text.ParseException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Holds scraped subordinate entity statements for an intermediate entity.
+ * <p>
+ * Statements fetched by {@link #scrape(FederationClient, Map, String, FetchExecutor)} are kept both in their signed
+ * form and as a {@link ParsedStatement}, so that resolving a trust chain never parses a statement again. Statements
+ * that were added in their signed form only, e.g. after being read from an external cache, are parsed the first
+ * time they are requested.
  *
- * @param subordinates map of subject entity ID to signed subordinate statement
  * @author Felix Hellman
  */
 @Slf4j
-public record ScrapedIntermediate(Map<String, SignedJWT> subordinates) {
+public final class ScrapedIntermediate {
 
-  private static final ExecutorService FETCH_EXECUTOR =
-      Executors.newFixedThreadPool(10);
+  private final Map<String, SignedJWT> subordinates;
+  private transient volatile Map<String, ParsedStatement> statements;
+
+  /**
+   * Constructor.
+   *
+   * @param subordinates map of subject entity ID to signed subordinate statement
+   */
+  public ScrapedIntermediate(final Map<String, SignedJWT> subordinates) {
+    this.subordinates = subordinates;
+    this.statements = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return map of subject entity ID to signed subordinate statement
+   */
+  public Map<String, SignedJWT> subordinates() {
+    return this.subordinates;
+  }
+
+  /**
+   * Returns the parsed subordinate statement for a subject. The statement is parsed at most once.
+   *
+   * @param subject entity identifier of the subordinate
+   * @return parsed statement, or null if this intermediate has no statement for the subject
+   */
+  public ParsedStatement statement(final String subject) {
+    final SignedJWT jwt = this.subordinates.get(subject);
+    if (Objects.isNull(jwt)) {
+      return null;
+    }
+    final ParsedStatement parsed = this.statements().get(subject);
+    if (Objects.nonNull(parsed) && parsed.statement().getSignedStatement() == jwt) {
+      return parsed;
+    }
+    final ParsedStatement created = ParsedStatement.parse(jwt);
+    this.statements().put(subject, created);
+    return created;
+  }
+
+  /**
+   * Adds a subordinate statement that has already been parsed.
+   *
+   * @param statement to add
+   */
+  public void put(final EntityStatement statement) {
+    final String subject = statement.getEntityID().getValue();
+    this.statements().put(subject, ParsedStatement.of(statement));
+    this.subordinates.put(subject, statement.getSignedStatement());
+  }
+
+  private Map<String, ParsedStatement> statements() {
+    Map<String, ParsedStatement> current = this.statements;
+    if (Objects.isNull(current)) {
+      synchronized (this) {
+        current = this.statements;
+        if (Objects.isNull(current)) {
+          current = new ConcurrentHashMap<>();
+          this.statements = current;
+        }
+      }
+    }
+    return current;
+  }
 
   /**
    * Scrapes all subordinates of this intermediate from the federation.
@@ -52,24 +116,58 @@ public record ScrapedIntermediate(Map<String, SignedJWT> subordinates) {
    * @param metadata metadata for the intermediate endpoint
    */
   public void scrape(final FederationClient client, final Map<String, Object> metadata) {
+    this.scrape(client, metadata, "", FetchExecutor.shared());
+  }
+
+  /**
+   * Scrapes all subordinates of this intermediate from the federation. Subordinate statements are added to
+   * {@link #subordinates()} as they are fetched, the map must therefore be thread safe.
+   *
+   * @param client        federation client to use
+   * @param metadata      metadata for the intermediate endpoint
+   * @param intermediate  entity identifier of this intermediate, used when recording timings
+   * @param fetchExecutor to fetch subordinate statements with
+   */
+  public void scrape(
+      final FederationClient client,
+      final Map<String, Object> metadata,
+      final String intermediate,
+      final FetchExecutor fetchExecutor) {
+    final long start = System.nanoTime();
     final List<String> subordinates = client.subordinateListing(
         new FederationRequest<>(SubordinateListingRequest.requestAll(), metadata));
-    final Map<String, SignedJWT> collect = subordinates.stream().parallel()
-        .map(sub -> {
-          return CompletableFuture.supplyAsync(() -> {
-            log.debug("Resolving subordinate {}", sub);
-            final EntityStatement fetch = client.fetch(new FederationRequest<>(new FetchRequest(sub), metadata));
-            return fetch;
-          }, FETCH_EXECUTOR);
-        })
-        .map(future -> {
-          try {
-            return future.get();
-          } catch (final InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
-          }
-        })
-        .collect(Collectors.toMap(kv -> kv.getEntityID().getValue(), EntityStatement::getSignedStatement));
-        this.subordinates.putAll(collect);
+    final long listed = System.nanoTime();
+    final String fetchEndpoint = Optional.ofNullable(metadata.get("federation_fetch_endpoint"))
+        .map(Object::toString)
+        .orElse(intermediate);
+    fetchExecutor.fetchAll(fetchEndpoint, subordinates,
+        sub -> {
+          log.debug("Resolving subordinate {}", sub);
+          return client.fetch(new FederationRequest<>(new FetchRequest(sub), metadata));
+        },
+        (sub, statement) -> this.put(statement));
+    fetchExecutor.record(new IntermediateFetchTiming(intermediate, subordinates.size(),
+        Duration.ofNanos(listed - start), Duration.ofNanos(System.nanoTime() - listed)));
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof final ScrapedIntermediate other)) {
+      return false;
+    }
+    return Objects.equals(this.subordinates, other.subordinates);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(this.subordinates);
+  }
+
+  @Override
+  public String toString() {
+    return "ScrapedIntermediate[subordinates=%s]".formatted(this.subordinates);
   }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.scraping;
+
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationTrustMarkStatusRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fetches trust mark statuses while scraping the federation.
+ * <p>
+ * Status requests are issued concurrently and deduplicated by trust mark issuer and SHA-256 of the trust mark, so
+ * that a trust mark carried by many entities is only checked once per reload. A successful status from an earlier
+ * reload is reused as long as it was fetched within the freshness window and the status response has not expired.
+ * Call {@link #beginReload()} when a new reload starts.
+ *
+ * @author Felix Hellman
+ */
+@Slf4j
+public class TrustMarkStatusService {
+
+  /**
+   * Default time a status from an earlier reload may be reused.
+   */
+  public static final Duration DEFAULT_FRESHNESS = Duration.ofMinutes(5);
+
+  /**
+   * Default number of status requests in flight.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+
+  private final FederationClient client;
+  private final Executor executor;
+  private final Semaphore permits;
+  private final Duration freshness;
+  private final Clock clock;
+  private final Map<StatusKey, FetchedStatus> fetched = new ConcurrentHashMap<>();
+  private volatile Map<StatusKey, CompletableFuture<TrustMarkStatusResponse>> reload = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param client    to fetch statuses with
+   * @param executor  to fetch statuses upon
+   * @param freshness time a status from an earlier reload may be reused, zero to always fetch once per reload
+   */
+  public TrustMarkStatusService(final FederationClient client, final Executor executor, final Duration freshness) {
+    this(client, executor, DEFAULT_MAX_CONCURRENT_REQUESTS, freshness, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param client                to fetch statuses with
+   * @param executor              to fetch statuses upon
+   * @param maxConcurrentRequests number of status requests in flight
+   * @param freshness             time a status from an earlier reload may be reused
+   * @param clock                 to determine freshness with
+   */
+  public TrustMarkStatusService(
+      final FederationClient client,
+      final Executor executor,
+      final int maxConcurrentRequests,
+      final Duration freshness,
+      final Clock clock) {
+    this.client = client;
+    this.executor = executor;
+    this.permits = new Semaphore(maxConcurrentRequests);
+    this.freshness = freshness;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts a new reload. Statuses requested after this call are not deduplicated against requests from the previous
+   * reload, only reused if they are still fresh.
+   */
+  public void beginReload() {
+    this.reload = new ConcurrentHashMap<>();
+    final Instant now = this.clock.instant();
+    this.fetched.values().removeIf(status -> !status.isFresh(now, this.freshness));
+  }
+
+  /**
+   * Requests the status of a trust mark.
+   *
+   * @param trustMark to request the status of
+   * @return future status
+   * @throws ParseException if the trust mark claims could not be parsed
+   */
+  public CompletableFuture<TrustMarkStatusResponse> status(final SignedJWT trustMark) throws ParseException {
+    final String serialized = trustMark.serialize();
+    final String issuer = trustMark.getJWTClaimsSet().getIssuer();
+    final StatusKey key = new StatusKey(issuer, sha256(serialized));
+    final Map<StatusKey, CompletableFuture<TrustMarkStatusResponse>> current = this.reload;
+    final CompletableFuture<TrustMarkStatusResponse> requested = current.get(key);
+    if (Objects.nonNull(requested)) {
+      return requested;
+    }
+    final FetchedStatus previous = this.fetched.get(key);
+    if (Objects.nonNull(previous) && previous.isFresh(this.clock.instant(), this.freshness)) {
+      log.trace("Reusing trust mark status for issuer {}", issuer);
+      return CompletableFuture.completedFuture(previous.response());
+    }
+    final CompletableFuture<TrustMarkStatusResponse> future = new CompletableFuture<>();
+    final CompletableFuture<TrustMarkStatusResponse> existing = current.putIfAbsent(key, future);
+    if (Objects.nonNull(existing)) {
+      return existing;
+    }
+    future.whenComplete((response, error) -> {
+      if (Objects.nonNull(error)) {
+        //Do not keep failures for the rest of the reload, a retried step should request the status again
+        current.remove(key, future);
+      } else if (!response.isError()) {
+        this.fetched.put(key, new FetchedStatus(response, this.clock.instant()));
+      }
+    });
+    this.executor.execute(() -> {
+      try {
+        future.complete(this.fetch(serialized, issuer));
+      } catch (final RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Waits for a status.
+   *
+   * @param status to wait for
+   * @return the status
+   * @throws RuntimeException if the status request failed
+   */
+  public static TrustMarkStatusResponse join(final CompletableFuture<TrustMarkStatusResponse> status) {
+    try {
+      return status.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof final RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw e;
+    }
+  }
+
+  private TrustMarkStatusResponse fetch(final String trustMark, final String issuer) {
+    try {
+      this.permits.acquire();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to request trust mark status", e);
+    }
+    try {
+      return this.client.trustMarkStatus(
+          new FederationRequest<>(new FederationTrustMarkStatusRequest(trustMark, issuer)));
+    } finally {
+      this.permits.release();
+    }
+  }
+
+  private static String sha256(final String value) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return Base64URL.encode(digest.digest(value.getBytes(StandardCharsets.US_ASCII))).toString();
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+
+  private record StatusKey(String issuer, String trustMarkHash) {
+  }
+
+  private record FetchedStatus(TrustMarkStatusResponse response, Instant fetchedAt) {
+    boolean isFresh(final Instant now, final Duration freshness) {
+      if (now.isAfter(this.fetchedAt.plus(freshness))) {
+        return false;
+      }
+      return Optional.ofNullable(this.response.getSignedJWT())
+          .map(jwt -> {
+            try {
+              return jwt.getJWTClaimsSet().getExpirationTime();
+            } catch (final ParseException e) {
+              return new Date(0);
+            }
+          })
+          .map(expiration -> now.isBefore(expiration.toInstant()))
+          .orElse(true);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.entity.integration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.entity.RecordVerificationException;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.RecordRegistryIntegration;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.CompositeRecord;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.EntityRecord;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.ModuleRecord;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class CacheRecordPopulatorTest {
+
+  @Test
+  void recordsAreFetchedConcurrently() {
+    final CountDownLatch modulesRequested = new CountDownLatch(1);
+    final Instant now = Instant.now();
+    final RecordRegistryIntegration integration = new RecordRegistryIntegration() {
+      @Override
+      public Expirable<List<EntityRecord>> getEntityRecords(final UUID instanceID) {
+        try {
+          // Only completes if modules are requested while entity records are being fetched
+          Assertions.assertTrue(modulesRequested.await(5, TimeUnit.SECONDS));
+        } catch (final InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return new Expirable<>(now.plus(1, ChronoUnit.HOURS), now, List.of());
+      }
+
+      @Override
+      public Expirable<ModuleRecord> getModules(final UUID instanceId) {
+        modulesRequested.countDown();
+        return new Expirable<>(now.plus(1, ChronoUnit.HOURS), now, new ModuleRecord(List.of(), List.of(), List.of()));
+      }
+    };
+    final InMemoryCache<String, CompositeRecord> cache = new InMemoryCache<>(Clock.systemUTC());
+    final CachedRecordSource source = new CachedRecordSource(cache);
+    final CacheRecordPopulator populator = new CacheRecordPopulator(source, integration, UUID.randomUUID());
+
+    final CompositeRecord record = populator.reload();
+    final String version = cache.getVersion("record");
+
+    Assertions.assertSame(record, cache.get("record"));
+    Assertions.assertNotNull(version);
+    populator.reload();
+    Assertions.assertNotEquals(version, cache.getVersion("record"));
+  }
+
+  @Test
+  void failedFetchIsPropagated() {
+    final RecordRegistryIntegration integration = new RecordRegistryIntegration() {
+      @Override
+      public Expirable<List<EntityRecord>> getEntityRecords(final UUID instanceID) {
+        throw new RecordVerificationException("Failed to verify entity record");
+      }
+
+      @Override
+      public Expirable<ModuleRecord> getModules(final UUID instanceId) {
+        return new Expirable<>(Instant.now(), Instant.now(), new ModuleRecord(List.of(), List.of(), List.of()));
+      }
+    };
+    final CacheRecordPopulator populator = new CacheRecordPopulator(
+        new CachedRecordSource(new InMemoryCache<>(Clock.systemUTC())), integration, UUID.randomUUID());
+    Assertions.assertThrows(RecordVerificationException.class, populator::reload);
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.entity.integration;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustAnchorProperties;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustMarkIssuerProperties;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustMarkProperties;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.TrustMarkType;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.EntityRecord;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.TrustMarkSubjectProperty;
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+
+import java.util.List;
+import java.util.Optional;
+
+class CompositeRecordSourceTest {
+
+  private static final EntityID ISSUER = new EntityID("https://tmi.example.com");
+  private static final TrustMarkType TYPE = new TrustMarkType("https://tmi.example.com/tm");
+
+  @Test
+  void firstSourceTakesPrecedence() {
+    final EntityRecord first = entity("https://a.example.com");
+    final EntityRecord second = entity("https://a.example.com");
+    final CompositeRecordSource source = new CompositeRecordSource(List.of(
+        new StubSource(1, List.of(second, entity("https://b.example.com")), "https://sub2.example.com"),
+        new StubSource(0, List.of(first), "https://sub1.example.com")));
+
+    Assertions.assertSame(first, source.getEntity(new NodeKey("https://a.example.com")).get());
+    Assertions.assertTrue(source.getEntity(new NodeKey("https://b.example.com")).isPresent());
+    Assertions.assertTrue(source.getEntity(new NodeKey("https://c.example.com")).isEmpty());
+    Assertions.assertEquals(3, source.getAllEntities().size());
+    Assertions.assertEquals(List.of("https://sub1.example.com", "https://sub2.example.com"),
+        source.getTrustMarkSubjects(ISSUER, TYPE).stream()
+            .map(TrustMarkSubjectProperty::sub)
+            .toList());
+    Assertions.assertEquals(Optional.of("https://sub2.example.com"),
+        source.getTrustMarkSubject(ISSUER, TYPE, new EntityID("https://sub2.example.com"))
+            .map(TrustMarkSubjectProperty::sub));
+    Assertions.assertTrue(source.getTrustMarkSubjects(ISSUER, new TrustMarkType("https://other")).isEmpty());
+  }
+
+  @Test
+  void viewIsRebuiltWhenRevisionChanges() {
+    final StubSource stub = new StubSource(0, List.of(entity("https://a.example.com")), "https://sub1.example.com");
+    final CompositeRecordSource source = new CompositeRecordSource(List.of(stub));
+
+    final List<EntityRecord> entities = source.getAllEntities();
+    Assertions.assertSame(entities, source.getAllEntities());
+
+    stub.entities = List.of(entity("https://b.example.com"));
+    Assertions.assertSame(entities, source.getAllEntities());
+
+    stub.revision = new Object();
+    Assertions.assertNotSame(entities, source.getAllEntities());
+    Assertions.assertTrue(source.getEntity(new NodeKey("https://b.example.com")).isPresent());
+  }
+
+  private static EntityRecord entity(final String entityId) {
+    return EntityRecord.builder().entityIdentifier(new EntityID(entityId)).build();
+  }
+
+  private static final class StubSource implements RecordSource {
+    private final int priority;
+    private final String subject;
+    private List<EntityRecord> entities;
+    private Object revision = new Object();
+
+    private StubSource(final int priority, final List<EntityRecord> entities, final String subject) {
+      this.priority = priority;
+      this.entities = entities;
+      this.subject = subject;
+    }
+
+    @Override
+    public List<TrustMarkIssuerProperties> getTrustMarkIssuerProperties() {
+      return List.of(new TrustMarkIssuerProperties(null, ISSUER, List.of(TrustMarkProperties.builder()
+          .trustMarkType(TYPE)
+          .trustMarkSubjects(List.of(TrustMarkSubjectProperty.builder().sub(this.subject).build()))
+          .build())));
+    }
+
+    @Override
+    public List<TrustAnchorProperties> getTrustAnchorProperties() {
+      return List.of();
+    }
+
+    @Override
+    public List<ResolverProperties> getResolverProperties() {
+      return List.of();
+    }
+
+    @Override
+    public Optional<EntityRecord> getEntity(final NodeKey key) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<EntityRecord> getAllEntities() {
+      return this.entities;
+    }
+
+    @Override
+    public List<TrustAnchorProperties.SubordinateListingProperty> findSubordinates(final String issuer) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<TrustMarkSubjectProperty> getTrustMarkSubjects(final EntityID issuer, final TrustMarkType id) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Optional<TrustMarkSubjectProperty> getTrustMarkSubject(
+        final EntityID issuer, final TrustMarkType id, final EntityID subject) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int priority() {
+      return this.priority;
+    }
+
+    @Override
+    public Object getRevision() {
+      return this.revision;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.jwt;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class SigningEngineTest {
+
+  @Test
+  void signersAreCreatedOncePerKey() throws Exception {
+    final SigningEngine engine = new SigningEngine(SigningMetrics.NOOP);
+    final ECKey key = new ECKeyGenerator(Curve.P_256).keyID("key-1").generate();
+    final JWTClaimsSet claims = new JWTClaimsSet.Builder().subject("https://leaf.example.com").build();
+
+    final SignedJWT first = engine.sign(key, JOSEObjectType.JWT, claims);
+    engine.sign(JWK.parse(key.toJSONString()), JOSEObjectType.JWT, claims);
+
+    Assertions.assertEquals(1, engine.size());
+    Assertions.assertEquals("key-1", first.getHeader().getKeyID());
+    Assertions.assertEquals(JWSAlgorithm.ES256, first.getHeader().getAlgorithm());
+    Assertions.assertTrue(first.verify(engine.verifier(key.toPublicJWK())));
+
+    engine.invalidate();
+    Assertions.assertEquals(0, engine.size());
+  }
+
+  @Test
+  void leastRecentlyUsedKeyIsReleased() throws Exception {
+    final SigningEngine engine = new SigningEngine(SigningMetrics.NOOP, 2);
+    final ECKey first = new ECKeyGenerator(Curve.P_256).generate().toPublicJWK();
+    final ECKey second = new ECKeyGenerator(Curve.P_256).generate().toPublicJWK();
+    final ECKey third = new ECKeyGenerator(Curve.P_256).generate().toPublicJWK();
+
+    final JWSVerifier verifier = engine.verifier(first);
+    engine.verifier(second);
+    Assertions.assertSame(verifier, engine.verifier(first));
+    engine.verifier(third);
+
+    Assertions.assertEquals(2, engine.size());
+    Assertions.assertSame(verifier, engine.verifier(first));
+    Assertions.assertEquals(2, engine.size());
+  }
+
+  @Test
+  void verifiersAreCachedPerPublicKey() throws Exception {
+    final SigningEngine engine = new SigningEngine(SigningMetrics.NOOP);
+    final ECKey key = new ECKeyGenerator(Curve.P_256).keyID("key-1").generate();
+    final SignedJWT signed = engine.sign(key, JOSEObjectType.JWT, new JWTClaimsSet.Builder().build());
+
+    final JWSVerifier verifier = engine.verifier(signed.getHeader(), key.toECPublicKey());
+
+    Assertions.assertTrue(signed.verify(verifier));
+    Assertions.assertSame(verifier, engine.verifier(signed.getHeader(), key.toPublicJWK().toECKey().toECPublicKey()));
+  }
+
+  @Test
+  void signaturesAreRecordedPerAlgorithm() throws Exception {
+    final List<JWSAlgorithm> algorithms = new ArrayList<>();
+    final SigningEngine engine = new SigningEngine(new SigningMetrics() {
+      @Override
+      public void signed(final JWSAlgorithm algorithm, final Duration duration) {
+        algorithms.add(algorithm);
+      }
+    });
+    final ECKey key = new ECKeyGenerator(Curve.P_384).generate();
+    engine.sign(key, JOSEObjectType.JWT, new JWTClaimsSet.Builder().build());
+    Assertions.assertEquals(List.of(JWSAlgorithm.ES384), algorithms);
+  }
+
+  @Test
+  void jwtIdsAreUnique() {
+    final Set<String> ids = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      Assertions.assertTrue(ids.add(SigningEngine.jwtId()));
+    }
+  }
+}
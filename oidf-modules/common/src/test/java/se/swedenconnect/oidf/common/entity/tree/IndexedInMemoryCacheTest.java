@@ -0,0 +1,177 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+class IndexedInMemoryCacheTest {
+
+  private static final String TA = "https://ta.example.com";
+  private static final String IM = "https://im.example.com";
+  private static final String LEAF = "https://leaf.example.com";
+
+  @Test
+  void publishedVersionIsIndexed() throws Exception {
+    final IndexedInMemoryCache cache = new CountingCache();
+    final CacheSnapshot<ScrapedEntity> snapshot = load(cache);
+    Assertions.assertEquals(TA, snapshot.getRoot().getKey().getKey());
+    Assertions.assertEquals(List.of(IM), keys(snapshot.getChildren(new Node<>(new NodeKey(TA)))));
+    Assertions.assertEquals(List.of(LEAF), keys(snapshot.getChildren(new Node<>(new NodeKey(IM)))));
+
+    cache.useNextVersion();
+
+    final IndexedTreeVersion treeVersion = cache.getTreeVersion(cache.getCurrentVersion()).orElseThrow();
+    Assertions.assertEquals(3, treeVersion.size());
+    Assertions.assertEquals(0, treeVersion.indexOf(TA));
+    Assertions.assertEquals(IndexedTreeVersion.NOT_FOUND, treeVersion.indexOf("https://unknown.example.com"));
+    final int im = treeVersion.childAt(0, 0);
+    Assertions.assertEquals(IM, treeVersion.getNode(im).getKey().getKey());
+    Assertions.assertEquals(1, treeVersion.childCount(im));
+    Assertions.assertSame(
+        cache.snapshot().getChildren(new Node<>(new NodeKey(IM))),
+        cache.snapshot().getChildren(new Node<>(new NodeKey(IM))));
+    Assertions.assertEquals(LEAF, cache.snapshot().getData(new NodeKey(LEAF)).getEntityID().getValue());
+  }
+
+  @Test
+  void writeToPublishedVersionIsVisible() throws Exception {
+    final IndexedInMemoryCache cache = new CountingCache();
+    final CacheSnapshot<ScrapedEntity> snapshot = load(cache);
+    cache.useNextVersion();
+    final ScrapedEntity late = ScrapedEntity.builder().entityID(new EntityID(LEAF)).ecLocation("late").build();
+    snapshot.setData(new NodeKey(LEAF), late);
+    Assertions.assertEquals("late", cache.snapshot().getData(new NodeKey(LEAF)).getEcLocation());
+  }
+
+  @Test
+  void writesToPublishedVersionAreMergedOnce() throws Exception {
+    final IndexedInMemoryCache cache = new CountingCache(Duration.ofHours(1));
+    final CacheSnapshot<ScrapedEntity> snapshot = load(cache);
+    cache.useNextVersion();
+    final IndexedTreeVersion published = cache.getTreeVersion(snapshot.getVersion()).orElseThrow();
+
+    final String late = "https://late.example.com";
+    snapshot.setData(new NodeKey(late), ScrapedEntity.builder().entityID(new EntityID(late)).build());
+    snapshot.append(new Node<>(new NodeKey(late)), new Node<>(new NodeKey(IM)));
+    //Writes are visible before they are merged, the version is traversed by key meanwhile
+    Assertions.assertTrue(snapshot.getIndex().isEmpty());
+    Assertions.assertEquals(List.of(LEAF, late), keys(snapshot.getChildren(new Node<>(new NodeKey(IM)))));
+    Assertions.assertEquals(late, snapshot.getData(new NodeKey(late)).getEntityID().getValue());
+
+    //Reading does not merge
+    Assertions.assertSame(published, cache.getTreeVersion(snapshot.getVersion()).orElseThrow());
+
+    final IndexedTreeVersion merged = cache.compact(snapshot.getVersion()).orElseThrow();
+    Assertions.assertNotSame(published, merged);
+    Assertions.assertEquals(4, merged.size());
+    Assertions.assertSame(merged, snapshot.getIndex().orElseThrow());
+    Assertions.assertEquals(List.of(LEAF, late), keys(snapshot.getChildren(new Node<>(new NodeKey(IM)))));
+  }
+
+  @Test
+  void writesAreMergedInTheBackground() throws Exception {
+    final IndexedInMemoryCache cache = new CountingCache(Duration.ofMillis(10));
+    final CacheSnapshot<ScrapedEntity> snapshot = load(cache);
+    cache.useNextVersion();
+    final IndexedTreeVersion published = cache.getTreeVersion(snapshot.getVersion()).orElseThrow();
+
+    final String late = "https://late.example.com";
+    snapshot.setData(new NodeKey(late), ScrapedEntity.builder().entityID(new EntityID(late)).build());
+    final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (snapshot.getIndex().isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    final IndexedTreeVersion merged = (IndexedTreeVersion) snapshot.getIndex().orElseThrow();
+    Assertions.assertNotSame(published, merged);
+    Assertions.assertEquals(late, merged.getData(late).getEntityID().getValue());
+  }
+
+  @Test
+  void writesDuringPublishAreNotLost() throws Exception {
+    final IndexedInMemoryCache cache = new CountingCache();
+    final CacheSnapshot<ScrapedEntity> snapshot = load(cache);
+    final int writes = 2000;
+    final CountDownLatch started = new CountDownLatch(1);
+    final Thread writer = Thread.ofPlatform().start(() -> {
+      started.countDown();
+      for (int i = 0; i < writes; i++) {
+        final String key = "https://e%d.example.com".formatted(i);
+        snapshot.setData(new NodeKey(key), ScrapedEntity.builder().entityID(new EntityID(key)).build());
+      }
+    });
+    started.await();
+    cache.useNextVersion();
+    writer.join();
+    for (int i = 0; i < writes; i++) {
+      Assertions.assertNotNull(snapshot.getData(new NodeKey("https://e%d.example.com".formatted(i))));
+    }
+  }
+
+  private static CacheSnapshot<ScrapedEntity> load(final IndexedInMemoryCache cache) throws Exception {
+    final ScrapedEntity ta = intermediate(TA, IM);
+    final CacheSnapshot<ScrapedEntity> snapshot = cache.createNewSnapshot(new Node<>(new NodeKey(TA)), ta);
+    snapshot.setData(new NodeKey(IM), intermediate(IM, LEAF));
+    snapshot.setData(new NodeKey(LEAF), ScrapedEntity.builder().entityID(new EntityID(LEAF)).build());
+    return snapshot;
+  }
+
+  private static ScrapedEntity intermediate(final String entityId, final String subordinate) throws Exception {
+    final SignedJWT statement = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256),
+        new JWTClaimsSet.Builder().issuer(entityId).subject(subordinate).build());
+    statement.sign(new MACSigner(new byte[32]));
+    return ScrapedEntity.builder()
+        .entityID(new EntityID(entityId))
+        .intermediate(new ScrapedIntermediate(Map.of(subordinate, statement)))
+        .build();
+  }
+
+  private static List<String> keys(final List<Node<ScrapedEntity>> nodes) {
+    return nodes.stream().map(node -> node.getKey().getKey()).toList();
+  }
+
+  private static class CountingCache extends IndexedInMemoryCache {
+    private final AtomicLong version = new AtomicLong();
+
+    CountingCache() {
+      this(IndexedInMemoryCache.DEFAULT_COMPACTION_DELAY);
+    }
+
+    CountingCache(final Duration compactionDelay) {
+      super(VersionedInMemoryCache.DEFAULT_RETAINED_VERSIONS, compactionDelay);
+    }
+
+    @Override
+    public long getNextVersion() {
+      return this.version.incrementAndGet();
+    }
+  }
+}
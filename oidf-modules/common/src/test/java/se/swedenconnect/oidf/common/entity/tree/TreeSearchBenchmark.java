@@ -0,0 +1,193 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the recursive {@link Node#search} with the iterative {@link Tree#search} on a federation with one trust
+ * anchor, {@code intermediates} intermediates and {@code leaves} leaves per intermediate.
+ * <p>
+ * Run with {@code main} from the test classpath, the gc profiler reports allocation per search
+ * ({@code gc.alloc.rate.norm}).
+ *
+ * @author Felix Hellman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeSearchBenchmark {
+
+  @Param({"10", "100"})
+  public int intermediates;
+
+  @Param({"100"})
+  public int leaves;
+
+  private Tree<ScrapedEntity> tree;
+  private SearchRequest<ScrapedEntity> resolve;
+  private SearchRequest<ScrapedEntity> discovery;
+
+  /**
+   * Builds and publishes the federation.
+   *
+   * @throws Exception if a statement could not be signed
+   */
+  @Setup
+  public void setup() throws Exception {
+    final IndexedInMemoryCache cache = new IndexedInMemoryCache();
+    this.tree = new Tree<>(cache);
+    final String ta = "https://ta.example.com";
+    final List<String> ims = new ArrayList<>();
+    for (int i = 0; i < this.intermediates; i++) {
+      ims.add("https://im%d.example.com".formatted(i));
+    }
+    final CacheSnapshot<ScrapedEntity> snapshot =
+        this.tree.addRoot(new Node<>(new NodeKey(ta)), intermediate(ta, ims));
+    String last = null;
+    for (final String im : ims) {
+      final List<String> subordinates = new ArrayList<>();
+      for (int i = 0; i < this.leaves; i++) {
+        subordinates.add("%s/leaf%d".formatted(im, i));
+      }
+      snapshot.setData(new NodeKey(im), intermediate(im, subordinates));
+      for (final String leaf : subordinates) {
+        snapshot.setData(new NodeKey(leaf), ScrapedEntity.builder().entityID(new EntityID(leaf)).build());
+        last = leaf;
+      }
+    }
+    cache.useNextVersion();
+    final String target = last;
+    this.resolve = new SearchRequest<>(
+        (entity, context) -> entity != null && entity.getEntityID().getValue().equals(target), true,
+        this.tree.getCurrentSnapshot(), true);
+    this.discovery = new SearchRequest<>((entity, context) -> entity != null && entity.getIntermediate() == null,
+        false, this.tree.getCurrentSnapshot(), false);
+  }
+
+  /**
+   * @return results of the recursive search
+   */
+  @Benchmark
+  public Object resolveRecursive() {
+    return recursive(this.resolve);
+  }
+
+  /**
+   * @return results of the iterative search
+   */
+  @Benchmark
+  public Object resolveCollecting() {
+    return this.tree.search(this.resolve);
+  }
+
+  /**
+   * @param blackhole to consume matches
+   */
+  @Benchmark
+  public void resolveCallback(final Blackhole blackhole) {
+    this.tree.search(this.resolve, (node, data, context) -> blackhole.consume(data));
+  }
+
+  /**
+   * @return results of the recursive search
+   */
+  @Benchmark
+  public Object discoveryRecursive() {
+    return recursive(this.discovery);
+  }
+
+  /**
+   * @return results of the iterative search
+   */
+  @Benchmark
+  public Object discoveryCollecting() {
+    return this.tree.search(this.discovery);
+  }
+
+  /**
+   * @param blackhole to consume matches
+   */
+  @Benchmark
+  public void discoveryCallback(final Blackhole blackhole) {
+    this.tree.search(this.discovery, (node, data, context) -> blackhole.consume(data));
+  }
+
+  /**
+   * @param args not used
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(TreeSearchBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+
+  private static Object recursive(final SearchRequest<ScrapedEntity> request) {
+    final Node<ScrapedEntity> root = request.snapshot().getRoot();
+    return root.search(request.predicate(), new Node.NodeSearchContext<>(0, request.includeParent(),
+        request.snapshot(), new HashSet<>(List.of(root.getKey())), request.stopOnFirstMatch()));
+  }
+
+  private static ScrapedEntity intermediate(final String entityId, final List<String> subordinates)
+      throws Exception {
+    final Map<String, SignedJWT> statements = new LinkedHashMap<>();
+    for (final String subordinate : subordinates) {
+      final SignedJWT statement = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256),
+          new JWTClaimsSet.Builder().issuer(entityId).subject(subordinate).build());
+      statement.sign(new MACSigner(new byte[32]));
+      statements.put(subordinate, statement);
+    }
+    return ScrapedEntity.builder()
+        .entityID(new EntityID(entityId))
+        .intermediate(new ScrapedIntermediate(statements))
+        .build();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+
+class TreeTest {
+
+  private static final String TA = "https://ta.example.com";
+  private static final String IM1 = "https://im1.example.com";
+  private static final String IM2 = "https://im2.example.com";
+  private static final String LEAF1 = "https://leaf1.example.com";
+  private static final String LEAF2 = "https://leaf2.example.com";
+
+  @Test
+  void searchMatchesRecursiveSearch() throws Exception {
+    for (final ResolverCache cache : List.of(new VersionedInMemoryCache(), new IndexedInMemoryCache())) {
+      final Tree<ScrapedEntity> tree = new Tree<>(cache);
+      load(tree);
+      cache.useNextVersion();
+      final CacheSnapshot<ScrapedEntity> snapshot = tree.getCurrentSnapshot();
+      for (final String target : List.of(TA, IM1, IM2, LEAF1, LEAF2, "https://unknown.example.com")) {
+        final BiPredicate<ScrapedEntity, Node.NodeSearchContext<ScrapedEntity>> predicate =
+            (entity, context) -> entity != null && entity.getEntityID().getValue().equals(target);
+        for (final boolean includeParent : List.of(true, false)) {
+          for (final boolean stopOnFirstMatch : List.of(true, false)) {
+            final SearchRequest<ScrapedEntity> request =
+                new SearchRequest<>(predicate, includeParent, snapshot, stopOnFirstMatch);
+            Assertions.assertEquals(recursive(request), results(tree.search(request)),
+                "%s %s %s %s".formatted(cache.getClass().getSimpleName(), target, includeParent,
+                    stopOnFirstMatch));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void consumerReceivesEveryNodeOnce() throws Exception {
+    final IndexedInMemoryCache cache = new IndexedInMemoryCache();
+    final Tree<ScrapedEntity> tree = new Tree<>(cache);
+    load(tree);
+    cache.useNextVersion();
+    final List<String> matches = new ArrayList<>();
+    tree.search(new SearchRequest<>((entity, context) -> true, true, tree.getCurrentSnapshot()),
+        (node, data, context) -> matches.add(node.getKey().getKey()));
+    Assertions.assertEquals(Set.of(TA, IM1, IM2, LEAF1, LEAF2), new HashSet<>(matches));
+    Assertions.assertEquals(5, matches.size());
+  }
+
+  @Test
+  void resultsDoNotShareStateWithLaterTraversals() throws Exception {
+    final VersionedInMemoryCache cache = new VersionedInMemoryCache();
+    final Tree<ScrapedEntity> tree = new Tree<>(cache);
+    load(tree);
+    cache.useNextVersion();
+    final Set<Tree.SearchResult<ScrapedEntity>> results = tree.search(new SearchRequest<>(
+        (entity, context) -> true, false, tree.getCurrentSnapshot()));
+    final int hashCode = results.hashCode();
+    tree.search(new SearchRequest<>((entity, context) -> true, false, tree.getCurrentSnapshot()));
+    Assertions.assertEquals(hashCode, results.hashCode());
+    for (final Tree.SearchResult<ScrapedEntity> result : results) {
+      Assertions.assertTrue(result.context().visisted().isEmpty());
+      Assertions.assertThrows(UnsupportedOperationException.class,
+          () -> result.context().visisted().add(new NodeKey(TA)));
+      Assertions.assertTrue(results.contains(result));
+    }
+  }
+
+  @Test
+  void visitCallsVisitorForEveryEdge() throws Exception {
+    for (final ResolverCache cache : List.of(new VersionedInMemoryCache(), new IndexedInMemoryCache())) {
+      final Tree<ScrapedEntity> tree = new Tree<>(cache);
+      load(tree);
+      cache.useNextVersion();
+      final Set<String> edges = new HashSet<>();
+      tree.visit(new VisitRequest<>((node, context) -> true,
+          (parent, child) -> edges.add(parent.getKey().getKey() + " -> " + child.getKey().getKey()),
+          tree.getCurrentSnapshot()));
+      Assertions.assertEquals(Set.of(
+          TA + " -> " + IM1, TA + " -> " + IM2, IM1 + " -> " + LEAF1, IM2 + " -> " + LEAF1,
+          IM2 + " -> " + LEAF2, IM2 + " -> " + IM1), edges);
+    }
+  }
+
+  @Test
+  void deepTreeDoesNotOverflowStack() throws Exception {
+    for (final ResolverCache cache : List.of(new VersionedInMemoryCache(), new IndexedInMemoryCache())) {
+      final Tree<ScrapedEntity> tree = new Tree<>(cache);
+      final int depth = 10_000;
+      final CacheSnapshot<ScrapedEntity> snapshot =
+          tree.addRoot(new Node<>(new NodeKey(entity(0))), intermediate(entity(0), entity(1)));
+      for (int i = 1; i < depth; i++) {
+        final ScrapedEntity data = i == depth - 1 ? leaf(entity(i)) : intermediate(entity(i), entity(i + 1));
+        snapshot.setData(new NodeKey(entity(i)), data);
+      }
+      cache.useNextVersion();
+      final String last = entity(depth - 1);
+      final Set<Tree.SearchResult<ScrapedEntity>> results = tree.search(new SearchRequest<>(
+          (entity, context) -> entity.getEntityID().getValue().equals(last), true, tree.getCurrentSnapshot()));
+      Assertions.assertEquals(depth, results.size());
+    }
+  }
+
+  private static String entity(final int i) {
+    return "https://entity%d.example.com".formatted(i);
+  }
+
+  private static Map<String, Integer> recursive(final SearchRequest<ScrapedEntity> request) {
+    final Node<ScrapedEntity> root = request.snapshot().getRoot();
+    final Node.NodeSearchContext<ScrapedEntity> context = new Node.NodeSearchContext<>(0, request.includeParent(),
+        request.snapshot(), new HashSet<>(List.of(root.getKey())), request.stopOnFirstMatch());
+    return results(root.search(request.predicate(), context));
+  }
+
+  private static Map<String, Integer> results(final Set<Tree.SearchResult<ScrapedEntity>> results) {
+    return results.stream().collect(Collectors.toMap(
+        result -> result.node().getKey().getKey(),
+        result -> result.context().level(),
+        (a, b) -> a,
+        LinkedHashMap::new));
+  }
+
+  private static void load(final Tree<ScrapedEntity> tree) throws Exception {
+    final CacheSnapshot<ScrapedEntity> snapshot =
+        tree.addRoot(new Node<>(new NodeKey(TA)), intermediate(TA, IM1, IM2));
+    tree.addChild(new Node<>(new NodeKey(IM1)), new NodeKey(TA), intermediate(IM1, LEAF1), snapshot);
+    tree.addChild(new Node<>(new NodeKey(IM2)), new NodeKey(TA), intermediate(IM2, LEAF1, LEAF2, IM1), snapshot);
+    tree.addChild(new Node<>(new NodeKey(LEAF1)), new NodeKey(IM1), leaf(LEAF1), snapshot);
+    tree.addChild(new Node<>(new NodeKey(LEAF2)), new NodeKey(IM2), leaf(LEAF2), snapshot);
+  }
+
+  private static ScrapedEntity leaf(final String entityId) {
+    return ScrapedEntity.builder().entityID(new EntityID(entityId)).build();
+  }
+
+  private static ScrapedEntity intermediate(final String entityId, final String... subordinates) throws Exception {
+    final Map<String, SignedJWT> statements = new LinkedHashMap<>();
+    for (final String subordinate : subordinates) {
+      final SignedJWT statement = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256),
+          new JWTClaimsSet.Builder().issuer(entityId).subject(subordinate).build());
+      statement.sign(new MACSigner(new byte[32]));
+      statements.put(subordinate, statement);
+    }
+    return ScrapedEntity.builder()
+        .entityID(new EntityID(entityId))
+        .intermediate(new ScrapedIntermediate(statements))
+        .build();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class VersionedInMemoryCacheTest {
+
+  @Test
+  void previousVersionsAreReclaimed() {
+    final VersionedInMemoryCache cache = new CountingCache(1);
+    for (int i = 0; i < 4; i++) {
+      load(cache);
+    }
+    cache.reclaim();
+    Assertions.assertEquals(List.of(3L, 4L), versions(cache));
+    Assertions.assertNull(cache.getRoot(1));
+    Assertions.assertNotNull(cache.getRoot(3));
+  }
+
+  @Test
+  void pinnedVersionIsRetainedUntilClosed() {
+    final VersionedInMemoryCache cache = new CountingCache(0);
+    final CacheSnapshot<ScrapedEntity> pinned =
+        cache.createNewSnapshot(new Node<>(new NodeKey("https://ta.example.com")), ScrapedEntity.builder().build());
+    cache.useNextVersion();
+    load(cache);
+    load(cache);
+    cache.reclaim();
+    Assertions.assertEquals(List.of(1L, 3L), versions(cache));
+    Assertions.assertNotNull(pinned.getRoot());
+    Assertions.assertEquals(1, cache.getVersionStatistics().getFirst().pinned());
+
+    pinned.close();
+    //Closing again does not release another pin
+    pinned.close();
+    cache.reclaim();
+    Assertions.assertEquals(List.of(3L), versions(cache));
+    Assertions.assertEquals(0, cache.getVersionStatistics().getFirst().pinned());
+  }
+
+  @Test
+  void readSnapshotsAreNotPinned() {
+    final VersionedInMemoryCache cache = new CountingCache(0);
+    load(cache);
+    final CacheSnapshot<ScrapedEntity> read = cache.snapshot();
+    Assertions.assertEquals(0, cache.getVersionStatistics().getFirst().pinned());
+    load(cache);
+    cache.reclaim();
+    Assertions.assertEquals(List.of(2L), versions(cache));
+    read.close();
+  }
+
+  @Test
+  void writesToReclaimedVersionsAreDropped() {
+    final VersionedInMemoryCache cache = new CountingCache(0);
+    load(cache);
+    load(cache);
+    cache.reclaim();
+    Assertions.assertEquals(List.of(2L), versions(cache));
+
+    final NodeKey key = new NodeKey("https://late.example.com");
+    cache.setData(key.getKey(), ScrapedEntity.builder().build(), 1);
+    cache.append(new Node<>(key), new Node<>(new NodeKey("https://ta.example.com")), 1);
+    Assertions.assertEquals(List.of(2L), versions(cache));
+    Assertions.assertNull(cache.getData(key.getKey(), 1));
+  }
+
+  @Test
+  void writesToPublishedVersionIncreaseRevision() {
+    final VersionedInMemoryCache cache = new CountingCache(0);
+    final NodeKey root = new NodeKey("https://ta.example.com");
+    try (final CacheSnapshot<ScrapedEntity> snapshot =
+             cache.createNewSnapshot(new Node<>(root), ScrapedEntity.builder().build())) {
+      snapshot.setData(new NodeKey("https://loaded.example.com"), ScrapedEntity.builder().build());
+      Assertions.assertEquals(0, snapshot.getRevision());
+      cache.useNextVersion();
+      snapshot.setData(new NodeKey("https://late.example.com"), ScrapedEntity.builder().build());
+      snapshot.append(new Node<>(new NodeKey("https://late.example.com")), new Node<>(root));
+      Assertions.assertEquals(2, snapshot.getRevision());
+    }
+  }
+
+  @Test
+  void statisticsAreReportedPerVersion() {
+    final VersionedInMemoryCache cache = new CountingCache(1);
+    load(cache);
+    final CacheVersionStatistics statistics = cache.getVersionStatistics().getFirst();
+    Assertions.assertEquals(1, statistics.version());
+    Assertions.assertEquals(1, statistics.entries());
+    Assertions.assertTrue(statistics.current());
+    Assertions.assertTrue(statistics.pending());
+  }
+
+  private static void load(final VersionedInMemoryCache cache) {
+    final NodeKey key = new NodeKey("https://ta.example.com");
+    final CacheSnapshot<ScrapedEntity> snapshot =
+        cache.createNewSnapshot(new Node<>(key), ScrapedEntity.builder().build());
+    cache.useNextVersion();
+    snapshot.close();
+  }
+
+  private static List<Long> versions(final VersionedInMemoryCache cache) {
+    return cache.getVersionStatistics().stream().map(CacheVersionStatistics::version).toList();
+  }
+
+  private static class CountingCache extends VersionedInMemoryCache {
+    private final AtomicLong version = new AtomicLong();
+
+    CountingCache(final int retainedVersions) {
+      super(retainedVersions);
+    }
+
+    @Override
+    public long getNextVersion() {
+      return this.version.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.constraints;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class NamingConstraintMatcherTest {
+
+  @Test
+  void subdomainRuleMatchesLabelsOnly() {
+    final NamingConstraintMatcher matcher = NamingConstraintMatcher.compile(List.of("https://.example.com"));
+    Assertions.assertTrue(matcher.matches("https://test.example.com"));
+    Assertions.assertTrue(matcher.matches("https://a.b.example.com/stuff"));
+    Assertions.assertFalse(matcher.matches("https://example.com"));
+    Assertions.assertFalse(matcher.matches("https://test.eexample.com"));
+    Assertions.assertFalse(matcher.matches("https://testexample.com"));
+  }
+
+  @Test
+  void hostRuleMatchesHostAndSubdomains() {
+    final NamingConstraintMatcher matcher = NamingConstraintMatcher.compile(List.of("https://Example.com"));
+    Assertions.assertTrue(matcher.matches("https://example.com"));
+    Assertions.assertTrue(matcher.matches("https://rp.EXAMPLE.com"));
+    Assertions.assertFalse(matcher.matches("https://badexample.com"));
+    Assertions.assertFalse(matcher.matches("http://example.com"));
+  }
+
+  @Test
+  void pathIsMatchedAsPrefix() {
+    final NamingConstraintMatcher matcher =
+        NamingConstraintMatcher.compile(List.of("https://.example.com/path", "https://other.com/org"));
+    Assertions.assertTrue(matcher.matches("https://test.example.com/path/leaf"));
+    Assertions.assertFalse(matcher.matches("https://test.example.com"));
+    Assertions.assertFalse(matcher.matches("https://test.example.com/other/path"));
+    Assertions.assertTrue(matcher.matches("https://other.com/org?query=1"));
+  }
+
+  @Test
+  void malformedEntityIdentifiersDoNotMatch() {
+    final NamingConstraintMatcher matcher = NamingConstraintMatcher.compile(List.of("https://.example.com"));
+    Assertions.assertFalse(matcher.matches("not a uri"));
+    Assertions.assertFalse(matcher.matches(null));
+    Assertions.assertFalse(NamingConstraintMatcher.EMPTY.matches("https://test.example.com"));
+  }
+
+  @Test
+  void compiledConstraintsCombinePermittedAndExcluded() {
+    final CompiledConstraints constraints = CompiledConstraints.compile(Map.of(
+        "max_path_length", 1L,
+        "naming_constraints", Map.of(
+            "permitted", List.of("https://.example.com"),
+            "excluded", List.of("https://blocked.example.com"))));
+    Assertions.assertFalse(constraints.isMalformed());
+    Assertions.assertEquals(1L, constraints.getMaxPathLength());
+    Assertions.assertTrue(constraints.isNameAllowed("https://rp.example.com"));
+    Assertions.assertFalse(constraints.isNameAllowed("https://blocked.example.com"));
+    Assertions.assertFalse(constraints.isNameAllowed("https://rp.example.org"));
+  }
+
+  @Test
+  void malformedConstraintsAreReported() {
+    final CompiledConstraints constraints = CompiledConstraints.compile(Map.of(
+        "naming_constraints", Map.of("permitted", List.of("https://bad host"))));
+    Assertions.assertTrue(constraints.isMalformed());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.scraping;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FetchExecutorTest {
+
+  @Test
+  void fetchesAreBoundedAndStreamed() {
+    final FetchExecutor executor = new FetchExecutor(Executors.newVirtualThreadPerTaskExecutor(), 3, timing -> {});
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    final Map<String, String> results = new ConcurrentHashMap<>();
+    final List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      keys.add("https://sub%d.example.com".formatted(i));
+    }
+    executor.fetchAll("https://im.example.com/fetch", keys, key -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(2);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      inFlight.decrementAndGet();
+      return key.toUpperCase();
+    }, results::put);
+    Assertions.assertEquals(50, results.size());
+    Assertions.assertEquals("HTTPS://SUB7.EXAMPLE.COM", results.get("https://sub7.example.com"));
+    Assertions.assertTrue(maxInFlight.get() <= 3, "max in flight %d".formatted(maxInFlight.get()));
+  }
+
+  @Test
+  void fetchesAreBoundedPerFetchEndpointHost() throws Exception {
+    final FetchExecutor executor =
+        new FetchExecutor(Executors.newVirtualThreadPerTaskExecutor(), 16, new HostPermits(2), timing -> {});
+    final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    final Map<String, AtomicInteger> maxInFlight = new ConcurrentHashMap<>();
+    final List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      keys.add("https://sub%d.example.com".formatted(i));
+    }
+    final List<Thread> intermediates = new ArrayList<>();
+    for (final String endpoint : List.of("https://shared.example.com/im1/fetch", "https://shared.example.com/im2/fetch",
+        "https://other.example.com/fetch")) {
+      final String host = HostPermits.host(endpoint);
+      intermediates.add(Thread.ofVirtual().start(() -> executor.fetchAll(endpoint, keys, key -> {
+        maxInFlight.computeIfAbsent(host, h -> new AtomicInteger())
+            .accumulateAndGet(inFlight.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(5);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        inFlight.get(host).decrementAndGet();
+        return key;
+      }, (key, value) -> {})));
+    }
+    for (final Thread intermediate : intermediates) {
+      intermediate.join();
+    }
+    Assertions.assertTrue(maxInFlight.get("shared.example.com").get() <= 2,
+        "Subordinates of intermediates sharing a fetch host are limited together, max %d"
+            .formatted(maxInFlight.get("shared.example.com").get()));
+    Assertions.assertTrue(maxInFlight.get("other.example.com").get() <= 2);
+  }
+
+  @Test
+  void failedFetchIsPropagated() {
+    final FetchExecutor executor = new FetchExecutor(Executors.newVirtualThreadPerTaskExecutor(), 2, timing -> {});
+    final RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+        () -> executor.fetchAll("https://im.example.com/fetch", List.of("a", "b", "c"), key -> {
+          if (key.equals("b")) {
+            throw new IllegalStateException("fetch failed");
+          }
+          return key;
+        }, (key, value) -> {}));
+    Assertions.assertInstanceOf(IllegalStateException.class, exception.getCause());
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.common.entity.tree.scraping;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
+import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+class TrustMarkStatusServiceTest {
+
+  @Test
+  void statusIsRequestedOncePerReloadAndReusedWhileFresh() throws Exception {
+    final FederationClient client = Mockito.mock(FederationClient.class);
+    Mockito.when(client.trustMarkStatus(Mockito.any())).thenReturn(new TrustMarkStatusResponse(null, false));
+    final MutableClock clock = new MutableClock();
+    final TrustMarkStatusService service =
+        new TrustMarkStatusService(client, Runnable::run, 4, Duration.ofMinutes(5), clock);
+    final SignedJWT trustMark = trustMark("https://tmi.example.com");
+
+    service.beginReload();
+    TrustMarkStatusService.join(service.status(trustMark));
+    TrustMarkStatusService.join(service.status(SignedJWT.parse(trustMark.serialize())));
+    Mockito.verify(client, Mockito.times(1)).trustMarkStatus(Mockito.any());
+
+    clock.now = clock.now.plus(Duration.ofMinutes(1));
+    service.beginReload();
+    TrustMarkStatusService.join(service.status(trustMark));
+    Mockito.verify(client, Mockito.times(1)).trustMarkStatus(Mockito.any());
+
+    clock.now = clock.now.plus(Duration.ofMinutes(10));
+    service.beginReload();
+    TrustMarkStatusService.join(service.status(trustMark));
+    Mockito.verify(client, Mockito.times(2)).trustMarkStatus(Mockito.any());
+
+    TrustMarkStatusService.join(service.status(trustMark("https://other.example.com")));
+    Mockito.verify(client, Mockito.times(3)).trustMarkStatus(Mockito.any());
+  }
+
+  @Test
+  void failedStatusIsRequestedAgain() throws Exception {
+    final FederationClient client = Mockito.mock(FederationClient.class);
+    Mockito.when(client.trustMarkStatus(Mockito.any()))
+        .thenThrow(new IllegalStateException("unavailable"))
+        .thenReturn(new TrustMarkStatusResponse(null, false));
+    final TrustMarkStatusService service =
+        new TrustMarkStatusService(client, Runnable::run, 4, Duration.ofMinutes(5), new MutableClock());
+    final SignedJWT trustMark = trustMark("https://tmi.example.com");
+    service.beginReload();
+    Assertions.assertThrows(IllegalStateException.class, () -> TrustMarkStatusService.join(service.status(trustMark)));
+    Assertions.assertFalse(TrustMarkStatusService.join(service.status(trustMark)).isError());
+    Mockito.verify(client, Mockito.times(2)).trustMarkStatus(Mockito.any());
+  }
+
+  private static SignedJWT trustMark(final String issuer) throws Exception {
+    final SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), new JWTClaimsSet.Builder()
+        .issuer(issuer)
+        .subject("https://leaf.example.com")
+        .claim("trust_mark_type", "https://tm.example.com")
+        .build());
+    jwt.sign(new MACSigner(new byte[32]));
+    return jwt;
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return this.now;
+    }
+  }
+}
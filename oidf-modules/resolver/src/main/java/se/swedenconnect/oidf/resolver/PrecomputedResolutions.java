@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import com.nimbusds.openid.connect.sdk.federation.trust.marks.TrustMarkEntry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Unsigned resolve responses computed ahead of time for every subject of a snapshot, so that resolving becomes a
+ * lookup followed by signing.
+ * <p>
+ * Only the table of the latest published version is kept. Each response is used until the first statement or trust
+ * mark in it expires, or until a statement that was not yet valid when it was computed becomes valid, after that the
+ * response is resolved again on request.
+ *
+ * @author Felix Hellman
+ */
+public class PrecomputedResolutions {
+
+  private static final Duration ISSUE_TIME_SKEW = Duration.ofSeconds(15);
+
+  private volatile Table table = new Table(Long.MIN_VALUE, Map.of());
+
+  /**
+   * @param version of the snapshot being resolved from
+   * @param subject to get response for
+   * @param now     current time
+   * @return precomputed response if one exists for the version and subject and it is still valid
+   */
+  public Optional<ResolverResponse> get(final long version, final String subject, final Instant now) {
+    final Table current = this.table;
+    if (current.version() != version) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(current.resolutions().get(subject))
+        .filter(resolution -> now.isBefore(resolution.validUntil()))
+        .map(Resolution::response);
+  }
+
+  /**
+   * Replaces the current table, unless a table of a newer version has already been published.
+   *
+   * @param version     of the snapshot the responses were resolved from
+   * @param resolutions responses by subject
+   */
+  public synchronized void publish(final long version, final Map<String, Resolution> resolutions) {
+    if (version > this.table.version()) {
+      this.table = new Table(version, Map.copyOf(resolutions));
+    }
+  }
+
+  /**
+   * @return version of the current table
+   */
+  public long getVersion() {
+    return this.table.version();
+  }
+
+  /**
+   * @return number of responses in the current table
+   */
+  public int size() {
+    return this.table.resolutions().size();
+  }
+
+  /**
+   * A precomputed response.
+   *
+   * @param response   unsigned response
+   * @param validUntil time after which the response has to be resolved again
+   */
+  public record Resolution(ResolverResponse response, Instant validUntil) {
+
+    /**
+     * @param response   unsigned response
+     * @param computedAt time the response was computed
+     * @return resolution valid until the first statement or trust mark of the response changes validity
+     */
+    public static Resolution of(final ResolverResponse response, final Instant computedAt) {
+      final List<EntityStatement> chain = Optional.ofNullable(response.trustChain()).orElse(List.of());
+      final Stream<Instant> expirations = chain.stream()
+          .map(statement -> statement.getClaimsSet().getExpirationTime())
+          .filter(Objects::nonNull)
+          .map(Date::toInstant);
+      final Stream<Instant> notYetValid = chain.stream()
+          .map(statement -> statement.getClaimsSet().getIssueTime())
+          .filter(Objects::nonNull)
+          .map(issued -> issued.toInstant().minus(ISSUE_TIME_SKEW))
+          .filter(computedAt::isBefore);
+      final Stream<Instant> trustMarkExpirations = Optional.ofNullable(response.trustMarkEntries())
+          .orElse(List.of())
+          .stream()
+          .map(Resolution::expirationTime)
+          .filter(Objects::nonNull);
+      final Instant validUntil = Stream.of(expirations, notYetValid, trustMarkExpirations)
+          .flatMap(instants -> instants)
+          .min(Instant::compareTo)
+          .orElse(Instant.MAX);
+      return new Resolution(response, validUntil);
+    }
+
+    private static Instant expirationTime(final TrustMarkEntry entry) {
+      try {
+        return Optional.ofNullable(entry.getTrustMark().getJWTClaimsSet().getExpirationTime())
+            .map(Date::toInstant)
+            .orElse(null);
+      } catch (final java.text.ParseException e) {
+        return null;
+      }
+    }
+  }
+
+  private record Table(long version, Map<String, Resolution> resolutions) {
+  }
+}
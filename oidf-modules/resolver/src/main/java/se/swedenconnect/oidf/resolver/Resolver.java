@@ -16,11 +16,13 @@
  */
 package se.swedenconnect.oidf.resolver;
 
+import com.nimbusds.jose.util.JSONArrayUtils;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
 import se.swedenconnect.oidf.common.entity.exception.FederationException;
 
 import java.util.Map;
+import java.util.function.LongConsumer;
 
 /**
  * Resolver interface.
@@ -35,12 +37,42 @@ public interface Resolver {
    */
   String resolve(final ResolveRequest request) throws FederationException;
 
+  /**
+   * Resolves a request and hands the version of the tree that the response was resolved from to a consumer, so that
+   * the response can be cached under the version that was actually used. The default implementation does not report
+   * a version.
+   *
+   * @param request         from the resolver api
+   * @param resolvedVersion receives the version of the tree that the response was resolved from
+   * @return response
+   * @throws FederationException
+   */
+  default String resolve(final ResolveRequest request, final LongConsumer resolvedVersion)
+      throws FederationException {
+    return this.resolve(request);
+  }
+
+  /**
+   * @return version of the tree that requests are currently resolved against, negative if the resolver has none
+   */
+  default long getCurrentVersion() {
+    return -1;
+  }
+
   /**
    * @param request to process
    * @return discovery response
    */
   DiscoveryResponse discovery(final DiscoveryRequest request);
 
+  /**
+   * @param request to process
+   * @return supported entities of the discovery response serialized as a json array
+   */
+  default String serializedDiscovery(final DiscoveryRequest request) {
+    return JSONArrayUtils.toJSONString(this.discovery(request).supportedEntities());
+  }
+
   /**
    * @return entity id of this resolver
    */
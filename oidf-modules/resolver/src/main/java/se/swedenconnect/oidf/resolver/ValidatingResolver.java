@@ -21,31 +21,42 @@ import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
 import com.nimbusds.openid.connect.sdk.federation.trust.marks.TrustMarkEntry;
+import lombok.extern.slf4j.Slf4j;
 import net.minidev.json.JSONObject;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 import se.swedenconnect.oidf.common.entity.exception.FederationException;
 import se.swedenconnect.oidf.common.entity.exception.InvalidTrustAnchorException;
 import se.swedenconnect.oidf.common.entity.exception.NotFoundException;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 import se.swedenconnect.oidf.resolver.chain.ChainValidationResult;
 import se.swedenconnect.oidf.resolver.chain.ChainValidator;
+import se.swedenconnect.oidf.resolver.chain.SignatureVerificationCache;
 import se.swedenconnect.oidf.resolver.metadata.MetadataProcessor;
 import se.swedenconnect.oidf.resolver.tree.EntityStatementTree;
 import se.swedenconnect.oidf.resolver.tree.ResolverTrustChain;
 import se.swedenconnect.oidf.resolver.trustmark.TrustMarkCollector;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 /**
  * Resolver implementation.
  *
  * @author Felix Hellman
  */
+@Slf4j
 public class ValidatingResolver implements Resolver {
 
   private final ResolverProperties resolverProperties;
@@ -58,6 +69,10 @@ public class ValidatingResolver implements Resolver {
 
   private final ResolverResponseFactory factory;
 
+  private final SignatureVerificationCache verificationCache;
+
+  private final PrecomputedResolutions precomputed;
+
   /**
    * Constructor.
    *
@@ -72,19 +87,62 @@ public class ValidatingResolver implements Resolver {
                             final EntityStatementTree tree,
                             final MetadataProcessor processor,
                             final ResolverResponseFactory factory) {
+    this(resolverProperties, validator, tree, processor, factory, SignatureVerificationCache.DISABLED,
+        new PrecomputedResolutions());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param resolverProperties from configuration
+   * @param validator          for validating trust chains
+   * @param tree               data structure to search upon
+   * @param processor          for processing metadata
+   * @param factory            to create signed responses
+   * @param verificationCache  shared with the validator, scoped to the snapshot each chain is resolved from
+   */
+  public ValidatingResolver(final ResolverProperties resolverProperties,
+                            final ChainValidator validator,
+                            final EntityStatementTree tree,
+                            final MetadataProcessor processor,
+                            final ResolverResponseFactory factory,
+                            final SignatureVerificationCache verificationCache) {
+    this(resolverProperties, validator, tree, processor, factory, verificationCache, new PrecomputedResolutions());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param resolverProperties from configuration
+   * @param validator          for validating trust chains
+   * @param tree               data structure to search upon
+   * @param processor          for processing metadata
+   * @param factory            to create signed responses
+   * @param verificationCache  shared with the validator, scoped to the snapshot each chain is resolved from
+   * @param precomputed        responses to look up before resolving, filled by {@link #precompute}
+   */
+  public ValidatingResolver(final ResolverProperties resolverProperties,
+                            final ChainValidator validator,
+                            final EntityStatementTree tree,
+                            final MetadataProcessor processor,
+                            final ResolverResponseFactory factory,
+                            final SignatureVerificationCache verificationCache,
+                            final PrecomputedResolutions precomputed) {
 
     this.resolverProperties = resolverProperties;
     this.validator = validator;
     this.tree = tree;
     this.processor = processor;
     this.factory = factory;
+    this.verificationCache = verificationCache;
+    this.precomputed = precomputed;
   }
 
   @Override
   public Map<Integer, Map<String, String>> explain(final ResolveRequest request) {
     final HashMap<Integer, Map<String, String>> explanation = new HashMap<>();
     final AtomicInteger counter = new AtomicInteger();
-    final ResolverResponse resolverResponse = this.internalResolve(request);
+    final ResolverResponse resolverResponse = this.internalResolve(request, version -> {});
     Optional.ofNullable(resolverResponse.validationErrors())
         .ifPresent(validationErrors -> {
           validationErrors
@@ -100,8 +158,14 @@ public class ValidatingResolver implements Resolver {
 
   @Override
   public String resolve(final ResolveRequest request) throws FederationException {
+    return this.resolve(request, version -> {});
+  }
+
+  @Override
+  public String resolve(final ResolveRequest request, final LongConsumer resolvedVersion)
+      throws FederationException {
 
-    final ResolverResponse response = this.internalResolve(request);
+    final ResolverResponse response = this.internalResolve(request, resolvedVersion);
 
     if (!response.validationErrors().isEmpty()) {
       final Exception exception = response.validationErrors().getFirst();
@@ -120,38 +184,96 @@ public class ValidatingResolver implements Resolver {
     }
   }
 
-  private ResolverResponse internalResolve(final ResolveRequest request) {
-    final List<Exception> validationErrors = new ArrayList<>();
+  /**
+   * Resolves every subject of a snapshot against the configured trust anchor and publishes the unsigned responses,
+   * to be called before the snapshot becomes the current version.
+   *
+   * Only requests without an entity type are answered from the precomputed responses.
+   *
+   * @param snapshot to resolve every subject of
+   * @param workers  to resolve subjects upon, bounding the number of subjects resolved at the same time
+   * @return number of precomputed responses
+   */
+  public int precompute(final CacheSnapshot<ScrapedEntity> snapshot, final Executor workers) {
+    final String trustAnchor = this.resolverProperties.getTrustAnchor();
+    final Instant now = Instant.now();
+    final Map<String, PrecomputedResolutions.Resolution> resolutions = new ConcurrentHashMap<>();
+    final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    for (final String subject : this.tree.getSubjectIndex(snapshot).getSubjects()) {
+      if (subject.equals(trustAnchor)) {
+        continue;
+      }
+      tasks.add(CompletableFuture.runAsync(() -> {
+        try {
+          final ResolverResponse response =
+              this.internalResolve(new ResolveRequest(subject, trustAnchor, null, false), snapshot);
+          resolutions.put(subject, PrecomputedResolutions.Resolution.of(response, now));
+        } catch (final Exception e) {
+          log.debug("Failed to precompute resolve response for {}, it will be resolved on request", subject, e);
+        }
+      }, workers));
+    }
+    CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+    this.precomputed.publish(snapshot.getVersion(), resolutions);
+    return resolutions.size();
+  }
 
-    if (!request.trustAnchor().equalsIgnoreCase(this.resolverProperties.getTrustAnchor())) {
-      validationErrors.add(new InvalidTrustAnchorException("The Trust Anchor cannot be found or used."));
+  @Override
+  public long getCurrentVersion() {
+    try (final CacheSnapshot<ScrapedEntity> snapshot = this.tree.getCurrentSnapshot()) {
+      return snapshot.getVersion();
     }
+  }
 
-    if (request.trustAnchor().equals(request.subject())) {
-      final ResolverTrustChain chain = this.tree.getTrustChain(request);
-      try {
-        final EntityStatement es =
-            EntityStatement.parse(chain.getTrustChain().stream().findFirst().get().getSignedStatement());
-        return ResolverResponse.builder()
-            .entityStatement(es)
-            .build();
-      } catch (final ParseException e) {
-        throw new RuntimeException(e);
+  private ResolverResponse internalResolve(final ResolveRequest request, final LongConsumer resolvedVersion) {
+    try (final CacheSnapshot<ScrapedEntity> snapshot = this.tree.getCurrentSnapshot()) {
+      resolvedVersion.accept(snapshot.getVersion());
+      //Responses are precomputed without an entity type, typed requests filter on metadata and are resolved here
+      if (request.trustAnchor().equals(this.resolverProperties.getTrustAnchor())
+          && !request.trustAnchor().equals(request.subject())
+          && Objects.isNull(request.type())) {
+        final Optional<ResolverResponse> precomputedResponse =
+            this.precomputed.get(snapshot.getVersion(), request.subject(), Instant.now());
+        if (precomputedResponse.isPresent()) {
+          return precomputedResponse.get();
+        }
       }
+      return this.internalResolve(request, snapshot);
     }
+  }
 
+  private ResolverResponse internalResolve(
+      final ResolveRequest request,
+      final CacheSnapshot<ScrapedEntity> snapshot) {
+    final List<Exception> validationErrors = new ArrayList<>();
 
-    final ResolverTrustChain chain = this.tree.getTrustChainViaAuthorityHints(request)
-        .orElseGet(() -> this.tree.getTrustChain(request));
+    if (!request.trustAnchor().equalsIgnoreCase(this.resolverProperties.getTrustAnchor())) {
+      validationErrors.add(new InvalidTrustAnchorException("The Trust Anchor cannot be found or used."));
+    }
+
+    final ResolverTrustChain chain = request.trustAnchor().equals(request.subject())
+        ? this.tree.getTrustChain(request, snapshot)
+        : this.tree.getTrustChainViaAuthorityHints(request, snapshot)
+            .orElseGet(() -> this.tree.getTrustChain(request, snapshot));
     if (chain.getTrustChain().isEmpty()) {
       validationErrors.add(
           new NotFoundException("Resolver found no subject with requested EntityID:%s".formatted(request.subject()))
       );
+      return ResolverResponse.builder()
+          .validationErrors(validationErrors)
+          .build();
+    }
+
+    if (request.trustAnchor().equals(request.subject())) {
+      return ResolverResponse.builder()
+          .entityStatement(chain.getTrustChain().stream().findFirst().get())
+          .build();
     }
+    this.verificationCache.scope(chain.getSnapshotVersion());
     ChainValidationResult chainValidationResult = null;
     final List<EntityStatement> trustChainList = chain.getTrustChain().stream().toList();
     try {
-      chainValidationResult = this.validator.validate(trustChainList);
+      chainValidationResult = this.validator.validateParsed(chain.getStatements());
       validationErrors.addAll(chainValidationResult.errors());
     } catch (final Exception e) {
       validationErrors.add(e);
@@ -166,7 +288,7 @@ public class ValidatingResolver implements Resolver {
     }
     List<TrustMarkEntry> trustMarkEntries = null;
     try {
-      trustMarkEntries = TrustMarkCollector.collectSubjectTrustMarks(chain);
+      trustMarkEntries = TrustMarkCollector.collectSubjectTrustMarks(chain, this.verificationCache);
     } catch (final Exception e) {
       validationErrors.add(e);
     }
@@ -187,6 +309,11 @@ public class ValidatingResolver implements Resolver {
     return new DiscoveryResponse(this.tree.discovery(request));
   }
 
+  @Override
+  public String serializedDiscovery(final DiscoveryRequest request) {
+    return this.tree.serializedDiscovery(request);
+  }
+
   @Override
   public EntityID getEntityId() {
     return new EntityID(this.resolverProperties.getEntityIdentifier());
@@ -17,6 +17,7 @@
 package se.swedenconnect.oidf.resolver.chain;
 
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement;
 
 import java.util.List;
 
@@ -32,4 +33,14 @@ public interface ChainValidationStep {
    * @return validation errors
    */
   List<ChainValidationError> validate(final List<EntityStatement> chain);
+
+  /**
+   * Validates a chain of statements that have already been parsed. Steps that read derived fields, such as compiled
+   * constraints, override this to use the fields of the parsed statements.
+   * @param chain to validate
+   * @return validation errors
+   */
+  default List<ChainValidationError> validateParsed(final List<ParsedStatement> chain) {
+    return this.validate(chain.stream().map(ParsedStatement::statement).toList());
+  }
 }
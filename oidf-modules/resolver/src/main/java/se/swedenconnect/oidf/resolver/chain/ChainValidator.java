@@ -18,10 +18,12 @@ package se.swedenconnect.oidf.resolver.chain;
 
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
 import se.swedenconnect.oidf.common.entity.exception.InvalidTrustChainException;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -49,6 +51,21 @@ public class ChainValidator {
    * @throws InvalidTrustChainException if validation fails
    */
   public ChainValidationResult validate(final List<EntityStatement> chain) throws InvalidTrustChainException {
+    return this.validate(chain, step -> step.validate(chain));
+  }
+
+  /**
+   * @param chain of parsed statements to validate
+   * @return a validation result if the chain passed validation
+   * @throws InvalidTrustChainException if validation fails
+   */
+  public ChainValidationResult validateParsed(final List<ParsedStatement> chain) throws InvalidTrustChainException {
+    return this.validate(chain.stream().map(ParsedStatement::statement).toList(), step -> step.validateParsed(chain));
+  }
+
+  private ChainValidationResult validate(
+      final List<EntityStatement> chain,
+      final Function<ChainValidationStep, List<ChainValidationError>> validation) {
     // Check that chain has at least length = 3
     final List<Exception> errors = new ArrayList<>();
     if (chain.size() < 3) {
@@ -58,7 +75,7 @@ public class ChainValidator {
     final List<ChainValidationStepResult> failedValidationSteps =
         this.chainValidationSteps
             .stream()
-            .map(step -> execute(step, chain))
+            .map(step -> execute(step, validation))
             .filter(stepResult -> !stepResult.valid())
             .toList();
 
@@ -74,10 +91,12 @@ public class ChainValidator {
     return new ChainValidationResult(chain, errors);
   }
 
-  private static ChainValidationStepResult execute(final ChainValidationStep step, final List<EntityStatement> chain) {
+  private static ChainValidationStepResult execute(
+      final ChainValidationStep step,
+      final Function<ChainValidationStep, List<ChainValidationError>> validation) {
     final String name = step.getClass().getCanonicalName();
     try {
-      final List<ChainValidationError> validate = step.validate(chain);
+      final List<ChainValidationError> validate = validation.apply(step);
       if (validate.isEmpty()) {
         return ChainValidationStepResult.valid(name);
       }
@@ -18,20 +18,18 @@ package se.swedenconnect.oidf.resolver.chain;
 
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.proc.BadJOSEException;
-import com.nimbusds.oauth2.sdk.id.Identifier;
-import com.nimbusds.openid.connect.sdk.claims.CommonClaimsSet;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatementClaimsSet;
 import net.minidev.json.JSONObject;
-import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.ConstraintRecord;
+import se.swedenconnect.oidf.common.entity.tree.constraints.CompiledConstraints;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
+import java.util.function.IntFunction;
 
 /**
  * Validates constraints of the chain.
@@ -41,20 +39,51 @@ import java.util.Set;
  * <li>naming_constraints</li>
  * <li>allowed_entity_types</li>
  * </ul>
+ * Constraints of parsed statements are compiled when the statement is parsed, see
+ * {@link ParsedStatement#compiledConstraints()}.
  *
  * @author Felix Hellman
  */
 public class ConstraintsValidationStep implements ChainValidationStep {
+
+  private final SignatureVerificationCache verificationCache;
+
+  /**
+   * Constructor verifying the leaf signature on every validation.
+   */
+  public ConstraintsValidationStep() {
+    this(SignatureVerificationCache.DISABLED);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param verificationCache to skip signatures that have already been verified
+   */
+  public ConstraintsValidationStep(final SignatureVerificationCache verificationCache) {
+    this.verificationCache = verificationCache;
+  }
+
   @Override
   public List<ChainValidationError> validate(final List<EntityStatement> chain) {
+    return this.validate(chain, x -> CompiledConstraints.of(chain.get(x)).orElse(null));
+  }
+
+  @Override
+  public List<ChainValidationError> validateParsed(final List<ParsedStatement> chain) {
+    return this.validate(chain.stream().map(ParsedStatement::statement).toList(),
+        x -> chain.get(x).compiledConstraints());
+  }
+
+  private List<ChainValidationError> validate(
+      final List<EntityStatement> chain,
+      final IntFunction<CompiledConstraints> compiledConstraints) {
     final ArrayList<ChainValidationError> errors = new ArrayList<>();
     try {
       for (int x = chain.size() - 1; x >= 0; x--) {
-        final EntityStatement current = chain.get(x);
         //TODO check parent is self statement
-        final JSONObject jsonConstraints = current.getClaimsSet().getJSONObjectClaim("constraints");
-        if (Objects.nonNull(jsonConstraints)) {
-          final ConstraintRecord constraints = ConstraintRecord.fromJson(jsonConstraints);
+        final CompiledConstraints constraints = compiledConstraints.apply(x);
+        if (Objects.nonNull(constraints)) {
           this.verifySubordinates(constraints, chain.subList(0, x));
         }
       }
@@ -65,27 +94,28 @@ public class ConstraintsValidationStep implements ChainValidationStep {
   }
 
   private void verifySubordinates(
-      final ConstraintRecord constraints,
+      final CompiledConstraints constraints,
       final List<EntityStatement> subordinateStatements) throws BadJOSEException, JOSEException {
 
     if (subordinateStatements.isEmpty()) {
       return;
     }
 
+    if (constraints.isMalformed()) {
+      throw new IllegalArgumentException(constraints.getMalformed());
+    }
+
     final EntityStatement leafStatement = subordinateStatements.getFirst();
 
     //If allowedLeafEntityTypes is empty we implicitly allow all types
-    final Set<String> allowedLeafEntityTypes = Optional.ofNullable(constraints.getAllowedEntityTypes())
-        .map(HashSet::new)
-        .orElse(new HashSet<>());
+    final Set<String> allowedLeafEntityTypes = constraints.getAllowedEntityTypes();
     if (!allowedLeafEntityTypes.isEmpty()) {
       final EntityStatementClaimsSet claimsSet = leafStatement.getClaimsSet();
       final JSONObject metadataClaim = claimsSet.getJSONObjectClaim("metadata");
       if (Objects.nonNull(metadataClaim)) {
-        final HashMap<String, Object> tmpMetadata = new HashMap<>(metadataClaim);
+        final HashSet<String> keys = new HashSet<>(metadataClaim.keySet());
         //This implementation allows federation_entity implicitly
-        tmpMetadata.remove("federation_entity");
-        final Set<String> keys = tmpMetadata.keySet();
+        keys.remove("federation_entity");
         //Remove all permitted entity_types
         keys.removeAll(allowedLeafEntityTypes);
         //If keys is not empty by now, it contains one or more illegal entity types.
@@ -101,7 +131,7 @@ public class ConstraintsValidationStep implements ChainValidationStep {
     int intermediateCount = subordinateStatements.size();
 
     if (leafStatement.getClaimsSet().isSelfStatement() && Objects.nonNull(
-        leafStatement.verifySignatureOfSelfStatement())) {
+        this.verificationCache.verifySelfStatement(leafStatement))) {
       // This implementation allows a chain to end with an Entity Statement.
       // If the last statement is selfsigned it is not counted as an Intermediate Entity statement
       intermediateCount -= 1;
@@ -113,43 +143,21 @@ public class ConstraintsValidationStep implements ChainValidationStep {
       }
     }
 
-
-    final List<String> subjectEntityIdentifiers = subordinateStatements.stream()
-        .map(EntityStatement::getClaimsSet)
-        .map(CommonClaimsSet::getSubject)
-        .map(Identifier::getValue)
-        .toList();
-
-    if (Objects.nonNull(constraints.getNaming())) {
-      checkNamingConstraints(constraints, subjectEntityIdentifiers);
-    }
+    checkNamingConstraints(constraints, subordinateStatements);
   }
 
   private static void checkNamingConstraints(
-      final ConstraintRecord constraints,
-      final List<String> subjectEntityIdentifiers) {
-
-    final List<String> excluded =
-        constraints.getNaming().getExcluded()
-            .stream()
-            .toList();
-    final List<String> permitted =
-        constraints.getNaming().getPermitted()
-            .stream()
-            .toList();
-    if (!excluded.isEmpty()) {
-      final boolean entityNameIsNotAllowed = subjectEntityIdentifiers.stream()
-          //NONE of the subjects may match ANY rule
-          .anyMatch(subjectId -> EntityNameValidator.anyMatch(subjectId, excluded));
-      if (entityNameIsNotAllowed) {
+      final CompiledConstraints constraints,
+      final List<EntityStatement> subordinateStatements) {
+
+    for (final EntityStatement statement : subordinateStatements) {
+      final String subject = statement.getClaimsSet().getSubject().getValue();
+      //NONE of the subjects may match ANY rule
+      if (constraints.getExcluded().matches(subject)) {
         throw new IllegalArgumentException("Excluded name constraints violation");
       }
-    }
-    if (!permitted.isEmpty()) {
-      final boolean entityNameIsAllowed = subjectEntityIdentifiers.stream()
-          //ALL subjects needs to match at least ONE permitted rule
-          .allMatch(subjectId -> EntityNameValidator.anyMatch(subjectId, permitted));
-      if (!entityNameIsAllowed) {
+      //ALL subjects needs to match at least ONE permitted rule
+      if (!constraints.getPermitted().isEmpty() && !constraints.getPermitted().matches(subject)) {
         throw new IllegalArgumentException("Permitted name constraints violation");
       }
     }
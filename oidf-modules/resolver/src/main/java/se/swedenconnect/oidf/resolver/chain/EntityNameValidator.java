@@ -16,18 +16,18 @@
  */
 package se.swedenconnect.oidf.resolver.chain;
 
-import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.common.entity.tree.constraints.NamingConstraintMatcher;
 
-import java.net.URI;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Validation class for checking allowed/excluded entity name patterns.
+ * <p>
+ * Rules are compiled with {@link NamingConstraintMatcher}, callers that check the same rules repeatedly should compile
+ * them once instead.
  *
  * @author Felix Hellman
  */
-@Slf4j
 public class EntityNameValidator {
   /**
    * @param entityId to check
@@ -35,43 +35,16 @@ public class EntityNameValidator {
    * @return true if allowed, false if not allowed
    */
   public static boolean validate(final String entityId, final String rule) {
-    final URI permittedUri = URI.create(rule);
-    final URI entityUri = URI.create(entityId);
-    try {
-      Optional.ofNullable(permittedUri.getAuthority()).ifPresent(authority -> {
-        if (!entityUri.getAuthority().endsWith(authority)) {
-          throw new IllegalArgumentException("Failed to validate Entity Name, illegal authority");
-        }
-      });
-      Optional.ofNullable(permittedUri.getScheme()).ifPresent(scheme -> {
-        if (!entityUri.getScheme().contains(scheme)) {
-          throw new IllegalArgumentException("Failed to validate Entity Name, illegal scheme");
-        }
-      });
-      Optional.ofNullable(permittedUri.getPath()).ifPresent(path -> {
-        if (!entityUri.getPath().contains(path)) {
-          throw new IllegalArgumentException("Failed to validate Entity Name, illegal path");
-        }
-      });
-      //Everything matches
-      return true;
-    } catch (final IllegalArgumentException e) {
-      log.warn("Entity name did not match constraint", e);
-      return false;
-    }
+    return NamingConstraintMatcher.compile(List.of(rule)).matches(entityId);
   }
 
   /**
    * Checks entityId towards a list of rules
    * @param entityId to check
    * @param rules to check
-   * @return true if
+   * @return true if any rule matches
    */
   public static boolean anyMatch(final String entityId, final List<String> rules) {
-    final long failedRules = rules.stream().map(rule -> validate(entityId, rule))
-        .filter(v -> !v)
-        .count();
-
-    return failedRules != rules.size();
+    return NamingConstraintMatcher.compile(rules).matches(entityId);
   }
 }
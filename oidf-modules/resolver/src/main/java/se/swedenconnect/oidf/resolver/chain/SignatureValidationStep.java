@@ -34,14 +34,26 @@ import java.util.Objects;
 public class SignatureValidationStep implements ChainValidationStep {
 
   private final JWKSet trustedKeys;
+  private final SignatureVerificationCache verificationCache;
 
   /**
-   * Constructor.
+   * Constructor verifying every signature on every validation.
    *
    * @param trustedKeys for verification of TrustAnchor signature.
    */
   public SignatureValidationStep(final JWKSet trustedKeys) {
+    this(trustedKeys, SignatureVerificationCache.DISABLED);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param trustedKeys       for verification of TrustAnchor signature.
+   * @param verificationCache to skip signatures that have already been verified
+   */
+  public SignatureValidationStep(final JWKSet trustedKeys, final SignatureVerificationCache verificationCache) {
     this.trustedKeys = trustedKeys;
+    this.verificationCache = verificationCache;
   }
 
   @Override
@@ -51,7 +63,7 @@ public class SignatureValidationStep implements ChainValidationStep {
     //Verify leaf
     final EntityStatement leaf = chain.getFirst();
     try {
-      Objects.requireNonNull(leaf.verifySignatureOfSelfStatement());
+      Objects.requireNonNull(this.verificationCache.verifySelfStatement(leaf));
     } catch (final Exception e) {
       errors.add(new ChainValidationError("Invalid leaf statement", e));
     }
@@ -71,7 +83,7 @@ public class SignatureValidationStep implements ChainValidationStep {
       final EntityStatement current = chain.get(i);
       final EntityStatement next = chain.get(i + 1);
       try {
-        verifyLink(current, next);
+        this.verifyLink(current, next);
       } catch (final Exception e) {
         errors.add(new ChainValidationError("Failed to verify link between %s and %s"
             .formatted(current.getEntityID(), next.getEntityID()), e));
@@ -88,7 +100,7 @@ public class SignatureValidationStep implements ChainValidationStep {
     return errors;
   }
 
-  private static void verifyLink(final EntityStatement current, final EntityStatement next)
+  private void verifyLink(final EntityStatement current, final EntityStatement next)
       throws BadJOSEException, JOSEException {
     final String currentIssuer = current.getClaimsSet().getIssuer().getValue();
     final String nextSubject = next.getClaimsSet().getSubject().getValue();
@@ -97,13 +109,13 @@ public class SignatureValidationStep implements ChainValidationStep {
           "Current issuer:%s is not same as next subject:%s".formatted(currentIssuer, nextSubject)
       );
     }
-    current.verifySignature(next.getClaimsSet().getJWKSet());
+    this.verificationCache.verify(current, next.getClaimsSet().getJWKSet());
   }
 
   private void verifyEntity(final EntityStatement entity) throws BadJOSEException, JOSEException {
-    entity.verifySignature(this.trustedKeys);
+    this.verificationCache.verify(entity, this.trustedKeys);
     // Verify that TA is selfsigned
-    entity.verifySignature(entity.getClaimsSet().getJWKSet());
+    this.verificationCache.verify(entity, entity.getClaimsSet().getJWKSet());
     // Verify validity time
     verifyValidityTime(entity);
   }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.chain;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jwk.AsymmetricJWK;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers signatures that have been verified so that repeated resolves of the same chain do not redo the
+ * cryptographic work.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the signing input and signature together with the thumbprint of the
+ * key that verified it, and only successful verifications are remembered. The cache is scoped to a snapshot
+ * version, moving to a newer version drops every entry, and holds at most {@code maximumSize} entries per version.
+ * Claims such as expiration time are not covered by a cache hit and have to be validated separately.
+ *
+ * @author Felix Hellman
+ */
+public class SignatureVerificationCache {
+
+  /**
+   * Default number of verified signatures to keep per snapshot version.
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 50_000;
+
+  /**
+   * Cache that remembers nothing, every signature is verified.
+   */
+  public static final SignatureVerificationCache DISABLED = new SignatureVerificationCache(0);
+
+  private final int maximumSize;
+  private final AtomicReference<Scope> scope = new AtomicReference<>(new Scope(Long.MIN_VALUE));
+  private final LongAdder hits = new LongAdder();
+
+  /**
+   * Constructor keeping at most {@link #DEFAULT_MAXIMUM_SIZE} entries.
+   */
+  public SignatureVerificationCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maximumSize number of verified signatures to keep per snapshot version, 0 disables the cache
+   */
+  public SignatureVerificationCache(final int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Maximum size must not be negative");
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Scopes the cache to a snapshot version. Entries of older versions are dropped, requests for an older version
+   * than the current one are ignored.
+   *
+   * @param version of the snapshot being resolved from
+   */
+  public void scope(final long version) {
+    final Scope current = this.scope.get();
+    if (version > current.version) {
+      // Losing the race means another thread already moved to the same or a newer version
+      this.scope.compareAndSet(current, new Scope(version));
+    }
+  }
+
+  /**
+   * Verifies the signature of an entity statement, see {@link EntityStatement#verifySignature(JWKSet)}.
+   *
+   * @param statement to verify
+   * @param jwks      to verify with
+   * @return thumbprint of the key that verified the signature
+   * @throws BadJOSEException if the signature is invalid or no key matches
+   * @throws JOSEException    if the verification failed
+   */
+  public Base64URL verify(final EntityStatement statement, final JWKSet jwks) throws BadJOSEException, JOSEException {
+    final SignedJWT jwt = statement.getSignedStatement();
+    final Scope current = this.scope.get();
+    final Base64URL digest = this.digest(jwt);
+    if (Objects.nonNull(digest) && Objects.nonNull(jwks)) {
+      for (final JWK jwk : new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader())).select(jwks)) {
+        final Base64URL thumbprint = jwk.computeThumbprint();
+        if (current.verified.contains(new Verified(digest, thumbprint))) {
+          this.hits.increment();
+          return thumbprint;
+        }
+      }
+    }
+    final Base64URL thumbprint = statement.verifySignature(jwks);
+    this.remember(current, digest, thumbprint);
+    return thumbprint;
+  }
+
+  /**
+   * Verifies the signature of a self-signed entity statement, see
+   * {@link EntityStatement#verifySignatureOfSelfStatement()}.
+   *
+   * @param statement to verify
+   * @return thumbprint of the key that verified the signature
+   * @throws BadJOSEException if the statement is not self-signed, the signature is invalid or no key matches
+   * @throws JOSEException    if the verification failed
+   */
+  public Base64URL verifySelfStatement(final EntityStatement statement) throws BadJOSEException, JOSEException {
+    if (!statement.getClaimsSet().isSelfStatement()) {
+      return statement.verifySignatureOfSelfStatement();
+    }
+    return this.verify(statement, statement.getClaimsSet().getJWKSet());
+  }
+
+  /**
+   * Verifies the signature of a JWT with a given key.
+   *
+   * @param jwt to verify
+   * @param jwk to verify with
+   * @return true if the signature is valid
+   * @throws JOSEException if the verification failed
+   */
+  public boolean verify(final SignedJWT jwt, final JWK jwk) throws JOSEException {
+    final Scope current = this.scope.get();
+    final Base64URL digest = this.digest(jwt);
+    final Base64URL thumbprint = jwk.computeThumbprint();
+    if (Objects.nonNull(digest) && current.verified.contains(new Verified(digest, thumbprint))) {
+      this.hits.increment();
+      return true;
+    }
+    if (!(jwk instanceof final AsymmetricJWK asymmetric)) {
+      throw new JOSEException("Unsupported key type %s".formatted(jwk.getKeyType()));
+    }
+    final boolean valid = jwt.verify(new DefaultJWSVerifierFactory()
+        .createJWSVerifier(jwt.getHeader(), asymmetric.toPublicKey()));
+    if (valid) {
+      this.remember(current, digest, thumbprint);
+    }
+    return valid;
+  }
+
+  /**
+   * @return number of verifications answered from the cache
+   */
+  public long getHits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * @return number of verified signatures held for the current version
+   */
+  public int size() {
+    return this.scope.get().verified.size();
+  }
+
+  private void remember(final Scope current, final Base64URL digest, final Base64URL thumbprint) {
+    if (Objects.nonNull(digest) && current.verified.size() < this.maximumSize) {
+      current.verified.add(new Verified(digest, thumbprint));
+    }
+  }
+
+  private Base64URL digest(final SignedJWT jwt) {
+    if (this.maximumSize == 0 || Objects.isNull(jwt.getSignature())) {
+      return null;
+    }
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(jwt.getSigningInput());
+      digest.update((byte) '.');
+      digest.update(jwt.getSignature().decode());
+      return Base64URL.encode(digest.digest());
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+
+  private record Verified(Base64URL digest, Base64URL thumbprint) {
+  }
+
+  private static final class Scope {
+    private final long version;
+    private final Set<Verified> verified = ConcurrentHashMap.newKeySet();
+
+    private Scope(final long version) {
+      this.version = version;
+    }
+  }
+}
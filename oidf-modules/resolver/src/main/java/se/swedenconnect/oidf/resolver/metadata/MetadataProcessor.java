@@ -16,6 +16,7 @@
  */
 package se.swedenconnect.oidf.resolver.metadata;
 
+import com.nimbusds.oauth2.sdk.util.JSONObjectUtils;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityType;
 import com.nimbusds.openid.connect.sdk.federation.policy.MetadataPolicy;
@@ -24,28 +25,57 @@ import com.nimbusds.openid.connect.sdk.federation.policy.operations.PolicyOperat
 import com.nimbusds.openid.connect.sdk.federation.policy.operations.PolicyOperationFactory;
 import net.minidev.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Combines metadata policy and calculates what the metadata value should be.
+ * <p>
+ * Combined policies are cached by the metadata types of the leaf and the metadata policies of the chain, in chain
+ * order. Superiors usually issue the same policy for every subordinate, so leaves below the same intermediates share
+ * a single parsed policy whose operations, including compiled regular expressions, are applied directly.
  *
  * @author Felix Hellman
  */
 public class MetadataProcessor {
 
+  /**
+   * Default number of combined policies to cache.
+   */
+  public static final int DEFAULT_MAXIMUM_CACHED_POLICIES = 10_000;
+
   private final PolicyOperationFactory operationFactory;
   private final PolicyOperationCombinationValidator combinationValidator;
+  private final int maximumCachedPolicies;
+  private final Map<PolicyKey, MetadataPolicy> policies = new ConcurrentHashMap<>();
 
   /**
-   * Constructor
+   * Constructor caching at most {@link #DEFAULT_MAXIMUM_CACHED_POLICIES} combined policies.
+   *
    * @param operationFactory for creating operations
    * @param combinationValidator for validating operation combinations
    */
   public MetadataProcessor(final PolicyOperationFactory operationFactory,
       final PolicyOperationCombinationValidator combinationValidator) {
+    this(operationFactory, combinationValidator, DEFAULT_MAXIMUM_CACHED_POLICIES);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param operationFactory      for creating operations
+   * @param combinationValidator  for validating operation combinations
+   * @param maximumCachedPolicies number of combined policies to cache, 0 combines the policies of every chain
+   */
+  public MetadataProcessor(final PolicyOperationFactory operationFactory,
+      final PolicyOperationCombinationValidator combinationValidator,
+      final int maximumCachedPolicies) {
     this.operationFactory = operationFactory;
     this.combinationValidator = combinationValidator;
+    this.maximumCachedPolicies = maximumCachedPolicies;
   }
 
   /**
@@ -62,38 +92,65 @@ public class MetadataProcessor {
           .stream()
           .toList();
 
-      final List<MetadataPolicy> metadataPolicies = chain.stream()
-          .flatMap(entity -> {
-              return metadataType.stream().map(mdt -> {
-                try {
-                  return entity.getClaimsSet().getMetadataPolicy(new EntityType(mdt));
-                }
-                catch (final PolicyViolationException e) {
-                  throw new IllegalArgumentException(e);
-                }
-              });
-          })
-          .filter(Objects::nonNull)
-          .toList();
-
-      final MetadataPolicy combinedMetadataPolicy = MetadataPolicy.combine(metadataPolicies, this.combinationValidator);
-
-      final MetadataPolicy metadataPolicy =
-          MetadataPolicy.parse(combinedMetadataPolicy.toJSONObject(), this.operationFactory, this.combinationValidator);
+      final MetadataPolicy metadataPolicy = this.combinedPolicy(chain, metadataType);
 
       final JSONObject result = new JSONObject();
-      metadataType.forEach(type -> {
-        try {
-          result.put(type, metadataPolicy.apply(leafNode.getClaimsSet().getMetadata(new EntityType(type))));
-        }
-        catch (final PolicyViolationException e) {
-          throw new RuntimeException(e);
-        }
-      });
+      for (final String type : metadataType) {
+        result.put(type, metadataPolicy.apply(leafNode.getClaimsSet().getMetadata(new EntityType(type))));
+      }
       return result;
     }
     catch (final PolicyViolationException | com.nimbusds.oauth2.sdk.ParseException e) {
       throw new IllegalArgumentException("Failed to validate/parse policy", e);
     }
   }
+
+  /**
+   * @return number of cached combined policies
+   */
+  public int getCachedPolicies() {
+    return this.policies.size();
+  }
+
+  private MetadataPolicy combinedPolicy(final List<EntityStatement> chain, final List<String> metadataType)
+      throws PolicyViolationException, com.nimbusds.oauth2.sdk.ParseException {
+    final List<JSONObject> policyObjects = new ArrayList<>();
+    for (final EntityStatement entity : chain) {
+      final JSONObject metadataPolicy = entity.getClaimsSet().getMetadataPolicyJSONObject();
+      if (Objects.nonNull(metadataPolicy)) {
+        for (final String type : metadataType) {
+          final JSONObject policy = JSONObjectUtils.getJSONObject(metadataPolicy, type, null);
+          if (Objects.nonNull(policy)) {
+            policyObjects.add(policy);
+          }
+        }
+      }
+    }
+    final PolicyKey key = new PolicyKey(metadataType, policyObjects);
+    final MetadataPolicy cached = this.policies.get(key);
+    if (Objects.nonNull(cached)) {
+      return cached;
+    }
+    final List<MetadataPolicy> metadataPolicies = new ArrayList<>(policyObjects.size());
+    for (final JSONObject policy : policyObjects) {
+      metadataPolicies.add(MetadataPolicy.parse(policy, this.operationFactory, this.combinationValidator));
+    }
+    final MetadataPolicy combined = MetadataPolicy.combine(metadataPolicies, this.combinationValidator);
+    if (this.maximumCachedPolicies > 0) {
+      if (this.policies.size() >= this.maximumCachedPolicies) {
+        this.policies.clear();
+      }
+      this.policies.put(key, combined);
+    }
+    return combined;
+  }
+
+  /**
+   * Key of a combined policy, the policies are compared by content.
+   *
+   * @param metadataTypes of the leaf
+   * @param policies      metadata policy of each type in chain order
+   */
+  private record PolicyKey(List<String> metadataTypes, List<JSONObject> policies) {
+  }
 }
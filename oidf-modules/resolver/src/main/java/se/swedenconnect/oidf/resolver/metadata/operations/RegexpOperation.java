@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -44,6 +45,10 @@ public class RegexpOperation implements StringOperation {
    * Operation name for this operation.
    */
   public static final OperationName OPERATION_NAME = new OperationName("regexp");
+
+  private static final int MAXIMUM_COMPILED_PATTERNS = 1024;
+  private static final Map<String, Pattern> COMPILED_PATTERNS = new ConcurrentHashMap<>();
+
   private final Set<Pattern> regexp = new HashSet<>();
 
   @Override
@@ -68,7 +73,18 @@ public class RegexpOperation implements StringOperation {
 
   @Override
   public void parseConfiguration(final Object configuration) throws ParseException {
-    this.regexp.addAll(JSONUtils.toStringList(configuration).stream().map(Pattern::compile).toList());
+    this.regexp.addAll(JSONUtils.toStringList(configuration).stream().map(RegexpOperation::compile).toList());
+  }
+
+  private static Pattern compile(final String regexp) {
+    final Pattern compiled = COMPILED_PATTERNS.get(regexp);
+    if (compiled != null) {
+      return compiled;
+    }
+    if (COMPILED_PATTERNS.size() >= MAXIMUM_COMPILED_PATTERNS) {
+      return Pattern.compile(regexp);
+    }
+    return COMPILED_PATTERNS.computeIfAbsent(regexp, Pattern::compile);
   }
 
   @Override
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import com.nimbusds.jose.util.JSONArrayUtils;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatementClaimsSet;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityType;
+import net.minidev.json.JSONObject;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.Node;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.resolver.DiscoveryRequest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted indexes used to answer discovery requests for a single snapshot of the federation tree.
+ * <p>
+ * Entity identifiers are kept sorted per entity type and per trust mark type, requests are answered by merging and
+ * intersecting the sorted lists. Serialized responses are cached per normalized filter for the lifetime of the
+ * snapshot.
+ *
+ * @author Felix Hellman
+ */
+public class DiscoveryIndex {
+
+  /**
+   * Maximum number of distinct filters to keep serialized responses for.
+   */
+  static final int MAX_CACHED_RESPONSES = 1024;
+
+  private final List<String> all;
+  private final Map<String, List<String>> byEntityType;
+  private final Map<String, List<String>> byTrustMarkType;
+  private final Map<String, String> responses = new ConcurrentHashMap<>();
+
+  private DiscoveryIndex(
+      final List<String> all,
+      final Map<String, List<String>> byEntityType,
+      final Map<String, List<String>> byTrustMarkType) {
+    this.all = all;
+    this.byEntityType = byEntityType;
+    this.byTrustMarkType = byTrustMarkType;
+  }
+
+  /**
+   * Builds an index by traversing every node in the snapshot once.
+   *
+   * @param snapshot to index
+   * @return new index
+   */
+  public static DiscoveryIndex create(final CacheSnapshot<ScrapedEntity> snapshot) {
+    final Node<ScrapedEntity> root = snapshot.getRoot();
+    if (Objects.isNull(root)) {
+      throw new IllegalStateException("Could not find root node for snapshot %d".formatted(snapshot.getVersion()));
+    }
+    final Set<String> all = new TreeSet<>();
+    final Map<String, Set<String>> byEntityType = new HashMap<>();
+    final Map<String, Set<String>> byTrustMarkType = new HashMap<>();
+    final Set<String> visited = new HashSet<>();
+    final Deque<Node<ScrapedEntity>> queue = new ArrayDeque<>();
+    visited.add(root.getKey().getKey());
+    queue.add(root);
+    while (!queue.isEmpty()) {
+      final Node<ScrapedEntity> node = queue.poll();
+      final ScrapedEntity entity = snapshot.getData(node.getKey());
+      if (Objects.nonNull(entity) && Objects.nonNull(entity.getEntityStatement())
+          && entity.getEntityStatement().getClaimsSet().isSelfStatement()) {
+        final EntityStatementClaimsSet claims = entity.getEntityStatement().getClaimsSet();
+        final String entityId = entity.getEntityStatement().getEntityID().getValue();
+        all.add(entityId);
+        final JSONObject metadata = claims.getJSONObjectClaim("metadata");
+        if (Objects.nonNull(metadata)) {
+          metadata.keySet().forEach(type -> {
+            if (Objects.nonNull(claims.getMetadata(new EntityType(type)))) {
+              byEntityType.computeIfAbsent(type, t -> new TreeSet<>()).add(entityId);
+            }
+          });
+        }
+        if (Objects.nonNull(claims.getTrustMarks())) {
+          claims.getTrustMarks().forEach(trustMark -> byTrustMarkType
+              .computeIfAbsent(trustMark.getID().getValue(), t -> new TreeSet<>())
+              .add(entityId));
+        }
+      }
+      for (final Node<ScrapedEntity> child : snapshot.getChildren(node)) {
+        if (visited.add(child.getKey().getKey())) {
+          queue.add(child);
+        }
+      }
+    }
+    return new DiscoveryIndex(List.copyOf(all), freeze(byEntityType), freeze(byTrustMarkType));
+  }
+
+  /**
+   * @param request to answer
+   * @return sorted entity identifiers matching the request
+   */
+  public List<String> discover(final DiscoveryRequest request) {
+    if (Objects.isNull(request.trustAnchor())) {
+      throw new IllegalArgumentException("Trust anchor parameter can not be null");
+    }
+    final List<String> types = normalize(request.types());
+    final List<String> trustMarkTypes = normalize(request.trustMarkTypes());
+    if (types.isEmpty() && trustMarkTypes.isEmpty()) {
+      return this.all;
+    }
+    if (types.isEmpty()) {
+      return union(this.byTrustMarkType, trustMarkTypes);
+    }
+    if (trustMarkTypes.isEmpty()) {
+      return union(this.byEntityType, types);
+    }
+    return intersect(union(this.byEntityType, types), union(this.byTrustMarkType, trustMarkTypes));
+  }
+
+  /**
+   * @param request to answer
+   * @return response serialized as a json array, cached per normalized filter
+   */
+  public String discoverSerialized(final DiscoveryRequest request) {
+    final String key = "%s|%s".formatted(normalize(request.types()), normalize(request.trustMarkTypes()));
+    final String cached = this.responses.get(key);
+    if (Objects.nonNull(cached)) {
+      return cached;
+    }
+    final String response = JSONArrayUtils.toJSONString(this.discover(request));
+    if (this.responses.size() < MAX_CACHED_RESPONSES) {
+      this.responses.putIfAbsent(key, response);
+    }
+    return response;
+  }
+
+  private static List<String> normalize(final Collection<String> values) {
+    if (Objects.isNull(values)) {
+      return List.of();
+    }
+    return values.stream()
+        .filter(Objects::nonNull)
+        .distinct()
+        .sorted()
+        .toList();
+  }
+
+  private static List<String> union(final Map<String, List<String>> index, final List<String> keys) {
+    List<String> result = List.of();
+    for (final String key : keys) {
+      result = merge(result, index.getOrDefault(key, List.of()));
+    }
+    return result;
+  }
+
+  private static List<String> merge(final List<String> first, final List<String> second) {
+    if (first.isEmpty()) {
+      return second;
+    }
+    if (second.isEmpty()) {
+      return first;
+    }
+    final List<String> result = new ArrayList<>(first.size() + second.size());
+    int i = 0;
+    int j = 0;
+    while (i < first.size() && j < second.size()) {
+      final int comparison = first.get(i).compareTo(second.get(j));
+      if (comparison <= 0) {
+        result.add(first.get(i++));
+        if (comparison == 0) {
+          j++;
+        }
+      } else {
+        result.add(second.get(j++));
+      }
+    }
+    result.addAll(first.subList(i, first.size()));
+    result.addAll(second.subList(j, second.size()));
+    return result;
+  }
+
+  private static List<String> intersect(final List<String> first, final List<String> second) {
+    final List<String> result = new ArrayList<>(Math.min(first.size(), second.size()));
+    int i = 0;
+    int j = 0;
+    while (i < first.size() && j < second.size()) {
+      final int comparison = first.get(i).compareTo(second.get(j));
+      if (comparison == 0) {
+        result.add(first.get(i));
+        i++;
+        j++;
+      } else if (comparison < 0) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return result;
+  }
+
+  private static Map<String, List<String>> freeze(final Map<String, Set<String>> index) {
+    final Map<String, List<String>> frozen = new HashMap<>();
+    index.forEach((key, values) -> frozen.put(key, List.copyOf(values)));
+    return Map.copyOf(frozen);
+  }
+}
@@ -16,24 +16,21 @@
  */
 package se.swedenconnect.oidf.resolver.tree;
 
-import com.nimbusds.jwt.SignedJWT;
-import com.nimbusds.oauth2.sdk.ParseException;
-import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityType;
 import lombok.extern.slf4j.Slf4j;
 import net.minidev.json.JSONObject;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
 import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
-import se.swedenconnect.oidf.common.entity.tree.NodeKey;
 import se.swedenconnect.oidf.common.entity.tree.SearchRequest;
 import se.swedenconnect.oidf.common.entity.tree.Tree;
 import se.swedenconnect.oidf.resolver.DiscoveryRequest;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -41,7 +38,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.SequencedSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Service class that wraps an internal federation tree. Defines what search queries should be executed towards the
@@ -52,6 +48,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class EntityStatementTree {
   private final Tree<ScrapedEntity> tree;
+  private final SnapshotScoped<SubjectIndex> subjectIndex = new SnapshotScoped<>(SubjectIndex::create);
+  private final SnapshotScoped<DiscoveryIndex> discoveryIndex = new SnapshotScoped<>(DiscoveryIndex::create);
 
   /**
    * @param tree    with federation nodes
@@ -68,35 +66,73 @@ public class EntityStatementTree {
    */
   public ResolverTrustChain getTrustChain(final ResolveRequest resolveRequest) {
     // Commit to current version
+    return this.getTrustChain(resolveRequest, this.tree.getCurrentSnapshot());
+  }
+
+  /**
+   * Searches for a given entity in a given snapshot and resolves the trustchain for that entity.
+   *
+   * The subject is looked up in the subject index of the snapshot and the chain ends at the requested trust anchor.
+   * A subject that is not in the index is not searched for in the tree.
+   *
+   * @param resolveRequest with search parameters
+   * @param snapshot       to search in
+   * @return resolved trust chain, empty if the subject has no path to the trust anchor
+   */
+  public ResolverTrustChain getTrustChain(
+      final ResolveRequest resolveRequest,
+      final CacheSnapshot<ScrapedEntity> snapshot) {
+    //The index matches the subject exactly, the leaf must still match the rest of the request e.g. its entity type
+    return this.getSubjectIndex(snapshot)
+        .findPath(resolveRequest.subject(), resolveRequest.trustAnchor(), (child, superior) -> true)
+        .filter(entities -> Objects.nonNull(entities.getFirst().getEntityStatement())
+            && resolveRequest.asPredicate().test(entities.getFirst(), null))
+        .map(path -> this.resolverTrustChain(new LinkedHashSet<>(path), snapshot.getVersion()))
+        .orElseGet(() -> new ResolverTrustChain(List.<ParsedStatement>of(), null, snapshot.getVersion()));
+  }
+
+  /**
+   * Returns the subject index for a snapshot, building it if the snapshot has not been indexed yet.
+   *
+   * @param snapshot to get index for
+   * @return index of the snapshot
+   */
+  public SubjectIndex getSubjectIndex(final CacheSnapshot<ScrapedEntity> snapshot) {
+    return this.subjectIndex.get(snapshot);
+  }
+
+  /**
+   * Returns the discovery index for a snapshot, building it if the snapshot has not been indexed yet.
+   *
+   * @param snapshot to get index for
+   * @return index of the snapshot
+   */
+  public DiscoveryIndex getDiscoveryIndex(final CacheSnapshot<ScrapedEntity> snapshot) {
+    return this.discoveryIndex.get(snapshot);
+  }
+
+  /**
+   * Builds the indexes for the current snapshot, to be called once a new version has been published.
+   */
+  public void indexCurrentSnapshot() {
     final CacheSnapshot<ScrapedEntity> snapshot = this.tree.getCurrentSnapshot();
-    // Find the entity that matches our subject, include parents
-    final SearchRequest<ScrapedEntity> request =
-        new SearchRequest<>(resolveRequest.asPredicate(), true, snapshot, true);
-    try {
-      final SequencedSet<ScrapedEntity> reversed = this.tree.search(request).stream()
-          //Sort by level in tree
-          .sorted(Comparator.comparingInt(a -> a.context().level()))
-          .map(Tree.SearchResult::getData)
-          .collect(Collectors.toCollection(LinkedHashSet::new))
-          //Reverse order to be leaf --> n --> root
-          .reversed();
-      return this.resolverTrustChain(reversed);
-    } catch (final IllegalStateException e) {
-      log.error("Failed to load from cache due to internal error for request {}", resolveRequest);
-      throw e;
+    if (Objects.nonNull(snapshot.getRoot())) {
+      this.getSubjectIndex(snapshot);
+      this.getDiscoveryIndex(snapshot);
     }
   }
 
-  private ResolverTrustChain resolverTrustChain(final SequencedSet<ScrapedEntity> entities) {
+  private ResolverTrustChain resolverTrustChain(final SequencedSet<ScrapedEntity> entities, final long version) {
     //1. Use request to find path to the entity
     //2. Initial chain structure should be
     // leaf --> subordinateStatement --> (node --> subordinateStatement [repeated]) --> root
     //3. Remove all nodes in the chain that is not leaf or root
     final List<ScrapedEntity> entityList = new ArrayList<>(entities);
-    final LinkedHashSet<EntityStatement> chain = new LinkedHashSet<>();
+    final Map<EntityStatement, ParsedStatement> chain = new LinkedHashMap<>();
 
     // Add leaf entity configuration
-    chain.add(entityList.getFirst().getEntityStatement());
+    final ParsedStatement leaf = entityList.getFirst().getParsedStatement();
+    chain.putIfAbsent(leaf.statement(), leaf);
 
     // For each consecutive (child, parent) pair, add the parent's subordinate statement about
     // the child. Intermediate self-configurations are omitted per step 3.
@@ -111,26 +147,23 @@ public class EntityStatementTree {
                 .formatted(parent.getEntityID().getValue()));
       }
 
-      final SignedJWT subJWT = parentIntermediate.subordinates().get(child.getEntityID().getValue());
-      if (subJWT == null) {
+      final ParsedStatement subordinateStatement = parentIntermediate.statement(child.getEntityID().getValue());
+      if (subordinateStatement == null) {
         throw new IllegalStateException(
             "Entity %s has no subordinate statement for %s"
                 .formatted(parent.getEntityID().getValue(), child.getEntityID().getValue()));
       }
 
-      try {
-        chain.add(EntityStatement.parse(subJWT));
-      } catch (final ParseException e) {
-        throw new IllegalStateException("Failed to parse subordinate statement", e);
-      }
+      chain.putIfAbsent(subordinateStatement.statement(), subordinateStatement);
     }
 
     // Add root (trust anchor) entity configuration
     if (entityList.size() > 1) {
-      chain.add(entityList.getLast().getEntityStatement());
+      final ParsedStatement root = entityList.getLast().getParsedStatement();
+      chain.putIfAbsent(root.statement(), root);
     }
 
-    return new ResolverTrustChain(chain, entityList.getFirst());
+    return new ResolverTrustChain(List.copyOf(chain.values()), entityList.getFirst(), version);
   }
 
   /**
@@ -138,10 +171,15 @@ public class EntityStatementTree {
    * @return list of resolved entities
    */
   public List<String> discovery(final DiscoveryRequest discoveryRequest) {
-    return this.tree.search(new SearchRequest<>(discoveryRequest.asPredicate(), false, this.tree.getCurrentSnapshot()))
-        .stream()
-        .map(n -> n.getData().getEntityStatement().getEntityID().getValue())
-        .toList();
+    return this.getDiscoveryIndex(this.tree.getCurrentSnapshot()).discover(discoveryRequest);
+  }
+
+  /**
+   * @param discoveryRequest to execute
+   * @return list of resolved entities serialized as a json array
+   */
+  public String serializedDiscovery(final DiscoveryRequest discoveryRequest) {
+    return this.getDiscoveryIndex(this.tree.getCurrentSnapshot()).discoverSerialized(discoveryRequest);
   }
 
   /**
@@ -187,60 +225,33 @@ public class EntityStatementTree {
 
   /**
    * Attempts to build a trust chain by walking upward through the subject's authority hints rather
-   * than searching the full tree top-down. Each hop looks the hinted entity up in the current
-   * snapshot and verifies it holds a subordinate statement for the previous entity, recursing until
-   * the requested trust anchor is reached. Falls back to {@link #getTrustChain(ResolveRequest)}
-   * when authority hints are absent or do not form a complete path.
+   * than searching the full tree top-down. Each hop must be to a superior that is listed as an authority hint and
+   * that holds a subordinate statement for the previous entity. The shortest such path to the requested trust anchor
+   * is used. Falls back to {@link #getTrustChain(ResolveRequest)} when authority hints are absent or do not form a
+   * complete path.
    *
    * @param request with subject and trust anchor
    * @return resolved trust chain, or empty if authority hints cannot produce a complete path
    */
   public Optional<ResolverTrustChain> getTrustChainViaAuthorityHints(final ResolveRequest request) {
-    return this.findPathToTrustAnchor(request.subject(), request.trustAnchor())
-        .map(path -> this.resolverTrustChain(new LinkedHashSet<>(path)));
+    return this.getTrustChainViaAuthorityHints(request, this.tree.getCurrentSnapshot());
   }
 
   /**
-   * Recursively follows authority hints from {@code subjectId} upward until {@code trustAnchorId}
-   * is reached. Returns the path in leaf-to-root order, or empty if no valid path exists.
+   * Same as {@link #getTrustChainViaAuthorityHints(ResolveRequest)} for a given snapshot.
+   *
+   * @param request  with subject and trust anchor
+   * @param snapshot to resolve from
+   * @return resolved trust chain, or empty if authority hints cannot produce a complete path
    */
-  private Optional<List<ScrapedEntity>> findPathToTrustAnchor(
-      final String subjectId,
-      final String trustAnchorId) {
-
-    final ScrapedEntity node = this.tree.getNode(new NodeKey(subjectId));
-    final List<String> path = this.reverseTraverse(node, trustAnchorId, List.of(subjectId));
-    if (!path.isEmpty() && path.getLast().equals(trustAnchorId)) {
-      final List<ScrapedEntity> entities = path.stream().map(entityId -> {
-        return this.tree.getNode(new NodeKey(entityId));
-      }).toList();
-      return Optional.of(entities);
-    }
-    return Optional.empty();
-  }
-
-  private List<String> reverseTraverse(
-      final ScrapedEntity node,
-      final String trustAnchor,
-      final List<String> path
-  ) {
-    if (node.getEntityStatement().getEntityID().getValue().equals(trustAnchor)) {
-      return path;
-    }
-    final List<EntityID> hints = node.getEntityStatement().getClaimsSet().getAuthorityHints();
-    if (Objects.isNull(hints)) {
-      return path;
-    }
-    for (final EntityID authorityHint : hints) {
-      final List<String> temp = new ArrayList<>(path);
-      temp.add(authorityHint.getValue());
-      final ScrapedEntity nextNode = this.tree.getNode(new NodeKey(authorityHint.getValue()));
-      if (nextNode == null) {
-        continue;
-      }
-      return this.reverseTraverse(nextNode, trustAnchor, List.copyOf(temp));
-    }
-    return path;
+  public Optional<ResolverTrustChain> getTrustChainViaAuthorityHints(
+      final ResolveRequest request,
+      final CacheSnapshot<ScrapedEntity> snapshot) {
+    return this.getSubjectIndex(snapshot)
+        .findPath(request.subject(), request.trustAnchor(), SubjectIndex::isAuthorityHint)
+        //The leaf must match the rest of the request as well, e.g. its entity type
+        .filter(path -> request.asPredicate().test(path.getFirst(), null))
+        .map(path -> this.resolverTrustChain(new LinkedHashSet<>(path), snapshot.getVersion()));
   }
 
   /**
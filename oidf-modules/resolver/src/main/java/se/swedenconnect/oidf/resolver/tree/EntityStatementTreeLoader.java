@@ -25,14 +25,18 @@ import se.swedenconnect.oidf.common.entity.tree.EntityStatementWrapper;
 import se.swedenconnect.oidf.common.entity.tree.Node;
 import se.swedenconnect.oidf.common.entity.tree.NodeKey;
 import se.swedenconnect.oidf.common.entity.tree.Tree;
+import se.swedenconnect.oidf.common.entity.tree.scraping.FetchExecutor;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.TrustMarkStatusService;
 import se.swedenconnect.oidf.resolver.tree.resolution.ErrorContext;
 import se.swedenconnect.oidf.resolver.tree.resolution.ErrorContextFactory;
 import se.swedenconnect.oidf.resolver.tree.resolution.ExecutionStrategy;
 import se.swedenconnect.oidf.resolver.tree.resolution.ResolutionContext;
 import se.swedenconnect.oidf.resolver.tree.resolution.StepExecutionError;
 import se.swedenconnect.oidf.resolver.tree.resolution.StepRecoveryStrategy;
+import se.swedenconnect.oidf.resolver.tree.resolution.TreeLoaderMetrics;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -79,7 +83,14 @@ public class EntityStatementTreeLoader {
 
   private final ErrorContextFactory errorContextFactory;
 
+  private final FetchExecutor fetchExecutor;
+
+  private final TrustMarkStatusService trustMarkStatusService;
+
+  private final TreeLoaderMetrics metrics;
+
   private final List<Runnable> postHooks = new ArrayList<>();
+  private final List<Consumer<CacheSnapshot<ScrapedEntity>>> snapshotHooks = new ArrayList<>();
 
   /**
    * @param client              to use for fetching statements
@@ -92,11 +103,70 @@ public class EntityStatementTreeLoader {
       final ExecutionStrategy executionStrategy,
       final StepRecoveryStrategy recoveryStrategy,
       final ErrorContextFactory errorContextFactory) {
+    this(client, executionStrategy, recoveryStrategy, errorContextFactory, FetchExecutor.shared());
+  }
+
+  /**
+   * @param client              to use for fetching statements
+   * @param executionStrategy   to use when iterating through the federation
+   * @param recoveryStrategy    to use when recovering from a failed step
+   * @param errorContextFactory to use when creating new error contexts
+   * @param fetchExecutor       to use when fetching the subordinate statements of an intermediate
+   */
+  public EntityStatementTreeLoader(
+      final FederationClient client,
+      final ExecutionStrategy executionStrategy,
+      final StepRecoveryStrategy recoveryStrategy,
+      final ErrorContextFactory errorContextFactory,
+      final FetchExecutor fetchExecutor) {
+    this(client, executionStrategy, recoveryStrategy, errorContextFactory, fetchExecutor,
+        new TrustMarkStatusService(client, fetchExecutor.getExecutor(), TrustMarkStatusService.DEFAULT_FRESHNESS));
+  }
+
+  /**
+   * @param client                 to use for fetching statements
+   * @param executionStrategy      to use when iterating through the federation
+   * @param recoveryStrategy       to use when recovering from a failed step
+   * @param errorContextFactory    to use when creating new error contexts
+   * @param fetchExecutor          to use when fetching the subordinate statements of an intermediate
+   * @param trustMarkStatusService to use when requesting trust mark statuses
+   */
+  public EntityStatementTreeLoader(
+      final FederationClient client,
+      final ExecutionStrategy executionStrategy,
+      final StepRecoveryStrategy recoveryStrategy,
+      final ErrorContextFactory errorContextFactory,
+      final FetchExecutor fetchExecutor,
+      final TrustMarkStatusService trustMarkStatusService) {
+    this(client, executionStrategy, recoveryStrategy, errorContextFactory, fetchExecutor, trustMarkStatusService,
+        TreeLoaderMetrics.NOOP);
+  }
+
+  /**
+   * @param client                 to use for fetching statements
+   * @param executionStrategy      to use when iterating through the federation
+   * @param recoveryStrategy       to use when recovering from a failed step
+   * @param errorContextFactory    to use when creating new error contexts
+   * @param fetchExecutor          to use when fetching the subordinate statements of an intermediate
+   * @param trustMarkStatusService to use when requesting trust mark statuses
+   * @param metrics                to record step timings with
+   */
+  public EntityStatementTreeLoader(
+      final FederationClient client,
+      final ExecutionStrategy executionStrategy,
+      final StepRecoveryStrategy recoveryStrategy,
+      final ErrorContextFactory errorContextFactory,
+      final FetchExecutor fetchExecutor,
+      final TrustMarkStatusService trustMarkStatusService,
+      final TreeLoaderMetrics metrics) {
 
     this.client = client;
     this.executionStrategy = executionStrategy;
     this.recoveryStrategy = recoveryStrategy;
     this.errorContextFactory = errorContextFactory;
+    this.fetchExecutor = fetchExecutor;
+    this.trustMarkStatusService = trustMarkStatusService;
+    this.metrics = metrics;
   }
 
   /**
@@ -110,6 +180,18 @@ public class EntityStatementTreeLoader {
     return this;
   }
 
+  /**
+   * Adds a hook that is given the newly loaded snapshot before any post-hook runs, that is before the new version is
+   * published.
+   *
+   * @param hook to add
+   * @return this
+   */
+  public EntityStatementTreeLoader withSnapshotHook(final Consumer<CacheSnapshot<ScrapedEntity>> hook) {
+    this.snapshotHooks.add(hook);
+    return this;
+  }
+
   /**
    * Resolves the tree from a given location (trust-anchor)
    *
@@ -131,52 +213,76 @@ public class EntityStatementTreeLoader {
       final ErrorContext context,
       final ResolutionContext resolutionContext) {
 
+    final ExecutionStrategy execution = this.executionStrategy.begin();
+    this.trustMarkStatusService.beginReload();
+    this.recoveryStrategy.beginReload();
     final Node<ScrapedEntity> root = new Node<>(nodeKey);
     final EntityID entityID = new EntityID(nodeKey.entityId());
     final ScrapedEntity scrapedEntity = ScrapedEntity.builder().entityID(entityID).build();
-    scrapedEntity.scrape(this.client);
+    final long start = System.nanoTime();
+    boolean success = false;
+    try {
+      scrapedEntity.scrape(this.client, this.fetchExecutor, this.trustMarkStatusService);
+      success = true;
+    } finally {
+      this.metrics.step(StepName.RESOLVE_ROOT, Duration.ofNanos(System.nanoTime() - start), success);
+    }
     final EntityStatementWrapper wrapper =
-        new EntityStatementWrapper(scrapedEntity.getEntityStatement().getSignedStatement());
+        new EntityStatementWrapper(scrapedEntity.getEntityStatement());
     resolutionContext.setTrustAnchorEntityStatement(wrapper);
-    final CacheSnapshot<ScrapedEntity> snapshot = tree.addRoot(root, scrapedEntity);
-    final NodeKey key = root.getKey();
-    this.executionStrategy.execute(() -> {
+    //The version is pinned while it is loaded, later retries may still write to it once the pin is released
+    try (final CacheSnapshot<ScrapedEntity> snapshot = tree.addRoot(root, scrapedEntity)) {
+      final NodeKey key = root.getKey();
       if (scrapedEntity.getIntermediate() != null) {
-        scrapedEntity.getIntermediate().subordinates().entrySet().stream().forEach((entry) -> {
-          this.resolveSubordinate(entry.getValue(), key, tree, snapshot, context, resolutionContext);
-        });
+        scrapedEntity.getIntermediate().subordinates().forEach((subject, statement) -> execution.execute(
+            new NodeKey(subject),
+            () -> this.resolveSubordinate(statement, key, snapshot, context, resolutionContext, execution)));
       }
-    });
-    this.postHooks.forEach(this.executionStrategy::finalize);
+      this.snapshotHooks.forEach(hook -> execution.finalize(() -> hook.accept(snapshot)));
+      this.postHooks.forEach(execution::finalize);
+    }
   }
 
   void resolveSubordinate(final SignedJWT subordinateStatement,
                           final NodeKey parentKey,
-                          final Tree<ScrapedEntity> tree,
                           final CacheSnapshot<ScrapedEntity> snapshot,
                           final ErrorContext context,
-                          final ResolutionContext resolutionContext) {
+                          final ResolutionContext resolutionContext,
+                          final ExecutionStrategy execution) {
+    if (execution.isCancelled()) {
+      return;
+    }
+    String subject = null;
     try {
-      final String subject = subordinateStatement.getJWTClaimsSet().getSubject();
+      subject = subordinateStatement.getJWTClaimsSet().getSubject();
       if (!resolutionContext.add(subject)) {
         return;
       }
-      final Node<ScrapedEntity> subNode = new Node<>(NodeKey.fromSignedJwt(subordinateStatement));
+      final NodeKey subKey = NodeKey.fromSignedJwt(subordinateStatement);
       final EntityID entityID = new EntityID(subject);
 
       final ScrapedEntity entity = ScrapedEntity.builder().entityID(entityID).build();
-      entity.scrape(this.client);
-      tree.addChild(subNode, subNode.getKey(), entity, snapshot);
+      entity.scrape(this.client, this.fetchExecutor, this.trustMarkStatusService);
+      //Edges are given by the subordinate statements of the parent, only the data has to be added
+      snapshot.setData(subKey, entity);
       if (entity.getIntermediate() != null) {
-        entity.getIntermediate().subordinates().entrySet().stream().forEach(entry -> {
-          this.resolveSubordinate(entry.getValue(), subNode.getKey(), tree, snapshot,
-              context, resolutionContext);
-        });
+        entity.getIntermediate().subordinates().forEach((childSubject, childStatement) -> execution.execute(
+            new NodeKey(childSubject),
+            () -> this.resolveSubordinate(childStatement, subKey, snapshot, context, resolutionContext, execution)));
       }
     } catch (final Exception e) {
-      this.handleError(StepName.FETCH_SUBORDINATE_STATEMENT, parentKey,
+      if (execution.isCancelled()) {
+        log.debug("TreeLoader {} step cancelled", parentKey.getKey());
+        return;
+      }
+      if (subject != null) {
+        //Allow the retry to resolve the subject again
+        resolutionContext.remove(subject);
+      }
+      this.handleError(StepName.FETCH_SUBORDINATE_STATEMENT,
+          subject != null ? new NodeKey(subject) : parentKey,
           (c) -> this.resolveSubordinate(
-              subordinateStatement, parentKey, tree, snapshot, c, resolutionContext),
+              subordinateStatement, parentKey, snapshot, c, resolutionContext, execution),
           context, e
       );
     }
@@ -195,6 +301,8 @@ public class EntityStatementTreeLoader {
     log.trace("TreeLoader {} {} failed: ", node.getKey(), stepName.name(), e);
     final StepExecutionError error = new StepExecutionError(
         "%s_%s".formatted(stepName, node.getKey()),
+        stepName,
+        node,
         step,
         context.orElseGet(() -> this.errorContextFactory.create(node, stepName)));
     this.recoveryStrategy.handle(error);
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.EntityConfigurationRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationTrustMarkStatusRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FetchRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.SubordinateListingRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.TrustMarkListingRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.TrustMarkRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
+import se.swedenconnect.oidf.resolver.tree.resolution.TreeLoaderMetrics;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * {@link FederationClient} that measures the requests made while loading a tree.
+ * <p>
+ * Requests for entity configurations, subordinate listings and subordinate statements are recorded as the matching
+ * {@link EntityStatementTreeLoader.StepName}. Every request made while loading is also recorded by the remote host it
+ * was sent to, so that latency can be attributed to a host without one metric per entity.
+ *
+ * @author Felix Hellman
+ */
+public class InstrumentedFederationClient implements FederationClient {
+
+  /**
+   * Host reported when the remote host can not be determined.
+   */
+  public static final String UNKNOWN_HOST = "unknown";
+
+  private final FederationClient client;
+  private final TreeLoaderMetrics metrics;
+
+  /**
+   * Constructor.
+   *
+   * @param client  to delegate requests to
+   * @param metrics to record measurements with
+   */
+  public InstrumentedFederationClient(final FederationClient client, final TreeLoaderMetrics metrics) {
+    this.client = client;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public EntityStatement entityConfiguration(final FederationRequest<EntityConfigurationRequest> request) {
+    final String location = Optional.ofNullable(request.parameters().ecLocation())
+        .filter(ecLocation -> !ecLocation.startsWith("data:"))
+        .orElseGet(() -> request.parameters().entityID().getValue());
+    return this.measure(EntityStatementTreeLoader.StepName.FETCH_ENTITY_CONFIGURATION, location,
+        () -> this.client.entityConfiguration(request));
+  }
+
+  @Override
+  public EntityStatement fetch(final FederationRequest<FetchRequest> request) {
+    return this.measure(EntityStatementTreeLoader.StepName.FETCH_SUBORDINATE_STATEMENT,
+        endpoint(request.federationEntityMetadata(), "federation_fetch_endpoint"),
+        () -> this.client.fetch(request));
+  }
+
+  @Override
+  public List<String> subordinateListing(final FederationRequest<SubordinateListingRequest> request) {
+    return this.measure(EntityStatementTreeLoader.StepName.SUBORDINATE_LISTING,
+        endpoint(request.federationEntityMetadata(), "federation_list_endpoint"),
+        () -> this.client.subordinateListing(request));
+  }
+
+  @Override
+  public TrustMarkStatusResponse trustMarkStatus(
+      final FederationRequest<FederationTrustMarkStatusRequest> request) {
+    final String location = Optional.ofNullable(
+            endpoint(request.federationEntityMetadata(), "federation_trust_mark_status_endpoint"))
+        .orElseGet(() -> request.parameters().trustMarkIssuer());
+    return this.measure(EntityStatementTreeLoader.StepName.NONE, location,
+        () -> this.client.trustMarkStatus(request));
+  }
+
+  @Override
+  public SignedJWT trustMark(final FederationRequest<TrustMarkRequest> request) {
+    return this.client.trustMark(request);
+  }
+
+  @Override
+  public SignedJWT resolve(final FederationRequest<ResolveRequest> request) {
+    return this.client.resolve(request);
+  }
+
+  @Override
+  public List<String> trustMarkedListing(final FederationRequest<TrustMarkListingRequest> request) {
+    return this.client.trustMarkedListing(request);
+  }
+
+  private <T> T measure(
+      final EntityStatementTreeLoader.StepName stepName,
+      final String location,
+      final Supplier<T> request) {
+    final long start = System.nanoTime();
+    boolean success = false;
+    try {
+      final T result = request.get();
+      success = true;
+      return result;
+    } finally {
+      final Duration duration = Duration.ofNanos(System.nanoTime() - start);
+      this.metrics.request(host(location), duration, success);
+      if (stepName != EntityStatementTreeLoader.StepName.NONE) {
+        this.metrics.step(stepName, duration, success);
+      }
+    }
+  }
+
+  private static String endpoint(final Map<String, Object> metadata, final String name) {
+    return Optional.ofNullable(metadata)
+        .map(m -> m.get(name))
+        .filter(String.class::isInstance)
+        .map(String.class::cast)
+        .orElse(null);
+  }
+
+  /**
+   * @param location url of a request
+   * @return host of the url, or {@link #UNKNOWN_HOST} if the url has no host
+   */
+  static String host(final String location) {
+    if (Objects.isNull(location)) {
+      return UNKNOWN_HOST;
+    }
+    try {
+      return Optional.ofNullable(URI.create(location).getHost()).orElse(UNKNOWN_HOST);
+    } catch (final IllegalArgumentException e) {
+      return UNKNOWN_HOST;
+    }
+  }
+}
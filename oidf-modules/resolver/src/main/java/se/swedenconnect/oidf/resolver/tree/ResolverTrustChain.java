@@ -17,10 +17,13 @@
 package se.swedenconnect.oidf.resolver.tree;
 
 import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -29,8 +32,71 @@ import java.util.Set;
  * @author Felix Hellman
  */
 @Getter
-@AllArgsConstructor
 public class ResolverTrustChain {
+  /**
+   * Snapshot version of a chain that was not resolved from a snapshot.
+   */
+  public static final long UNKNOWN_VERSION = Long.MIN_VALUE;
+
   private final Set<EntityStatement> trustChain;
+  private final List<ParsedStatement> statements;
   private final ScrapedEntity leafEntity;
+  private final long snapshotVersion;
+
+  /**
+   * Constructor for a chain that was not resolved from a snapshot.
+   *
+   * @param trustChain leaf first, trust anchor last
+   * @param leafEntity scraped leaf entity
+   */
+  public ResolverTrustChain(final Set<EntityStatement> trustChain, final ScrapedEntity leafEntity) {
+    this(trustChain, leafEntity, UNKNOWN_VERSION);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param trustChain      leaf first, trust anchor last
+   * @param leafEntity      scraped leaf entity
+   * @param snapshotVersion version of the snapshot the chain was resolved from
+   */
+  public ResolverTrustChain(
+      final Set<EntityStatement> trustChain,
+      final ScrapedEntity leafEntity,
+      final long snapshotVersion) {
+    this.trustChain = trustChain;
+    this.statements = null;
+    this.leafEntity = leafEntity;
+    this.snapshotVersion = snapshotVersion;
+  }
+
+  /**
+   * Constructor for a chain of statements that have already been parsed.
+   *
+   * @param statements      leaf first, trust anchor last
+   * @param leafEntity      scraped leaf entity
+   * @param snapshotVersion version of the snapshot the chain was resolved from
+   */
+  public ResolverTrustChain(
+      final List<ParsedStatement> statements,
+      final ScrapedEntity leafEntity,
+      final long snapshotVersion) {
+    final Set<EntityStatement> chain = new LinkedHashSet<>();
+    statements.forEach(statement -> chain.add(statement.statement()));
+    this.trustChain = chain;
+    this.statements = List.copyOf(statements);
+    this.leafEntity = leafEntity;
+    this.snapshotVersion = snapshotVersion;
+  }
+
+  /**
+   * @return the trust chain with derived fields, leaf first, parsed here if the chain was not resolved from parsed
+   *     statements
+   */
+  public List<ParsedStatement> getStatements() {
+    if (Objects.nonNull(this.statements)) {
+      return this.statements;
+    }
+    return this.trustChain.stream().map(ParsedStatement::of).toList();
+  }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Holds values derived from the two latest snapshots it was requested for. A value is created once per snapshot
+ * version and the oldest value is replaced when a newer version is requested, so that preparing a pending version
+ * does not evict the value of the version currently served.
+ * <p>
+ * A value is created again when its version has been written to after it was published, see
+ * {@link CacheSnapshot#getRevision()}. The new value is created in the background and the value of the previous
+ * revision is served until it is ready, only the first value of a version is created by the calling thread.
+ *
+ * @param <T> type of the derived value
+ * @author Felix Hellman
+ */
+@Slf4j
+class SnapshotScoped<T> {
+
+  private final Function<CacheSnapshot<ScrapedEntity>, T> factory;
+  private final Executor executor;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private volatile Entry<T> latest;
+  private volatile Entry<T> previous;
+
+  /**
+   * Constructor creating values of later revisions on the common pool.
+   *
+   * @param factory to create the value from a snapshot
+   */
+  SnapshotScoped(final Function<CacheSnapshot<ScrapedEntity>, T> factory) {
+    this(factory, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param factory  to create the value from a snapshot
+   * @param executor to create values of later revisions upon
+   */
+  SnapshotScoped(final Function<CacheSnapshot<ScrapedEntity>, T> factory, final Executor executor) {
+    this.factory = factory;
+    this.executor = executor;
+  }
+
+  /**
+   * @param snapshot to get value for
+   * @return value for the snapshot version and revision, or for an earlier revision of the version while the value
+   *     of the current revision is being created
+   */
+  T get(final CacheSnapshot<ScrapedEntity> snapshot) {
+    final long version = snapshot.getVersion();
+    final T existing = this.find(version, snapshot.getRevision());
+    if (Objects.nonNull(existing)) {
+      return existing;
+    }
+    final T earlier = this.find(version);
+    if (Objects.nonNull(earlier)) {
+      this.refresh(snapshot);
+      return earlier;
+    }
+    return this.create(snapshot);
+  }
+
+  private void refresh(final CacheSnapshot<ScrapedEntity> snapshot) {
+    if (!this.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      this.executor.execute(() -> {
+        try {
+          this.create(snapshot);
+        } catch (final RuntimeException e) {
+          log.warn("Failed to create value for revision {} of version {}, the earlier revision is still served",
+              snapshot.getRevision(), snapshot.getVersion(), e);
+        } finally {
+          this.refreshing.set(false);
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      this.refreshing.set(false);
+      log.warn("Could not schedule creation of value for version {}", snapshot.getVersion(), e);
+    }
+  }
+
+  private T create(final CacheSnapshot<ScrapedEntity> snapshot) {
+    final long version = snapshot.getVersion();
+    synchronized (this) {
+      //Read before the value is created, a write made meanwhile creates the value again on the next call
+      final long revision = snapshot.getRevision();
+      final T created = this.find(version, revision);
+      if (Objects.nonNull(created)) {
+        return created;
+      }
+      final T value = this.factory.apply(snapshot);
+      final Entry<T> entry = new Entry<>(version, revision, value);
+      final Entry<T> newest = this.latest;
+      if (Objects.isNull(newest) || newest.version() <= version) {
+        if (Objects.isNull(newest) || newest.version() < version) {
+          this.previous = newest;
+        }
+        this.latest = entry;
+      } else if (Objects.isNull(this.previous) || this.previous.version() <= version) {
+        this.previous = entry;
+      }
+      return value;
+    }
+  }
+
+  private T find(final long version) {
+    final Entry<T> newest = this.latest;
+    if (Objects.nonNull(newest) && newest.version() == version) {
+      return newest.value();
+    }
+    final Entry<T> older = this.previous;
+    if (Objects.nonNull(older) && older.version() == version) {
+      return older.value();
+    }
+    return null;
+  }
+
+  private T find(final long version, final long revision) {
+    final Entry<T> newest = this.latest;
+    if (Objects.nonNull(newest) && newest.version() == version && newest.revision() == revision) {
+      return newest.value();
+    }
+    final Entry<T> older = this.previous;
+    if (Objects.nonNull(older) && older.version() == version && older.revision() == revision) {
+      return older.value();
+    }
+    return null;
+  }
+
+  private record Entry<T>(long version, long revision, T value) {
+  }
+}
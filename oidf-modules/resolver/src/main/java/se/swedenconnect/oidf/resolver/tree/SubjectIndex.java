@@ -0,0 +1,242 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.Node;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+/**
+ * Index of a single snapshot of the federation tree.
+ * <p>
+ * Maps each subject to its scraped entity and keeps reverse edges from each entity to every superior that has
+ * issued a subordinate statement about it. Trust chains are built by walking upward from the subject instead of
+ * searching the tree from the root.
+ *
+ * @author Felix Hellman
+ */
+public class SubjectIndex {
+
+  private final long version;
+  private final String rootKey;
+  private final Map<String, ScrapedEntity> entities;
+  private final Map<String, String> caseInsensitiveKeys;
+  private final Map<String, List<String>> superiors;
+  private final int maxDepth;
+
+  private SubjectIndex(
+      final long version,
+      final String rootKey,
+      final Map<String, ScrapedEntity> entities,
+      final Map<String, List<String>> superiors,
+      final int maxDepth) {
+    this.version = version;
+    this.rootKey = rootKey;
+    this.entities = entities;
+    this.superiors = superiors;
+    this.maxDepth = maxDepth;
+    final Map<String, String> lowerCase = new HashMap<>();
+    entities.keySet().forEach(key -> lowerCase.putIfAbsent(key.toLowerCase(Locale.ROOT), key));
+    this.caseInsensitiveKeys = lowerCase;
+  }
+
+  /**
+   * Builds an index by traversing every node in the snapshot once.
+   *
+   * @param snapshot to index
+   * @return new index
+   */
+  public static SubjectIndex create(final CacheSnapshot<ScrapedEntity> snapshot) {
+    final Node<ScrapedEntity> root = snapshot.getRoot();
+    if (Objects.isNull(root)) {
+      throw new IllegalStateException("Could not find root node for snapshot %d".formatted(snapshot.getVersion()));
+    }
+    final Map<String, ScrapedEntity> entities = new HashMap<>();
+    final Map<String, List<String>> superiors = new HashMap<>();
+    final Map<String, Integer> depths = new HashMap<>();
+    final Deque<Node<ScrapedEntity>> queue = new ArrayDeque<>();
+    depths.put(root.getKey().getKey(), 0);
+    queue.add(root);
+    int maxDepth = 0;
+    while (!queue.isEmpty()) {
+      final Node<ScrapedEntity> node = queue.poll();
+      final String key = node.getKey().getKey();
+      final int depth = depths.get(key);
+      maxDepth = Math.max(maxDepth, depth);
+      final ScrapedEntity entity = snapshot.getData(node.getKey());
+      if (isSelfStatement(entity)) {
+        entities.put(entity.getEntityStatement().getClaimsSet().getSubject().getValue(), entity);
+      }
+      for (final Node<ScrapedEntity> child : snapshot.getChildren(node)) {
+        final String childKey = child.getKey().getKey();
+        if (!childKey.equals(key)) {
+          superiors.computeIfAbsent(childKey, k -> new ArrayList<>(1)).add(key);
+        }
+        if (depths.putIfAbsent(childKey, depth + 1) == null) {
+          queue.add(child);
+        }
+      }
+    }
+    return new SubjectIndex(snapshot.getVersion(), root.getKey().getKey(), entities, superiors, maxDepth);
+  }
+
+  /**
+   * @return version of the indexed snapshot
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * @return number of entities in the indexed snapshot
+   */
+  public int size() {
+    return this.entities.size();
+  }
+
+  /**
+   * @return entity identifiers of every indexed entity
+   */
+  public Set<String> getSubjects() {
+    return Collections.unmodifiableSet(this.entities.keySet());
+  }
+
+  /**
+   * @return number of indexed entities that have subordinates, including the trust anchor
+   */
+  public int getIntermediateCount() {
+    return (int) this.entities.values().stream()
+        .filter(entity -> Objects.nonNull(entity.getIntermediate()))
+        .count();
+  }
+
+  /**
+   * @return number of edges on the longest shortest path from the root of the indexed snapshot
+   */
+  public int getMaxDepth() {
+    return this.maxDepth;
+  }
+
+  /**
+   * @param subject to look up, matched case-insensitively if there is no exact match
+   * @return entity for the subject
+   */
+  public Optional<ScrapedEntity> getEntity(final String subject) {
+    return Optional.ofNullable(this.entities.get(subject))
+        .or(() -> Optional.ofNullable(this.caseInsensitiveKeys.get(subject.toLowerCase(Locale.ROOT)))
+            .map(this.entities::get));
+  }
+
+  /**
+   * @param subject to list superiors for
+   * @return entity identifiers of every superior that has issued a subordinate statement about the subject
+   */
+  public List<String> getSuperiors(final String subject) {
+    return Collections.unmodifiableList(this.superiors.getOrDefault(subject, List.of()));
+  }
+
+  /**
+   * Finds the shortest path from a subject to the root of the tree.
+   *
+   * @param subject to start from
+   * @return entities in leaf to root order, empty if there is no complete path
+   */
+  public Optional<List<ScrapedEntity>> findPathToRoot(final String subject) {
+    return this.findPath(subject, this.rootKey, (child, superior) -> true);
+  }
+
+  /**
+   * Finds the shortest path from a subject to a trust anchor. Every entity on the path must be present in the index,
+   * both the subject and the trust anchor are matched ignoring case.
+   *
+   * @param subject     to start from
+   * @param trustAnchor to end at
+   * @param edgeFilter  (child, superior) predicate deciding if an upward edge may be followed
+   * @return entities in leaf to root order, empty if there is no complete path
+   */
+  public Optional<List<ScrapedEntity>> findPath(
+      final String subject,
+      final String trustAnchor,
+      final BiPredicate<ScrapedEntity, String> edgeFilter) {
+    final Optional<ScrapedEntity> leaf = this.getEntity(subject);
+    final Optional<ScrapedEntity> anchor = this.getEntity(trustAnchor);
+    if (leaf.isEmpty() || anchor.isEmpty()) {
+      return Optional.empty();
+    }
+    final String leafKey = leaf.get().getEntityStatement().getClaimsSet().getSubject().getValue();
+    final String anchorKey = anchor.get().getEntityStatement().getClaimsSet().getSubject().getValue();
+    final Map<String, String> next = new HashMap<>();
+    final Deque<String> queue = new ArrayDeque<>();
+    next.put(leafKey, null);
+    queue.add(leafKey);
+    while (!queue.isEmpty()) {
+      final String key = queue.poll();
+      if (key.equals(anchorKey)) {
+        return Optional.of(this.toPath(key, next));
+      }
+      final ScrapedEntity entity = this.entities.get(key);
+      for (final String superior : this.superiors.getOrDefault(key, List.of())) {
+        if (!next.containsKey(superior) && this.entities.containsKey(superior)
+            && edgeFilter.test(entity, superior)) {
+          next.put(superior, key);
+          queue.add(superior);
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  private List<ScrapedEntity> toPath(final String trustAnchor, final Map<String, String> next) {
+    final List<ScrapedEntity> path = new ArrayList<>();
+    String key = trustAnchor;
+    while (Objects.nonNull(key)) {
+      path.add(this.entities.get(key));
+      key = next.get(key);
+    }
+    return path.reversed();
+  }
+
+  /**
+   * @param entity to check
+   * @param superior to check
+   * @return true if the superior is listed as an authority hint of the entity
+   */
+  static boolean isAuthorityHint(final ScrapedEntity entity, final String superior) {
+    final List<EntityID> hints = entity.getEntityStatement().getClaimsSet().getAuthorityHints();
+    return Objects.nonNull(hints) && hints.stream().anyMatch(hint -> hint.getValue().equals(superior));
+  }
+
+  private static boolean isSelfStatement(final ScrapedEntity entity) {
+    return Objects.nonNull(entity)
+        && Objects.nonNull(entity.getEntityStatement())
+        && entity.getEntityStatement().getClaimsSet().isSelfStatement();
+  }
+}
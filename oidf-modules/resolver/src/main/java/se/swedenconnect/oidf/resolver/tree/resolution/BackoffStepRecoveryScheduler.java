@@ -0,0 +1,388 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree.resolution;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Schedules retries of failed tree loader steps for every resolver.
+ * <p>
+ * The delay before a retry grows exponentially from {@link ResolverProperties#getStepRetryTime()}, with jitter so that
+ * steps that failed together are not retried together. Each step is retried at most {@code maxAttempts} times and at
+ * most {@code maxQueued} retries are waiting at the same time. Failures are counted per remote host within a window
+ * of {@code openDuration}, once a host has failed {@code failureThreshold} times within the window without a
+ * successful retry in between its circuit opens and retries towards it are dropped until {@code openDuration} has
+ * passed. A single retry is then let through as a probe, the circuit closes if it succeeds and opens again if it
+ * fails. Failure counts are also cleared when a new tree load begins, so occasional failures never add up.
+ * Retries that belong to a reload that has been superseded by a newer reload are dropped as well.
+ *
+ * @author Felix Hellman
+ */
+@Slf4j
+public class BackoffStepRecoveryScheduler {
+
+  /**
+   * Default time before the first retry when the resolver has no step retry time configured.
+   */
+  public static final Duration DEFAULT_STEP_RETRY_TIME = Duration.ofSeconds(60);
+
+  /**
+   * Default number of times a single step is retried.
+   */
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  /**
+   * Default upper bound of the delay before a retry.
+   */
+  public static final Duration DEFAULT_MAX_DELAY = Duration.ofMinutes(30);
+
+  /**
+   * Default number of retries that may be waiting at the same time.
+   */
+  public static final int DEFAULT_MAX_QUEUED = 10_000;
+
+  /**
+   * Default number of failures within the open duration after which the circuit of a host opens.
+   */
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+  /**
+   * Default time the circuit of a host stays open.
+   */
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofMinutes(5);
+
+  /**
+   * Default jitter, picks a delay between half and all of the exponential delay.
+   */
+  public static final LongUnaryOperator DEFAULT_JITTER =
+      delay -> delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+
+  /**
+   * State of the circuit of a host.
+   */
+  public enum CircuitState {
+    /**
+     * Retries towards the host are scheduled.
+     */
+    CLOSED,
+    /**
+     * The host looks dead, retries towards it are dropped.
+     */
+    OPEN,
+    /**
+     * A single retry is let through to probe the host.
+     */
+    HALF_OPEN
+  }
+
+  private final ScheduledExecutorService executorService;
+  private final int maxAttempts;
+  private final Duration maxDelay;
+  private final int maxQueued;
+  private final int failureThreshold;
+  private final Duration openDuration;
+  private final TreeLoaderMetrics metrics;
+  private final Clock clock;
+  private final LongUnaryOperator jitter;
+  private final Executor retryExecutor;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final Map<String, HostCircuit> circuits = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor using the default limits.
+   *
+   * @param executorService to schedule retries with, shared by every resolver
+   * @param metrics         to record retries and circuit states with
+   */
+  public BackoffStepRecoveryScheduler(
+      final ScheduledExecutorService executorService,
+      final TreeLoaderMetrics metrics) {
+    this(executorService, DEFAULT_MAX_ATTEMPTS, DEFAULT_MAX_DELAY, DEFAULT_MAX_QUEUED, DEFAULT_FAILURE_THRESHOLD,
+        DEFAULT_OPEN_DURATION, metrics, Clock.systemUTC(), DEFAULT_JITTER,
+        Executors.newVirtualThreadPerTaskExecutor());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param executorService  to schedule retries with, shared by every resolver
+   * @param maxAttempts      number of times a single step is retried
+   * @param maxDelay         upper bound of the delay before a retry
+   * @param maxQueued        number of retries that may be waiting at the same time
+   * @param failureThreshold number of failures within the open duration after which the circuit of a host opens
+   * @param openDuration     time the circuit of a host stays open and window that failures are counted within
+   * @param metrics          to record retries and circuit states with
+   * @param clock            to read the time from
+   * @param jitter           maps a delay in milliseconds to the jittered delay to use
+   * @param retryExecutor    to run retried steps on, so that a slow step does not delay other retries
+   */
+  public BackoffStepRecoveryScheduler(
+      final ScheduledExecutorService executorService,
+      final int maxAttempts,
+      final Duration maxDelay,
+      final int maxQueued,
+      final int failureThreshold,
+      final Duration openDuration,
+      final TreeLoaderMetrics metrics,
+      final Clock clock,
+      final LongUnaryOperator jitter,
+      final Executor retryExecutor) {
+    if (maxAttempts < 0 || maxQueued < 0 || failureThreshold < 1) {
+      throw new IllegalArgumentException("Retry limits must not be negative and failure threshold must be positive");
+    }
+    this.executorService = executorService;
+    this.maxAttempts = maxAttempts;
+    this.maxDelay = maxDelay;
+    this.maxQueued = maxQueued;
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+    this.metrics = metrics;
+    this.clock = clock;
+    this.jitter = jitter;
+    this.retryExecutor = retryExecutor;
+    metrics.retryQueue(this.queued::get);
+  }
+
+  /**
+   * Creates the recovery strategy of a single resolver.
+   *
+   * @param properties of the resolver, {@link ResolverProperties#getStepRetryTime()} is used as the first delay
+   * @return new strategy backed by this scheduler
+   */
+  public StepRecoveryStrategy forResolver(final ResolverProperties properties) {
+    return new ResolverRecovery(Optional.ofNullable(properties.getStepRetryTime())
+        .filter(Duration::isPositive)
+        .orElse(DEFAULT_STEP_RETRY_TIME));
+  }
+
+  /**
+   * @return number of retries waiting to be executed
+   */
+  public int getQueued() {
+    return this.queued.get();
+  }
+
+  /**
+   * @param host to get state for
+   * @return state of the circuit of the host
+   */
+  public CircuitState getCircuitState(final String host) {
+    return Optional.ofNullable(this.circuits.get(host))
+        .map(HostCircuit::getState)
+        .orElse(CircuitState.CLOSED);
+  }
+
+  /**
+   * @param baseDelay time before the first retry
+   * @param attempt   number of the retry, starting at 1
+   * @return delay before the retry, in milliseconds
+   */
+  long delay(final Duration baseDelay, final int attempt) {
+    final long base = baseDelay.toMillis();
+    final long cap = this.maxDelay.toMillis();
+    final int shift = Math.min(attempt - 1, 30);
+    final long exponential = base > (cap >> shift) ? cap : base << shift;
+    return this.jitter.applyAsLong(Math.min(exponential, cap));
+  }
+
+  private void schedule(final ResolverRecovery recovery, final StepExecutionError error) {
+    final ErrorContext context = error.getErrorContext();
+    final int attempt = context.increment().getErrorCount();
+    final String host = ParallelExecution.host(error.getKey());
+    final HostCircuit circuit = this.circuits.computeIfAbsent(host, HostCircuit::new);
+    circuit.failure();
+
+    if (attempt > this.maxAttempts) {
+      this.drop(error, "budget");
+      return;
+    }
+    if (circuit.getState() == CircuitState.OPEN) {
+      this.drop(error, "circuit_open");
+      return;
+    }
+    if (this.queued.incrementAndGet() > this.maxQueued) {
+      this.queued.decrementAndGet();
+      this.drop(error, "queue_full");
+      return;
+    }
+    final long generation = recovery.generation.get();
+    final long delay = this.delay(recovery.baseDelay, attempt);
+    log.debug("Retrying {} in {} ms, attempt {}", error.getMessage(), delay, attempt);
+    this.metrics.retryScheduled(error.getStepName());
+    this.executorService.schedule(() -> {
+      this.queued.decrementAndGet();
+      if (generation != recovery.generation.get()) {
+        this.drop(error, "superseded");
+        return;
+      }
+      final Permit permit = circuit.tryAcquire();
+      if (permit == Permit.DENIED) {
+        this.drop(error, "circuit_open");
+        return;
+      }
+      this.retryExecutor.execute(() -> this.retry(error, circuit, permit));
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void retry(final StepExecutionError error, final HostCircuit circuit, final Permit permit) {
+    final ErrorContext context = error.getErrorContext();
+    final int before = context.getErrorCount();
+    boolean completed = false;
+    try {
+      error.getStep().accept(context);
+      completed = true;
+    } finally {
+      // A failed retry is handed to this scheduler again, which increments the error count
+      circuit.complete(permit, completed && context.getErrorCount() == before);
+    }
+  }
+
+  private void drop(final StepExecutionError error, final String reason) {
+    log.debug("Dropping retry of {} reason:{}", error.getMessage(), reason);
+    this.metrics.retryDropped(error.getStepName(), reason);
+  }
+
+  /**
+   * Recovery strategy of a single resolver.
+   */
+  private final class ResolverRecovery implements StepRecoveryStrategy {
+    private final Duration baseDelay;
+    private final AtomicLong generation = new AtomicLong();
+
+    private ResolverRecovery(final Duration baseDelay) {
+      this.baseDelay = baseDelay;
+    }
+
+    @Override
+    public void handle(final StepExecutionError executionError) {
+      BackoffStepRecoveryScheduler.this.schedule(this, executionError);
+    }
+
+    @Override
+    public void beginReload() {
+      this.generation.incrementAndGet();
+      BackoffStepRecoveryScheduler.this.circuits.values().forEach(HostCircuit::clearFailures);
+    }
+  }
+
+  /**
+   * Outcome of asking a circuit for permission to retry.
+   */
+  private enum Permit {
+    DENIED,
+    RETRY,
+    PROBE
+  }
+
+  /**
+   * Circuit breaker of a single host.
+   */
+  private final class HostCircuit {
+    private final String host;
+    private CircuitState state = CircuitState.CLOSED;
+    private int failures;
+    private Instant failuresSince = Instant.MIN;
+    private Instant openUntil = Instant.MIN;
+    private boolean probing;
+
+    private HostCircuit(final String host) {
+      this.host = host;
+    }
+
+    private synchronized CircuitState getState() {
+      final Instant now = BackoffStepRecoveryScheduler.this.clock.instant();
+      if (this.state == CircuitState.OPEN && !now.isBefore(this.openUntil)) {
+        this.transition(CircuitState.HALF_OPEN);
+      }
+      return this.state;
+    }
+
+    private synchronized Permit tryAcquire() {
+      final CircuitState current = this.getState();
+      if (current == CircuitState.CLOSED) {
+        return Permit.RETRY;
+      }
+      if (current == CircuitState.HALF_OPEN && !this.probing) {
+        this.probing = true;
+        return Permit.PROBE;
+      }
+      return Permit.DENIED;
+    }
+
+    private synchronized void complete(final Permit permit, final boolean success) {
+      if (permit == Permit.PROBE) {
+        this.probing = false;
+        if (!success) {
+          this.open();
+          return;
+        }
+        this.transition(CircuitState.CLOSED);
+      }
+      if (success) {
+        this.failures = 0;
+      }
+    }
+
+    private synchronized void failure() {
+      final Instant now = BackoffStepRecoveryScheduler.this.clock.instant();
+      if (!now.isBefore(this.failuresSince.plus(BackoffStepRecoveryScheduler.this.openDuration))) {
+        //Failures older than the window no longer count
+        this.failures = 0;
+        this.failuresSince = now;
+      }
+      this.failures++;
+      final int threshold = BackoffStepRecoveryScheduler.this.failureThreshold;
+      if (this.state == CircuitState.CLOSED && this.failures >= threshold) {
+        this.open();
+      }
+    }
+
+    private synchronized void clearFailures() {
+      this.failures = 0;
+    }
+
+    private void open() {
+      this.openUntil = BackoffStepRecoveryScheduler.this.clock.instant()
+          .plus(BackoffStepRecoveryScheduler.this.openDuration);
+      this.transition(CircuitState.OPEN);
+    }
+
+    private void transition(final CircuitState next) {
+      if (this.state != next) {
+        log.info("Circuit for host {} changed from {} to {}", this.host, this.state, next);
+        this.state = next;
+        BackoffStepRecoveryScheduler.this.metrics.circuitState(this.host, next);
+      }
+    }
+  }
+}
@@ -16,6 +16,8 @@
  */
 package se.swedenconnect.oidf.resolver.tree.resolution;
 
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+
 /**
  * Defines how to execute each iteration of a tree resolution.
  *
@@ -27,6 +29,31 @@ public interface ExecutionStrategy {
    */
   void execute(Runnable runnable);
 
+  /**
+   * @param key      of the entity that the step fetches, allows strategies to limit requests per host
+   * @param runnable containing an iteration step
+   */
+  default void execute(final NodeKey key, final Runnable runnable) {
+    this.execute(runnable);
+  }
+
+  /**
+   * Starts the resolution of a new tree. Every step of that resolution, and the post-hooks, are executed upon the
+   * returned strategy.
+   *
+   * @return strategy scoped to a single tree resolution
+   */
+  default ExecutionStrategy begin() {
+    return this;
+  }
+
+  /**
+   * @return true if the resolution has been cancelled and remaining steps should be skipped
+   */
+  default boolean isCancelled() {
+    return false;
+  }
+
   /**
    * @param runnable an action to be run after the computaion of the tree is done.
    */
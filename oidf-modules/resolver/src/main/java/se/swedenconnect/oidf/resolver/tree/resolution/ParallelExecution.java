@@ -0,0 +1,254 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree.resolution;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+import se.swedenconnect.oidf.common.entity.tree.scraping.HostPermits;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implements parallel resolution of the federation tree, where every step is executed on its own virtual thread.
+ * <p>
+ * The number of steps that are executing at the same time is limited both in total, shared by every tree resolved by
+ * this strategy, and per host. Subordinate statements that a step fetches are limited per host by the
+ * {@link se.swedenconnect.oidf.common.entity.tree.scraping.FetchExecutor} of the step with permits of their own, since
+ * the step already holds a permit of its own host while it fetches them. A resolution that has not completed when its
+ * deadline passes is cancelled, remaining steps are skipped and the post-hooks are not run so that the previous
+ * version of the tree is kept.
+ *
+ * @author Felix Hellman
+ */
+@Slf4j
+public class ParallelExecution implements ExecutionStrategy {
+
+  /**
+   * Default number of steps executing at the same time.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 64;
+
+  /**
+   * Default number of steps executing at the same time towards a single host.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 8;
+
+  /**
+   * Default time a resolution is allowed to take before it is cancelled.
+   */
+  public static final Duration DEFAULT_RELOAD_DEADLINE = Duration.ofMinutes(10);
+
+  private final ExecutorService executor;
+  private final Semaphore permits;
+  private final HostPermits hostPermits;
+  private final Duration reloadDeadline;
+
+  /**
+   * Constructor using virtual threads.
+   *
+   * @param maxConcurrentRequests        number of steps executing at the same time
+   * @param maxConcurrentRequestsPerHost number of steps executing at the same time towards a single host
+   * @param reloadDeadline               time a resolution is allowed to take before it is cancelled
+   */
+  public ParallelExecution(
+      final int maxConcurrentRequests,
+      final int maxConcurrentRequestsPerHost,
+      final Duration reloadDeadline) {
+    this(Executors.newVirtualThreadPerTaskExecutor(), maxConcurrentRequests, maxConcurrentRequestsPerHost,
+        reloadDeadline);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param executor                     to execute steps upon
+   * @param maxConcurrentRequests        number of steps executing at the same time
+   * @param maxConcurrentRequestsPerHost number of steps executing at the same time towards a single host
+   * @param reloadDeadline               time a resolution is allowed to take before it is cancelled
+   */
+  public ParallelExecution(
+      final ExecutorService executor,
+      final int maxConcurrentRequests,
+      final int maxConcurrentRequestsPerHost,
+      final Duration reloadDeadline) {
+    if (maxConcurrentRequests < 1 || maxConcurrentRequestsPerHost < 1) {
+      throw new IllegalArgumentException("Concurrent requests must be at least 1");
+    }
+    this.executor = executor;
+    this.permits = new Semaphore(maxConcurrentRequests);
+    this.hostPermits = new HostPermits(maxConcurrentRequestsPerHost);
+    this.reloadDeadline = reloadDeadline;
+  }
+
+  @Override
+  public ExecutionStrategy begin() {
+    return new Resolution(Instant.now().plus(this.reloadDeadline));
+  }
+
+  /**
+   * Executes a step that is not part of a resolution started with {@link #begin()}.
+   *
+   * @param runnable containing an iteration step
+   */
+  @Override
+  public void execute(final Runnable runnable) {
+    this.executor.execute(() -> this.runLimited(null, runnable));
+  }
+
+  @Override
+  public void finalize(final Runnable runnable) {
+    runnable.run();
+  }
+
+  private void runLimited(final NodeKey key, final Runnable runnable) {
+    final Semaphore host = this.hostPermits.forLocation(Objects.isNull(key) ? null : key.getKey());
+    try {
+      host.acquire();
+      try {
+        this.permits.acquire();
+        try {
+          runnable.run();
+        } finally {
+          this.permits.release();
+        }
+      } finally {
+        host.release();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (final RuntimeException e) {
+      log.error("Tree resolution step failed with unhandled exception", e);
+    }
+  }
+
+  /**
+   * @param key of an entity
+   * @return host of the entity identifier, or the identifier itself if it has no host
+   */
+  static String host(final NodeKey key) {
+    return HostPermits.host(Objects.isNull(key) ? null : key.getKey());
+  }
+
+  /**
+   * Steps of a single tree resolution.
+   */
+  private final class Resolution implements ExecutionStrategy {
+    private final Instant deadline;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition completed = this.lock.newCondition();
+    private volatile boolean cancelled;
+
+    private Resolution(final Instant deadline) {
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void execute(final Runnable runnable) {
+      this.execute(null, runnable);
+    }
+
+    @Override
+    public void execute(final NodeKey key, final Runnable runnable) {
+      if (this.cancelled) {
+        return;
+      }
+      this.outstanding.incrementAndGet();
+      try {
+        ParallelExecution.this.executor.execute(() -> {
+          this.running.add(Thread.currentThread());
+          try {
+            if (!this.cancelled) {
+              ParallelExecution.this.runLimited(key, runnable);
+            }
+          } finally {
+            this.running.remove(Thread.currentThread());
+            this.done();
+          }
+        });
+      } catch (final RuntimeException e) {
+        this.done();
+        throw e;
+      }
+    }
+
+    @Override
+    public void finalize(final Runnable runnable) {
+      if (this.awaitCompletion()) {
+        runnable.run();
+      }
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return this.cancelled;
+    }
+
+    private boolean awaitCompletion() {
+      this.lock.lock();
+      try {
+        while (this.outstanding.get() > 0 && !this.cancelled) {
+          final long remaining = Duration.between(Instant.now(), this.deadline).toNanos();
+          if (remaining <= 0) {
+            this.cancel();
+            break;
+          }
+          this.completed.await(remaining, TimeUnit.NANOSECONDS);
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        this.cancel();
+      } finally {
+        this.lock.unlock();
+      }
+      return !this.cancelled;
+    }
+
+    private void cancel() {
+      if (this.cancelled) {
+        return;
+      }
+      this.cancelled = true;
+      log.warn("Tree resolution did not complete before its deadline, cancelling {} remaining steps",
+          this.outstanding.get());
+      this.running.forEach(Thread::interrupt);
+    }
+
+    private void done() {
+      if (this.outstanding.decrementAndGet() == 0) {
+        this.lock.lock();
+        try {
+          this.completed.signalAll();
+        } finally {
+          this.lock.unlock();
+        }
+      }
+    }
+  }
+}
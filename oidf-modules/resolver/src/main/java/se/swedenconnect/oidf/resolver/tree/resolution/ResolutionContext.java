@@ -26,18 +26,19 @@ import se.swedenconnect.oidf.common.entity.tree.EntityStatementWrapper;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Context for resolver resolution.
+ * Context for resolver resolution. Thread safe, steps of a resolution can be executed concurrently.
  *
  * @author Felix Hellman
  */
 @NoArgsConstructor
 public class ResolutionContext {
-  private final Set<String> visited = new HashSet<>();
+  private final Set<String> visited = ConcurrentHashMap.newKeySet();
   @Getter
   @Setter
-  private EntityStatementWrapper trustAnchorEntityStatement;
+  private volatile EntityStatementWrapper trustAnchorEntityStatement;
 
   /**
    * Adds an entity
@@ -48,6 +49,14 @@ public class ResolutionContext {
     return this.visited.add(entity);
   }
 
+  /**
+   * Removes an entity so that it can be added again, used when the step that added it has failed.
+   * @param entity to remove
+   */
+  public void remove(final String entity) {
+    this.visited.remove(entity);
+  }
+
   /**
    * Adds entities to context
    * @param toAdd to add to context
@@ -18,17 +18,21 @@ package se.swedenconnect.oidf.resolver.tree.resolution;
 
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 
+import java.time.Duration;
+import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Implementation of {@link StepRecoveryStrategy} to handle errors
+ * Implementation of {@link StepRecoveryStrategy} to handle errors. Every failed step is retried after
+ * {@link ResolverProperties#getStepRetryTime()}, see {@link BackoffStepRecoveryScheduler} for retries with backoff.
  *
  * @author Felix Hellman
  */
 public class ScheduledStepRecoveryStrategy implements StepRecoveryStrategy {
   private final ScheduledExecutorService executorService;
   private final ResolverProperties properties;
+  private final TreeLoaderMetrics metrics;
 
   /**
    * @param executorService to schedule retry
@@ -37,15 +41,34 @@ public class ScheduledStepRecoveryStrategy implements StepRecoveryStrategy {
   public ScheduledStepRecoveryStrategy(
       final ScheduledExecutorService executorService,
       final ResolverProperties properties
+  ) {
+    this(executorService, properties, TreeLoaderMetrics.NOOP);
+  }
+
+  /**
+   * @param executorService to schedule retry
+   * @param properties for configuration retry time
+   * @param metrics to record scheduled retries with
+   */
+  public ScheduledStepRecoveryStrategy(
+      final ScheduledExecutorService executorService,
+      final ResolverProperties properties,
+      final TreeLoaderMetrics metrics
   ) {
     this.executorService = executorService;
     this.properties = properties;
+    this.metrics = metrics;
   }
 
   @Override
   public void handle(final StepExecutionError executionError) {
+    this.metrics.retryScheduled(executionError.getStepName());
+    executionError.getErrorContext().increment();
+    final Duration retryTime = Optional.ofNullable(this.properties.getStepRetryTime())
+        .filter(Duration::isPositive)
+        .orElse(BackoffStepRecoveryScheduler.DEFAULT_STEP_RETRY_TIME);
     this.executorService.schedule(() -> executionError.getStep().accept(executionError.getErrorContext()),
-        60,
-        TimeUnit.SECONDS);
+        retryTime.toMillis(),
+        TimeUnit.MILLISECONDS);
   }
 }
@@ -17,6 +17,8 @@
 package se.swedenconnect.oidf.resolver.tree.resolution;
 
 import lombok.Getter;
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+import se.swedenconnect.oidf.resolver.tree.EntityStatementTreeLoader;
 
 import java.util.function.Consumer;
 
@@ -29,6 +31,8 @@ import java.util.function.Consumer;
 public class StepExecutionError extends RuntimeException {
   private final Consumer<ErrorContext> step;
   private final ErrorContext errorContext;
+  private final EntityStatementTreeLoader.StepName stepName;
+  private final NodeKey key;
 
   /**
    * Constructor.
@@ -38,8 +42,28 @@ public class StepExecutionError extends RuntimeException {
    * @param errorContext context for the failure
    */
   public StepExecutionError(final String message, final Consumer<ErrorContext> step, final ErrorContext errorContext) {
+    this(message, EntityStatementTreeLoader.StepName.NONE, null, step, errorContext);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param message      of why the step failed
+   * @param stepName     name of the step that failed
+   * @param key          of the node the step was run for
+   * @param step         that was run so that it can be re-run if needed.
+   * @param errorContext context for the failure
+   */
+  public StepExecutionError(
+      final String message,
+      final EntityStatementTreeLoader.StepName stepName,
+      final NodeKey key,
+      final Consumer<ErrorContext> step,
+      final ErrorContext errorContext) {
     super(message);
     this.step = step;
     this.errorContext = errorContext;
+    this.stepName = stepName;
+    this.key = key;
   }
 }
@@ -27,4 +27,10 @@ public interface StepRecoveryStrategy {
    * @param executionError to handle
    */
   void handle(final StepExecutionError executionError);
+
+  /**
+   * Called when a new reload of the tree begins. Retries of steps from earlier reloads may be dropped.
+   */
+  default void beginReload() {
+  }
 }
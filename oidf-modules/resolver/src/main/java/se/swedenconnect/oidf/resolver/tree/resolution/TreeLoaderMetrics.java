@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree.resolution;
+
+import se.swedenconnect.oidf.resolver.tree.EntityStatementTreeLoader;
+
+import java.time.Duration;
+import java.util.function.IntSupplier;
+
+/**
+ * Receives measurements from the tree loader. Allows an external metrics implementation to be used for monitoring,
+ * every method does nothing by default.
+ *
+ * @author Felix Hellman
+ */
+public interface TreeLoaderMetrics {
+
+  /**
+   * Implementation that discards every measurement.
+   */
+  TreeLoaderMetrics NOOP = new TreeLoaderMetrics() {
+  };
+
+  /**
+   * Records the duration of a tree loader step.
+   *
+   * @param stepName of the step
+   * @param duration of the step
+   * @param success  true if the step completed without an error
+   */
+  default void step(final EntityStatementTreeLoader.StepName stepName, final Duration duration,
+      final boolean success) {
+  }
+
+  /**
+   * Records the latency of an outbound request.
+   *
+   * @param host     remote host the request was sent to
+   * @param duration of the request
+   * @param success  true if the request completed without an error
+   */
+  default void request(final String host, final Duration duration, final boolean success) {
+  }
+
+  /**
+   * Records that a failed step has been scheduled for another attempt.
+   *
+   * @param stepName of the step
+   */
+  default void retryScheduled(final EntityStatementTreeLoader.StepName stepName) {
+  }
+
+  /**
+   * Records the shape of a snapshot that has just been published.
+   *
+   * @param resolver      entity identifier of the resolver that published the snapshot
+   * @param nodes         number of entities in the snapshot
+   * @param intermediates number of intermediates in the snapshot, including the trust anchor
+   * @param maxDepth      number of edges on the longest shortest path from the trust anchor
+   */
+  default void snapshotPublished(final String resolver, final int nodes, final int intermediates,
+      final int maxDepth) {
+  }
+
+  /**
+   * Records that a failed step will not be retried.
+   *
+   * @param stepName of the step
+   * @param reason   why the retry was dropped
+   */
+  default void retryDropped(final EntityStatementTreeLoader.StepName stepName, final String reason) {
+  }
+
+  /**
+   * Registers the number of retries waiting to be executed.
+   *
+   * @param depth supplier of the current number of scheduled retries
+   */
+  default void retryQueue(final IntSupplier depth) {
+  }
+
+  /**
+   * Records that the circuit of a host has changed state.
+   *
+   * @param host  remote host
+   * @param state new state of the circuit
+   */
+  default void circuitState(final String host, final BackoffStepRecoveryScheduler.CircuitState state) {
+  }
+}
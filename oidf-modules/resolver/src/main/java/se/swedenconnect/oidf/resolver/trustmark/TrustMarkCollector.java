@@ -17,7 +17,6 @@
 package se.swedenconnect.oidf.resolver.trustmark;
 
 import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
 import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKMatcher;
 import com.nimbusds.jose.jwk.JWKSelector;
@@ -33,6 +32,7 @@ import lombok.extern.slf4j.Slf4j;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
+import se.swedenconnect.oidf.resolver.chain.SignatureVerificationCache;
 import se.swedenconnect.oidf.resolver.tree.ResolverTrustChain;
 
 import java.security.Key;
@@ -66,6 +66,19 @@ public class TrustMarkCollector {
    * @return list of valid trust mark entries
    */
   public static List<TrustMarkEntry> collectSubjectTrustMarks(final ResolverTrustChain chain) {
+    return collectSubjectTrustMarks(chain, SignatureVerificationCache.DISABLED);
+  }
+
+  /**
+   * Collects and filters trust marks from the given trust chain.
+   *
+   * @param chain             the resolved trust chain including the leaf entity
+   * @param verificationCache to skip trust mark signatures that have already been verified
+   * @return list of valid trust mark entries
+   */
+  public static List<TrustMarkEntry> collectSubjectTrustMarks(
+      final ResolverTrustChain chain,
+      final SignatureVerificationCache verificationCache) {
     final List<EntityStatement> trustChain = chain.getTrustChain().stream().toList();
     final EntityStatement leafStatement = trustChain.getFirst();
     final EntityStatement trustAnchor = trustChain.getLast();
@@ -83,13 +96,9 @@ public class TrustMarkCollector {
             final Map<String, Object> trustMarkOwner = (Map<String, Object>) trustMarkOwners.get(key);
             try {
               final JWKSet parsed = JWKSet.parse((Map<String, Object>) trustMarkOwner.get("jwks"));
-              tm.getTrustMark()
-                  .verify(new DefaultJWSVerifierFactory()
-                      .createJWSVerifier(
-                          tm.getTrustMark().getHeader(),
-                          selectKey(tm.getTrustMark(), parsed)
-                      )
-                  );
+              if (!verificationCache.verify(tm.getTrustMark(), selectJwk(tm.getTrustMark(), parsed))) {
+                throw new IllegalArgumentException("Invalid signature of trust mark %s".formatted(key));
+              }
             } catch (java.text.ParseException | JOSEException e) {
               throw new RuntimeException(e);
             }
@@ -186,21 +195,24 @@ public class TrustMarkCollector {
   }
 
   protected static Key selectKey(final SignedJWT jwt, final JWKSet jwks) throws JOSEException {
+    final JWK jwk = selectJwk(jwt, jwks);
+    return switch (jwk.getKeyType().getValue()) {
+      case "EC" -> jwk.toECKey().toKeyPair().getPublic();
+      case "RSA" -> jwk.toRSAKey().toKeyPair().getPublic();
+      case null, default -> throw new IllegalArgumentException("Unsupported key type");
+    };
+  }
+
+  private static JWK selectJwk(final SignedJWT jwt, final JWKSet jwks) {
     final JWKSelector selector = new JWKSelector(new JWKMatcher.Builder()
         .keyID(jwt.getHeader().getKeyID())
         .build());
 
-    final JWK jwk = selector
+    return selector
         .select(jwks)
         .stream()
         .findFirst()
         .orElseThrow(() -> new IllegalArgumentException("Unable to resolve key for JWT with kid:'%s' "
             .formatted(jwt.getHeader().getKeyID())));
-
-    return switch (jwk.getKeyType().getValue()) {
-      case "EC" -> jwk.toECKey().toKeyPair().getPublic();
-      case "RSA" -> jwk.toRSAKey().toKeyPair().getPublic();
-      case null, default -> throw new IllegalArgumentException("Unsupported key type");
-    };
   }
 }
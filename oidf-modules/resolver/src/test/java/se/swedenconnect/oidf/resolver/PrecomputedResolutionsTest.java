@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver;
+
+import com.nimbusds.openid.connect.sdk.federation.policy.operations.DefaultPolicyOperationCombinationValidator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.IndexedInMemoryCache;
+import se.swedenconnect.oidf.common.entity.tree.Tree;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.resolver.chain.ChainValidator;
+import se.swedenconnect.oidf.resolver.chain.SignatureVerificationCache;
+import se.swedenconnect.oidf.resolver.metadata.MetadataProcessor;
+import se.swedenconnect.oidf.resolver.metadata.OIDFPolicyOperationFactory;
+import se.swedenconnect.oidf.resolver.tree.EntityStatementTree;
+import se.swedenconnect.oidf.resolver.tree.TestFederation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class PrecomputedResolutionsTest {
+
+  private static final String TA = "https://ta.example.com";
+  private static final String IM = "https://im.example.com";
+  private static final String LEAF = "https://im.example.com/leaf";
+
+  private final AtomicInteger validations = new AtomicInteger();
+  private final IndexedInMemoryCache cache = new IndexedInMemoryCache();
+  private final EntityStatementTree tree = new EntityStatementTree(new Tree<>(this.cache));
+  private final PrecomputedResolutions precomputed = new PrecomputedResolutions();
+  private final Executor workers = Executors.newFixedThreadPool(2);
+
+  @Test
+  void resolveIsAnsweredFromPrecomputedResponses() {
+    final CacheSnapshot<ScrapedEntity> snapshot = this.load();
+    final ValidatingResolver resolver = this.resolver();
+
+    Assertions.assertEquals(3, resolver.precompute(snapshot, this.workers));
+    Assertions.assertEquals(3, this.validations.get());
+    Assertions.assertEquals(snapshot.getVersion(), this.precomputed.getVersion());
+
+    final Map<Integer, Map<String, String>> explanation = resolver.explain(new ResolveRequest(LEAF, TA, null, true));
+    Assertions.assertEquals(Map.of(), explanation);
+    Assertions.assertEquals(3, this.validations.get(), "Precomputed response should be used");
+
+    Assertions.assertFalse(resolver.explain(new ResolveRequest(LEAF, "https://other.example.com", null, true))
+        .isEmpty(), "Other trust anchors are resolved on request");
+  }
+
+  @Test
+  void requestsWithEntityTypeAreResolvedOnRequest() {
+    final CacheSnapshot<ScrapedEntity> snapshot = this.load();
+    final ValidatingResolver resolver = this.resolver();
+    resolver.precompute(snapshot, this.workers);
+
+    final Map<Integer, Map<String, String>> explanation =
+        resolver.explain(new ResolveRequest(LEAF, TA, "openid_provider", true));
+
+    Assertions.assertFalse(explanation.isEmpty(), "Leaf without openid_provider metadata should not be found");
+    Assertions.assertEquals(3, this.validations.get(), "Precomputed response should not be used");
+  }
+
+  @Test
+  void responsesOfOtherVersionsAreNotUsed() {
+    final CacheSnapshot<ScrapedEntity> snapshot = this.load();
+    final ValidatingResolver resolver = this.resolver();
+    resolver.precompute(snapshot, this.workers);
+    this.precomputed.publish(snapshot.getVersion() - 1, Map.of());
+    Assertions.assertEquals(snapshot.getVersion(), this.precomputed.getVersion(), "Older tables are ignored");
+
+    this.precomputed.publish(snapshot.getVersion() + 1, Map.of());
+    resolver.explain(new ResolveRequest(LEAF, TA, null, true));
+    Assertions.assertEquals(4, this.validations.get());
+  }
+
+  private CacheSnapshot<ScrapedEntity> load() {
+    final CacheSnapshot<ScrapedEntity> snapshot = new TestFederation()
+        .entity(TA)
+        .entity(IM, TA)
+        .entity(LEAF, IM)
+        .entity(IM + "/other", IM)
+        .load(this.cache, TA);
+    this.tree.indexCurrentSnapshot();
+    return snapshot;
+  }
+
+  private ValidatingResolver resolver() {
+    final ResolverProperties properties = ResolverProperties.builder()
+        .trustAnchor(TA)
+        .entityIdentifier("https://resolver.example.com")
+        .build();
+    final ChainValidator validator = new ChainValidator(List.of(chain -> {
+      this.validations.incrementAndGet();
+      return List.of();
+    }));
+    return new ValidatingResolver(properties, validator, this.tree,
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator()),
+        null, SignatureVerificationCache.DISABLED, this.precomputed);
+  }
+}
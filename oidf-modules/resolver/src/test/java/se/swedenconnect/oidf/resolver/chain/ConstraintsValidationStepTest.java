@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.chain;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import net.minidev.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.tree.constraints.CompiledConstraints;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ParsedStatement;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+class ConstraintsValidationStepTest {
+
+  private static final String TA = "https://ta.example.com";
+  private static final String IM = "https://im.example.com";
+  private static final String LEAF = "https://leaf.example.com";
+
+  private static ECKey key;
+
+  private final ConstraintsValidationStep step = new ConstraintsValidationStep();
+
+  @BeforeAll
+  static void generateKey() throws Exception {
+    key = new ECKeyGenerator(Curve.P_256).keyID("key").generate();
+  }
+
+  @Test
+  void constraintsOfStatementsAreEnforced() throws Exception {
+    final List<EntityStatement> chain = List.of(
+        statement(LEAF, LEAF, null),
+        statement(IM, LEAF, null),
+        statement(TA, IM, new JSONObject(Map.of("max_path_length", 0L))),
+        statement(TA, TA, null));
+
+    Assertions.assertThrows(RuntimeException.class, () -> this.step.validate(chain));
+    Assertions.assertThrows(RuntimeException.class,
+        () -> this.step.validateParsed(chain.stream().map(ParsedStatement::of).toList()));
+  }
+
+  @Test
+  void parsedStatementsAreValidatedWithTheirCompiledConstraints() throws Exception {
+    final List<EntityStatement> chain = List.of(
+        statement(LEAF, LEAF, null),
+        statement(IM, LEAF, null),
+        statement(TA, IM, null),
+        statement(TA, TA, null));
+    final ParsedStatement parsed = ParsedStatement.of(chain.get(2));
+    final ParsedStatement constrained = new ParsedStatement(parsed.statement(), parsed.subject(), parsed.issuer(),
+        parsed.expiration(), parsed.jwks(), parsed.constraints(),
+        CompiledConstraints.compile(Map.of("max_path_length", 0L)), parsed.metadataPolicy(), parsed.trustMarks());
+
+    Assertions.assertTrue(this.step.validate(chain).isEmpty());
+    Assertions.assertThrows(RuntimeException.class, () -> this.step.validateParsed(List.of(
+        ParsedStatement.of(chain.get(0)),
+        ParsedStatement.of(chain.get(1)),
+        constrained,
+        ParsedStatement.of(chain.get(3)))));
+  }
+
+  private static EntityStatement statement(final String issuer, final String subject, final JSONObject constraints)
+      throws Exception {
+    final JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+        .issuer(issuer)
+        .subject(subject)
+        .issueTime(Date.from(Instant.now()))
+        .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+        .claim("jwks", new JSONObject(new JWKSet(key.toPublicJWK()).toJSONObject()));
+    if (issuer.equals(subject)) {
+      claims.claim("metadata", new JSONObject(Map.of("federation_entity", new JSONObject())));
+    }
+    if (constraints != null) {
+      claims.claim("constraints", constraints);
+    }
+    final SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256)
+        .type(new JOSEObjectType("entity-statement+jwt"))
+        .keyID(key.getKeyID())
+        .build(), claims.build());
+    jwt.sign(new ECDSASigner(key));
+    return EntityStatement.parse(jwt.serialize());
+  }
+}
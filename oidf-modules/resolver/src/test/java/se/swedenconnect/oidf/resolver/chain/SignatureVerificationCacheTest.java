@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.chain;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import net.minidev.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+
+class SignatureVerificationCacheTest {
+
+  private static final String ENTITY = "https://leaf.example.com";
+
+  @Test
+  void verifiedStatementIsNotVerifiedAgainWithinVersion() throws Exception {
+    final ECKey key = new ECKeyGenerator(Curve.P_256).keyID("leaf").generate();
+    final EntityStatement statement = selfSigned(key, key);
+    final SignatureVerificationCache cache = new SignatureVerificationCache();
+    cache.scope(1);
+
+    Assertions.assertEquals(key.computeThumbprint(), cache.verifySelfStatement(statement));
+    Assertions.assertEquals(0, cache.getHits());
+    Assertions.assertEquals(key.computeThumbprint(), cache.verifySelfStatement(statement));
+    Assertions.assertEquals(key.computeThumbprint(), cache.verify(statement, new JWKSet(key.toPublicJWK())));
+    Assertions.assertEquals(2, cache.getHits());
+    Assertions.assertEquals(1, cache.size());
+
+    cache.scope(0);
+    Assertions.assertEquals(1, cache.size(), "Older versions must not reset the cache");
+    cache.scope(2);
+    Assertions.assertEquals(0, cache.size());
+  }
+
+  @Test
+  void invalidSignatureIsNotRemembered() throws Exception {
+    final ECKey key = new ECKeyGenerator(Curve.P_256).keyID("leaf").generate();
+    final ECKey other = new ECKeyGenerator(Curve.P_256).keyID("leaf").generate();
+    final EntityStatement statement = selfSigned(other, key);
+    final SignatureVerificationCache cache = new SignatureVerificationCache();
+
+    Assertions.assertThrows(BadJOSEException.class, () -> cache.verifySelfStatement(statement));
+    Assertions.assertThrows(BadJOSEException.class, () -> cache.verifySelfStatement(statement));
+    Assertions.assertEquals(0, cache.size());
+    Assertions.assertEquals(0, cache.getHits());
+  }
+
+  @Test
+  void keyIsPartOfTheCacheKey() throws Exception {
+    final ECKey key = new ECKeyGenerator(Curve.P_256).keyID("leaf").generate();
+    final ECKey other = new ECKeyGenerator(Curve.P_256).keyID("leaf").generate();
+    final SignedJWT jwt = signed(key);
+    final SignatureVerificationCache cache = new SignatureVerificationCache();
+
+    Assertions.assertTrue(cache.verify(jwt, key.toPublicJWK()));
+    Assertions.assertTrue(cache.verify(jwt, key.toPublicJWK()));
+    Assertions.assertFalse(cache.verify(jwt, other.toPublicJWK()));
+    Assertions.assertEquals(1, cache.getHits());
+    Assertions.assertEquals(1, cache.size());
+  }
+
+  @Test
+  void disabledCacheVerifiesEveryTime() throws Exception {
+    final ECKey key = new ECKeyGenerator(Curve.P_256).keyID("leaf").generate();
+    final EntityStatement statement = selfSigned(key, key);
+    final SignatureVerificationCache cache = new SignatureVerificationCache(0);
+
+    cache.verifySelfStatement(statement);
+    cache.verifySelfStatement(statement);
+    Assertions.assertEquals(0, cache.getHits());
+    Assertions.assertEquals(0, cache.size());
+  }
+
+  private static EntityStatement selfSigned(final ECKey signingKey, final ECKey publishedKey) throws Exception {
+    final JWTClaimsSet claims = new JWTClaimsSet.Builder()
+        .issuer(ENTITY)
+        .subject(ENTITY)
+        .issueTime(Date.from(Instant.now()))
+        .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+        .claim("jwks", new JSONObject(new JWKSet(publishedKey.toPublicJWK()).toJSONObject()))
+        .claim("metadata", new JSONObject(Map.of("federation_entity", new JSONObject())))
+        .build();
+    final SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256)
+        .type(new JOSEObjectType("entity-statement+jwt"))
+        .keyID(signingKey.getKeyID())
+        .build(), claims);
+    jwt.sign(new ECDSASigner(signingKey));
+    return EntityStatement.parse(jwt.serialize());
+  }
+
+  private static SignedJWT signed(final ECKey key) throws Exception {
+    final SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256).keyID(key.getKeyID()).build(),
+        new JWTClaimsSet.Builder().issuer(ENTITY).subject(ENTITY).build());
+    jwt.sign(new ECDSASigner(key));
+    return jwt;
+  }
+}
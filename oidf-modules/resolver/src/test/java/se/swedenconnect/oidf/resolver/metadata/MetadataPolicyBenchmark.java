@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.metadata;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import com.nimbusds.openid.connect.sdk.federation.policy.operations.DefaultPolicyOperationCombinationValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast metadata policies are applied to {@code leaves} relying parties below one intermediate, where
+ * both the intermediate and the trust anchor issue policies including a {@code regexp} operation.
+ * <p>
+ * {@link #cached()} reuses the combined policy, {@link #uncached()} parses and combines the policies of every chain.
+ * Run with {@code main} from the test classpath, the gc profiler reports allocation per chain
+ * ({@code gc.alloc.rate.norm}).
+ *
+ * @author Felix Hellman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataPolicyBenchmark {
+
+  @Param({"100"})
+  public int leaves;
+
+  private final List<List<EntityStatement>> chains = new ArrayList<>();
+  private MetadataProcessor cachedProcessor;
+  private MetadataProcessor uncachedProcessor;
+  private int next;
+
+  /**
+   * Creates the chains and processors.
+   */
+  @Setup
+  public void setup() {
+    final PolicyChainFactory factory = new PolicyChainFactory();
+    for (int i = 0; i < this.leaves; i++) {
+      final String leaf = "https://rp%d.example.com".formatted(i);
+      this.chains.add(factory.chain(leaf, leaf));
+    }
+    this.cachedProcessor =
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator());
+    this.uncachedProcessor =
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator(), 0);
+  }
+
+  /**
+   * @return metadata processed with a cached combined policy
+   */
+  @Benchmark
+  public Object cached() {
+    return this.cachedProcessor.processMetadata(this.nextChain());
+  }
+
+  /**
+   * @return metadata processed after parsing and combining every policy of the chain
+   */
+  @Benchmark
+  public Object uncached() {
+    return this.uncachedProcessor.processMetadata(this.nextChain());
+  }
+
+  private List<EntityStatement> nextChain() {
+    final List<EntityStatement> chain = this.chains.get(this.next);
+    this.next = (this.next + 1) % this.chains.size();
+    return chain;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args ignored
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(MetadataPolicyBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
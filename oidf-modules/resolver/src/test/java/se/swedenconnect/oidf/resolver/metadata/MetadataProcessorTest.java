@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.metadata;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import com.nimbusds.openid.connect.sdk.federation.policy.operations.DefaultPolicyOperationCombinationValidator;
+import net.minidev.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class MetadataProcessorTest {
+
+  private final PolicyChainFactory chains = new PolicyChainFactory();
+
+  @Test
+  void combinedPolicyIsSharedByLeavesWithSamePolicies() {
+    final MetadataProcessor processor =
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator());
+
+    final JSONObject first = processor.processMetadata(
+        this.chains.chain("https://rp1.example.com", "https://rp1.example.com"));
+    final JSONObject second = processor.processMetadata(
+        this.chains.chain("https://rp2.example.com", "https://rp2.example.com"));
+
+    Assertions.assertEquals(1, processor.getCachedPolicies());
+    final Map<String, Object> relyingParty = (Map<String, Object>) first.get("openid_relying_party");
+    Assertions.assertEquals(List.of("authorization_code", "client_credentials"), relyingParty.get("grant_types"));
+    Assertions.assertEquals("https://rp2.example.com",
+        ((Map<String, Object>) second.get("openid_relying_party")).get("client_uri"));
+  }
+
+  @Test
+  void regexpIsAppliedFromCachedPolicy() {
+    final MetadataProcessor processor =
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator());
+    processor.processMetadata(this.chains.chain("https://rp1.example.com", "https://rp1.example.com"));
+
+    final List<EntityStatement> violating = this.chains.chain("https://rp2.example.com", "http://rp2.example.org");
+    Assertions.assertThrows(IllegalArgumentException.class, () -> processor.processMetadata(violating));
+    Assertions.assertEquals(1, processor.getCachedPolicies());
+  }
+
+  @Test
+  void uncachedProcessorGivesSameResult() {
+    final MetadataProcessor cached =
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator());
+    final MetadataProcessor uncached =
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator(), 0);
+    final List<EntityStatement> chain = this.chains.chain("https://rp1.example.com", "https://rp1.example.com");
+
+    Assertions.assertEquals(uncached.processMetadata(chain), cached.processMetadata(chain));
+    Assertions.assertEquals(cached.processMetadata(chain), cached.processMetadata(chain));
+    Assertions.assertEquals(0, uncached.getCachedPolicies());
+  }
+}
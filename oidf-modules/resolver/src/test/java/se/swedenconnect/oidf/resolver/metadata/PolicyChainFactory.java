@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.metadata;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates trust chains where the intermediate and the trust anchor apply metadata policies to relying parties.
+ *
+ * @author Felix Hellman
+ */
+public class PolicyChainFactory {
+
+  private static final String TA = "https://ta.example.com";
+  private static final String IM = "https://im.example.com";
+
+  private final ECKey key;
+
+  /**
+   * Constructor.
+   */
+  public PolicyChainFactory() {
+    try {
+      this.key = new ECKeyGenerator(Curve.P_256).keyID("policy").generate();
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param leaf          entity identifier of the leaf
+   * @param clientUri     of the leaf
+   * @return chain of leaf configuration, intermediate statement about the leaf, trust anchor statement about the
+   * intermediate and trust anchor configuration
+   */
+  public List<EntityStatement> chain(final String leaf, final String clientUri) {
+    final Map<String, Object> leafMetadata = Map.of("openid_relying_party", Map.of(
+        "redirect_uris", List.of(clientUri + "/callback"),
+        "client_uri", clientUri,
+        "grant_types", List.of("authorization_code", "client_credentials", "implicit"),
+        "application_type", "web"));
+    final Map<String, Object> intermediatePolicy = Map.of("openid_relying_party", Map.of(
+        "grant_types", Map.of("subset_of", List.of("authorization_code", "client_credentials")),
+        "client_uri", Map.of("regexp", List.of("^https://[a-z0-9.]+\\.example\\.com$"))));
+    final Map<String, Object> trustAnchorPolicy = Map.of("openid_relying_party", Map.of(
+        "application_type", Map.of("one_of", List.of("web", "native")),
+        "grant_types", Map.of("subset_of", List.of("authorization_code", "client_credentials", "refresh_token"))));
+    final List<EntityStatement> chain = new ArrayList<>();
+    chain.add(this.statement(leaf, leaf, Map.of("metadata", leafMetadata)));
+    chain.add(this.statement(IM, leaf, Map.of("metadata_policy", intermediatePolicy)));
+    chain.add(this.statement(TA, IM, Map.of("metadata_policy", trustAnchorPolicy)));
+    chain.add(this.statement(TA, TA, Map.of("metadata", Map.of("federation_entity", Map.of()))));
+    return chain;
+  }
+
+  private EntityStatement statement(final String issuer, final String subject, final Map<String, Object> claims) {
+    try {
+      final JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder()
+          .issuer(issuer)
+          .subject(subject)
+          .issueTime(new Date())
+          .expirationTime(Date.from(Instant.now().plus(1, ChronoUnit.DAYS)))
+          .claim("jwks", new JWKSet(this.key.toPublicJWK()).toJSONObject());
+      claims.forEach(builder::claim);
+      final SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256)
+          .type(new JOSEObjectType("entity-statement+jwt"))
+          .keyID(this.key.getKeyID())
+          .build(), builder.build());
+      jwt.sign(new ECDSASigner(this.key));
+      return EntityStatement.parse(jwt.serialize());
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.IndexedInMemoryCache;
+import se.swedenconnect.oidf.common.entity.tree.Tree;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.resolver.DiscoveryRequest;
+
+import java.time.Duration;
+import java.util.List;
+
+class DiscoveryIndexTest {
+
+  private static final String TA = "https://ta.example.com";
+  private static final String IM = "https://im.example.com";
+  private static final String OP = "https://op.example.com";
+  private static final String RP1 = "https://rp1.example.com";
+  private static final String RP2 = "https://rp2.example.com";
+  private static final String RP3 = "https://rp3.example.com";
+  private static final String CERTIFIED = "https://tm.example.com/certified";
+
+  private final IndexedInMemoryCache cache = new IndexedInMemoryCache();
+  private final EntityStatementTree tree = new EntityStatementTree(new Tree<>(this.cache));
+
+  @BeforeEach
+  void setUp() {
+    new TestFederation()
+        .entity(TA)
+        .entity(IM, TA)
+        .entity(OP, IM)
+        .entity(RP2, IM)
+        .entity(RP1, TA)
+        .metadata(OP, "openid_provider")
+        .metadata(RP1, "openid_relying_party")
+        .metadata(RP2, "openid_relying_party")
+        .trustMark(OP, CERTIFIED)
+        .trustMark(RP2, CERTIFIED)
+        .load(this.cache, TA);
+  }
+
+  @Test
+  void allEntitiesAreReturnedSorted() {
+    Assertions.assertEquals(List.of(IM, OP, RP1, RP2, TA),
+        this.tree.discovery(new DiscoveryRequest(TA, null, null)));
+  }
+
+  @Test
+  void entitiesWrittenToPublishedVersionAreDiscovered() throws Exception {
+    Assertions.assertEquals(List.of(IM, OP, RP1, RP2, TA),
+        this.tree.discovery(new DiscoveryRequest(TA, null, null)));
+    try (final CacheSnapshot<ScrapedEntity> snapshot = this.cache.snapshot()) {
+      new TestFederation()
+          .entity(TA)
+          .entity(RP3, TA)
+          .metadata(RP3, "openid_relying_party")
+          .write(snapshot);
+    }
+    //The index of the earlier revision is served while the index of the new revision is created
+    Assertions.assertEquals(List.of(IM, OP, RP1, RP2, TA),
+        this.tree.discovery(new DiscoveryRequest(TA, null, null)));
+    final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (this.tree.discovery(new DiscoveryRequest(TA, null, null)).size() < 6 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    Assertions.assertEquals(List.of(IM, OP, RP1, RP2, RP3, TA),
+        this.tree.discovery(new DiscoveryRequest(TA, null, null)));
+    Assertions.assertEquals(List.of(RP1, RP2, RP3),
+        this.tree.discovery(new DiscoveryRequest(TA, List.of("openid_relying_party"), null)));
+  }
+
+  @Test
+  void typesAreMatchedByUnion() {
+    Assertions.assertEquals(List.of(OP, RP1, RP2),
+        this.tree.discovery(new DiscoveryRequest(TA, List.of("openid_relying_party", "openid_provider"), null)));
+  }
+
+  @Test
+  void typesAndTrustMarksAreIntersected() {
+    Assertions.assertEquals(List.of(RP2),
+        this.tree.discovery(new DiscoveryRequest(TA, List.of("openid_relying_party"), List.of(CERTIFIED))));
+    Assertions.assertEquals(List.of(),
+        this.tree.discovery(new DiscoveryRequest(TA, List.of("unknown"), List.of(CERTIFIED))));
+  }
+
+  @Test
+  void serializedResponseIsCachedPerNormalizedFilter() {
+    final String first = this.tree.serializedDiscovery(
+        new DiscoveryRequest(TA, List.of("openid_relying_party", "openid_provider"), null));
+    final String second = this.tree.serializedDiscovery(
+        new DiscoveryRequest(TA, List.of("openid_provider", "openid_relying_party"), List.of()));
+    Assertions.assertSame(first, second);
+    Assertions.assertEquals(
+        "[\"https://op.example.com\",\"https://rp1.example.com\",\"https://rp2.example.com\"]", first);
+  }
+
+  @Test
+  void missingTrustAnchorIsRejected() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> this.tree.discovery(new DiscoveryRequest(null, null, null)));
+  }
+}
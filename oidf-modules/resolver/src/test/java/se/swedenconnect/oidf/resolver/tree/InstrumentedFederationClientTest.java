@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.FetchRequest;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.SubordinateListingRequest;
+import se.swedenconnect.oidf.resolver.tree.resolution.TreeLoaderMetrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class InstrumentedFederationClientTest {
+
+  @Test
+  void requestsAreRecordedByHostAndStep() {
+    final FederationClient delegate = Mockito.mock(FederationClient.class);
+    Mockito.when(delegate.subordinateListing(Mockito.any())).thenReturn(List.of());
+    Mockito.when(delegate.fetch(Mockito.any())).thenThrow(new IllegalStateException("unavailable"));
+    final RecordingMetrics metrics = new RecordingMetrics();
+    final InstrumentedFederationClient client = new InstrumentedFederationClient(delegate, metrics);
+    final Map<String, Object> metadata = Map.of(
+        "federation_list_endpoint", "https://im.example.com:8443/list",
+        "federation_fetch_endpoint", "https://im.example.com:8443/fetch");
+
+    client.subordinateListing(new FederationRequest<>(SubordinateListingRequest.requestAll(), metadata));
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> client.fetch(new FederationRequest<>(new FetchRequest("https://leaf.example.com"), metadata)));
+
+    Assertions.assertEquals(List.of("im.example.com:true", "im.example.com:false"), metrics.requests);
+    Assertions.assertEquals(List.of("SUBORDINATE_LISTING:true", "FETCH_SUBORDINATE_STATEMENT:false"), metrics.steps);
+  }
+
+  @Test
+  void unknownHost() {
+    Assertions.assertEquals(InstrumentedFederationClient.UNKNOWN_HOST, InstrumentedFederationClient.host(null));
+    Assertions.assertEquals(InstrumentedFederationClient.UNKNOWN_HOST, InstrumentedFederationClient.host("a b"));
+  }
+
+  private static class RecordingMetrics implements TreeLoaderMetrics {
+    private final List<String> requests = new ArrayList<>();
+    private final List<String> steps = new ArrayList<>();
+
+    @Override
+    public void step(final EntityStatementTreeLoader.StepName stepName, final Duration duration,
+        final boolean success) {
+      this.steps.add(stepName + ":" + success);
+    }
+
+    @Override
+    public void request(final String host, final Duration duration, final boolean success) {
+      this.requests.add(host + ":" + success);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
+import se.swedenconnect.oidf.common.entity.tree.IndexedInMemoryCache;
+import se.swedenconnect.oidf.common.entity.tree.Tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast trust chains are built for resolve requests on a federation with one trust anchor,
+ * {@code intermediates} intermediates and {@code leaves} leaves per intermediate.
+ * <p>
+ * {@link #trustChain()} uses the statements parsed at scrape time, {@link #trustChainReparsed()} additionally parses
+ * every subordinate statement of the chain the way each resolve request used to. Run with {@code main} from the test
+ * classpath, the gc profiler reports allocation per resolve ({@code gc.alloc.rate.norm}).
+ *
+ * @author Felix Hellman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveBenchmark {
+
+  private static final String TA = "https://ta.example.com";
+
+  @Param({"10"})
+  public int intermediates;
+
+  @Param({"100"})
+  public int leaves;
+
+  private EntityStatementTree tree;
+  private final List<ResolveRequest> requests = new ArrayList<>();
+  private int next;
+
+  /**
+   * Builds and publishes the federation.
+   */
+  @Setup
+  public void setup() {
+    final IndexedInMemoryCache cache = new IndexedInMemoryCache();
+    this.tree = new EntityStatementTree(new Tree<>(cache));
+    final TestFederation federation = new TestFederation().entity(TA);
+    for (int i = 0; i < this.intermediates; i++) {
+      final String intermediate = "https://im%d.example.com".formatted(i);
+      federation.entity(intermediate, TA);
+      for (int j = 0; j < this.leaves; j++) {
+        final String leaf = "%s/leaf%d".formatted(intermediate, j);
+        federation.entity(leaf, intermediate).metadata(leaf, "openid_relying_party");
+        this.requests.add(new ResolveRequest(leaf, TA, null, false));
+      }
+    }
+    federation.load(cache, TA);
+    this.tree.indexCurrentSnapshot();
+  }
+
+  /**
+   * @return trust chain built from statements parsed at scrape time
+   */
+  @Benchmark
+  public Object trustChain() {
+    return this.tree.getTrustChainViaAuthorityHints(this.nextRequest()).orElseThrow();
+  }
+
+  /**
+   * @return trust chain where every subordinate statement is parsed again
+   * @throws Exception if a statement can not be parsed
+   */
+  @Benchmark
+  public Object trustChainReparsed() throws Exception {
+    final List<EntityStatement> chain = this.tree.getTrustChainViaAuthorityHints(this.nextRequest()).orElseThrow()
+        .getTrustChain().stream().toList();
+    final List<EntityStatement> parsed = new ArrayList<>(chain);
+    for (int i = 1; i < chain.size() - 1; i++) {
+      parsed.set(i, EntityStatement.parse(chain.get(i).getSignedStatement()));
+    }
+    return parsed;
+  }
+
+  private ResolveRequest nextRequest() {
+    final ResolveRequest request = this.requests.get(this.next);
+    this.next = (this.next + 1) % this.requests.size();
+    return request;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args ignored
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(ResolveBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
+import se.swedenconnect.oidf.common.entity.tree.IndexedInMemoryCache;
+import se.swedenconnect.oidf.common.entity.tree.Tree;
+
+import java.util.List;
+
+class SubjectIndexTest {
+
+  private static final String TA = "https://ta.example.com";
+  private static final String IM1 = "https://im1.example.com";
+  private static final String IM2 = "https://im2.example.com";
+  private static final String IM3 = "https://im3.example.com";
+  private static final String LEAF = "https://leaf.example.com";
+
+  private final IndexedInMemoryCache cache = new IndexedInMemoryCache();
+  private final EntityStatementTree tree = new EntityStatementTree(new Tree<>(this.cache));
+
+  @Test
+  void shortestPathIsSelected() {
+    new TestFederation()
+        .entity(TA)
+        .entity(IM2, TA)
+        .entity(IM3, IM2)
+        .entity(IM1, TA)
+        .entity(LEAF, IM3, IM1)
+        .load(this.cache, TA);
+
+    final ResolverTrustChain chain = this.tree.getTrustChain(new ResolveRequest(LEAF, TA, null, false));
+
+    Assertions.assertEquals(List.of(
+        LEAF + "|" + LEAF,
+        IM1 + "|" + LEAF,
+        TA + "|" + IM1,
+        TA + "|" + TA
+    ), describe(chain));
+  }
+
+  @Test
+  void authorityHintsMustBeFollowed() {
+    new TestFederation()
+        .entity(TA)
+        .entity(IM1, TA)
+        .entity(IM2, IM1)
+        .entity(LEAF, IM2)
+        .load(this.cache, TA);
+
+    final ResolverTrustChain chain = this.tree
+        .getTrustChainViaAuthorityHints(new ResolveRequest(LEAF, TA, null, false))
+        .orElseThrow();
+
+    Assertions.assertEquals(5, chain.getTrustChain().size());
+    final SubjectIndex index = this.tree.getSubjectIndex(this.cache.snapshot());
+    Assertions.assertEquals(List.of(IM1), index.getSuperiors(IM2));
+    Assertions.assertEquals(4, index.size());
+    Assertions.assertEquals(3, index.getIntermediateCount());
+    Assertions.assertEquals(3, index.getMaxDepth());
+  }
+
+  @Test
+  void subordinateStatementsAreParsedOnce() {
+    new TestFederation()
+        .entity(TA)
+        .entity(IM1, TA)
+        .entity(LEAF, IM1)
+        .load(this.cache, TA);
+
+    final ResolveRequest request = new ResolveRequest(LEAF, TA, null, false);
+    final List<EntityStatement> first = this.tree.getTrustChain(request).getTrustChain().stream().toList();
+    final List<EntityStatement> second = this.tree.getTrustChain(request).getTrustChain().stream().toList();
+
+    Assertions.assertEquals(first.size(), second.size());
+    for (int i = 0; i < first.size(); i++) {
+      Assertions.assertSame(first.get(i), second.get(i));
+    }
+  }
+
+  @Test
+  void unknownSubjectHasNoPath() {
+    new TestFederation()
+        .entity(TA)
+        .entity(LEAF, TA)
+        .load(this.cache, TA);
+
+    Assertions.assertTrue(this.tree
+        .getTrustChainViaAuthorityHints(new ResolveRequest("https://unknown.example.com", TA, null, false))
+        .isEmpty());
+  }
+
+  @Test
+  void indexedPathMustMatchRequestedType() {
+    new TestFederation()
+        .entity(TA)
+        .entity(LEAF, TA)
+        .metadata(LEAF, "openid_relying_party")
+        .load(this.cache, TA);
+
+    Assertions.assertEquals(List.of(LEAF + "|" + LEAF, TA + "|" + LEAF, TA + "|" + TA),
+        describe(this.tree.getTrustChain(new ResolveRequest(LEAF, TA, "openid_relying_party", false))));
+    Assertions.assertTrue(this.tree.getTrustChain(new ResolveRequest(LEAF, TA, "openid_provider", false))
+        .getTrustChain().isEmpty());
+  }
+
+  @Test
+  void unknownSubjectIsNotFound() {
+    new TestFederation()
+        .entity(TA)
+        .entity(LEAF, TA)
+        .load(this.cache, TA);
+
+    Assertions.assertTrue(this.tree.getTrustChain(new ResolveRequest("https://unknown.example.com", TA, null, false))
+        .getTrustChain().isEmpty());
+  }
+
+  @Test
+  void chainEndsAtRequestedTrustAnchor() {
+    new TestFederation()
+        .entity(TA)
+        .entity(IM1, TA)
+        .entity(LEAF, IM1)
+        .load(this.cache, TA);
+
+    Assertions.assertEquals(List.of(LEAF + "|" + LEAF, IM1 + "|" + LEAF, IM1 + "|" + IM1),
+        describe(this.tree.getTrustChain(new ResolveRequest(LEAF, IM1, null, false))));
+  }
+
+  @Test
+  void subjectIsMatchedIgnoringCase() {
+    new TestFederation()
+        .entity(TA)
+        .entity(LEAF, TA)
+        .load(this.cache, TA);
+
+    final ResolverTrustChain chain =
+        this.tree.getTrustChain(new ResolveRequest(LEAF.toUpperCase(), TA, null, false));
+    Assertions.assertEquals(List.of(LEAF + "|" + LEAF, TA + "|" + LEAF, TA + "|" + TA), describe(chain));
+  }
+
+  @Test
+  void trustAnchorResolvesToItself() {
+    new TestFederation()
+        .entity(TA)
+        .entity(LEAF, TA)
+        .load(this.cache, TA);
+
+    final ResolverTrustChain chain = this.tree.getTrustChain(new ResolveRequest(TA, TA, null, false));
+    Assertions.assertEquals(List.of(TA + "|" + TA), describe(chain));
+  }
+
+  private static List<String> describe(final ResolverTrustChain chain) {
+    return chain.getTrustChain().stream()
+        .map(EntityStatement::getClaimsSet)
+        .map(claims -> claims.getIssuer().getValue() + "|" + claims.getSubject().getValue())
+        .toList();
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.IndexedInMemoryCache;
+import se.swedenconnect.oidf.common.entity.tree.Node;
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds small federations in memory for tests.
+ */
+public class TestFederation {
+
+  private static final ECKey KEY;
+
+  static {
+    try {
+      KEY = new ECKeyGenerator(Curve.P_256).keyID("test").generate();
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private final Map<String, List<String>> superiors = new LinkedHashMap<>();
+  private final Map<String, Map<String, Object>> metadata = new HashMap<>();
+  private final Map<String, List<Map<String, Object>>> trustMarks = new HashMap<>();
+
+  /**
+   * @param entityId     to add
+   * @param superiors    authority hints of the entity, empty for the trust anchor
+   * @return this
+   */
+  public TestFederation entity(final String entityId, final String... superiors) {
+    this.superiors.put(entityId, List.of(superiors));
+    return this;
+  }
+
+  /**
+   * @param entityId to add metadata to
+   * @param type     entity type
+   * @return this
+   */
+  public TestFederation metadata(final String entityId, final String type) {
+    this.metadata.computeIfAbsent(entityId, e -> new HashMap<>()).put(type, Map.of());
+    return this;
+  }
+
+  /**
+   * @param entityId      to add trust mark to
+   * @param trustMarkType of the trust mark
+   * @return this
+   */
+  public TestFederation trustMark(final String entityId, final String trustMarkType) {
+    final Map<String, Object> trustMark = Map.of(
+        "id", trustMarkType,
+        "trust_mark", sign(trustMarkType, entityId, List.of(), Map.of()).serialize());
+    this.trustMarks.computeIfAbsent(entityId, e -> new ArrayList<>()).add(trustMark);
+    return this;
+  }
+
+  /**
+   * Loads the federation into a new published version of a cache.
+   *
+   * @param cache to load into
+   * @param root  entity identifier of the trust anchor
+   * @return snapshot of the published version
+   */
+  public CacheSnapshot<ScrapedEntity> load(final IndexedInMemoryCache cache, final String root) {
+    final Map<String, ScrapedEntity> entities = new HashMap<>();
+    this.superiors.keySet().forEach(entityId -> entities.put(entityId, this.createEntity(entityId)));
+    final CacheSnapshot<ScrapedEntity> snapshot =
+        cache.createNewSnapshot(new Node<>(new NodeKey(root)), entities.get(root));
+    entities.forEach((entityId, entity) -> snapshot.setData(new NodeKey(entityId), entity));
+    cache.useNextVersion();
+    return cache.snapshot();
+  }
+
+  /**
+   * Writes every entity of the federation to an existing version, e.g. one that has already been published.
+   *
+   * @param snapshot of the version to write to
+   */
+  public void write(final CacheSnapshot<ScrapedEntity> snapshot) {
+    this.superiors.keySet().forEach(entityId -> snapshot.setData(new NodeKey(entityId), this.createEntity(entityId)));
+  }
+
+  private ScrapedEntity createEntity(final String entityId) {
+    final Map<String, SignedJWT> subordinates = new LinkedHashMap<>();
+    this.superiors.forEach((subordinate, hints) -> {
+      if (hints.contains(entityId)) {
+        subordinates.put(subordinate, sign(entityId, subordinate, List.of(), Map.of()));
+      }
+    });
+    final Map<String, Object> entityMetadata = new HashMap<>(this.metadata.getOrDefault(entityId, Map.of()));
+    entityMetadata.put("federation_entity", subordinates.isEmpty()
+        ? Map.of("organization_name", entityId)
+        : Map.of(
+            "federation_fetch_endpoint", entityId + "/fetch",
+            "federation_list_endpoint", entityId + "/list"));
+    try {
+      return ScrapedEntity.builder()
+          .entityID(new EntityID(entityId))
+          .entityStatement(EntityStatement.parse(sign(entityId, entityId, this.superiors.get(entityId),
+              entityMetadata, this.trustMarks.getOrDefault(entityId, List.of()))))
+          .intermediate(subordinates.isEmpty() ? null : new ScrapedIntermediate(subordinates))
+          .build();
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static SignedJWT sign(
+      final String issuer,
+      final String subject,
+      final List<String> authorityHints,
+      final Map<String, Object> metadata) {
+    return sign(issuer, subject, authorityHints, metadata, List.of());
+  }
+
+  private static SignedJWT sign(
+      final String issuer,
+      final String subject,
+      final List<String> authorityHints,
+      final Map<String, Object> metadata,
+      final List<Map<String, Object>> trustMarks) {
+    try {
+      final JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+          .issuer(issuer)
+          .subject(subject)
+          .issueTime(new Date())
+          .expirationTime(Date.from(Instant.now().plus(1, ChronoUnit.DAYS)))
+          .claim("jwks", new JWKSet(KEY.toPublicJWK()).toJSONObject());
+      if (!authorityHints.isEmpty()) {
+        claims.claim("authority_hints", authorityHints);
+      }
+      if (!metadata.isEmpty()) {
+        claims.claim("metadata", metadata);
+      }
+      if (!trustMarks.isEmpty()) {
+        claims.claim("trust_marks", trustMarks);
+      }
+      final SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256)
+          .type(new JOSEObjectType("entity-statement+jwt"))
+          .keyID(KEY.getKeyID())
+          .build(), claims.build());
+      jwt.sign(new ECDSASigner(KEY));
+      return jwt;
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
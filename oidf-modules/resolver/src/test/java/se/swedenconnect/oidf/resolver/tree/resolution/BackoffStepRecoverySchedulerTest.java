@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree.resolution;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+import se.swedenconnect.oidf.resolver.tree.EntityStatementTreeLoader.StepName;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
+
+class BackoffStepRecoverySchedulerTest {
+
+  private static final NodeKey LEAF = new NodeKey("https://im.example.com/leaf");
+
+  private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+  private final List<String> dropped = new CopyOnWriteArrayList<>();
+  private final List<BackoffStepRecoveryScheduler.CircuitState> transitions = new CopyOnWriteArrayList<>();
+  private final MutableClock clock = new MutableClock();
+
+  private final TreeLoaderMetrics metrics = new TreeLoaderMetrics() {
+    @Override
+    public void retryDropped(final StepName stepName, final String reason) {
+      BackoffStepRecoverySchedulerTest.this.dropped.add(reason);
+    }
+
+    @Override
+    public void circuitState(final String host, final BackoffStepRecoveryScheduler.CircuitState state) {
+      BackoffStepRecoverySchedulerTest.this.transitions.add(state);
+    }
+  };
+
+  @AfterEach
+  void shutdown() {
+    this.executorService.shutdownNow();
+  }
+
+  @Test
+  void delayGrowsExponentiallyUpToMaximum() {
+    final BackoffStepRecoveryScheduler scheduler = this.scheduler(5, 5, delay -> delay);
+    final Duration base = Duration.ofSeconds(60);
+    Assertions.assertEquals(60_000, scheduler.delay(base, 1));
+    Assertions.assertEquals(120_000, scheduler.delay(base, 2));
+    Assertions.assertEquals(240_000, scheduler.delay(base, 3));
+    Assertions.assertEquals(Duration.ofMinutes(30).toMillis(), scheduler.delay(base, 10));
+    Assertions.assertEquals(Duration.ofMinutes(30).toMillis(), scheduler.delay(base, 100));
+  }
+
+  @Test
+  void defaultJitterStaysWithinUpperHalfOfDelay() {
+    for (int i = 0; i < 100; i++) {
+      final long delay = BackoffStepRecoveryScheduler.DEFAULT_JITTER.applyAsLong(1000);
+      Assertions.assertTrue(delay >= 500 && delay <= 1000, "delay %d".formatted(delay));
+    }
+  }
+
+  @Test
+  void failingStepIsRetriedUntilBudgetIsSpent() {
+    final BackoffStepRecoveryScheduler scheduler = this.scheduler(3, 100, delay -> 1);
+    final StepRecoveryStrategy strategy = scheduler.forResolver(this.properties());
+    final AtomicInteger attempts = new AtomicInteger();
+    final Consumer<ErrorContext> step = new Consumer<>() {
+      @Override
+      public void accept(final ErrorContext context) {
+        attempts.incrementAndGet();
+        strategy.handle(error(this, context));
+      }
+    };
+    strategy.handle(error(step, new AtomicIntegerErrorContext()));
+
+    await(() -> this.dropped.contains("budget"));
+    Assertions.assertEquals(3, attempts.get());
+    Assertions.assertEquals(0, scheduler.getQueued());
+  }
+
+  @Test
+  void circuitOpensAndClosesAfterSuccessfulProbe() {
+    final BackoffStepRecoveryScheduler scheduler = this.scheduler(5, 2, delay -> 200);
+    final StepRecoveryStrategy strategy = scheduler.forResolver(this.properties());
+    final AtomicInteger attempts = new AtomicInteger();
+    final Consumer<ErrorContext> step = context -> attempts.incrementAndGet();
+
+    strategy.handle(error(step, new AtomicIntegerErrorContext()));
+    strategy.handle(error(step, new AtomicIntegerErrorContext()));
+    Assertions.assertEquals(BackoffStepRecoveryScheduler.CircuitState.OPEN, scheduler.getCircuitState("im.example.com"));
+    Assertions.assertEquals(List.of("circuit_open"), this.dropped);
+
+    this.clock.advance(BackoffStepRecoveryScheduler.DEFAULT_OPEN_DURATION);
+    Assertions.assertEquals(BackoffStepRecoveryScheduler.CircuitState.HALF_OPEN,
+        scheduler.getCircuitState("im.example.com"));
+
+    await(() -> attempts.get() == 1 && scheduler.getQueued() == 0);
+    Assertions.assertEquals(BackoffStepRecoveryScheduler.CircuitState.CLOSED,
+        scheduler.getCircuitState("im.example.com"));
+    Assertions.assertEquals(List.of(
+        BackoffStepRecoveryScheduler.CircuitState.OPEN,
+        BackoffStepRecoveryScheduler.CircuitState.HALF_OPEN,
+        BackoffStepRecoveryScheduler.CircuitState.CLOSED), this.transitions);
+  }
+
+  @Test
+  void failuresOutsideOfWindowDoNotOpenCircuit() {
+    final BackoffStepRecoveryScheduler scheduler = this.scheduler(5, 2, delay -> 60_000);
+    final StepRecoveryStrategy strategy = scheduler.forResolver(this.properties());
+    strategy.handle(error(context -> {}, new AtomicIntegerErrorContext()));
+    this.clock.advance(BackoffStepRecoveryScheduler.DEFAULT_OPEN_DURATION);
+    strategy.handle(error(context -> {}, new AtomicIntegerErrorContext()));
+    Assertions.assertEquals(BackoffStepRecoveryScheduler.CircuitState.CLOSED,
+        scheduler.getCircuitState("im.example.com"));
+    Assertions.assertTrue(this.dropped.isEmpty());
+  }
+
+  @Test
+  void failuresAreClearedOnReload() {
+    final BackoffStepRecoveryScheduler scheduler = this.scheduler(5, 2, delay -> 60_000);
+    final StepRecoveryStrategy strategy = scheduler.forResolver(this.properties());
+    strategy.handle(error(context -> {}, new AtomicIntegerErrorContext()));
+    strategy.beginReload();
+    strategy.handle(error(context -> {}, new AtomicIntegerErrorContext()));
+    Assertions.assertEquals(BackoffStepRecoveryScheduler.CircuitState.CLOSED,
+        scheduler.getCircuitState("im.example.com"));
+  }
+
+  @Test
+  void pendingRetriesAreDroppedOnReload() {
+    final BackoffStepRecoveryScheduler scheduler = this.scheduler(5, 5, delay -> 100);
+    final StepRecoveryStrategy strategy = scheduler.forResolver(this.properties());
+    final AtomicInteger attempts = new AtomicInteger();
+    strategy.handle(error(context -> attempts.incrementAndGet(), new AtomicIntegerErrorContext()));
+    Assertions.assertEquals(1, scheduler.getQueued());
+    strategy.beginReload();
+
+    await(() -> this.dropped.contains("superseded"));
+    Assertions.assertEquals(0, attempts.get());
+    Assertions.assertEquals(0, scheduler.getQueued());
+  }
+
+  @Test
+  void retriesAreDroppedWhenQueueIsFull() {
+    final BackoffStepRecoveryScheduler scheduler = this.scheduler(5, 100, delay -> 60_000);
+    final StepRecoveryStrategy strategy = scheduler.forResolver(this.properties());
+    for (int i = 0; i < 3; i++) {
+      strategy.handle(error(context -> {}, new AtomicIntegerErrorContext()));
+    }
+    Assertions.assertEquals(2, scheduler.getQueued());
+    Assertions.assertEquals(List.of("queue_full"), this.dropped);
+  }
+
+  private BackoffStepRecoveryScheduler scheduler(
+      final int maxAttempts, final int failureThreshold, final LongUnaryOperator jitter) {
+    return new BackoffStepRecoveryScheduler(this.executorService, maxAttempts, Duration.ofMinutes(30), 2,
+        failureThreshold, BackoffStepRecoveryScheduler.DEFAULT_OPEN_DURATION, this.metrics, this.clock, jitter,
+        Runnable::run);
+  }
+
+  private ResolverProperties properties() {
+    return ResolverProperties.builder()
+        .stepRetryTime(Duration.ofMillis(1))
+        .build();
+  }
+
+  private static StepExecutionError error(final Consumer<ErrorContext> step, final ErrorContext context) {
+    return new StepExecutionError("Failed to fetch %s".formatted(LEAF.getKey()),
+        StepName.FETCH_SUBORDINATE_STATEMENT, LEAF, step, context);
+  }
+
+  private static void await(final BooleanSupplier condition) {
+    final Instant deadline = Instant.now().plusSeconds(5);
+    while (!condition.getAsBoolean()) {
+      Assertions.assertTrue(Instant.now().isBefore(deadline), "Condition not met in time");
+      try {
+        Thread.sleep(5);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static final class MutableClock extends Clock {
+    private volatile Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(final Duration duration) {
+      this.now = this.now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return this.now;
+    }
+  }
+}
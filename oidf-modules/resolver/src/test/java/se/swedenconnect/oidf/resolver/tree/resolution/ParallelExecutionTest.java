@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver.tree.resolution;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ParallelExecutionTest {
+
+  @Test
+  void finalizeRunsAfterNestedSteps() {
+    final ParallelExecution strategy = new ParallelExecution(4, 4, Duration.ofSeconds(10));
+    final ExecutionStrategy execution = strategy.begin();
+    final AtomicInteger steps = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      execution.execute(new NodeKey("https://im%d.example.com".formatted(i)), () -> {
+        for (int j = 0; j < 10; j++) {
+          execution.execute(new NodeKey("https://leaf%d.example.com".formatted(j)), () -> {
+            sleep(5);
+            steps.incrementAndGet();
+          });
+        }
+        steps.incrementAndGet();
+      });
+    }
+    final AtomicInteger completedSteps = new AtomicInteger(-1);
+    execution.finalize(() -> completedSteps.set(steps.get()));
+    Assertions.assertEquals(110, completedSteps.get());
+    Assertions.assertFalse(execution.isCancelled());
+  }
+
+  @Test
+  void concurrentStepsAreLimitedInTotalAndPerHost() {
+    final ParallelExecution strategy = new ParallelExecution(6, 2, Duration.ofSeconds(10));
+    final ExecutionStrategy execution = strategy.begin();
+    final AtomicInteger total = new AtomicInteger();
+    final AtomicInteger maxTotal = new AtomicInteger();
+    final AtomicInteger host = new AtomicInteger();
+    final AtomicInteger maxHost = new AtomicInteger();
+    for (int i = 0; i < 40; i++) {
+      final boolean sameHost = i % 2 == 0;
+      final String entity = sameHost
+          ? "https://shared.example.com/entity%d".formatted(i)
+          : "https://entity%d.example.com".formatted(i);
+      execution.execute(new NodeKey(entity), () -> {
+        maxTotal.accumulateAndGet(total.incrementAndGet(), Math::max);
+        if (sameHost) {
+          maxHost.accumulateAndGet(host.incrementAndGet(), Math::max);
+        }
+        sleep(10);
+        if (sameHost) {
+          host.decrementAndGet();
+        }
+        total.decrementAndGet();
+      });
+    }
+    execution.finalize(() -> {});
+    Assertions.assertTrue(maxTotal.get() <= 6, "max total %d".formatted(maxTotal.get()));
+    Assertions.assertTrue(maxHost.get() <= 2, "max per host %d".formatted(maxHost.get()));
+  }
+
+  @Test
+  void resolutionIsCancelledWhenDeadlinePasses() throws InterruptedException {
+    final ParallelExecution strategy = new ParallelExecution(4, 4, Duration.ofMillis(200));
+    final ExecutionStrategy execution = strategy.begin();
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    execution.execute(new NodeKey("https://slow.example.com"), () -> {
+      try {
+        Thread.sleep(Duration.ofMinutes(1));
+      } catch (final InterruptedException e) {
+        interrupted.countDown();
+      }
+    });
+    final AtomicBoolean hookRun = new AtomicBoolean();
+    execution.finalize(() -> hookRun.set(true));
+    Assertions.assertTrue(execution.isCancelled());
+    Assertions.assertFalse(hookRun.get());
+    Assertions.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+    final AtomicBoolean skipped = new AtomicBoolean(true);
+    execution.execute(new NodeKey("https://late.example.com"), () -> skipped.set(false));
+    Assertions.assertTrue(skipped.get());
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -28,9 +28,8 @@ import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatementClaims
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustAnchorProperties;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.EntityRecord;
 import se.swedenconnect.oidf.common.entity.jwt.SignerFactory;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
 
-import java.math.BigInteger;
-import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
@@ -43,7 +42,6 @@ import java.util.Optional;
  */
 public class SubordinateStatementFactory {
 
-  private static final SecureRandom RNG = new SecureRandom();
 
   private final SignerFactory signerFactory;
 
@@ -100,7 +98,7 @@ public class SubordinateStatementFactory {
       final JWTClaimsSet jwtClaimsSet = builder
           .issueTime(Date.from(Instant.now()))
           .expirationTime(Date.from(Instant.now().plus(7, ChronoUnit.DAYS)))
-          .jwtID(new BigInteger(128, RNG).toString(16))
+          .jwtID(SigningEngine.jwtId())
           .issuer(issuer.getEntityIdentifier().getValue())
           .subject(subordinate.getEntityIdentifier().getValue())
           .build();
@@ -29,9 +29,8 @@ import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.E
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.TrustMarkSubjectProperty;
 import se.swedenconnect.oidf.common.entity.exception.ServerErrorException;
 import se.swedenconnect.oidf.common.entity.jwt.SignerFactory;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
 
-import java.math.BigInteger;
-import java.security.SecureRandom;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
@@ -50,7 +49,6 @@ public class TrustMarkSigner {
    */
   public static final JOSEObjectType TRUST_MARK_JWT_TYPE = new JOSEObjectType("trust-mark+jwt");
 
-  private static final SecureRandom rng = new SecureRandom();
   private final SignerFactory signerFactory;
   private final Clock clock;
 
@@ -87,7 +85,7 @@ public class TrustMarkSigner {
     // https://openid.net/specs/openid-federation-1_0.html#name-trust-mark-claims
     final JWTClaimsSet.Builder claimsSetBuilder = new JWTClaimsSet.Builder()
         .issueTime(new Date(Instant.now(this.clock).toEpochMilli()))
-        .jwtID(new BigInteger(128, rng).toString(16))
+        .jwtID(SigningEngine.jwtId())
         .subject(trustMarkSubjectProperty.sub());
 
 
@@ -148,7 +146,7 @@ public class TrustMarkSigner {
         .claim("trust_mark", trustMark)
         .issueTime(new Date(Instant.now(this.clock).toEpochMilli()))
         .issuer(entity.getEntityIdentifier().getValue())
-        .jwtID(new BigInteger(128, rng).toString(16))
+        .jwtID(SigningEngine.jwtId())
         .claim("status", status);
 
     try {
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.cache;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Framing of binary values stored in redis.
+ * <p>
+ * A frame starts with a magic header that can never start a JSON document, followed by a format version and a flags
+ * byte. Bodies larger than the compression threshold are deflated, the inflated length is then written in front of
+ * the compressed body. Values that are not framed are values written before the binary format was introduced.
+ * <p>
+ * Deflaters and inflaters are pooled, creating one allocates native buffers that cost more than compressing a value.
+ *
+ * @author Felix Hellman
+ */
+public final class BinaryFrame {
+
+  /**
+   * Default size in bytes above which bodies are deflated. Deflating smaller bodies costs more time than sending the
+   * bytes it saves.
+   */
+  public static final int DEFAULT_COMPRESSION_THRESHOLD = 8192;
+
+  private static final byte[] MAGIC = {0, 'O', 'F'};
+  private static final byte VERSION = 1;
+  private static final byte DEFLATED = 1;
+  private static final int HEADER_LENGTH = MAGIC.length + 2;
+  private static final int MAX_POOLED = 16;
+  private static final Queue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+  private static final Queue<Inflater> INFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+
+  private BinaryFrame() {
+  }
+
+  /**
+   * @param bytes to check
+   * @return true if the bytes start with the magic header of a frame
+   */
+  public static boolean isFramed(final byte[] bytes) {
+    return bytes.length >= HEADER_LENGTH
+        && bytes[0] == MAGIC[0]
+        && bytes[1] == MAGIC[1]
+        && bytes[2] == MAGIC[2];
+  }
+
+  /**
+   * Frames a body, deflating it if it is larger than the threshold and deflating makes it smaller.
+   *
+   * @param body                 to frame
+   * @param compressionThreshold size in bytes above which the body is deflated, negative to never deflate
+   * @return framed body
+   */
+  public static byte[] frame(final byte[] body, final int compressionThreshold) {
+    final Writer writer = writer(body.length);
+    writer.write(body, 0, body.length);
+    return frame(writer, compressionThreshold);
+  }
+
+  /**
+   * Removes the frame of a value, inflating the body if it was deflated.
+   *
+   * @param bytes framed value
+   * @return body of the frame
+   * @throws SerializationException if the value is not a frame of a supported version
+   */
+  public static byte[] unframe(final byte[] bytes) throws SerializationException {
+    final Reader reader = reader(bytes);
+    return Arrays.copyOfRange(reader.bytes, reader.position, reader.bytes.length);
+  }
+
+  /**
+   * @param size expected size of the body
+   * @return writer with an uncompressed frame header written, the body is written after the header
+   */
+  static Writer writer(final int size) {
+    final Writer writer = new Writer(HEADER_LENGTH + size);
+    writer.header((byte) 0);
+    return writer;
+  }
+
+  /**
+   * @param writer               created by {@link #writer(int)} with the body written
+   * @param compressionThreshold size in bytes above which the body is deflated, negative to never deflate
+   * @return framed body
+   */
+  static byte[] frame(final Writer writer, final int compressionThreshold) {
+    final int length = writer.size() - HEADER_LENGTH;
+    if (compressionThreshold < 0 || length <= compressionThreshold) {
+      return writer.toByteArray();
+    }
+    final Writer deflated = new Writer(length / 2);
+    deflated.header(DEFLATED);
+    deflated.writeVarInt(length);
+    final Deflater deflater = Objects.requireNonNullElseGet(
+        DEFLATERS.poll(), () -> new Deflater(Deflater.BEST_SPEED, true));
+    try {
+      deflater.setInput(writer.buffer(), HEADER_LENGTH, length);
+      deflater.finish();
+      final byte[] buffer = new byte[Math.min(length, 8192)];
+      while (!deflater.finished()) {
+        deflated.write(buffer, 0, deflater.deflate(buffer));
+      }
+    } finally {
+      deflater.reset();
+      if (!DEFLATERS.offer(deflater)) {
+        deflater.end();
+      }
+    }
+    return deflated.size() < writer.size() ? deflated.toByteArray() : writer.toByteArray();
+  }
+
+  /**
+   * @param bytes framed value
+   * @return reader positioned at the start of the body, inflated if the body was deflated
+   * @throws SerializationException if the value is not a frame of a supported version
+   */
+  static Reader reader(final byte[] bytes) throws SerializationException {
+    if (!isFramed(bytes)) {
+      throw new SerializationException("Value is not framed");
+    }
+    if (bytes[MAGIC.length] != VERSION) {
+      throw new SerializationException("Unsupported frame version %d".formatted(bytes[MAGIC.length]));
+    }
+    if ((bytes[MAGIC.length + 1] & DEFLATED) == 0) {
+      return new Reader(bytes, HEADER_LENGTH);
+    }
+    final Reader header = new Reader(bytes, HEADER_LENGTH);
+    final byte[] body = new byte[header.readVarInt()];
+    final Inflater inflater = Objects.requireNonNullElseGet(INFLATERS.poll(), () -> new Inflater(true));
+    try {
+      inflater.setInput(bytes, header.position, bytes.length - header.position);
+      int inflated = 0;
+      while (inflated < body.length && !inflater.finished()) {
+        final int count = inflater.inflate(body, inflated, body.length - inflated);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != body.length) {
+        throw new SerializationException("Truncated frame, inflated %d of %d bytes".formatted(inflated, body.length));
+      }
+      return new Reader(body, 0);
+    } catch (final DataFormatException e) {
+      throw new SerializationException("Failed to inflate frame", e);
+    } finally {
+      inflater.reset();
+      if (!INFLATERS.offer(inflater)) {
+        inflater.end();
+      }
+    }
+  }
+
+  /**
+   * Writes varints and length prefixed strings.
+   */
+  static final class Writer extends ByteArrayOutputStream {
+
+    /**
+     * Constructor.
+     *
+     * @param size initial capacity
+     */
+    Writer(final int size) {
+      super(size);
+    }
+
+    private byte[] buffer() {
+      return this.buf;
+    }
+
+    private void header(final byte flags) {
+      this.write(MAGIC, 0, MAGIC.length);
+      this.write(VERSION);
+      this.write(flags);
+    }
+
+    /**
+     * @param value to write as an unsigned varint
+     */
+    void writeVarInt(final int value) {
+      this.writeVarLong(Integer.toUnsignedLong(value));
+    }
+
+    /**
+     * @param value to write as an unsigned varint
+     */
+    void writeVarLong(final long value) {
+      long remaining = value;
+      while ((remaining & ~0x7FL) != 0) {
+        this.write((int) ((remaining & 0x7F) | 0x80));
+        remaining >>>= 7;
+      }
+      this.write((int) remaining);
+    }
+
+    /**
+     * @param value to write
+     */
+    void writeBoolean(final boolean value) {
+      this.write(value ? 1 : 0);
+    }
+
+    /**
+     * @param value to write as a length prefixed UTF-8 string
+     */
+    void writeString(final String value) {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      this.writeVarInt(bytes.length);
+      this.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param value to write as a presence flag followed by the string if present
+     */
+    void writeNullableString(final String value) {
+      this.writeBoolean(value != null);
+      if (value != null) {
+        this.writeString(value);
+      }
+    }
+  }
+
+  /**
+   * Reads values written by {@link Writer}.
+   */
+  static final class Reader {
+
+    private final byte[] bytes;
+    private int position;
+
+    /**
+     * Constructor.
+     *
+     * @param bytes    to read
+     * @param position to start reading at
+     */
+    Reader(final byte[] bytes, final int position) {
+      this.bytes = bytes;
+      this.position = position;
+    }
+
+    /**
+     * @return unsigned varint
+     */
+    int readVarInt() {
+      final long value = this.readVarLong();
+      if (value > Integer.MAX_VALUE) {
+        throw new SerializationException("Varint %d out of range".formatted(value));
+      }
+      return (int) value;
+    }
+
+    /**
+     * @return unsigned varint
+     */
+    long readVarLong() {
+      long value = 0;
+      for (int shift = 0; shift < Long.SIZE; shift += 7) {
+        final byte current = this.next();
+        value |= (long) (current & 0x7F) << shift;
+        if ((current & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new SerializationException("Malformed varint");
+    }
+
+    /**
+     * @return boolean
+     */
+    boolean readBoolean() {
+      return this.next() != 0;
+    }
+
+    /**
+     * @return length prefixed UTF-8 string
+     */
+    String readString() {
+      final int length = this.readVarInt();
+      if (length > this.bytes.length - this.position) {
+        throw new SerializationException("Truncated string of length %d".formatted(length));
+      }
+      final String value = new String(this.bytes, this.position, length, StandardCharsets.UTF_8);
+      this.position += length;
+      return value;
+    }
+
+    /**
+     * @return string if present, otherwise null
+     */
+    String readNullableString() {
+      return this.readBoolean() ? this.readString() : null;
+    }
+
+    private byte next() {
+      if (this.position >= this.bytes.length) {
+        throw new SerializationException("Unexpected end of value");
+      }
+      return this.bytes[this.position++];
+    }
+  }
+}
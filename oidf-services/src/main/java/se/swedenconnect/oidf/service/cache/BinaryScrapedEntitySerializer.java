@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.cache;
+
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of {@link RedisSerializer} for {@link ScrapedEntity} using a compact binary format.
+ * <p>
+ * Values are written in a {@link BinaryFrame}. Statements are written in their compact serialization as length
+ * prefixed strings and the scrape time as a varint of epoch milliseconds. Read entities parse their entity statement
+ * and subordinate statements the first time they are used, trust mark statuses are parsed when read.
+ *
+ * @author Felix Hellman
+ */
+public class BinaryScrapedEntitySerializer implements RedisSerializer<ScrapedEntity> {
+
+  private static final int EXPECTED_SIZE = 4096;
+
+  private final boolean includeSubordinates;
+  private final int compressionThreshold;
+
+  /**
+   * Constructor including subordinate statements and compressing values above
+   * {@link BinaryFrame#DEFAULT_COMPRESSION_THRESHOLD}.
+   */
+  public BinaryScrapedEntitySerializer() {
+    this(true, BinaryFrame.DEFAULT_COMPRESSION_THRESHOLD);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param includeSubordinates  false to leave the subordinate statements of intermediates out of the serialized
+   *                             value, they are then deserialized as an empty map
+   * @param compressionThreshold size in bytes above which values are deflated, negative to never deflate
+   */
+  public BinaryScrapedEntitySerializer(final boolean includeSubordinates, final int compressionThreshold) {
+    this.includeSubordinates = includeSubordinates;
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  @Override
+  public byte[] serialize(final ScrapedEntity value) throws SerializationException {
+    if (value == null) {
+      return null;
+    }
+    final BinaryFrame.Writer writer = BinaryFrame.writer(EXPECTED_SIZE);
+    writer.writeString(value.getEntityID().getValue());
+    writer.writeVarLong(value.getScrapedAt().toEpochMilli());
+    writer.writeNullableString(value.getEcLocation());
+    writer.writeNullableString(serializedStatement(value));
+    this.writeTrustMarkStatuses(writer, value.getTrustMarkStatuses());
+    this.writeIntermediate(writer, value.getIntermediate());
+    return BinaryFrame.frame(writer, this.compressionThreshold);
+  }
+
+  @Override
+  public ScrapedEntity deserialize(final byte[] bytes) throws SerializationException {
+    if (bytes == null) {
+      return null;
+    }
+    final BinaryFrame.Reader reader = BinaryFrame.reader(bytes);
+    final EntityID entityID = new EntityID(reader.readString());
+    final Instant scrapedAt = Instant.ofEpochMilli(reader.readVarLong());
+    final String ecLocation = reader.readNullableString();
+    final String statement = reader.readNullableString();
+    final Map<String, TrustMarkStatusResponse> trustMarkStatuses = readTrustMarkStatuses(reader);
+    final ScrapedIntermediate intermediate = readIntermediate(reader);
+    return new DecodedScrapedEntity(entityID, scrapedAt, ecLocation, statement, trustMarkStatuses, intermediate);
+  }
+
+  private static String serializedStatement(final ScrapedEntity value) {
+    if (value instanceof final DecodedScrapedEntity decoded) {
+      final String serialized = decoded.getSerializedStatement();
+      if (Objects.nonNull(serialized)) {
+        return serialized;
+      }
+    }
+    return Objects.isNull(value.getEntityStatement())
+        ? null
+        : value.getEntityStatement().getSignedStatement().serialize();
+  }
+
+  private void writeTrustMarkStatuses(
+      final BinaryFrame.Writer writer, final Map<String, TrustMarkStatusResponse> statuses) {
+    if (Objects.isNull(statuses)) {
+      writer.writeVarInt(0);
+      return;
+    }
+    writer.writeVarInt(statuses.size());
+    statuses.forEach((type, status) -> {
+      writer.writeString(type);
+      writer.writeBoolean(Objects.nonNull(status) && status.isError());
+      writer.writeNullableString(Objects.isNull(status) || Objects.isNull(status.getSignedJWT())
+          ? null
+          : status.getSignedJWT().serialize());
+    });
+  }
+
+  private void writeIntermediate(final BinaryFrame.Writer writer, final ScrapedIntermediate intermediate) {
+    writer.writeBoolean(Objects.nonNull(intermediate));
+    if (Objects.isNull(intermediate)) {
+      return;
+    }
+    if (!this.includeSubordinates) {
+      writer.writeVarInt(0);
+      return;
+    }
+    final Map<String, SignedJWT> subordinates = intermediate.subordinates();
+    if (subordinates instanceof final SerializedStatements statements) {
+      final Map<String, String> serialized = statements.serialized();
+      writer.writeVarInt(serialized.size());
+      serialized.forEach((subject, jwt) -> {
+        writer.writeString(subject);
+        writer.writeString(jwt);
+      });
+      return;
+    }
+    writer.writeVarInt(subordinates.size());
+    subordinates.forEach((subject, jwt) -> {
+      writer.writeString(subject);
+      writer.writeString(jwt.serialize());
+    });
+  }
+
+  private static Map<String, TrustMarkStatusResponse> readTrustMarkStatuses(final BinaryFrame.Reader reader) {
+    final int count = reader.readVarInt();
+    final Map<String, TrustMarkStatusResponse> statuses = HashMap.newHashMap(count);
+    for (int i = 0; i < count; i++) {
+      final String type = reader.readString();
+      final boolean error = reader.readBoolean();
+      final String jwt = reader.readNullableString();
+      try {
+        statuses.put(type, new TrustMarkStatusResponse(Objects.isNull(jwt) ? null : SignedJWT.parse(jwt), error));
+      } catch (final ParseException e) {
+        throw new SerializationException("Failed to parse trust mark status", e);
+      }
+    }
+    return statuses;
+  }
+
+  private static ScrapedIntermediate readIntermediate(final BinaryFrame.Reader reader) {
+    if (!reader.readBoolean()) {
+      return null;
+    }
+    final int count = reader.readVarInt();
+    final Map<String, String> subordinates = new ConcurrentHashMap<>(count);
+    for (int i = 0; i < count; i++) {
+      subordinates.put(reader.readString(), reader.readString());
+    }
+    return new ScrapedIntermediate(new SerializedStatements(subordinates));
+  }
+}
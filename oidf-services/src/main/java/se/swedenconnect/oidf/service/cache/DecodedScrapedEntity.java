@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.cache;
+
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Scraped entity read by {@link BinaryScrapedEntitySerializer}. The entity statement is kept in its compact
+ * serialization and parsed the first time it is read.
+ *
+ * @author Felix Hellman
+ */
+final class DecodedScrapedEntity extends ScrapedEntity {
+
+  private final String serializedStatement;
+  private volatile EntityStatement parsedStatement;
+
+  /**
+   * Constructor.
+   *
+   * @param entityID            of the entity
+   * @param scrapedAt           time the entity was scraped
+   * @param ecLocation          location of the entity configuration, can be null
+   * @param serializedStatement compact serialization of the entity statement, can be null
+   * @param trustMarkStatuses   statuses of the trust marks of the entity
+   * @param intermediate        subordinates of the entity, null if the entity is not an intermediate
+   */
+  DecodedScrapedEntity(
+      final EntityID entityID,
+      final Instant scrapedAt,
+      final String ecLocation,
+      final String serializedStatement,
+      final Map<String, TrustMarkStatusResponse> trustMarkStatuses,
+      final ScrapedIntermediate intermediate) {
+    super(entityID, scrapedAt, ecLocation, null, trustMarkStatuses, intermediate);
+    this.serializedStatement = serializedStatement;
+  }
+
+  /**
+   * @return compact serialization of the entity statement, null if the statement has been replaced
+   */
+  String getSerializedStatement() {
+    return Objects.isNull(super.getEntityStatement()) ? this.serializedStatement : null;
+  }
+
+  @Override
+  public EntityStatement getEntityStatement() {
+    final EntityStatement replaced = super.getEntityStatement();
+    if (Objects.nonNull(replaced) || Objects.isNull(this.serializedStatement)) {
+      return replaced;
+    }
+    EntityStatement current = this.parsedStatement;
+    if (Objects.isNull(current)) {
+      synchronized (this) {
+        current = this.parsedStatement;
+        if (Objects.isNull(current)) {
+          try {
+            current = EntityStatement.parse(this.serializedStatement);
+          } catch (final ParseException e) {
+            throw new IllegalArgumentException("Failed to parse entity statement", e);
+          }
+          this.parsedStatement = current;
+        }
+      }
+    }
+    return current;
+  }
+}
@@ -29,6 +29,7 @@ import java.util.UUID;
 public class InstanceSpecificRedisKeySerializer implements RedisSerializer<String> {
   private final StringRedisSerializer serializer;
   private final UUID instanceId;
+  private final String suffix;
 
   /**
    * Constructor.
@@ -36,22 +37,38 @@ public class InstanceSpecificRedisKeySerializer implements RedisSerializer<Strin
    * @param instanceId of this instance
    */
   public InstanceSpecificRedisKeySerializer(final StringRedisSerializer serializer, final UUID instanceId) {
+    this(serializer, instanceId, "");
+  }
+
+  /**
+   * Constructor.
+   * @param serializer underlying serializer to use
+   * @param instanceId of this instance
+   * @param suffix appended to every key, e.g. for keys stored next to the keys of another serializer
+   */
+  public InstanceSpecificRedisKeySerializer(
+      final StringRedisSerializer serializer,
+      final UUID instanceId,
+      final String suffix) {
     this.serializer = serializer;
     this.instanceId = instanceId;
+    this.suffix = suffix;
   }
 
   @Override
   public byte[] serialize(final String value) {
-    return this.serializer.serialize("oidf:%s:%s".formatted(
+    return this.serializer.serialize("oidf:%s:%s%s".formatted(
         this.instanceId.toString(),
-        value
+        value,
+        this.suffix
     ));
   }
 
   @Override
   public String deserialize(final byte[] bytes) {
     final String deserialize = this.serializer.deserialize(bytes);
-    return deserialize.split("oidf:%s".formatted(this.instanceId))[1];
+    final String key = deserialize.split("oidf:%s".formatted(this.instanceId))[1];
+    return key.substring(0, key.length() - this.suffix.length());
   }
 
   @Override
@@ -25,10 +25,17 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Redis implementation for {@link  Cache}
+ * <p>
+ * When created with a version template, every value is stored together with a small version entry holding the time
+ * the value was issued and a random version. Version checks and {@link #shouldRefresh(Serializable)} then read the
+ * version entry only, instead of reading and deserializing the value.
+ *
  * @param <K> key class
  * @param <V> value class
  *
@@ -37,6 +44,7 @@ import java.util.Optional;
 public class RedisCache<K extends Serializable, V> implements Cache<K, V> {
 
   protected final RedisTemplate<K, Expirable<V>> valueTemplate;
+  protected final RedisTemplate<K, String> versionTemplate;
   protected final Clock clock;
 
   /**
@@ -45,13 +53,34 @@ public class RedisCache<K extends Serializable, V> implements Cache<K, V> {
    * @param clock for keeping time
    */
   public RedisCache(final RedisTemplate<K, Expirable<V>> valueTemplate, final Clock clock) {
+    this(valueTemplate, null, clock);
+  }
+
+  /**
+   * Constructor
+   * @param valueTemplate   for redis
+   * @param versionTemplate for the version entries, stored under keys separate from the values, null to not keep
+   *                        versions
+   * @param clock           for keeping time
+   */
+  public RedisCache(
+      final RedisTemplate<K, Expirable<V>> valueTemplate,
+      final RedisTemplate<K, String> versionTemplate,
+      final Clock clock) {
     this.valueTemplate = valueTemplate;
+    this.versionTemplate = versionTemplate;
     this.clock = clock;
   }
 
   @Override
   public void add(final K key, final Expirable<V> value) {
-    this.valueTemplate.opsForValue().set(key, value, Duration.between(Instant.now(this.clock), value.getExpiration()));
+    final Duration ttl = Duration.between(Instant.now(this.clock), value.getExpiration());
+    this.valueTemplate.opsForValue().set(key, value, ttl);
+    if (Objects.nonNull(this.versionTemplate)) {
+      // Written after the value, a reader that sees the new version also sees the new value
+      this.versionTemplate.opsForValue().set(key, "%d:%s".formatted(
+          value.getIssuedAt().toEpochMilli(), UUID.randomUUID()), ttl);
+    }
   }
 
   @Override
@@ -61,9 +90,20 @@ public class RedisCache<K extends Serializable, V> implements Cache<K, V> {
         .orElse(null);
   }
 
+  @Override
+  public String getVersion(final K key) {
+    if (Objects.isNull(this.versionTemplate)) {
+      return null;
+    }
+    return this.versionTemplate.opsForValue().get(key);
+  }
+
   @Override
   public boolean shouldRefresh(final K key) {
-    return Optional.ofNullable(this.valueTemplate.opsForValue().get(key)).map(Expirable::getIssuedAt)
+    final Optional<Instant> issuedAt = Optional.ofNullable(this.getVersion(key))
+        .map(version -> Instant.ofEpochMilli(Long.parseLong(version.substring(0, version.indexOf(':')))))
+        .or(() -> Optional.ofNullable(this.valueTemplate.opsForValue().get(key)).map(Expirable::getIssuedAt));
+    return issuedAt
         .map(iat -> iat.isBefore(Instant.now(this.clock).minus(1, ChronoUnit.HOURS)))
         .orElse(true);
   }
@@ -32,6 +32,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import se.swedenconnect.oidf.CacheFactory;
 import se.swedenconnect.oidf.FederationServiceState;
@@ -72,7 +73,8 @@ public class RedisCacheConfiguration {
   @Bean
   CacheFactory redisCacheFactory(final RedisConnectionFactory factory, final Clock clock,
                                  final FederationServiceProperties properties, final Gson gson) {
-    return new RedisCacheFactory(clock, factory, properties.getRedis().getKeyName(), gson);
+    return new RedisCacheFactory(
+        clock, factory, properties.getRedis().getKeyName(), gson, properties.getRedis().isBinaryValues());
   }
 
   @Bean
@@ -84,6 +86,8 @@ public class RedisCacheConfiguration {
     final RedisTemplate<String, String> template = new RedisTemplate<>();
     template.setConnectionFactory(factory);
     template.setKeySerializer(keySerializer);
+    template.setHashKeySerializer(new StringRedisSerializer());
+    template.setHashValueSerializer(new StringRedisSerializer());
     template.afterPropertiesSet();
     return template;
   }
@@ -99,10 +103,11 @@ public class RedisCacheConfiguration {
   @Bean
   RedisTemplate<String, ScrapedEntity> entityStatementRedisTemplate(
       final RedisConnectionFactory factory,
-      final InstanceSpecificRedisKeySerializer keySerializer) {
+      final InstanceSpecificRedisKeySerializer keySerializer,
+      final FederationServiceProperties properties) {
     final RedisTemplate<String, ScrapedEntity> template = new RedisTemplate<>();
     template.setConnectionFactory(factory);
-    template.setValueSerializer(new ResolverEntitySerializer());
+    template.setValueSerializer(new ResolverEntitySerializer(properties.getRedis().isBinaryValues()));
     template.setKeySerializer(keySerializer);
     template.afterPropertiesSet();
     return template;
@@ -133,14 +138,28 @@ public class RedisCacheConfiguration {
   @Bean
   ResolverCacheFactory resolverCacheFactory(
       final RedisTemplate<String, Long> versionTemplate,
-      final ResolverRedisOperations resolverRedisOperations
+      final ResolverRedisOperations resolverRedisOperations,
+      final FederationServiceProperties properties,
+      final RedisMessageListenerContainer listenerContainer
   ) {
     return new RedisResolverCacheFactory(
         versionTemplate,
-        resolverRedisOperations
+        resolverRedisOperations,
+        properties.getRedis().isLocalSnapshot()
+    ).withVersionChannel(
+        listenerContainer,
+        properties.getRedis().getKeyName().toString(),
+        properties.getRedis().getVersionPollInterval()
     );
   }
 
+  @Bean
+  RedisMessageListenerContainer redisMessageListenerContainer(final RedisConnectionFactory factory) {
+    final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(factory);
+    return container;
+  }
+
   @Bean
   ResolverCacheTransformer resolverCacheTransformer(final ManagedCacheRepository repository) {
 
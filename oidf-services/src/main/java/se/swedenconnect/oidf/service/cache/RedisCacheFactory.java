@@ -39,6 +39,8 @@ import java.util.UUID;
  */
 public class RedisCacheFactory implements CacheFactory {
 
+  private static final String VERSION_SUFFIX = ":version";
+
   private final Clock clock;
   private final RedisConnectionFactory factory;
   private final UUID instanceId;
@@ -57,6 +59,24 @@ public class RedisCacheFactory implements CacheFactory {
       final RedisConnectionFactory factory,
       final UUID instanceId,
       final Gson gson) {
+    this(clock, factory, instanceId, gson, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param clock        for keeping time
+   * @param factory      for conenctions
+   * @param instanceId   for separating redis entries
+   * @param gson         for de/serialization
+   * @param binaryValues true to write records in the binary format, false to write them as JSON
+   */
+  public RedisCacheFactory(
+      final Clock clock,
+      final RedisConnectionFactory factory,
+      final UUID instanceId,
+      final Gson gson,
+      final boolean binaryValues) {
     this.clock = clock;
     this.factory = factory;
     this.instanceId = instanceId;
@@ -64,7 +84,8 @@ public class RedisCacheFactory implements CacheFactory {
 
     this.serializerMap = Map.of(
         EntityStatement.class, new ExpirableEntityStatementSerializer(),
-        CompositeRecord.class, new RedisCompositeRecordSerializer(this.gson)
+        CompositeRecord.class, new RedisCompositeRecordSerializer(
+            this.gson, binaryValues, BinaryFrame.DEFAULT_COMPRESSION_THRESHOLD)
     );
   }
 
@@ -77,11 +98,20 @@ public class RedisCacheFactory implements CacheFactory {
     Optional.ofNullable(this.serializerMap.get(v)).ifPresent(template::setValueSerializer);
     template.setKeySerializer(this.createKeySerializer());
     template.afterPropertiesSet();
-    return new RedisCache<>(template, this.clock);
+    final RedisTemplate<String, String> versionTemplate = new RedisTemplate<>();
+    versionTemplate.setConnectionFactory(this.factory);
+    versionTemplate.setValueSerializer(new StringRedisSerializer());
+    versionTemplate.setKeySerializer(this.createKeySerializer(VERSION_SUFFIX));
+    versionTemplate.afterPropertiesSet();
+    return new RedisCache<>(template, versionTemplate, this.clock);
   }
 
   private InstanceSpecificRedisKeySerializer createKeySerializer() {
+    return this.createKeySerializer("");
+  }
+
+  private InstanceSpecificRedisKeySerializer createKeySerializer(final String suffix) {
     return new InstanceSpecificRedisKeySerializer(new StringRedisSerializer(),
-        this.instanceId);
+        this.instanceId, suffix);
   }
 }
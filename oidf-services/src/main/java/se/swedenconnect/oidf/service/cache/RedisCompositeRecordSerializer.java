@@ -17,7 +17,6 @@
 package se.swedenconnect.oidf.service.cache;
 
 import com.nimbusds.jose.shaded.gson.Gson;
-import lombok.AllArgsConstructor;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.lang.Nullable;
@@ -29,24 +28,54 @@ import java.util.Objects;
 
 /**
  * Composite record serializer for redis using underlying gson serialization.
+ * <p>
+ * When binary values are enabled the JSON is written in a {@link BinaryFrame} and deflated when larger than the
+ * compression threshold. Both framed and plain JSON values are always read.
  *
  * @author Felix Hellman
  */
-@AllArgsConstructor
 public class RedisCompositeRecordSerializer implements RedisSerializer<Expirable<CompositeRecord>> {
   private final Gson gson;
+  private final boolean binaryValues;
+  private final int compressionThreshold;
+
+  /**
+   * Constructor writing values as plain JSON.
+   * @param gson to serialize records with
+   */
+  public RedisCompositeRecordSerializer(final Gson gson) {
+    this(gson, false, BinaryFrame.DEFAULT_COMPRESSION_THRESHOLD);
+  }
+
+  /**
+   * Constructor.
+   * @param gson                 to serialize records with
+   * @param binaryValues         true to write values in a {@link BinaryFrame}, false to write them as plain JSON
+   * @param compressionThreshold size in bytes above which framed values are deflated
+   */
+  public RedisCompositeRecordSerializer(final Gson gson, final boolean binaryValues, final int compressionThreshold) {
+    this.gson = gson;
+    this.binaryValues = binaryValues;
+    this.compressionThreshold = compressionThreshold;
+  }
 
   @Nullable
   @Override
   public byte[] serialize(@Nullable final Expirable<CompositeRecord> value) throws SerializationException {
-    return this.gson.toJson(value.getValue()).getBytes(StandardCharsets.UTF_8);
+    final byte[] json = this.gson.toJson(value.getValue()).getBytes(StandardCharsets.UTF_8);
+    if (!this.binaryValues) {
+      return json;
+    }
+    return BinaryFrame.frame(json, this.compressionThreshold);
   }
 
   @Nullable
   @Override
   public Expirable<CompositeRecord> deserialize(@Nullable final byte[] bytes) throws SerializationException {
     if (Objects.nonNull(bytes)) {
-      final CompositeRecord compositeRecord = this.gson.fromJson(new String(bytes), CompositeRecord.class);
+      final byte[] json = BinaryFrame.isFramed(bytes) ? BinaryFrame.unframe(bytes) : bytes;
+      final CompositeRecord compositeRecord =
+          this.gson.fromJson(new String(json, StandardCharsets.UTF_8), CompositeRecord.class);
       return new Expirable<>(compositeRecord.getExpiration(), compositeRecord.getIssuedAt(), compositeRecord);
     }
     return null;
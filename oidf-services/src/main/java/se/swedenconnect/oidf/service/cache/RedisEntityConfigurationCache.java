@@ -47,7 +47,6 @@ public class RedisEntityConfigurationCache implements EntityConfigurationCache {
   public void put(final long snapshot, final String entityId, final String response) {
     final String key = "entity-configuration:%d:%s"
         .formatted(snapshot, URLEncoder.encode(entityId, StandardCharsets.UTF_8));
-    this.template.opsForValue().set(key, response);
-    this.template.expire(key, this.cacheTtl);
+    this.template.opsForValue().set(key, response, this.cacheTtl);
   }
 }
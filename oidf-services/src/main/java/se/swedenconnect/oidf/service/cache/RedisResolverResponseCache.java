@@ -47,7 +47,6 @@ public class RedisResolverResponseCache implements ResolverResponseCache {
   public void put(final long snapshot, final ResolveRequest request, final String response) {
     final String key = "resolve-response:%d:%s"
         .formatted(snapshot, request.toKey(new EntityID(request.subject())));
-    this.template.opsForValue().set(key, response);
-    this.template.expire(key, this.cacheTtl);
+    this.template.opsForValue().set(key, response, this.cacheTtl);
   }
 }
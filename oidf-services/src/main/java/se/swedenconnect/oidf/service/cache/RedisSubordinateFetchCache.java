@@ -48,7 +48,6 @@ public class RedisSubordinateFetchCache implements SubordinateFetchCache {
   public void put(final long snapshot, final FetchRequest request, final String response) {
     final String key = "subordinate-fetch:%d:%s"
         .formatted(snapshot, URLEncoder.encode(request.subject(), StandardCharsets.UTF_8));
-    this.template.opsForValue().set(key, response);
-    this.template.expire(key, this.cacheTtl);
+    this.template.opsForValue().set(key, response, this.cacheTtl);
   }
 }
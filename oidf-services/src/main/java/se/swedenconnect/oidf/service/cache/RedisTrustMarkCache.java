@@ -49,7 +49,6 @@ public class RedisTrustMarkCache implements TrustMarkCache {
     final String key = "trust-mark:%d:%s:%s".formatted(snapshot,
         URLEncoder.encode(trustMarkType, StandardCharsets.UTF_8),
         URLEncoder.encode(subject, StandardCharsets.UTF_8));
-    this.template.opsForValue().set(key, response);
-    this.template.expire(key, this.cacheTtl);
+    this.template.opsForValue().set(key, response, this.cacheTtl);
   }
 }
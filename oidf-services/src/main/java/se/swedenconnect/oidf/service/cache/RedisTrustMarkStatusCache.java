@@ -49,8 +49,7 @@ public class RedisTrustMarkStatusCache implements TrustMarkStatusCache {
   @Override
   public void put(final long snapshot, final String trustMarkJwt, final String response) {
     final String key = "trust-mark-status:%d:%s".formatted(snapshot, sha256(trustMarkJwt));
-    this.redisTemplate.opsForValue().set(key, response);
-    this.redisTemplate.expire(key, this.cacheTtl);
+    this.redisTemplate.opsForValue().set(key, response, this.cacheTtl);
   }
 
   private static String sha256(final String jwt) {
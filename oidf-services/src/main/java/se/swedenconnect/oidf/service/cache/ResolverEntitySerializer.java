@@ -22,19 +22,48 @@ import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 
 /**
  * Implementation of {@link RedisSerializer} for {@link ScrapedEntity}
+ * <p>
+ * Subordinate statements of intermediates are not part of the value, they are stored in a hash per intermediate by
+ * {@link se.swedenconnect.oidf.service.resolver.cache.ResolverRedisOperations}.
+ * <p>
+ * Values are written as JSON unless binary values are enabled, in which case they are written with
+ * {@link BinaryScrapedEntitySerializer}. Both formats are always read, so binary values should only be enabled once
+ * every instance sharing the redis data runs a version that can read them.
  *
  * @author Felix Hellman
  */
 public class ResolverEntitySerializer implements RedisSerializer<ScrapedEntity> {
 
-  private final ScrapedEntitySerializer delegate = new ScrapedEntitySerializer();
+  private final BinaryScrapedEntitySerializer binary =
+      new BinaryScrapedEntitySerializer(false, BinaryFrame.DEFAULT_COMPRESSION_THRESHOLD);
+  private final ScrapedEntitySerializer json = new ScrapedEntitySerializer(false);
+  private final boolean binaryValues;
+
+  /**
+   * Constructor writing values as JSON.
+   */
+  public ResolverEntitySerializer() {
+    this(false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param binaryValues true to write values in the binary format, false to write them as JSON
+   */
+  public ResolverEntitySerializer(final boolean binaryValues) {
+    this.binaryValues = binaryValues;
+  }
 
   @Override
   public byte[] serialize(final ScrapedEntity value) throws SerializationException {
     if (value == null) {
       return null;
     }
-    return this.delegate.serialize(value);
+    if (this.binaryValues) {
+      return this.binary.serialize(value);
+    }
+    return this.json.serialize(value);
   }
 
   @Override
@@ -42,6 +71,9 @@ public class ResolverEntitySerializer implements RedisSerializer<ScrapedEntity>
     if (bytes == null) {
       return null;
     }
-    return this.delegate.deserialize(bytes);
+    if (BinaryFrame.isFramed(bytes)) {
+      return this.binary.deserialize(bytes);
+    }
+    return this.json.deserialize(bytes);
   }
 }
@@ -21,6 +21,7 @@ import com.nimbusds.jose.shaded.gson.GsonBuilder;
 import com.nimbusds.jose.shaded.gson.JsonDeserializationContext;
 import com.nimbusds.jose.shaded.gson.JsonDeserializer;
 import com.nimbusds.jose.shaded.gson.JsonElement;
+import com.nimbusds.jose.shaded.gson.JsonObject;
 import com.nimbusds.jose.shaded.gson.JsonParseException;
 import com.nimbusds.jose.shaded.gson.JsonPrimitive;
 import com.nimbusds.jose.shaded.gson.JsonSerializationContext;
@@ -47,11 +48,23 @@ import java.time.Instant;
 public class ScrapedEntitySerializer implements RedisSerializer<ScrapedEntity> {
 
   private final Gson gson;
+  private final boolean includeSubordinates;
 
   /**
    * Constructor.
    */
   public ScrapedEntitySerializer() {
+    this(true);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param includeSubordinates false to leave the subordinate statements of intermediates out of the serialized value,
+   *                            they are then deserialized as an empty map
+   */
+  public ScrapedEntitySerializer(final boolean includeSubordinates) {
+    this.includeSubordinates = includeSubordinates;
     this.gson = new GsonBuilder()
         .registerTypeAdapter(EntityID.class, new EntityIdentifierDeserializer())
         .registerTypeAdapter(Instant.class, new InstantDeserializer())
@@ -65,7 +78,12 @@ public class ScrapedEntitySerializer implements RedisSerializer<ScrapedEntity> {
     if (value == null) {
       return null;
     }
-    return this.gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+    if (this.includeSubordinates || value.getIntermediate() == null) {
+      return this.gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+    final JsonObject json = this.gson.toJsonTree(value).getAsJsonObject();
+    json.getAsJsonObject("intermediate").add("subordinates", new JsonObject());
+    return this.gson.toJson(json).getBytes(StandardCharsets.UTF_8);
   }
 
   @Override
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.cache;
+
+import com.nimbusds.jwt.SignedJWT;
+
+import java.text.ParseException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map of subject to signed statement that keeps the compact serialization of every statement and parses a statement
+ * the first time it is read. Parsed statements are kept, so the same subject always returns the same instance.
+ *
+ * @author Felix Hellman
+ */
+public final class SerializedStatements extends AbstractMap<String, SignedJWT> {
+
+  private final Map<String, String> serialized;
+  private final Map<String, SignedJWT> parsed = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param serialized thread safe map of subject to compact serialization of the statement
+   */
+  public SerializedStatements(final Map<String, String> serialized) {
+    this.serialized = serialized;
+  }
+
+  /**
+   * @return map of subject to compact serialization of the statement
+   */
+  Map<String, String> serialized() {
+    return Collections.unmodifiableMap(this.serialized);
+  }
+
+  @Override
+  public SignedJWT get(final Object subject) {
+    if (!(subject instanceof final String value)) {
+      return null;
+    }
+    final SignedJWT cached = this.parsed.get(value);
+    if (Objects.nonNull(cached)) {
+      return cached;
+    }
+    final String jwt = this.serialized.get(value);
+    if (Objects.isNull(jwt)) {
+      return null;
+    }
+    return this.parsed.computeIfAbsent(value, s -> parse(jwt));
+  }
+
+  @Override
+  public boolean containsKey(final Object subject) {
+    return this.serialized.containsKey(subject);
+  }
+
+  @Override
+  public SignedJWT put(final String subject, final SignedJWT jwt) {
+    final SignedJWT previous = this.get(subject);
+    this.parsed.put(subject, jwt);
+    this.serialized.put(subject, jwt.serialize());
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return this.serialized.size();
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(this.serialized.keySet());
+  }
+
+  @Override
+  public Set<Entry<String, SignedJWT>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String, SignedJWT>> iterator() {
+        final Iterator<String> subjects = SerializedStatements.this.serialized.keySet().iterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return subjects.hasNext();
+          }
+
+          @Override
+          public Entry<String, SignedJWT> next() {
+            final String subject = subjects.next();
+            return new SimpleImmutableEntry<>(subject, SerializedStatements.this.get(subject));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return SerializedStatements.this.serialized.size();
+      }
+    };
+  }
+
+  private static SignedJWT parse(final String jwt) {
+    try {
+      return SignedJWT.parse(jwt);
+    } catch (final ParseException e) {
+      throw new IllegalArgumentException("Failed to parse signed statement", e);
+    }
+  }
+}
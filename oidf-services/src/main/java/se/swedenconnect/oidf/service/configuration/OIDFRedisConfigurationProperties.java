@@ -22,6 +22,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Duration;
 import java.util.UUID;
 
 /**
@@ -40,4 +41,22 @@ public class OIDFRedisConfigurationProperties {
    */
   @NotNull
   private UUID keyName;
+
+  /**
+   * True to copy the current resolver tree from redis into memory and serve resolve requests from the copy.
+   */
+  private boolean localSnapshot = true;
+
+  /**
+   * Time a resolver tree version is used before it is read from redis again. New versions are also received through
+   * redis pub/sub, so this only bounds the delay when a notification is missed.
+   */
+  private Duration versionPollInterval = Duration.ofSeconds(30);
+
+  /**
+   * True to write resolver tree entries and registry records in the compact binary format. Values are written as JSON
+   * by default, since instances running earlier versions can not read binary values. Both formats are always read, so
+   * this should be enabled once every instance sharing the redis data has been upgraded.
+   */
+  private boolean binaryValues = false;
 }
@@ -20,7 +20,6 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.nimbusds.oauth2.sdk.ParseException;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import lombok.AllArgsConstructor;
@@ -103,13 +102,8 @@ public class ExportEndpoint {
         .map(Tree.SearchResult::getData)
         .peek(entity -> {
           if (Objects.nonNull(entity.getIntermediate())) {
-            entity.getIntermediate().subordinates().values().forEach(jwt -> {
-              try {
-                subordinateStatements.add(new ExportStatement(EntityStatement.parse(jwt)));
-              } catch (final ParseException e) {
-                throw new RuntimeException(e);
-              }
-            });
+            entity.getIntermediate().subordinates().keySet().forEach(subject -> subordinateStatements.add(
+                new ExportStatement(entity.getIntermediate().statement(subject).statement())));
           }
         })
         .map(resolverEntity -> resolverEntity.getEntityStatement())
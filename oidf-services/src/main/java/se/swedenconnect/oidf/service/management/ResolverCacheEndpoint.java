@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.management;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import se.swedenconnect.oidf.common.entity.tree.CacheVersionStatistics;
+import se.swedenconnect.oidf.resolver.ResolverCacheRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Endpoint exposing the versions held by each resolver cache, used for sizing heaps.
+ *
+ * @author Felix Hellman
+ */
+@Endpoint(id = "resolver-cache")
+@Component
+@AllArgsConstructor
+public class ResolverCacheEndpoint {
+  private final ResolverCacheRegistry registry;
+
+  /**
+   * @return version statistics per resolver entity identifier
+   */
+  @ReadOperation
+  public Map<String, List<CacheVersionStatistics>> getVersionStatistics() {
+    return this.registry.getAllRegistrations().stream()
+        .collect(Collectors.toMap(
+            registration -> registration.properties().getEntityIdentifier(),
+            registration -> registration.cache().getVersionStatistics(),
+            (first, second) -> first
+        ));
+  }
+}
@@ -17,13 +17,28 @@
 package se.swedenconnect.oidf.service.resolver.cache;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 import se.swedenconnect.oidf.common.entity.tree.ResolverCache;
 import se.swedenconnect.oidf.resolver.ResolverCacheFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Redis implementation for Resolver Cache Factory.
+ * <p>
+ * With a listener container, every created cache publishes its new versions on a channel and listens for versions
+ * published by other instances, so the current version is only polled from redis once per poll interval. Writes to
+ * a version that is already current are published on a second channel, so that every instance drops its local copy
+ * of that version.
  *
  * @author Felix Hellman
  */
@@ -32,9 +47,14 @@ public class RedisResolverCacheFactory implements ResolverCacheFactory {
 
   private final RedisTemplate<String, Long> versionTemplate;
   private final ResolverRedisOperations resolverRedisOperations;
+  private final boolean localSnapshot;
+  private final Map<String, MessageListener> listeners = new ConcurrentHashMap<>();
+  private RedisMessageListenerContainer listenerContainer;
+  private String channelPrefix;
+  private Duration versionPollInterval;
 
   /**
-   * Constructor.
+   * Constructor reading every version from redis.
    *
    * @param versionTemplate         for keeping track of versions
    * @param resolverRedisOperations for performing operations
@@ -42,13 +62,73 @@ public class RedisResolverCacheFactory implements ResolverCacheFactory {
   public RedisResolverCacheFactory(
       final RedisTemplate<String, Long> versionTemplate,
       final ResolverRedisOperations resolverRedisOperations) {
+    this(versionTemplate, resolverRedisOperations, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param versionTemplate         for keeping track of versions
+   * @param resolverRedisOperations for performing operations
+   * @param localSnapshot           true to serve the current version from a local copy
+   */
+  public RedisResolverCacheFactory(
+      final RedisTemplate<String, Long> versionTemplate,
+      final ResolverRedisOperations resolverRedisOperations,
+      final boolean localSnapshot) {
 
     this.versionTemplate = versionTemplate;
     this.resolverRedisOperations = resolverRedisOperations;
+    this.localSnapshot = localSnapshot;
+  }
+
+  /**
+   * Notifies the created caches of new versions through redis pub/sub.
+   *
+   * @param listenerContainer   to subscribe to version channels with
+   * @param channelPrefix       to separate the channels of services sharing the same redis
+   * @param versionPollInterval time a known version is used before it is read from redis again
+   * @return this
+   */
+  public RedisResolverCacheFactory withVersionChannel(
+      final RedisMessageListenerContainer listenerContainer,
+      final String channelPrefix,
+      final Duration versionPollInterval) {
+    this.listenerContainer = listenerContainer;
+    this.channelPrefix = channelPrefix;
+    this.versionPollInterval = versionPollInterval;
+    return this;
   }
 
   @Override
   public ResolverCache create(final ResolverProperties properties) {
-    return new RedisVersionedCacheLayer(this.versionTemplate, this.resolverRedisOperations, properties);
+    final RedisVersionedCacheLayer layer = new RedisVersionedCacheLayer(this.versionTemplate,
+        this.resolverRedisOperations, properties, RedisVersionedCacheLayer.DEFAULT_BATCH_SIZE, this.localSnapshot);
+    if (Objects.isNull(this.listenerContainer)) {
+      return layer;
+    }
+    final String channel = "%s:%s:tree:version".formatted(
+        this.channelPrefix, ResolverRedisOperations.encode(properties.getEntityIdentifier()));
+    final String writtenChannel = RedisVersionedCacheLayer.writtenChannel(channel);
+    final MessageListener listener = (message, pattern) -> {
+      final Object version = this.versionTemplate.getValueSerializer().deserialize(message.getBody());
+      if (!(version instanceof final Long received)) {
+        return;
+      }
+      if (writtenChannel.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+        layer.versionWritten(received);
+      } else {
+        layer.versionPublished(received);
+      }
+    };
+    //A cache that is created again for the same resolver replaces the previous listener
+    final MessageListener previous = this.listeners.put(channel, listener);
+    if (Objects.nonNull(previous)) {
+      this.listenerContainer.removeMessageListener(previous);
+    }
+    this.listenerContainer.addMessageListener(listener,
+        List.of(new ChannelTopic(channel), new ChannelTopic(writtenChannel)));
+    log.debug("Listening for resolver versions on {}", channel);
+    return layer.withVersionChannel(channel, this.versionPollInterval);
   }
 }
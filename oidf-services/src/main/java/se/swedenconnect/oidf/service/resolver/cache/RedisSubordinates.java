@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.resolver.cache;
+
+import com.nimbusds.jwt.SignedJWT;
+
+import java.text.ParseException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read only view of the subordinate statements of an intermediate that are stored in a redis hash.
+ * <p>
+ * Statements are fetched one at a time with {@code HGET} when looked up by subject, the subjects with {@code HKEYS}
+ * when the key set is listed and every statement with {@code HGETALL} only when the entries are iterated. Every
+ * result is kept for the lifetime of the view.
+ *
+ * @author Felix Hellman
+ */
+final class RedisSubordinates extends AbstractMap<String, SignedJWT> {
+
+  private final ResolverRedisOperations operations;
+  private final ResolverRedisOperations.SubordinatesKey key;
+  private final Map<String, SignedJWT> fetched = new ConcurrentHashMap<>();
+  private volatile Set<String> subjects;
+  private volatile Map<String, SignedJWT> all;
+
+  /**
+   * Constructor.
+   *
+   * @param operations to read the hash with
+   * @param key        of the hash
+   */
+  RedisSubordinates(final ResolverRedisOperations operations, final ResolverRedisOperations.SubordinatesKey key) {
+    this.operations = operations;
+    this.key = key;
+  }
+
+  @Override
+  public SignedJWT get(final Object subject) {
+    if (!(subject instanceof final String value)) {
+      return null;
+    }
+    final Map<String, SignedJWT> loaded = this.all;
+    if (Objects.nonNull(loaded)) {
+      return loaded.get(value);
+    }
+    final SignedJWT cached = this.fetched.get(value);
+    if (Objects.nonNull(cached)) {
+      return cached;
+    }
+    final String jwt = this.operations.getSubordinate(this.key, value);
+    if (Objects.isNull(jwt)) {
+      return null;
+    }
+    return this.fetched.computeIfAbsent(value, s -> parse(jwt));
+  }
+
+  @Override
+  public boolean containsKey(final Object subject) {
+    return Objects.nonNull(this.get(subject));
+  }
+
+  @Override
+  public Set<String> keySet() {
+    Set<String> current = this.subjects;
+    if (Objects.isNull(current)) {
+      current = Collections.unmodifiableSet(this.operations.getSubordinateSubjects(this.key));
+      this.subjects = current;
+    }
+    return current;
+  }
+
+  @Override
+  public int size() {
+    return this.keySet().size();
+  }
+
+  @Override
+  public Set<Entry<String, SignedJWT>> entrySet() {
+    Map<String, SignedJWT> current = this.all;
+    if (Objects.isNull(current)) {
+      current = new LinkedHashMap<>();
+      for (final Entry<String, String> entry : this.operations.getSubordinates(this.key).entrySet()) {
+        final SignedJWT cached = this.fetched.get(entry.getKey());
+        current.put(entry.getKey(), Objects.nonNull(cached) ? cached : parse(entry.getValue()));
+      }
+      current = Collections.unmodifiableMap(current);
+      this.all = current;
+    }
+    return current.entrySet();
+  }
+
+  static SignedJWT parse(final String jwt) {
+    try {
+      return SignedJWT.parse(jwt);
+    } catch (final ParseException e) {
+      throw new IllegalArgumentException("Failed to parse subordinate statement", e);
+    }
+  }
+}
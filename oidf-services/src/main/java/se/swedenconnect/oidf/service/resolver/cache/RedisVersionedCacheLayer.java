@@ -16,35 +16,112 @@
  */
 package se.swedenconnect.oidf.service.resolver.cache;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
 import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.IndexedTreeVersion;
 import se.swedenconnect.oidf.common.entity.tree.Node;
 import se.swedenconnect.oidf.common.entity.tree.NodeKey;
 import se.swedenconnect.oidf.common.entity.tree.ResolverCache;
 import se.swedenconnect.oidf.common.entity.tree.SnapshotSource;
+import se.swedenconnect.oidf.common.entity.tree.TreeIndex;
 import se.swedenconnect.oidf.common.entity.tree.VersionedCacheLayer;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Redis implementation of {@link VersionedCacheLayer} and {@link SnapshotSource}
+ * <p>
+ * Entities written to the version that this instance is loading are buffered and written in pipelined batches of
+ * {@code batchSize}. The buffer is flushed before a version with buffered entities is read and before the next
+ * version is published, so readers never observe a partially written batch as missing data. Writes to any other
+ * version, e.g. by steps that are retried after the version was published, are written to redis directly so that
+ * other instances see them at once.
+ * <p>
+ * With local snapshots enabled, a new current version is copied from redis as soon as it is seen, e.g. when it is
+ * published on the version channel, on a replication executor and never on the thread asking for a snapshot. The
+ * version is copied level by level with {@code MGET} and a pipelined {@code HGETALL} of the subordinate statements,
+ * into an immutable {@link IndexedTreeVersion}. Until the copy is ready reads go to redis, afterward they are served
+ * from memory. Redis remains the source that is shared between instances; the local copy is replaced when the next
+ * version becomes current and is dropped if the copied version is written to after it was copied. A copy that is
+ * written to while it is being made is discarded, and a version is not copied again until {@code replicationDelay}
+ * has passed since its last write, so that a burst of writes does not cause a copy per write. Writes to older
+ * versions do not affect the copy. Writes to a version that is already current or older increase its
+ * {@link #getRevision(long) revision}.
+ * <p>
+ * The current version is kept in memory and re-read from redis once the version poll interval has passed, the
+ * default interval of zero reads it on every call. With a version channel, {@link #useNextVersion()} publishes the
+ * new version so that other instances see it without waiting for their next poll, see
+ * {@link #versionPublished(long)}. Writes to a version that is already current are published on the
+ * {@link #writtenChannel(String) written channel}, so that other instances drop their local copies and increase
+ * their revision of it as well, see {@link #versionWritten(long)}.
  *
  * @author Felix Hellman
  */
+@Slf4j
 public class RedisVersionedCacheLayer implements ResolverCache {
+
+  /**
+   * Default number of entities to write per pipelined batch.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * Number of entities to read per {@code MGET} when a version is copied to a local snapshot.
+   */
+  public static final int REPLICATION_BATCH_SIZE = 500;
+
+  /**
+   * Default time after the last write to a version before it is copied to a local snapshot again.
+   */
+  public static final Duration DEFAULT_REPLICATION_DELAY = Duration.ofSeconds(1);
+
+  private static final long NEVER = Long.MIN_VALUE;
+
   private final RedisTemplate<String, Long> versionTemplate;
 
   private final ResolverRedisOperations resolverRedisOperations;
   private final ResolverProperties properties;
+  private final int batchSize;
+  private final Map<ResolverRedisOperations.EntityKey, ScrapedEntity> buffer = new LinkedHashMap<>();
+  private final Set<Long> bufferedVersions = ConcurrentHashMap.newKeySet();
+  private long loadingVersion = -1;
+  private final boolean localSnapshot;
+  private final AtomicBoolean replicating = new AtomicBoolean();
+  private Executor replicator;
+  private volatile IndexedTreeVersion local;
+  private volatile long replicatedVersion = -1;
+  private final AtomicLong generation = new AtomicLong();
+  private volatile long invalidatedAt = NEVER;
+  private Duration replicationDelay = DEFAULT_REPLICATION_DELAY;
+  private final AtomicLong currentVersion = new AtomicLong(-1);
+  private final Map<Long, AtomicLong> revisions = new ConcurrentHashMap<>();
+  private volatile long versionReadAt;
+  private Duration versionPollInterval = Duration.ZERO;
+  private String versionChannel;
+  private String writtenChannel;
 
   /**
-   * Constructor.
+   * Constructor writing entities in batches of {@link #DEFAULT_BATCH_SIZE}.
    * @param versionTemplate for handling version numbers
    * @param resolverRedisOperations for handling data operations upon a tree
    * @param properties for handling which submodule the operation is for
@@ -54,14 +131,146 @@ public class RedisVersionedCacheLayer implements ResolverCache {
       final ResolverRedisOperations resolverRedisOperations,
       final ResolverProperties properties
       ) {
+    this(versionTemplate, resolverRedisOperations, properties, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param versionTemplate for handling version numbers
+   * @param resolverRedisOperations for handling data operations upon a tree
+   * @param properties for handling which submodule the operation is for
+   * @param batchSize number of entities to write per pipelined batch, 1 writes every entity directly
+   */
+  public RedisVersionedCacheLayer(
+      final RedisTemplate<String, Long> versionTemplate,
+      final ResolverRedisOperations resolverRedisOperations,
+      final ResolverProperties properties,
+      final int batchSize
+      ) {
+    this(versionTemplate, resolverRedisOperations, properties, batchSize, false);
+  }
+
+  /**
+   * Constructor.
+   * @param versionTemplate for handling version numbers
+   * @param resolverRedisOperations for handling data operations upon a tree
+   * @param properties for handling which submodule the operation is for
+   * @param batchSize number of entities to write per pipelined batch, 1 writes every entity directly
+   * @param localSnapshot true to serve the current version from a local copy
+   */
+  public RedisVersionedCacheLayer(
+      final RedisTemplate<String, Long> versionTemplate,
+      final ResolverRedisOperations resolverRedisOperations,
+      final ResolverProperties properties,
+      final int batchSize,
+      final boolean localSnapshot
+      ) {
 
     this.versionTemplate = versionTemplate;
     this.resolverRedisOperations = resolverRedisOperations;
     this.properties = properties;
+    this.batchSize = batchSize;
+    this.localSnapshot = localSnapshot;
+    if (localSnapshot) {
+      this.replicator = Executors.newSingleThreadExecutor(
+          Thread.ofPlatform().name("resolver-cache-replication-", 0).daemon().factory());
+    }
+  }
+
+  /**
+   * Publishes new versions on a channel and reads the current version from redis at most once per poll interval.
+   *
+   * @param channel to publish new versions on
+   * @param pollInterval time a version read from redis or received on the channel is used before it is read again
+   * @return this
+   */
+  public RedisVersionedCacheLayer withVersionChannel(final String channel, final Duration pollInterval) {
+    this.versionChannel = channel;
+    this.writtenChannel = writtenChannel(channel);
+    this.versionPollInterval = pollInterval;
+    return this;
+  }
+
+  /**
+   * Sets the time after the last write to a version before it is copied to a local snapshot again.
+   *
+   * @param delay to wait after the last write
+   * @return this
+   */
+  public RedisVersionedCacheLayer withReplicationDelay(final Duration delay) {
+    this.replicationDelay = delay;
+    return this;
+  }
+
+  /**
+   * Sets the executor that versions are copied to local snapshots upon.
+   *
+   * @param executor to copy versions upon
+   * @return this
+   */
+  public RedisVersionedCacheLayer withReplicationExecutor(final Executor executor) {
+    this.replicator = executor;
+    return this;
+  }
+
+  /**
+   * Channel that writes to versions that are already current are published on.
+   *
+   * @param versionChannel that new versions are published on
+   * @return channel for written versions
+   */
+  public static String writtenChannel(final String versionChannel) {
+    return versionChannel + ":written";
+  }
+
+  /**
+   * Called when a new current version has been published by any instance. Versions only move forward, so a version
+   * read from redis before a newer one was published does not replace it. With local snapshots enabled, copying a
+   * newer version is started at once.
+   *
+   * @param version that is now current
+   * @return the current version
+   */
+  public long versionPublished(final long version) {
+    final long previous = this.currentVersion.getAndAccumulate(version, Math::max);
+    final long current = Math.max(previous, version);
+    this.versionReadAt = System.nanoTime();
+    if (current > previous) {
+      //Revisions are kept for the current and the previous version
+      this.revisions.keySet().removeIf(revised -> revised < previous);
+      this.scheduleReplication(current);
+    }
+    return current;
+  }
+
+  /**
+   * Called when any instance has written to a version that was already current. A local copy of the version is
+   * dropped and copied again once the writes have settled, and the revision of the version is increased.
+   *
+   * @param version that has been written to
+   */
+  public void versionWritten(final long version) {
+    this.invalidate(version);
+  }
+
+  @Override
+  public long getRevision(final long version) {
+    final AtomicLong revision = this.revisions.get(version);
+    return Objects.isNull(revision) ? 0 : revision.get();
+  }
+
+  @Override
+  public Optional<TreeIndex<ScrapedEntity>> getIndex(final long version) {
+    return Optional.ofNullable(this.getLocal(version));
   }
 
   @Override
   public List<Node<ScrapedEntity>> getChildren(final Node<ScrapedEntity> parent, final long version) {
+    final IndexedTreeVersion treeVersion = this.getLocal(version);
+    if (Objects.nonNull(treeVersion)) {
+      return treeVersion.getChildren(parent.getKey().getKey());
+    }
+    this.flush(version);
     final ScrapedEntity parentData = this.getData(parent.getKey().getKey(), version);
     if (parentData != null && parentData.getIntermediate() != null) {
       return parentData.getIntermediate().subordinates().keySet().stream()
@@ -75,28 +284,51 @@ public class RedisVersionedCacheLayer implements ResolverCache {
   public void append(final Node<ScrapedEntity> child, final Node<ScrapedEntity> parent, final long version) {
     this.resolverRedisOperations
         .append(new ResolverRedisOperations.ChildKey(parent, version, this.properties.getEntityIdentifier()), child);
+    this.written(version);
   }
 
   @Override
   public void setData(final String location, final ScrapedEntity data, final long version) {
-    this.resolverRedisOperations.
-        setData(new ResolverRedisOperations.EntityKey(location, version, this.properties.getEntityIdentifier()), data);
+    final ResolverRedisOperations.EntityKey key =
+        new ResolverRedisOperations.EntityKey(location, version, this.properties.getEntityIdentifier());
+    if (!this.buffer(key, data)) {
+      this.resolverRedisOperations.setData(key, data);
+    }
+    this.written(version);
   }
 
   @Override
   public ScrapedEntity getData(final String location, final long version) {
+    final IndexedTreeVersion treeVersion = this.getLocal(version);
+    if (Objects.nonNull(treeVersion)) {
+      return treeVersion.getData(location);
+    }
+    this.flush(version);
     return this.resolverRedisOperations
         .getData(new ResolverRedisOperations.EntityKey(location, version, this.properties.getEntityIdentifier()));
   }
 
   @Override
   public Node<ScrapedEntity> getRoot(final long version) {
+    final IndexedTreeVersion treeVersion = this.getLocal(version);
+    if (Objects.nonNull(treeVersion)) {
+      return treeVersion.getRoot();
+    }
+    this.flush(version);
     return this.resolverRedisOperations
         .getRoot(new ResolverRedisOperations.RootKey(version, this.properties.getEntityIdentifier()));
   }
 
   @Override
   public long getCurrentVersion() {
+    final long version = this.currentVersion.get();
+    if (version >= 0 && System.nanoTime() - this.versionReadAt < this.versionPollInterval.toNanos()) {
+      return version;
+    }
+    return this.versionPublished(this.readCurrentVersion());
+  }
+
+  private long readCurrentVersion() {
     final BoundValueOperations<String, Long> ops =
         this.versionTemplate.boundValueOps("%s:tree:version".formatted(
             ResolverRedisOperations.encode(this.properties.getEntityIdentifier())));
@@ -111,6 +343,11 @@ public class RedisVersionedCacheLayer implements ResolverCache {
 
   @Override
   public void useNextVersion() {
+    synchronized (this.buffer) {
+      this.flushBuffer();
+      //Writes from here on, e.g. by retried steps, go directly to redis
+      this.loadingVersion = -1;
+    }
     final Long pendingVersion = this.versionTemplate
         .boundValueOps("%s:tree:pending-version".formatted(
             ResolverRedisOperations.encode(this.properties.getEntityIdentifier())))
@@ -120,18 +357,29 @@ public class RedisVersionedCacheLayer implements ResolverCache {
           .boundValueOps("%s:tree:version".formatted(
               ResolverRedisOperations.encode(this.properties.getEntityIdentifier())))
           .set(pendingVersion);
+      this.versionPublished(pendingVersion);
+      if (Objects.nonNull(this.versionChannel)) {
+        this.versionTemplate.convertAndSend(this.versionChannel, pendingVersion);
+      }
     }
   }
 
   @Override
   public CacheSnapshot<ScrapedEntity> snapshot() {
-    return new CacheSnapshot<>(this, this.getCurrentVersion());
+    final long version = this.getCurrentVersion();
+    //Starts copying a version that was written to once the writes have settled, the copy is not waited for
+    this.scheduleReplication(version);
+    return new CacheSnapshot<>(this, version);
   }
 
   @Override
   public CacheSnapshot<ScrapedEntity> createNewSnapshot(final Node<ScrapedEntity> root,
                                                         final ScrapedEntity rootData) {
     final long version = getNextVersion();
+    synchronized (this.buffer) {
+      this.flushBuffer();
+      this.loadingVersion = version;
+    }
     this.versionTemplate
         .boundValueOps("%s:tree:pending-version".formatted(
             ResolverRedisOperations.encode(this.properties.getEntityIdentifier())))
@@ -143,4 +391,181 @@ public class RedisVersionedCacheLayer implements ResolverCache {
     this.setData(root.getKey().getKey(), rootData, version);
     return new CacheSnapshot<>(this, version);
   }
+
+  private void written(final long version) {
+    if (version <= this.currentVersion.get() && this.invalidate(version) && Objects.nonNull(this.writtenChannel)) {
+      this.versionTemplate.convertAndSend(this.writtenChannel, version);
+    }
+  }
+
+  /**
+   * Increases the revision of a version that has been written to. If it is the version that is copied to the local
+   * snapshot the copy is dropped, a copy that is being made is discarded when it is done.
+   *
+   * @return false if the version is newer than the current version
+   */
+  private boolean invalidate(final long version) {
+    if (version > this.currentVersion.get()) {
+      return false;
+    }
+    this.revisions.computeIfAbsent(version, v -> new AtomicLong()).incrementAndGet();
+    if (this.replicatedVersion != version && Objects.isNull(this.getLocal(version))) {
+      return true;
+    }
+    this.invalidatedAt = System.nanoTime();
+    //The generation is increased before the copy is dropped, see replicate
+    this.generation.incrementAndGet();
+    if (Objects.nonNull(this.getLocal(version))) {
+      this.local = null;
+    }
+    if (this.replicatedVersion == version) {
+      this.replicatedVersion = -1;
+    }
+    return true;
+  }
+
+  /**
+   * Buffers a write to the version that is being loaded.
+   *
+   * @return false if the write is not buffered and has to be written directly
+   */
+  private boolean buffer(final ResolverRedisOperations.EntityKey key, final ScrapedEntity data) {
+    if (this.batchSize <= 1) {
+      return false;
+    }
+    synchronized (this.buffer) {
+      if (key.version() != this.loadingVersion) {
+        return false;
+      }
+      this.buffer.put(key, data);
+      this.bufferedVersions.add(key.version());
+      if (this.buffer.size() >= this.batchSize) {
+        this.flushBuffer();
+      }
+      return true;
+    }
+  }
+
+  private void flush(final long version) {
+    if (this.bufferedVersions.contains(version)) {
+      synchronized (this.buffer) {
+        this.flushBuffer();
+      }
+    }
+  }
+
+  private void flushBuffer() {
+    if (this.buffer.isEmpty()) {
+      return;
+    }
+    this.resolverRedisOperations.setData(this.buffer);
+    this.buffer.clear();
+    this.bufferedVersions.clear();
+  }
+
+  private IndexedTreeVersion getLocal(final long version) {
+    final IndexedTreeVersion treeVersion = this.local;
+    if (Objects.nonNull(treeVersion) && treeVersion.getVersion() == version) {
+      return treeVersion;
+    }
+    return null;
+  }
+
+  /**
+   * Starts copying a version to a local snapshot on the replication executor, unless it has already been attempted
+   * or a copy is already being made.
+   */
+  private void scheduleReplication(final long version) {
+    if (!this.localSnapshot || this.replicatedVersion == version || this.settling()
+        || !this.replicating.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      this.replicator.execute(() -> {
+        try {
+          //A newer version may have become current while this task was queued
+          this.replicate(this.currentVersion.get());
+        } finally {
+          this.replicating.set(false);
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      this.replicating.set(false);
+      log.warn("Could not start copying resolver cache version {}, reading from redis instead", version, e);
+    }
+  }
+
+  /**
+   * Copies a version to a local snapshot unless it has already been attempted. Only one copy is made at a time,
+   * readers keep reading from redis meanwhile.
+   * <p>
+   * A copy is discarded if the version is written to while it is made. The copy is installed before the generation
+   * is checked again and {@link #invalidate(long)} increases the generation before it drops the copy, so a write
+   * either is seen by the check or drops the installed copy itself.
+   */
+  private void replicate(final long version) {
+    if (this.replicatedVersion == version || this.settling()) {
+      return;
+    }
+    try {
+      this.replicatedVersion = version;
+      final long generation = this.generation.get();
+      final long start = System.nanoTime();
+      final IndexedTreeVersion treeVersion = this.copy(version);
+      if (Objects.nonNull(treeVersion)) {
+        this.local = treeVersion;
+        if (this.generation.get() != generation) {
+          this.local = null;
+          this.replicatedVersion = -1;
+          log.debug("Resolver cache version {} was written to while it was copied, discarding copy", version);
+          return;
+        }
+        log.debug("Copied resolver cache version {} with {} entities from redis in {} ms", version,
+            treeVersion.entries(), (System.nanoTime() - start) / 1_000_000);
+      }
+    } catch (final Exception e) {
+      log.warn("Failed to copy resolver cache version {} from redis, reading from redis instead", version, e);
+    }
+  }
+
+  private boolean settling() {
+    final long at = this.invalidatedAt;
+    return at != NEVER && System.nanoTime() - at < this.replicationDelay.toNanos();
+  }
+
+  private IndexedTreeVersion copy(final long version) {
+    final String entityId = this.properties.getEntityIdentifier();
+    final Node<ScrapedEntity> root =
+        this.resolverRedisOperations.getRoot(new ResolverRedisOperations.RootKey(version, entityId));
+    if (Objects.isNull(root)) {
+      return null;
+    }
+    final IndexedTreeVersion.Builder builder = new IndexedTreeVersion.Builder().root(root);
+    final Set<String> seen = new HashSet<>();
+    seen.add(root.getKey().getKey());
+    List<String> level = List.of(root.getKey().getKey());
+    while (!level.isEmpty()) {
+      final List<String> next = new ArrayList<>();
+      for (int from = 0; from < level.size(); from += REPLICATION_BATCH_SIZE) {
+        final List<String> keys = level.subList(from, Math.min(level.size(), from + REPLICATION_BATCH_SIZE));
+        final List<ScrapedEntity> values = this.resolverRedisOperations.getCompleteData(keys.stream()
+            .map(key -> new ResolverRedisOperations.EntityKey(key, version, entityId))
+            .toList());
+        for (int i = 0; i < keys.size(); i++) {
+          final ScrapedEntity data = values.get(i);
+          if (Objects.isNull(data)) {
+            continue;
+          }
+          builder.put(keys.get(i), data);
+          if (Objects.nonNull(data.getIntermediate())) {
+            data.getIntermediate().subordinates().keySet().stream()
+                .filter(seen::add)
+                .forEach(next::add);
+          }
+        }
+      }
+      level = next;
+    }
+    return builder.build(version);
+  }
 }
@@ -16,21 +16,39 @@
  */
 package se.swedenconnect.oidf.service.resolver.cache;
 
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import se.swedenconnect.oidf.common.entity.tree.Node;
 import se.swedenconnect.oidf.common.entity.tree.NodeKey;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+import se.swedenconnect.oidf.service.cache.SerializedStatements;
 
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements the operations towards redis using typed keys.
+ * <p>
+ * Values are written together with their time-to-live in a single command, see {@link #setData(Map)} for writing
+ * several entities in one round trip.
+ * <p>
+ * The subordinate statements of an intermediate are stored in a hash per intermediate, keyed by subject, next to the
+ * entity itself. Entities read with {@link #getData(EntityKey)} fetch their subordinate statements lazily, one
+ * subject at a time, so reading an intermediate does not transfer or parse every statement it has issued.
  *
  * @author Felix Hellman
  */
@@ -77,8 +95,19 @@ public class ResolverRedisOperations {
    * @param child node key
    */
   public void append(final ChildKey parent, final Node<ScrapedEntity> child) {
-    this.stringTemplate.opsForSet().add(parent.getRedisKey(), encode(child.getKey().getKey()));
-    this.stringTemplate.expire(parent.getRedisKey(), this.cacheTtl);
+    final String key = parent.getRedisKey();
+    final String member = encode(child.getKey().getKey());
+    final Duration ttl = this.cacheTtl;
+    this.stringTemplate.executePipelined(new SessionCallback<>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <K, V> Object execute(final RedisOperations<K, V> operations) throws DataAccessException {
+        final RedisOperations<String, String> typed = (RedisOperations<String, String>) operations;
+        typed.opsForSet().add(key, member);
+        typed.expire(key, ttl);
+        return null;
+      }
+    });
   }
 
   /**
@@ -87,8 +116,65 @@ public class ResolverRedisOperations {
    * @param data to set
    */
   public void setData(final EntityKey key, final ScrapedEntity data) {
-    this.template.opsForValue().set(key.getRedisKey(), data);
-    this.template.expire(key.getRedisKey(), this.cacheTtl);
+    this.template.opsForValue().set(key.getRedisKey(), data, this.cacheTtl);
+    this.setSubordinates(Map.of(key, data));
+  }
+
+  /**
+   * Sets or updates values for several keys in one pipelined round trip.
+   * @param entries to set
+   */
+  public void setData(final Map<EntityKey, ScrapedEntity> entries) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    final Duration ttl = this.cacheTtl;
+    this.template.executePipelined(new SessionCallback<>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <K, V> Object execute(final RedisOperations<K, V> operations) throws DataAccessException {
+        final RedisOperations<String, ScrapedEntity> typed = (RedisOperations<String, ScrapedEntity>) operations;
+        entries.forEach((key, data) -> typed.opsForValue().set(key.getRedisKey(), data, ttl));
+        return null;
+      }
+    });
+    this.setSubordinates(entries);
+  }
+
+  /**
+   * Replaces the hash of subordinate statements of every intermediate in a transaction, so that subjects that are
+   * no longer subordinates are removed and readers never observe a partially replaced hash.
+   */
+  private void setSubordinates(final Map<EntityKey, ScrapedEntity> entries) {
+    final Map<String, Map<String, String>> hashes = new LinkedHashMap<>();
+    entries.forEach((key, data) -> {
+      if (Objects.nonNull(data) && Objects.nonNull(data.getIntermediate())) {
+        final Map<String, String> statements = new LinkedHashMap<>();
+        data.getIntermediate().subordinates().forEach((subject, jwt) -> statements.put(subject, jwt.serialize()));
+        hashes.put(key.subordinates().getRedisKey(), statements);
+      }
+    });
+    if (hashes.isEmpty()) {
+      return;
+    }
+    final Duration ttl = this.cacheTtl;
+    this.stringTemplate.executePipelined(new SessionCallback<>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <K, V> Object execute(final RedisOperations<K, V> operations) throws DataAccessException {
+        final RedisOperations<String, String> typed = (RedisOperations<String, String>) operations;
+        hashes.forEach((key, statements) -> {
+          typed.multi();
+          typed.delete(key);
+          if (!statements.isEmpty()) {
+            typed.opsForHash().putAll(key, statements);
+            typed.expire(key, ttl);
+          }
+          typed.exec();
+        });
+        return null;
+      }
+    });
   }
 
   /**
@@ -97,7 +183,107 @@ public class ResolverRedisOperations {
    * @return value, can be null
    */
   public ScrapedEntity getData(final EntityKey key) {
-    return this.template.opsForValue().get(key.getRedisKey());
+    return this.withSubordinates(key, this.template.opsForValue().get(key.getRedisKey()));
+  }
+
+  /**
+   * Gets data for several keys in one round trip.
+   * @param keys for values
+   * @return values in the same order as the keys, an entry is null if its key does not exist
+   */
+  public List<ScrapedEntity> getData(final List<EntityKey> keys) {
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    final List<ScrapedEntity> values = this.template.opsForValue()
+        .multiGet(keys.stream().map(EntityKey::getRedisKey).toList());
+    if (Objects.isNull(values)) {
+      return Collections.nCopies(keys.size(), null);
+    }
+    final List<ScrapedEntity> result = new ArrayList<>(values.size());
+    for (int i = 0; i < keys.size(); i++) {
+      result.add(this.withSubordinates(keys.get(i), values.get(i)));
+    }
+    return result;
+  }
+
+  /**
+   * Gets data for several keys together with every subordinate statement of the intermediates, in two round trips.
+   * @param keys for values
+   * @return values in the same order as the keys, an entry is null if its key does not exist
+   */
+  public List<ScrapedEntity> getCompleteData(final List<EntityKey> keys) {
+    final List<ScrapedEntity> values = this.getData(keys);
+    final List<String> hashKeys = new ArrayList<>();
+    final List<ScrapedEntity> intermediates = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      final ScrapedEntity value = values.get(i);
+      if (Objects.nonNull(value) && value.getIntermediate() != null
+          && value.getIntermediate().subordinates() instanceof RedisSubordinates) {
+        hashKeys.add(keys.get(i).subordinates().getRedisKey());
+        intermediates.add(value);
+      }
+    }
+    if (hashKeys.isEmpty()) {
+      return values;
+    }
+    final List<Object> hashes = this.stringTemplate.executePipelined(new SessionCallback<>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <K, V> Object execute(final RedisOperations<K, V> operations) throws DataAccessException {
+        final RedisOperations<String, String> typed = (RedisOperations<String, String>) operations;
+        hashKeys.forEach(key -> typed.opsForHash().entries(key));
+        return null;
+      }
+    });
+    for (int i = 0; i < intermediates.size(); i++) {
+      final Map<String, String> subordinates = new ConcurrentHashMap<>();
+      if (hashes.get(i) instanceof final Map<?, ?> statements) {
+        statements.forEach((subject, jwt) -> subordinates.put((String) subject, (String) jwt));
+      }
+      intermediates.get(i).setIntermediate(new ScrapedIntermediate(new SerializedStatements(subordinates)));
+    }
+    return values;
+  }
+
+  /**
+   * Gets one subordinate statement of an intermediate.
+   * @param key of the subordinate statements
+   * @param subject of the subordinate
+   * @return serialized statement, null if not present
+   */
+  public String getSubordinate(final SubordinatesKey key, final String subject) {
+    return this.stringTemplate.<String, String>opsForHash().get(key.getRedisKey(), subject);
+  }
+
+  /**
+   * Gets the subjects of all subordinate statements of an intermediate.
+   * @param key of the subordinate statements
+   * @return subjects, empty if none are present
+   */
+  public Set<String> getSubordinateSubjects(final SubordinatesKey key) {
+    return new HashSet<>(this.stringTemplate.<String, String>opsForHash().keys(key.getRedisKey()));
+  }
+
+  /**
+   * Gets all subordinate statements of an intermediate.
+   * @param key of the subordinate statements
+   * @return serialized statements by subject, empty if none are present
+   */
+  public Map<String, String> getSubordinates(final SubordinatesKey key) {
+    return this.stringTemplate.<String, String>opsForHash().entries(key.getRedisKey());
+  }
+
+  /**
+   * Replaces the subordinate statements of an intermediate that was stored without them with a view that reads
+   * them from redis. Entities stored before the subordinate statements were split out keep their own statements.
+   */
+  private ScrapedEntity withSubordinates(final EntityKey key, final ScrapedEntity entity) {
+    if (Objects.nonNull(entity) && Objects.nonNull(entity.getIntermediate())
+        && entity.getIntermediate().subordinates().isEmpty()) {
+      entity.setIntermediate(new ScrapedIntermediate(new RedisSubordinates(this, key.subordinates())));
+    }
+    return entity;
   }
 
   /**
@@ -119,8 +305,7 @@ public class ResolverRedisOperations {
    * @param root node key for root
    */
   public void setRoot(final RootKey key, final Node<ScrapedEntity> root) {
-    this.stringTemplate.opsForValue().set(key.getRedisKey(), encode(root.getKey().getKey()));
-    this.stringTemplate.expire(key.getRedisKey(), this.cacheTtl);
+    this.stringTemplate.opsForValue().set(key.getRedisKey(), encode(root.getKey().getKey()), this.cacheTtl);
   }
 
   /**
@@ -133,6 +318,22 @@ public class ResolverRedisOperations {
     String getRedisKey() {
       return "%s:%d:entity:%s".formatted(encode(this.entityId), this.version, encode(this.location));
     }
+
+    SubordinatesKey subordinates() {
+      return new SubordinatesKey(this.location, this.version, this.entityId);
+    }
+  }
+
+  /**
+   * Key for the subordinate statements of an intermediate.
+   * @param location internal node key of the intermediate
+   * @param version to which the intermediate belongs to
+   * @param entityId to which module the data belongs to
+   */
+  public record SubordinatesKey(String location, long version, String entityId) {
+    String getRedisKey() {
+      return "%s:%d:subordinates:%s".formatted(encode(this.entityId), this.version, encode(this.location));
+    }
   }
 
   /**
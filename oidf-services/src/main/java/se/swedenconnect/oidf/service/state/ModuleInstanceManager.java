@@ -0,0 +1,70 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
+import se.swedenconnect.oidf.resolver.ResolverFactory;
+import se.swedenconnect.oidf.trustanchor.TrustAnchorFactory;
+import se.swedenconnect.oidf.trustmarkissuer.starter.TrustMarkIssuerFactory;
+
+/**
+ * Removes module instances that are no longer part of the registry when the registry has been reloaded. Changed
+ * modules are rebuilt by their factories the next time they are requested. Cached signers are released so that keys
+ * of removed entity records are not kept.
+ *
+ * @author Felix Hellman
+ */
+@Slf4j
+@Component
+public class ModuleInstanceManager {
+
+  private final ResolverFactory resolverFactory;
+  private final TrustAnchorFactory trustAnchorFactory;
+  private final TrustMarkIssuerFactory trustMarkIssuerFactory;
+  private final SigningEngine signingEngine;
+
+  /**
+   * Constructor.
+   *
+   * @param resolverFactory        holding resolver instances
+   * @param trustAnchorFactory     holding trust anchor instances
+   * @param trustMarkIssuerFactory holding trust mark issuer instances
+   * @param signingEngine          holding signers for the keys of the entity records
+   */
+  public ModuleInstanceManager(
+      final ResolverFactory resolverFactory,
+      final TrustAnchorFactory trustAnchorFactory,
+      final TrustMarkIssuerFactory trustMarkIssuerFactory,
+      final SigningEngine signingEngine) {
+    this.resolverFactory = resolverFactory;
+    this.trustAnchorFactory = trustAnchorFactory;
+    this.trustMarkIssuerFactory = trustMarkIssuerFactory;
+    this.signingEngine = signingEngine;
+  }
+
+  @EventListener
+  void handle(final RegistryLoadedEvent event) {
+    log.debug("Evicting removed module instances after registry reload");
+    this.resolverFactory.evictRemovedModules();
+    this.trustAnchorFactory.evictRemovedModules();
+    this.trustMarkIssuerFactory.evictRemovedModules();
+    this.signingEngine.invalidate();
+  }
+}
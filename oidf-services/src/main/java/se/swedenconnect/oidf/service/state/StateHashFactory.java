@@ -18,26 +18,21 @@ package se.swedenconnect.oidf.service.state;
 
 import com.nimbusds.jose.shaded.gson.Gson;
 import lombok.AllArgsConstructor;
-import tools.jackson.core.JsonGenerator;
-import tools.jackson.core.JsonParser;
-import tools.jackson.core.type.TypeReference;
-import tools.jackson.databind.DeserializationContext;
-import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.module.SimpleModule;
-import com.nimbusds.jose.jwk.JWKSet;
 import org.bouncycastle.util.encoders.Hex;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.CompositeRecord;
 
-import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Class responsible for hashing internal state.
+ * <p>
+ * The record is serialized straight into the digest, the hash is the same as for the serialized json but the json is
+ * never held in memory.
  *
  * @author Felix Hellman
  */
@@ -50,9 +45,11 @@ public class StateHashFactory {
    * @throws Exception
    */
   public String hashState(final CompositeRecord record) throws Exception {
-    final String json = this.gson.toJson(record);
     final MessageDigest digest = MessageDigest.getInstance("SHA-256");
-    final byte[] hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
-    return new String(Hex.encode(hash));
+    try (final Writer writer = new OutputStreamWriter(
+        new DigestOutputStream(OutputStream.nullOutputStream(), digest), StandardCharsets.UTF_8)) {
+      this.gson.toJson(record, writer);
+    }
+    return new String(Hex.encode(digest.digest()));
   }
 }
@@ -26,6 +26,7 @@ import se.swedenconnect.oidf.service.cache.managed.ManagedCache;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.LongConsumer;
 
 /**
  * Resolver Wrapper that uses a cache for requests.
@@ -62,11 +63,35 @@ public class CacheBackedResolver implements Resolver {
     return response;
   }
 
+  @Override
+  public String resolve(final ResolveRequest request, final LongConsumer resolvedVersion)
+      throws FederationException {
+    final EntityID entityId = this.inner.getEntityId();
+    final String cachedResponse = this.cache.get(request.toKey(entityId));
+    if (Objects.nonNull(cachedResponse) && !cachedResponse.isBlank()) {
+      //The version of a cached response is not known
+      return cachedResponse;
+    }
+    final String response = this.inner.resolve(request, resolvedVersion);
+    this.cache.add(request.toKey(entityId), response);
+    return response;
+  }
+
+  @Override
+  public long getCurrentVersion() {
+    return this.inner.getCurrentVersion();
+  }
+
   @Override
   public DiscoveryResponse discovery(final DiscoveryRequest request) {
     return this.inner.discovery(request);
   }
 
+  @Override
+  public String serializedDiscovery(final DiscoveryRequest request) {
+    return this.inner.serializedDiscovery(request);
+  }
+
   @Override
   public EntityID getEntityId() {
     return this.inner.getEntityId();
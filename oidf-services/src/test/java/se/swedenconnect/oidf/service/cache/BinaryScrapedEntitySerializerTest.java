@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.cache;
+
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for {@link BinaryScrapedEntitySerializer} and {@link BinaryFrame}.
+ *
+ * @author Felix Hellman
+ */
+class BinaryScrapedEntitySerializerTest {
+
+  private static final String ENTITY_ID = "https://im.example.com";
+
+  private ScrapedEntity entity;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    this.entity = new TestScrapedEntities().entity(ENTITY_ID, 20);
+  }
+
+  @Test
+  void roundTrip() {
+    final BinaryScrapedEntitySerializer serializer = new BinaryScrapedEntitySerializer();
+    final byte[] bytes = serializer.serialize(this.entity);
+    Assertions.assertTrue(BinaryFrame.isFramed(bytes));
+
+    final ScrapedEntity read = serializer.deserialize(bytes);
+    Assertions.assertEquals(this.entity.getEntityID(), read.getEntityID());
+    Assertions.assertEquals(this.entity.getScrapedAt().toEpochMilli(), read.getScrapedAt().toEpochMilli());
+    Assertions.assertEquals(this.entity.getEcLocation(), read.getEcLocation());
+    Assertions.assertEquals(
+        this.entity.getEntityStatement().getSignedStatement().serialize(),
+        read.getEntityStatement().getSignedStatement().serialize());
+    Assertions.assertEquals(
+        this.entity.getTrustMarkStatuses().keySet(), read.getTrustMarkStatuses().keySet());
+
+    Assertions.assertEquals(20, read.getIntermediate().subordinates().size());
+    final String subject = ENTITY_ID + "/sub7";
+    final SignedJWT subordinate = read.getIntermediate().subordinates().get(subject);
+    Assertions.assertEquals(
+        this.entity.getIntermediate().subordinates().get(subject).serialize(), subordinate.serialize());
+    //Statements are parsed once and then kept
+    Assertions.assertSame(subordinate, read.getIntermediate().subordinates().get(subject));
+    Assertions.assertEquals(subject, read.getIntermediate().statement(subject).subject());
+
+    //A read entity is written from the serialized statements it holds
+    final ScrapedEntity rewritten = serializer.deserialize(serializer.serialize(read));
+    Assertions.assertEquals(
+        read.getEntityStatement().getSignedStatement().serialize(),
+        rewritten.getEntityStatement().getSignedStatement().serialize());
+    Assertions.assertEquals(
+        read.getIntermediate().subordinates().keySet(), rewritten.getIntermediate().subordinates().keySet());
+  }
+
+  @Test
+  void subordinatesCanBeLeftOut() {
+    final BinaryScrapedEntitySerializer serializer =
+        new BinaryScrapedEntitySerializer(false, BinaryFrame.DEFAULT_COMPRESSION_THRESHOLD);
+    final ScrapedEntity read = serializer.deserialize(serializer.serialize(this.entity));
+    Assertions.assertNotNull(read.getIntermediate());
+    Assertions.assertTrue(read.getIntermediate().subordinates().isEmpty());
+  }
+
+  @Test
+  void jsonWrittenBeforeUpgradeIsRead() {
+    final byte[] json = new ScrapedEntitySerializer(false).serialize(this.entity);
+    final ScrapedEntity read = new ResolverEntitySerializer().deserialize(json);
+    Assertions.assertEquals(this.entity.getEntityID(), read.getEntityID());
+    Assertions.assertEquals(
+        this.entity.getEntityStatement().getSignedStatement().serialize(),
+        read.getEntityStatement().getSignedStatement().serialize());
+  }
+
+  @Test
+  void valuesAreWrittenAsJsonUnlessBinaryIsEnabled() {
+    final byte[] json = new ResolverEntitySerializer().serialize(this.entity);
+    Assertions.assertFalse(BinaryFrame.isFramed(json));
+    final byte[] binary = new ResolverEntitySerializer(true).serialize(this.entity);
+    Assertions.assertTrue(BinaryFrame.isFramed(binary));
+
+    final ResolverEntitySerializer reader = new ResolverEntitySerializer();
+    Assertions.assertEquals(this.entity.getEntityID(), reader.deserialize(json).getEntityID());
+    Assertions.assertEquals(this.entity.getEntityID(), reader.deserialize(binary).getEntityID());
+  }
+
+  @Test
+  void largeBodiesAreDeflated() {
+    final byte[] small = "{}".getBytes(StandardCharsets.UTF_8);
+    Assertions.assertEquals(small.length + 5, BinaryFrame.frame(small, 0).length);
+    Assertions.assertArrayEquals(small, BinaryFrame.unframe(BinaryFrame.frame(small, 0)));
+
+    final byte[] large = "{\"key\":\"value\"}".repeat(1000).getBytes(StandardCharsets.UTF_8);
+    final byte[] framed = BinaryFrame.frame(large, BinaryFrame.DEFAULT_COMPRESSION_THRESHOLD);
+    Assertions.assertTrue(framed.length < large.length / 10);
+    Assertions.assertArrayEquals(large, BinaryFrame.unframe(framed));
+    Assertions.assertArrayEquals(large, BinaryFrame.unframe(BinaryFrame.frame(large, -1)));
+  }
+
+  @Test
+  void unknownVersionIsRejected() {
+    final byte[] framed = BinaryFrame.frame("{}".getBytes(StandardCharsets.UTF_8), -1);
+    framed[3] = 2;
+    Assertions.assertThrows(SerializationException.class, () -> BinaryFrame.unframe(framed));
+    Assertions.assertFalse(BinaryFrame.isFramed("{}".getBytes(StandardCharsets.UTF_8)));
+  }
+}
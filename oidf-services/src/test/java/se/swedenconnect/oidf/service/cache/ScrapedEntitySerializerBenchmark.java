@@ -0,0 +1,158 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BinaryScrapedEntitySerializer} with the GSON based {@link ScrapedEntitySerializer} for an entity
+ * with one trust mark status and {@code subordinates} subordinate statements. Binary values larger than
+ * {@code compressionThreshold} bytes are deflated, -1 never deflates.
+ * <p>
+ * The serialize and deserialize benchmarks measure the serializers only, the read benchmarks also read the entity
+ * statement and one subordinate statement, as resolving a trust chain does. The size of both values is logged at
+ * setup. Run with {@code main} from the test classpath, the gc profiler reports allocation per operation
+ * ({@code gc.alloc.rate.norm}).
+ *
+ * @author Felix Hellman
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScrapedEntitySerializerBenchmark {
+
+  private static final String ENTITY_ID = "https://im.example.com";
+
+  @Param({"0", "1000"})
+  public int subordinates;
+
+  @Param({"8192", "-1"})
+  public int compressionThreshold;
+
+  private final ScrapedEntitySerializer gson = new ScrapedEntitySerializer();
+  private BinaryScrapedEntitySerializer binary;
+  private ScrapedEntity entity;
+  private byte[] gsonValue;
+  private byte[] binaryValue;
+  private String subject;
+
+  /**
+   * Creates the entity and its serialized values.
+   *
+   * @throws Exception if a statement can not be signed
+   */
+  @Setup
+  public void setup() throws Exception {
+    this.binary = new BinaryScrapedEntitySerializer(true, this.compressionThreshold);
+    this.entity = new TestScrapedEntities().entity(ENTITY_ID, this.subordinates);
+    this.gsonValue = this.gson.serialize(this.entity);
+    this.binaryValue = this.binary.serialize(this.entity);
+    this.subject = this.subordinates > 0 ? "%s/sub%d".formatted(ENTITY_ID, this.subordinates / 2) : null;
+    log.info("subordinates={} compressionThreshold={} gson={} bytes binary={} bytes",
+        this.subordinates, this.compressionThreshold, this.gsonValue.length, this.binaryValue.length);
+  }
+
+  /**
+   * @return value written by GSON
+   */
+  @Benchmark
+  public byte[] gsonSerialize() {
+    return this.gson.serialize(this.entity);
+  }
+
+  /**
+   * @return value written in the binary format
+   */
+  @Benchmark
+  public byte[] binarySerialize() {
+    return this.binary.serialize(this.entity);
+  }
+
+  /**
+   * @return entity read by GSON
+   */
+  @Benchmark
+  public ScrapedEntity gsonDeserialize() {
+    return this.gson.deserialize(this.gsonValue);
+  }
+
+  /**
+   * @return entity read from the binary format
+   */
+  @Benchmark
+  public ScrapedEntity binaryDeserialize() {
+    return this.binary.deserialize(this.binaryValue);
+  }
+
+  /**
+   * @return statements read from an entity read by GSON
+   */
+  @Benchmark
+  public Object gsonDeserializeAndRead() {
+    return read(this.gson.deserialize(this.gsonValue));
+  }
+
+  /**
+   * @return statements read from an entity read from the binary format
+   */
+  @Benchmark
+  public Object binaryDeserializeAndRead() {
+    return read(this.binary.deserialize(this.binaryValue));
+  }
+
+  private Object read(final ScrapedEntity read) {
+    if (this.subject == null) {
+      return read.getEntityStatement().getClaimsSet();
+    }
+    return new Object[] {read.getEntityStatement().getClaimsSet(), read.getIntermediate().statement(this.subject)};
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args ignored
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(ScrapedEntitySerializerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.cache;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.oauth2.sdk.id.Issuer;
+import com.nimbusds.oauth2.sdk.id.Subject;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatementClaimsSet;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityType;
+import net.minidev.json.JSONObject;
+import se.swedenconnect.oidf.common.entity.entity.integration.trustmark.TrustMarkStatusResponse;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates scraped entities with signed statements for cache tests and benchmarks.
+ *
+ * @author Felix Hellman
+ */
+public final class TestScrapedEntities {
+
+  private final ECKey key;
+
+  /**
+   * Constructor generating a signing key.
+   *
+   * @throws Exception if the key can not be generated
+   */
+  public TestScrapedEntities() throws Exception {
+    this.key = new ECKeyGenerator(Curve.P_256).keyID("key-1").generate();
+  }
+
+  /**
+   * @param entityID     of the entity
+   * @param subordinates number of subordinates, 0 for a leaf
+   * @return scraped entity with one trust mark status
+   * @throws Exception if a statement can not be signed
+   */
+  public ScrapedEntity entity(final String entityID, final int subordinates) throws Exception {
+    final Map<String, TrustMarkStatusResponse> statuses = new HashMap<>();
+    statuses.put("https://tm.example.com/certified", new TrustMarkStatusResponse(this.trustMarkStatus(), false));
+    ScrapedIntermediate intermediate = null;
+    if (subordinates > 0) {
+      intermediate = new ScrapedIntermediate(new ConcurrentHashMap<>());
+      for (int i = 0; i < subordinates; i++) {
+        intermediate.put(this.statement(entityID, "%s/sub%d".formatted(entityID, i)));
+      }
+    }
+    return ScrapedEntity.builder()
+        .entityID(new EntityID(entityID))
+        .ecLocation(entityID + "/.well-known/openid-federation")
+        .entityStatement(this.statement(entityID, entityID))
+        .trustMarkStatuses(statuses)
+        .intermediate(intermediate)
+        .build();
+  }
+
+  private EntityStatement statement(final String issuer, final String subject) throws Exception {
+    final Instant now = Instant.now();
+    final EntityStatementClaimsSet claims = new EntityStatementClaimsSet(
+        new Issuer(issuer),
+        new Subject(subject),
+        Date.from(now),
+        Date.from(now.plusSeconds(3600)),
+        new JWKSet(this.key.toPublicJWK()));
+    final JSONObject metadata = new JSONObject();
+    metadata.put("organization_name", "Organization of " + subject);
+    metadata.put("federation_fetch_endpoint", subject + "/fetch");
+    metadata.put("federation_list_endpoint", subject + "/list");
+    claims.setMetadata(EntityType.FEDERATION_ENTITY, metadata);
+    return EntityStatement.sign(claims, this.key);
+  }
+
+  private SignedJWT trustMarkStatus() throws Exception {
+    final SignedJWT jwt = new SignedJWT(
+        new JWSHeader.Builder(JWSAlgorithm.ES256).keyID(this.key.getKeyID()).build(),
+        new JWTClaimsSet.Builder()
+            .issuer("https://tm.example.com")
+            .claim("status", "active")
+            .issueTime(new Date())
+            .build());
+    jwt.sign(new ECDSASigner(this.key));
+    return jwt;
+  }
+}
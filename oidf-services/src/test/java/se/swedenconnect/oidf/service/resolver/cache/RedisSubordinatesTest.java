@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.resolver.cache;
+
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import se.swedenconnect.oidf.service.cache.TestScrapedEntities;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link RedisSubordinates}.
+ *
+ * @author Felix Hellman
+ */
+class RedisSubordinatesTest {
+
+  private static final String IM = "https://im.example.com";
+  private static final String FIRST = IM + "/sub0";
+  private static final String SECOND = IM + "/sub1";
+
+  private final ResolverRedisOperations.SubordinatesKey key =
+      new ResolverRedisOperations.SubordinatesKey(IM, 1, "https://resolver.example.com");
+  private final Map<String, String> statements = new LinkedHashMap<>();
+  private ResolverRedisOperations operations;
+  private RedisSubordinates subordinates;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    new TestScrapedEntities().entity(IM, 2).getIntermediate().subordinates()
+        .forEach((subject, jwt) -> this.statements.put(subject, jwt.serialize()));
+    this.operations = Mockito.mock(ResolverRedisOperations.class);
+    Mockito.when(this.operations.getSubordinate(Mockito.eq(this.key), Mockito.anyString()))
+        .thenAnswer(invocation -> this.statements.get(invocation.getArgument(1, String.class)));
+    Mockito.when(this.operations.getSubordinateSubjects(this.key)).thenReturn(new HashSet<>(this.statements.keySet()));
+    Mockito.when(this.operations.getSubordinates(this.key)).thenReturn(this.statements);
+    this.subordinates = new RedisSubordinates(this.operations, this.key);
+  }
+
+  @Test
+  void statementIsFetchedOncePerSubject() {
+    final SignedJWT first = this.subordinates.get(FIRST);
+
+    Assertions.assertEquals(this.statements.get(FIRST), first.serialize());
+    Assertions.assertSame(first, this.subordinates.get(FIRST));
+    Assertions.assertTrue(this.subordinates.containsKey(FIRST));
+    Mockito.verify(this.operations, Mockito.times(1)).getSubordinate(this.key, FIRST);
+    Mockito.verify(this.operations, Mockito.never()).getSubordinates(this.key);
+  }
+
+  @Test
+  void unknownSubjectIsAbsent() {
+    Assertions.assertNull(this.subordinates.get("https://unknown.example.com"));
+    Assertions.assertFalse(this.subordinates.containsKey("https://unknown.example.com"));
+    Assertions.assertNull(this.subordinates.get(1));
+  }
+
+  @Test
+  void subjectsAreListedWithoutStatements() {
+    Assertions.assertEquals(this.statements.keySet(), this.subordinates.keySet());
+    Assertions.assertEquals(2, this.subordinates.size());
+    Mockito.verify(this.operations, Mockito.times(1)).getSubordinateSubjects(this.key);
+    Mockito.verify(this.operations, Mockito.never()).getSubordinates(this.key);
+    Mockito.verify(this.operations, Mockito.never()).getSubordinate(Mockito.any(), Mockito.anyString());
+  }
+
+  @Test
+  void entriesAreFetchedOnceAndReuseFetchedStatements() {
+    final SignedJWT first = this.subordinates.get(FIRST);
+
+    final Map<String, SignedJWT> copy = new LinkedHashMap<>();
+    this.subordinates.forEach(copy::put);
+
+    Assertions.assertEquals(this.statements.keySet(), copy.keySet());
+    Assertions.assertSame(first, copy.get(FIRST));
+    Assertions.assertEquals(this.statements.get(SECOND), this.subordinates.get(SECOND).serialize());
+    Mockito.verify(this.operations, Mockito.times(1)).getSubordinates(this.key);
+    Mockito.verify(this.operations, Mockito.never()).getSubordinate(this.key, SECOND);
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.resolver.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
+import se.swedenconnect.oidf.common.entity.tree.Node;
+import se.swedenconnect.oidf.common.entity.tree.NodeKey;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Tests for the in memory version of {@link RedisVersionedCacheLayer}.
+ *
+ * @author Felix Hellman
+ */
+class RedisVersionedCacheLayerTest {
+
+  private static final String ENTITY_ID = "https://resolver.example.com";
+  private static final String TA = "https://ta.example.com";
+
+  private RedisTemplate<String, Long> versionTemplate;
+  private BoundValueOperations<String, Long> version;
+  private BoundValueOperations<String, Long> pendingVersion;
+  private ResolverRedisOperations operations;
+  private final List<Map<ResolverRedisOperations.EntityKey, ScrapedEntity>> batches = new ArrayList<>();
+  private RedisVersionedCacheLayer layer;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    this.versionTemplate = Mockito.mock(RedisTemplate.class);
+    this.version = Mockito.mock(BoundValueOperations.class);
+    this.pendingVersion = Mockito.mock(BoundValueOperations.class);
+    final String prefix = ResolverRedisOperations.encode(ENTITY_ID);
+    Mockito.when(this.versionTemplate.boundValueOps("%s:tree:version".formatted(prefix))).thenReturn(this.version);
+    Mockito.when(this.versionTemplate.boundValueOps("%s:tree:pending-version".formatted(prefix)))
+        .thenReturn(this.pendingVersion);
+    this.operations = Mockito.mock(ResolverRedisOperations.class);
+    //The buffer is cleared after it has been written, keep a copy of every batch
+    Mockito.doAnswer(invocation -> this.batches.add(new LinkedHashMap<>(invocation.getArgument(0))))
+        .when(this.operations).setData(Mockito.anyMap());
+    this.layer = this.layer(RedisVersionedCacheLayer.DEFAULT_BATCH_SIZE);
+  }
+
+  private RedisVersionedCacheLayer layer(final int batchSize) {
+    final ResolverProperties properties = new ResolverProperties();
+    properties.setEntityIdentifier(ENTITY_ID);
+    return new RedisVersionedCacheLayer(this.versionTemplate, this.operations, properties, batchSize)
+        .withVersionChannel("channel", Duration.ofHours(1));
+  }
+
+  private static ScrapedEntity entity(final String entityId) {
+    return ScrapedEntity.builder().entityID(new EntityID(entityId)).build();
+  }
+
+  private RedisVersionedCacheLayer localLayer(final Duration replicationDelay) {
+    //Copies are made on the calling thread to keep the tests deterministic
+    return this.localLayer(replicationDelay, Runnable::run);
+  }
+
+  private RedisVersionedCacheLayer localLayer(final Duration replicationDelay, final Executor replicator) {
+    final ResolverProperties properties = new ResolverProperties();
+    properties.setEntityIdentifier(ENTITY_ID);
+    Mockito.when(this.version.get()).thenReturn(10L);
+    Mockito.when(this.operations.getRoot(new ResolverRedisOperations.RootKey(10, ENTITY_ID)))
+        .thenReturn(new Node<>(new NodeKey(TA)));
+    Mockito.when(this.operations.getCompleteData(Mockito.anyList())).thenReturn(List.of(entity(TA)));
+    return new RedisVersionedCacheLayer(this.versionTemplate, this.operations, properties,
+        RedisVersionedCacheLayer.DEFAULT_BATCH_SIZE, true)
+        .withVersionChannel("channel", Duration.ofHours(1))
+        .withReplicationDelay(replicationDelay)
+        .withReplicationExecutor(replicator);
+  }
+
+  private CacheSnapshot<ScrapedEntity> load(final RedisVersionedCacheLayer cache) {
+    return cache.createNewSnapshot(new Node<>(new NodeKey(TA)), entity(TA));
+  }
+
+  @Test
+  void writesToLoadingVersionAreBatched() {
+    final RedisVersionedCacheLayer cache = this.layer(3);
+    final CacheSnapshot<ScrapedEntity> snapshot = this.load(cache);
+    snapshot.setData(new NodeKey("https://a.example.com"), entity("https://a.example.com"));
+    Assertions.assertTrue(this.batches.isEmpty());
+
+    snapshot.setData(new NodeKey("https://b.example.com"), entity("https://b.example.com"));
+
+    Assertions.assertEquals(1, this.batches.size());
+    Assertions.assertEquals(3, this.batches.getFirst().size());
+    Mockito.verify(this.operations, Mockito.never()).setData(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  void bufferIsFlushedBeforeBufferedVersionIsRead() {
+    final CacheSnapshot<ScrapedEntity> snapshot = this.load(this.layer);
+    final ResolverRedisOperations.EntityKey key =
+        new ResolverRedisOperations.EntityKey(TA, snapshot.getVersion(), ENTITY_ID);
+
+    snapshot.getData(new NodeKey(TA));
+
+    final InOrder order = Mockito.inOrder(this.operations);
+    order.verify(this.operations).setData(Mockito.anyMap());
+    order.verify(this.operations).getData(key);
+    Assertions.assertEquals(List.of(key), List.copyOf(this.batches.getFirst().keySet()));
+  }
+
+  @Test
+  void bufferIsFlushedWhenNextVersionIsPublished() {
+    final CacheSnapshot<ScrapedEntity> snapshot = this.load(this.layer);
+    Mockito.when(this.pendingVersion.get()).thenReturn(snapshot.getVersion());
+
+    this.layer.useNextVersion();
+
+    Assertions.assertEquals(1, this.batches.size());
+    Mockito.verify(this.version).set(snapshot.getVersion());
+  }
+
+  @Test
+  void writesAfterPublishAreWrittenDirectly() {
+    final CacheSnapshot<ScrapedEntity> snapshot = this.load(this.layer);
+    Mockito.when(this.pendingVersion.get()).thenReturn(snapshot.getVersion());
+    this.layer.useNextVersion();
+    final ScrapedEntity late = entity("https://late.example.com");
+
+    snapshot.setData(new NodeKey("https://late.example.com"), late);
+
+    Mockito.verify(this.operations).setData(
+        new ResolverRedisOperations.EntityKey("https://late.example.com", snapshot.getVersion(), ENTITY_ID), late);
+    Assertions.assertEquals(1, this.batches.size());
+  }
+
+  @Test
+  void writesToVersionsThatAreNotLoadedHereAreWrittenDirectly() {
+    final ScrapedEntity entity = entity("https://a.example.com");
+
+    this.layer.setData("https://a.example.com", entity, 10);
+
+    Mockito.verify(this.operations).setData(
+        new ResolverRedisOperations.EntityKey("https://a.example.com", 10, ENTITY_ID), entity);
+    Assertions.assertTrue(this.batches.isEmpty());
+  }
+
+  @Test
+  void versionIsReadOncePerPollInterval() {
+    Mockito.when(this.version.get()).thenReturn(10L, 20L);
+    Assertions.assertEquals(10L, this.layer.getCurrentVersion());
+    Assertions.assertEquals(10L, this.layer.getCurrentVersion());
+    Mockito.verify(this.version, Mockito.times(1)).get();
+
+    this.layer.versionPublished(30L);
+    Assertions.assertEquals(30L, this.layer.getCurrentVersion());
+    //An older version published late does not replace the current one
+    this.layer.versionPublished(5L);
+    Assertions.assertEquals(30L, this.layer.getCurrentVersion());
+    Mockito.verify(this.version, Mockito.times(1)).get();
+  }
+
+  @Test
+  void nextVersionIsPublished() {
+    Mockito.when(this.version.get()).thenReturn(10L);
+    Mockito.when(this.pendingVersion.get()).thenReturn(40L);
+    Assertions.assertEquals(10L, this.layer.getCurrentVersion());
+
+    this.layer.useNextVersion();
+
+    Mockito.verify(this.version).set(40L);
+    Mockito.verify(this.versionTemplate).convertAndSend("channel", 40L);
+    Assertions.assertEquals(40L, this.layer.getCurrentVersion());
+    Mockito.verify(this.version, Mockito.times(1)).get();
+  }
+
+  @Test
+  void currentVersionIsServedFromLocalCopy() {
+    final RedisVersionedCacheLayer cache = this.localLayer(Duration.ZERO);
+
+    final CacheSnapshot<ScrapedEntity> snapshot = cache.snapshot();
+
+    Assertions.assertTrue(cache.getIndex(10).isPresent());
+    Assertions.assertEquals(TA, snapshot.getData(new NodeKey(TA)).getEntityID().getValue());
+    cache.snapshot();
+    Mockito.verify(this.operations, Mockito.times(1)).getCompleteData(Mockito.anyList());
+    Mockito.verify(this.operations, Mockito.never()).getData(Mockito.any(ResolverRedisOperations.EntityKey.class));
+  }
+
+  @Test
+  void writeDropsLocalCopyAndIsPublished() {
+    final RedisVersionedCacheLayer cache = this.localLayer(Duration.ZERO);
+    cache.snapshot();
+
+    cache.setData(TA, entity(TA), 10);
+
+    Assertions.assertTrue(cache.getIndex(10).isEmpty());
+    Assertions.assertEquals(1, cache.getRevision(10));
+    Mockito.verify(this.versionTemplate).convertAndSend(RedisVersionedCacheLayer.writtenChannel("channel"), 10L);
+    cache.snapshot();
+    Assertions.assertTrue(cache.getIndex(10).isPresent());
+    Mockito.verify(this.operations, Mockito.times(2)).getCompleteData(Mockito.anyList());
+  }
+
+  @Test
+  void copyThatIsWrittenToWhileItIsMadeIsDiscarded() {
+    final RedisVersionedCacheLayer cache = this.localLayer(Duration.ofHours(1));
+    Mockito.when(this.operations.getCompleteData(Mockito.anyList())).thenAnswer(invocation -> {
+      cache.setData(TA, entity(TA), 10);
+      return List.of(entity(TA));
+    }).thenReturn(List.of(entity(TA)));
+
+    cache.snapshot();
+
+    Assertions.assertTrue(cache.getIndex(10).isEmpty());
+    Mockito.verify(this.operations, Mockito.times(1)).getCompleteData(Mockito.anyList());
+  }
+
+  @Test
+  void publishedVersionIsCopiedOffTheRequestThread() {
+    final List<Runnable> tasks = new ArrayList<>();
+    final RedisVersionedCacheLayer cache = this.localLayer(Duration.ZERO, tasks::add);
+
+    final CacheSnapshot<ScrapedEntity> snapshot = cache.snapshot();
+
+    Assertions.assertTrue(cache.getIndex(10).isEmpty());
+    snapshot.getData(new NodeKey(TA));
+    Mockito.verify(this.operations, Mockito.never()).getCompleteData(Mockito.anyList());
+    Assertions.assertEquals(1, tasks.size());
+
+    tasks.removeFirst().run();
+    Assertions.assertTrue(cache.getIndex(10).isPresent());
+
+    Mockito.when(this.operations.getRoot(new ResolverRedisOperations.RootKey(20, ENTITY_ID)))
+        .thenReturn(new Node<>(new NodeKey(TA)));
+    cache.versionPublished(20);
+    tasks.removeFirst().run();
+    Assertions.assertTrue(cache.getIndex(20).isPresent());
+  }
+
+  @Test
+  void writesToOlderVersionsKeepLocalCopy() {
+    final RedisVersionedCacheLayer cache = this.localLayer(Duration.ofHours(1));
+    cache.snapshot();
+
+    cache.versionWritten(9);
+    cache.setData(TA, entity(TA), 9);
+
+    Assertions.assertTrue(cache.getIndex(10).isPresent());
+    Assertions.assertEquals(2, cache.getRevision(9));
+    Assertions.assertEquals(0, cache.getRevision(10));
+    Mockito.when(this.operations.getRoot(new ResolverRedisOperations.RootKey(11, ENTITY_ID)))
+        .thenReturn(new Node<>(new NodeKey(TA)));
+    cache.versionPublished(11);
+    Assertions.assertTrue(cache.getIndex(11).isPresent(), "Writes to older versions do not delay the next copy");
+  }
+
+  @Test
+  void writesByOtherInstancesDropLocalCopy() {
+    final RedisVersionedCacheLayer cache = this.localLayer(Duration.ZERO);
+    cache.snapshot();
+
+    cache.versionWritten(10);
+
+    Assertions.assertTrue(cache.getIndex(10).isEmpty());
+    Assertions.assertEquals(1, cache.getRevision(10));
+    Mockito.verify(this.versionTemplate, Mockito.never())
+        .convertAndSend(Mockito.eq(RedisVersionedCacheLayer.writtenChannel("channel")), Mockito.any());
+    cache.snapshot();
+    Assertions.assertTrue(cache.getIndex(10).isPresent());
+  }
+
+  @Test
+  void versionIsNotCopiedAgainUntilWritesHaveSettled() {
+    final RedisVersionedCacheLayer cache = this.localLayer(Duration.ofHours(1));
+    cache.snapshot();
+
+    cache.versionWritten(10);
+    final CacheSnapshot<ScrapedEntity> snapshot = cache.snapshot();
+
+    Assertions.assertTrue(cache.getIndex(10).isEmpty());
+    snapshot.getData(new NodeKey(TA));
+    Mockito.verify(this.operations).getData(new ResolverRedisOperations.EntityKey(TA, 10, ENTITY_ID));
+    Mockito.verify(this.operations, Mockito.times(1)).getCompleteData(Mockito.anyList());
+  }
+}
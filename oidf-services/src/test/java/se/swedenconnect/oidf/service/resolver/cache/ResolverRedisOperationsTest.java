@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.service.resolver.cache;
+
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedIntermediate;
+import se.swedenconnect.oidf.service.cache.TestScrapedEntities;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tests for how {@link ResolverRedisOperations} splits the subordinate statements of intermediates into a hash.
+ *
+ * @author Felix Hellman
+ */
+class ResolverRedisOperationsTest {
+
+  private static final String ENTITY_ID = "https://resolver.example.com";
+  private static final String IM = "https://im.example.com";
+  private static final Duration TTL = Duration.ofHours(1);
+
+  private static TestScrapedEntities entities;
+
+  private RedisTemplate<String, ScrapedEntity> entityTemplate;
+  private ValueOperations<String, ScrapedEntity> values;
+  private RedisTemplate<String, String> stringTemplate;
+  private HashOperations<String, Object, Object> hash;
+  private RedisOperations<String, String> pipeline;
+  private HashOperations<String, Object, Object> pipelineHash;
+  private ResolverRedisOperations operations;
+
+  private final ResolverRedisOperations.EntityKey key = new ResolverRedisOperations.EntityKey(IM, 1, ENTITY_ID);
+  private final String hashKey = this.key.subordinates().getRedisKey();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() throws Exception {
+    if (entities == null) {
+      entities = new TestScrapedEntities();
+    }
+    this.entityTemplate = Mockito.mock(RedisTemplate.class);
+    this.values = Mockito.mock(ValueOperations.class);
+    Mockito.when(this.entityTemplate.opsForValue()).thenReturn(this.values);
+    this.stringTemplate = Mockito.mock(RedisTemplate.class);
+    this.hash = Mockito.mock(HashOperations.class);
+    Mockito.when(this.stringTemplate.opsForHash()).thenReturn(this.hash);
+    this.pipeline = Mockito.mock(RedisOperations.class);
+    this.pipelineHash = Mockito.mock(HashOperations.class);
+    Mockito.when(this.pipeline.opsForHash()).thenReturn(this.pipelineHash);
+    Mockito.when(this.stringTemplate.executePipelined(Mockito.any(SessionCallback.class))).thenAnswer(invocation -> {
+      invocation.getArgument(0, SessionCallback.class).execute(this.pipeline);
+      return List.of();
+    });
+    this.operations = new ResolverRedisOperations(this.entityTemplate, this.stringTemplate, TTL);
+  }
+
+  @Test
+  void subordinatesAreReplacedInTransaction() throws Exception {
+    final ScrapedEntity intermediate = entities.entity(IM, 2);
+    final Map<String, String> statements = new LinkedHashMap<>();
+    intermediate.getIntermediate().subordinates().forEach((subject, jwt) -> statements.put(subject, jwt.serialize()));
+
+    this.operations.setData(this.key, intermediate);
+
+    Mockito.verify(this.values).set(this.key.getRedisKey(), intermediate, TTL);
+    final InOrder order = Mockito.inOrder(this.pipeline, this.pipelineHash);
+    order.verify(this.pipeline).multi();
+    order.verify(this.pipeline).delete(this.hashKey);
+    order.verify(this.pipelineHash).putAll(this.hashKey, statements);
+    order.verify(this.pipeline).expire(this.hashKey, TTL);
+    order.verify(this.pipeline).exec();
+  }
+
+  @Test
+  void intermediateWithoutSubordinatesClearsHash() throws Exception {
+    final ScrapedEntity intermediate = entities.entity(IM, 0);
+    intermediate.setIntermediate(new ScrapedIntermediate(new ConcurrentHashMap<>()));
+
+    this.operations.setData(Map.of(this.key, intermediate));
+
+    Mockito.verify(this.pipeline).delete(this.hashKey);
+    Mockito.verify(this.pipelineHash, Mockito.never()).putAll(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  void leavesDoNotWriteHashes() throws Exception {
+    this.operations.setData(this.key, entities.entity(IM, 0));
+
+    Mockito.verify(this.stringTemplate, Mockito.never()).executePipelined(Mockito.any(SessionCallback.class));
+  }
+
+  @Test
+  void subordinatesAreReadFromHash() throws Exception {
+    final ScrapedEntity stored = entities.entity(IM, 0);
+    stored.setIntermediate(new ScrapedIntermediate(new ConcurrentHashMap<>()));
+    final SignedJWT statement = entities.entity(IM, 1).getIntermediate().subordinates().values().iterator().next();
+    Mockito.when(this.values.get(this.key.getRedisKey())).thenReturn(stored);
+    Mockito.when(this.hash.get(this.hashKey, "https://im.example.com/sub0")).thenReturn(statement.serialize());
+
+    final ScrapedEntity read = this.operations.getData(this.key);
+
+    Assertions.assertInstanceOf(RedisSubordinates.class, read.getIntermediate().subordinates());
+    Assertions.assertEquals(statement.serialize(),
+        read.getIntermediate().subordinates().get("https://im.example.com/sub0").serialize());
+  }
+
+  @Test
+  void embeddedSubordinatesOfLegacyValuesAreKept() throws Exception {
+    final ScrapedEntity stored = entities.entity(IM, 2);
+    final Map<String, SignedJWT> embedded = stored.getIntermediate().subordinates();
+    Mockito.when(this.values.get(this.key.getRedisKey())).thenReturn(stored);
+
+    final ScrapedEntity read = this.operations.getData(this.key);
+
+    Assertions.assertSame(embedded, read.getIntermediate().subordinates());
+    Assertions.assertEquals(2, read.getIntermediate().subordinates().size());
+    Mockito.verifyNoInteractions(this.hash);
+  }
+}
@@ -17,21 +17,19 @@
 package se.swedenconnect.oidf;
 
 import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
 import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKMatcher;
 import com.nimbusds.jose.jwk.JWKSelector;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
-import lombok.AllArgsConstructor;
 import se.swedenconnect.oidf.common.entity.entity.RecordVerificationException;
 import se.swedenconnect.oidf.common.entity.entity.integration.Expirable;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.RegistryVerifier;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.EntityRecord;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.ModuleRecord;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.NotificationRecord;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
 import se.swedenconnect.oidf.common.entity.validation.FederationAssert;
 import se.swedenconnect.oidf.common.entity.entity.integration.JsonRegistryLoader;
 
@@ -44,11 +42,37 @@ import java.util.List;
  *
  * @author Felix Hellman
  */
-@AllArgsConstructor
 public class JWSRegistryVerifier implements RegistryVerifier {
 
   private final JWKSet validationKeys;
   private final JsonRegistryLoader loader;
+  private final SigningEngine signingEngine;
+
+  /**
+   * Constructor.
+   *
+   * @param validationKeys to verify records with
+   * @param loader         for parsing records
+   */
+  public JWSRegistryVerifier(final JWKSet validationKeys, final JsonRegistryLoader loader) {
+    this(validationKeys, loader, SigningEngine.DEFAULT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param validationKeys to verify records with
+   * @param loader         for parsing records
+   * @param signingEngine  holding verifiers for the validation keys
+   */
+  public JWSRegistryVerifier(
+      final JWKSet validationKeys,
+      final JsonRegistryLoader loader,
+      final SigningEngine signingEngine) {
+    this.validationKeys = validationKeys;
+    this.loader = loader;
+    this.signingEngine = signingEngine;
+  }
 
   @Override
   public Expirable<List<EntityRecord>> verifyEntityRecords(final String jwt) {
@@ -98,11 +122,7 @@ public class JWSRegistryVerifier implements RegistryVerifier {
   private SignedJWT verify(final String jwtString) throws JOSEException, ParseException {
     final SignedJWT jwt = SignedJWT.parse(jwtString);
     final Key key = this.selectKey(jwt);
-
-    final JWSVerifier jwsVerifier = new DefaultJWSVerifierFactory()
-        .createJWSVerifier(jwt.getHeader(), key);
-
-    if (!jwt.verify(jwsVerifier)) {
+    if (!jwt.verify(this.signingEngine.verifier(jwt.getHeader(), key))) {
       throw new RecordVerificationException("Failed to verify signature on record");
     }
     return jwt;
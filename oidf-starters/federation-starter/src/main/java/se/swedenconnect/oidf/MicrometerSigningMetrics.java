@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import se.swedenconnect.oidf.common.entity.jwt.SigningMetrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of {@link SigningMetrics} that exposes signing latency per algorithm as a Micrometer timer. The
+ * count of the timer is the number of signatures, which gives the signing throughput.
+ *
+ * @author Felix Hellman
+ */
+public class MicrometerSigningMetrics implements SigningMetrics {
+
+  private final MeterRegistry registry;
+  private final Map<JWSAlgorithm, Timer> timers = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   * @param registry for managing meters
+   */
+  public MicrometerSigningMetrics(final MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void signed(final JWSAlgorithm algorithm, final Duration duration) {
+    this.timers.computeIfAbsent(algorithm, alg -> Timer.builder("federation_signing")
+            .tag("alg", alg.getName())
+            .publishPercentileHistogram()
+            .register(this.registry))
+        .record(duration);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Registry of module instances, such as resolvers and trust anchors, built once per module configuration.
+ * <p>
+ * Instances are keyed by entity identifier. A lookup with the properties instance that built the module returns the
+ * module without allocating. A lookup with a different properties instance, e.g. after the registry has been
+ * reloaded, compares fingerprints of the two configurations. The module is kept if they are equal and otherwise
+ * replaced atomically by a module built from the new properties.
+ *
+ * @param <P> module properties
+ * @param <T> module instance
+ * @author Felix Hellman
+ */
+public class ModuleInstanceRegistry<P, T> {
+
+  private final Map<String, Instance<P, T>> instances = new ConcurrentHashMap<>();
+  private final Function<P, String> identifier;
+  private final Function<P, ?> fingerprint;
+  private final Function<P, T> factory;
+  private final AtomicLong created = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param identifier  entity identifier of a module
+   * @param fingerprint of a module configuration, modules with equal fingerprints are interchangeable
+   * @param factory     for building a module
+   */
+  public ModuleInstanceRegistry(
+      final Function<P, String> identifier,
+      final Function<P, ?> fingerprint,
+      final Function<P, T> factory) {
+    this.identifier = identifier;
+    this.fingerprint = fingerprint;
+    this.factory = factory;
+  }
+
+  /**
+   * @param properties of the module
+   * @return module built from the properties or from an equal configuration
+   */
+  public T get(final P properties) {
+    final String key = this.identifier.apply(properties);
+    final Instance<P, T> current = this.instances.get(key);
+    if (Objects.nonNull(current) && current.properties() == properties) {
+      return current.module();
+    }
+    return this.instances.compute(key, (k, existing) -> {
+      if (Objects.nonNull(existing) && existing.properties() == properties) {
+        return existing;
+      }
+      final Object print = this.fingerprint.apply(properties);
+      if (Objects.nonNull(existing) && existing.fingerprint().equals(print)) {
+        return new Instance<>(properties, print, existing.module());
+      }
+      this.created.incrementAndGet();
+      return new Instance<>(properties, print, this.factory.apply(properties));
+    }).module();
+  }
+
+  /**
+   * Removes modules that are no longer configured.
+   *
+   * @param identifiers of the configured modules
+   */
+  public void retain(final Collection<String> identifiers) {
+    this.instances.keySet().retainAll(Set.copyOf(identifiers));
+  }
+
+  /**
+   * @return number of modules held
+   */
+  public int size() {
+    return this.instances.size();
+  }
+
+  /**
+   * @return number of modules built since this registry was created
+   */
+  public long getCreated() {
+    return this.created.get();
+  }
+
+  private record Instance<P, T>(P properties, Object fingerprint, T module) {
+  }
+}
@@ -22,6 +22,8 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.util.Assert;
 
+import java.time.Duration;
+
 /**
  * Configuration properties for resolver.
  *
@@ -35,6 +37,72 @@ public class ResolverConfigurationProperties {
 
   private RestClientProperty client;
 
+  /**
+   * Number of previous tree versions to keep in memory, defaults to 1 if not set.
+   */
+  private Integer retainedVersions;
+
+  /**
+   * True (default) to resolve the federation tree in parallel, false to resolve it depth first one entity at a time.
+   */
+  private Boolean parallelExecution;
+
+  /**
+   * Number of entities fetched at the same time, shared by every resolver, defaults to 64 if not set.
+   */
+  private Integer maxConcurrentRequests;
+
+  /**
+   * Number of entities fetched at the same time from a single host, defaults to 8 if not set. Applies separately to
+   * the subordinate statements fetched while scraping intermediates.
+   */
+  private Integer maxConcurrentRequestsPerHost;
+
+  /**
+   * Time a reload of the federation tree may take before it is cancelled, defaults to 10 minutes if not set.
+   */
+  private Duration reloadDeadline;
+
+  /**
+   * Time a trust mark status fetched during an earlier reload may be reused, defaults to 5 minutes if not set.
+   * Set to zero to request every status once per reload.
+   */
+  private Duration trustMarkStatusFreshness;
+
+  /**
+   * Number of times a failed step is retried, defaults to 5 if not set. The delay before each retry doubles, starting
+   * at the step retry time of the resolver.
+   */
+  private Integer stepRetryMaxAttempts;
+
+  /**
+   * Upper bound of the delay before a failed step is retried, defaults to 30 minutes if not set.
+   */
+  private Duration stepRetryMaxDelay;
+
+  /**
+   * Number of retries that may be waiting at the same time, shared by every resolver, defaults to 10000 if not set.
+   */
+  private Integer stepRetryQueueSize;
+
+  /**
+   * Number of consecutive failures towards a host before retries towards it are stopped, defaults to 5 if not set.
+   */
+  private Integer hostFailureThreshold;
+
+  /**
+   * Time retries towards a failing host are stopped before a single retry is let through, defaults to 5 minutes if
+   * not set.
+   */
+  private Duration hostCircuitOpenDuration;
+
+  /**
+   * Number of subjects to resolve at the same time when a new snapshot has been loaded, before it is published.
+   * Resolve requests are then answered from the precomputed responses. Defaults to 0, which resolves every request on
+   * demand.
+   */
+  private Integer precomputeParallelism;
+
   /**
    * Validate resolver properties.
    * @param propertyKey
@@ -42,5 +110,49 @@ public class ResolverConfigurationProperties {
   public void validate(final String propertyKey) {
     Assert.notNull(this.client, "%s.%s can not be null".formatted(propertyKey, "client"));
     Assert.isNull(this.client.getBaseUri(), "%s.%s can not be set".formatted(propertyKey, "client.base-uri"));
+    if (this.retainedVersions != null) {
+      Assert.isTrue(this.retainedVersions >= 0,
+          "%s.%s can not be negative".formatted(propertyKey, "retained-versions"));
+    }
+    if (this.maxConcurrentRequests != null) {
+      Assert.isTrue(this.maxConcurrentRequests > 0,
+          "%s.%s must be positive".formatted(propertyKey, "max-concurrent-requests"));
+    }
+    if (this.maxConcurrentRequestsPerHost != null) {
+      Assert.isTrue(this.maxConcurrentRequestsPerHost > 0,
+          "%s.%s must be positive".formatted(propertyKey, "max-concurrent-requests-per-host"));
+    }
+    if (this.reloadDeadline != null) {
+      Assert.isTrue(this.reloadDeadline.isPositive(),
+          "%s.%s must be positive".formatted(propertyKey, "reload-deadline"));
+    }
+    if (this.trustMarkStatusFreshness != null) {
+      Assert.isTrue(!this.trustMarkStatusFreshness.isNegative(),
+          "%s.%s can not be negative".formatted(propertyKey, "trust-mark-status-freshness"));
+    }
+    if (this.stepRetryMaxAttempts != null) {
+      Assert.isTrue(this.stepRetryMaxAttempts >= 0,
+          "%s.%s can not be negative".formatted(propertyKey, "step-retry-max-attempts"));
+    }
+    if (this.stepRetryMaxDelay != null) {
+      Assert.isTrue(this.stepRetryMaxDelay.isPositive(),
+          "%s.%s must be positive".formatted(propertyKey, "step-retry-max-delay"));
+    }
+    if (this.stepRetryQueueSize != null) {
+      Assert.isTrue(this.stepRetryQueueSize >= 0,
+          "%s.%s can not be negative".formatted(propertyKey, "step-retry-queue-size"));
+    }
+    if (this.precomputeParallelism != null) {
+      Assert.isTrue(this.precomputeParallelism >= 0,
+          "%s.%s can not be negative".formatted(propertyKey, "precompute-parallelism"));
+    }
+    if (this.hostFailureThreshold != null) {
+      Assert.isTrue(this.hostFailureThreshold > 0,
+          "%s.%s must be positive".formatted(propertyKey, "host-failure-threshold"));
+    }
+    if (this.hostCircuitOpenDuration != null) {
+      Assert.isTrue(this.hostCircuitOpenDuration.isPositive(),
+          "%s.%s must be positive".formatted(propertyKey, "host-circuit-open-duration"));
+    }
   }
 }
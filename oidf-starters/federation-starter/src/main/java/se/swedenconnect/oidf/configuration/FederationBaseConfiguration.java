@@ -27,6 +27,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.web.client.RestClient;
 import se.swedenconnect.oidf.FederationProperties;
+import se.swedenconnect.oidf.MicrometerSigningMetrics;
 import se.swedenconnect.oidf.RestClientFederationClient;
 import se.swedenconnect.oidf.common.entity.entity.integration.CompositeRecordSource;
 import se.swedenconnect.oidf.common.entity.entity.integration.LocalRecordSource;
@@ -34,6 +35,7 @@ import se.swedenconnect.oidf.common.entity.entity.integration.RecordSource;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
 import se.swedenconnect.oidf.common.entity.jwt.JWKSetSignerFactory;
 import se.swedenconnect.oidf.common.entity.jwt.SignerFactory;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
 import se.swedenconnect.oidf.common.entity.keys.KeyRegistry;
 import se.swedenconnect.oidf.common.entity.tree.FederationTreeSource;
 import se.swedenconnect.oidf.common.entity.tree.scraping.CacheSnapshotVersionLookup;
@@ -76,8 +78,13 @@ public class FederationBaseConfiguration {
   }
 
   @Bean
-  SignerFactory signerFactory() {
-    return new JWKSetSignerFactory();
+  SigningEngine signingEngine(final MeterRegistry registry) {
+    return new SigningEngine(new MicrometerSigningMetrics(registry));
+  }
+
+  @Bean
+  SignerFactory signerFactory(final SigningEngine signingEngine) {
+    return new JWKSetSignerFactory(signingEngine);
   }
 
   @Bean
@@ -21,6 +21,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import se.swedenconnect.oidf.common.entity.entity.EntityConfigurationFactory;
 import se.swedenconnect.oidf.common.entity.entity.integration.EntityConfigurationCache;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
 import se.swedenconnect.oidf.common.entity.keys.KeyRegistry;
 import se.swedenconnect.oidf.common.entity.tree.scraping.CacheSnapshotVersionLookup;
 import se.swedenconnect.oidf.routing.EntityRouter;
@@ -42,7 +43,7 @@ public class FederationBaseRouteConfiguration {
   }
 
   @Bean
-  JWKSRouter jwksRouter(final KeyRegistry registry) {
-    return new JWKSRouter(registry);
+  JWKSRouter jwksRouter(final KeyRegistry registry, final SigningEngine signingEngine) {
+    return new JWKSRouter(registry, signingEngine);
   }
 }
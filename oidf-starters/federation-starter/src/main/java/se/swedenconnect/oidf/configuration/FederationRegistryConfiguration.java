@@ -51,6 +51,7 @@ import se.swedenconnect.oidf.common.entity.entity.integration.registry.RegistryV
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.TrustMarkType;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.CompositeRecord;
 import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.EntityRecord;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
 import se.swedenconnect.oidf.common.entity.keys.KeyRegistry;
 
 import java.time.Clock;
@@ -105,8 +106,10 @@ public class FederationRegistryConfiguration {
   }
 
   @Bean
-  RegistryVerifier registryVerifier(final FederationProperties properties, final JsonRegistryLoader loader) {
-    return new JWSRegistryVerifier(properties.getRegistry().getIntegration().getValidationKeys(), loader);
+  RegistryVerifier registryVerifier(final FederationProperties properties, final JsonRegistryLoader loader,
+      final SigningEngine signingEngine) {
+    return new JWSRegistryVerifier(
+        properties.getRegistry().getIntegration().getValidationKeys(), loader, signingEngine);
   }
 
   @Bean
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.routing;
+
+import org.springframework.web.servlet.function.RequestPredicate;
+import org.springframework.web.servlet.function.ServerRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Holds the {@link RoutingTable} for a list of records and rebuilds it when the records change.
+ * <p>
+ * The records are compared by identity. The composite record source returns the same list until one of its sources
+ * changes, so an unchanged registry costs a single reference comparison. A rebuilt table is published by swapping a
+ * single volatile reference, requests never see a partially built table.
+ *
+ * @param <T> type of record
+ * @author Felix Hellman
+ */
+public class CachedRoutingTable<T> {
+
+  private final Supplier<List<T>> records;
+  private final Function<List<T>, RoutingTable<T>> factory;
+  private volatile State<T> state;
+
+  /**
+   * Constructor.
+   *
+   * @param records supplier of the current records
+   * @param factory for building a routing table for the records
+   */
+  public CachedRoutingTable(final Supplier<List<T>> records, final Function<List<T>, RoutingTable<T>> factory) {
+    this.records = records;
+    this.factory = factory;
+  }
+
+  /**
+   * @param request to find record for
+   * @return record serving the request, empty if no route matches
+   */
+  public Optional<T> find(final ServerRequest request) {
+    return this.get().find(request);
+  }
+
+  /**
+   * @return predicate matching every request that has a route for the current records
+   */
+  public RequestPredicate predicate() {
+    return request -> this.find(request).isPresent();
+  }
+
+  /**
+   * @return routing table of the current records
+   */
+  public RoutingTable<T> get() {
+    final List<T> current = this.records.get();
+    final State<T> state = this.state;
+    if (state != null && sameRecords(state.records(), current)) {
+      return state.table();
+    }
+    final RoutingTable<T> table = this.factory.apply(current);
+    this.state = new State<>(current, table);
+    return table;
+  }
+
+  private static <T> boolean sameRecords(final List<T> previous, final List<T> current) {
+    if (previous == current) {
+      return true;
+    }
+    if (previous.size() != current.size()) {
+      return false;
+    }
+    for (int i = 0; i < previous.size(); i++) {
+      if (previous.get(i) != current.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private record State<T>(List<T> records, RoutingTable<T> table) {
+  }
+}
@@ -21,7 +21,6 @@ import com.nimbusds.openid.connect.sdk.federation.entities.EntityStatement;
 import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.web.servlet.function.RequestPredicate;
 import org.springframework.web.servlet.function.RouterFunctions;
 import org.springframework.web.servlet.function.ServerRequest;
 import org.springframework.web.servlet.function.ServerResponse;
@@ -73,18 +72,11 @@ public class EntityRouter implements Router {
 
   @Override
   public void evaluateEndpoints(final CompositeRecordSource source, final RouterFunctions.Builder route) {
-    route.GET(request -> {
-      return source.getAllEntities().stream()
-          .map(entity -> this.getRouteForEntity(entity))
-          .reduce(p -> false, RequestPredicate::or)
-          .test(request);
-    }, request -> {
+    final CachedRoutingTable<EntityRecord> routes = new CachedRoutingTable<>(source::getAllEntities,
+        this::createRoutingTable);
+    route.GET(routes.predicate(), request -> {
       final Long snapshot = this.lookup.getLatestSnapshotVersion();
-      final EntityRecord entityRecord = source.getAllEntities().stream()
-          .filter(entity -> this.getRouteForEntity(entity)
-              .test(request))
-          .findFirst()
-          .get();
+      final EntityRecord entityRecord = routes.find(request).get();
       final Observation observation = this.observationRegistry.getCurrentObservation();
       final String endpoint = request.requestPath().value();
       if (observation != null) {
@@ -123,16 +115,15 @@ public class EntityRouter implements Router {
     return Optional.empty();
   }
 
-  private RequestPredicate getRouteForEntity(final EntityRecord entity) {
-    final Optional<RequestPredicate> alternateRoute = Optional.ofNullable(entity.getEcLocation())
-        .map(this.routeFactory::createAlternateRoute);
-
-    final RequestPredicate defaultRoute = this.routeFactory
-        .createRoute(entity.getEntityIdentifier(), "/.well-known/openid-federation",
-            Objects.isNull(entity.getEcLocation()));
-
-    return alternateRoute
-        .map(requestPredicate -> requestPredicate.or(defaultRoute))
-        .orElse(defaultRoute);
+  private RoutingTable<EntityRecord> createRoutingTable(final List<EntityRecord> entities) {
+    final RoutingTable.Builder<EntityRecord> table = this.routeFactory.routingTable();
+    for (final EntityRecord entity : entities) {
+      if (Objects.nonNull(entity.getEcLocation())) {
+        table.alternateRoute(entity.getEcLocation(), entity);
+      }
+      table.route(entity.getEntityIdentifier(), "/.well-known/openid-federation", entity,
+          Objects.isNull(entity.getEcLocation()));
+    }
+    return table.build();
   }
 }
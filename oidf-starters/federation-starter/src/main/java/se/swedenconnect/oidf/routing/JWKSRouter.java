@@ -26,6 +26,7 @@ import org.springframework.web.servlet.function.RouterFunctions;
 import org.springframework.web.servlet.function.ServerResponse;
 import se.swedenconnect.oidf.common.entity.entity.integration.CompositeRecordSource;
 import se.swedenconnect.oidf.common.entity.jwt.JWKFederationSigner;
+import se.swedenconnect.oidf.common.entity.jwt.SigningEngine;
 import se.swedenconnect.oidf.common.entity.keys.KeyRegistry;
 
 import java.util.Map;
@@ -40,6 +41,7 @@ import java.util.Optional;
 public class JWKSRouter implements Router {
 
   private final KeyRegistry registry;
+  private final SigningEngine signingEngine;
 
   @Override
   public void evaluateEndpoints(final CompositeRecordSource source, final RouterFunctions.Builder route) {
@@ -48,7 +50,7 @@ public class JWKSRouter implements Router {
       if (defaultKey.isEmpty()) {
         throw new IllegalArgumentException("No (default) sign key was found for the jwks endpoint.");
       }
-      final JWKFederationSigner signer = new JWKFederationSigner(defaultKey.get());
+      final JWKFederationSigner signer = new JWKFederationSigner(defaultKey.get(), this.signingEngine);
       final Map<String, JWKSet> mappedPublicKeys = this.registry.getMappedPublicKeys();
       final JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder();
       Optional.ofNullable(mappedPublicKeys.get("federation")).ifPresent(fed -> {
@@ -69,54 +69,80 @@ public class RouteFactory {
     return this.createRoute(entityID, endpoint, true);
   }
 
-/**
- * Creates a route for an entity.
- *
- * @param entityID for this route
- * @param endpoint for this route
- * @param logOnWarning log warning, disable this if an alternate route is feasible
- * @return route predicate
- */
-public RequestPredicate createRoute(
-    final EntityID entityID,
-    final String endpoint,
-    final Boolean logOnWarning) {
-  final URI uri = URI.create(entityID.getValue());
-  final String path = uri.getPath();
-  final String host = uri.getHost();
-  if (!uri.toString().contains(this.context.getContextPath()) && logOnWarning) {
-    log.warn("Could not create route {}/{}, path does not contain server context path {}",
-        entityID.getValue(),
-        endpoint,
-        this.context.getContextPath()
-    );
-    return r -> false;
+  /**
+   * Creates a route for an entity.
+   *
+   * @param entityID for this route
+   * @param endpoint for this route
+   * @param logOnWarning log warning, disable this if an alternate route is feasible
+   * @return route predicate
+   */
+  public RequestPredicate createRoute(
+      final EntityID entityID,
+      final String endpoint,
+      final Boolean logOnWarning) {
+    final URI uri = URI.create(entityID.getValue());
+    final Optional<String> internalPath = this.internalPath(uri, endpoint, logOnWarning);
+    if (internalPath.isEmpty()) {
+      return r -> false;
+    }
+    final String internalEndpoint = internalPath.get();
+    final String host = uri.getHost();
+    final RequestPredicate hostPredicate = r -> Optional.ofNullable(r.headers().header("host").getFirst()).orElse(
+        "").equals(host);
+    final RequestPredicate pathPredicate = r -> r.path().equals(internalEndpoint);
+    if (this.isStrict()) {
+      return hostPredicate.and(pathPredicate);
+    }
+    return pathPredicate;
   }
-  final String contextAwarePath = path.replace(this.context.getContextPath(), "");
-  final String internalEndpoint = "%s%s".formatted(contextAwarePath, endpoint);
-  final RequestPredicate hostPredicate = r -> Optional.ofNullable(r.headers().header("host").getFirst()).orElse(
-      "").equals(host);
-  final RequestPredicate pathPredicate = r -> r.path().equals(internalEndpoint);
-  if (this.properties.getMode().equals(RouterProperties.DomainEvaluationMode.STRICT)) {
-    return hostPredicate.and(pathPredicate);
+
+  /**
+   * @param urlOrEndpoint to create endpoint for
+   * @return predicate
+   */
+  public RequestPredicate createAlternateRoute(final String urlOrEndpoint) {
+    this.checkAlternateRoute(urlOrEndpoint);
+    if (urlOrEndpoint.startsWith("/")) {
+      return r -> r.path().equals(urlOrEndpoint);
+    }
+    return r -> r.uri().equals(URI.create(urlOrEndpoint));
   }
-  return pathPredicate;
-}
 
-/**
- * @param urlOrEndpoint to create endpoint for
- * @return predicate
- */
-public RequestPredicate createAlternateRoute(final String urlOrEndpoint) {
-  if (!urlOrEndpoint.contains(this.context.getContextPath())) {
-    log.warn("Could not create alternate route {}, path does not contain server context path {}",
-        urlOrEndpoint,
-        this.context.getContextPath()
-    );
+  /**
+   * Creates an empty routing table builder. Routes added to the builder match the same requests as the predicates
+   * created by this factory, but are resolved with a single hash lookup.
+   *
+   * @param <T> type of record
+   * @return new builder
+   */
+  public <T> RoutingTable.Builder<T> routingTable() {
+    return new RoutingTable.Builder<>(this, this.isStrict());
   }
-  if (urlOrEndpoint.startsWith("/")) {
-    return r -> r.path().equals(urlOrEndpoint);
+
+  Optional<String> internalPath(final URI uri, final String endpoint, final boolean logOnWarning) {
+    if (!uri.toString().contains(this.context.getContextPath()) && logOnWarning) {
+      log.warn("Could not create route {}/{}, path does not contain server context path {}",
+          uri,
+          endpoint,
+          this.context.getContextPath()
+      );
+      return Optional.empty();
+    }
+    final String contextAwarePath = uri.getPath().replace(this.context.getContextPath(), "");
+    return Optional.of("%s%s".formatted(contextAwarePath, endpoint));
+  }
+
+  void checkAlternateRoute(final String urlOrEndpoint) {
+    if (!urlOrEndpoint.contains(this.context.getContextPath())) {
+      log.warn("Could not create alternate route {}, path does not contain server context path {}",
+          urlOrEndpoint,
+          this.context.getContextPath()
+      );
+    }
+  }
+
+  private boolean isStrict() {
+    return this.properties.getMode().equals(RouterProperties.DomainEvaluationMode.STRICT);
   }
-  return r -> r.uri().equals(URI.create(urlOrEndpoint));
-}
 }
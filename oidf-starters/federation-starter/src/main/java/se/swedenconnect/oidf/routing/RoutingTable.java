@@ -0,0 +1,172 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.routing;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.springframework.web.servlet.function.ServerRequest;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Immutable table resolving a request to the record that serves it.
+ * <p>
+ * Routes are hashed by request path, and by host when routing in strict mode. Alternate routes are hashed by path or
+ * by full request uri. When several records match a request the record that was added first is selected, the same
+ * as testing one route predicate per record in order.
+ *
+ * @param <T> type of record
+ * @author Felix Hellman
+ */
+public final class RoutingTable<T> {
+
+  private final boolean strict;
+  private final Map<RouteKey, Route<T>> routes;
+  private final Map<String, Route<T>> alternatePaths;
+  private final Map<URI, Route<T>> alternateUris;
+
+  private RoutingTable(
+      final boolean strict,
+      final Map<RouteKey, Route<T>> routes,
+      final Map<String, Route<T>> alternatePaths,
+      final Map<URI, Route<T>> alternateUris) {
+    this.strict = strict;
+    this.routes = Map.copyOf(routes);
+    this.alternatePaths = Map.copyOf(alternatePaths);
+    this.alternateUris = Map.copyOf(alternateUris);
+  }
+
+  /**
+   * @param request to find record for
+   * @return record serving the request, empty if no route matches
+   */
+  public Optional<T> find(final ServerRequest request) {
+    final String path = request.path();
+    Route<T> selected = this.routes.get(new RouteKey(this.strict ? host(request) : null, path));
+    selected = first(selected, this.alternatePaths.get(path));
+    if (!this.alternateUris.isEmpty()) {
+      selected = first(selected, this.alternateUris.get(request.uri()));
+    }
+    return Optional.ofNullable(selected).map(Route::target);
+  }
+
+  /**
+   * @return number of routes in this table
+   */
+  public int size() {
+    return this.routes.size() + this.alternatePaths.size() + this.alternateUris.size();
+  }
+
+  private static <T> Route<T> first(final Route<T> current, final Route<T> candidate) {
+    if (Objects.isNull(current)) {
+      return candidate;
+    }
+    if (Objects.isNull(candidate)) {
+      return current;
+    }
+    return candidate.order() < current.order() ? candidate : current;
+  }
+
+  private static String host(final ServerRequest request) {
+    final List<String> host = request.headers().header("host");
+    return host.isEmpty() ? "" : host.getFirst();
+  }
+
+  /**
+   * Builder for a {@link RoutingTable}, created by {@link RouteFactory#routingTable()}.
+   *
+   * @param <T> type of record
+   */
+  public static final class Builder<T> {
+
+    private final RouteFactory factory;
+    private final boolean strict;
+    private final Map<RouteKey, Route<T>> routes = new HashMap<>();
+    private final Map<String, Route<T>> alternatePaths = new HashMap<>();
+    private final Map<URI, Route<T>> alternateUris = new HashMap<>();
+    private int order;
+
+    Builder(final RouteFactory factory, final boolean strict) {
+      this.factory = factory;
+      this.strict = strict;
+    }
+
+    /**
+     * Adds a route for an entity, see {@link RouteFactory#createRoute(EntityID, String)}.
+     *
+     * @param entityID for this route
+     * @param endpoint for this route
+     * @param target   record serving the route
+     * @return this builder
+     */
+    public Builder<T> route(final EntityID entityID, final String endpoint, final T target) {
+      return this.route(entityID, endpoint, target, true);
+    }
+
+    /**
+     * Adds a route for an entity, see {@link RouteFactory#createRoute(EntityID, String, Boolean)}.
+     *
+     * @param entityID     for this route
+     * @param endpoint     for this route
+     * @param target       record serving the route
+     * @param logOnWarning log warning, disable this if an alternate route is feasible
+     * @return this builder
+     */
+    public Builder<T> route(final EntityID entityID, final String endpoint, final T target,
+        final boolean logOnWarning) {
+      final URI uri = URI.create(entityID.getValue());
+      this.factory.internalPath(uri, endpoint, logOnWarning).ifPresent(path -> this.routes.putIfAbsent(
+          new RouteKey(this.strict ? uri.getHost() : null, path), new Route<>(this.order, target)));
+      this.order++;
+      return this;
+    }
+
+    /**
+     * Adds an alternate route, see {@link RouteFactory#createAlternateRoute(String)}.
+     *
+     * @param urlOrEndpoint for this route
+     * @param target        record serving the route
+     * @return this builder
+     */
+    public Builder<T> alternateRoute(final String urlOrEndpoint, final T target) {
+      this.factory.checkAlternateRoute(urlOrEndpoint);
+      if (urlOrEndpoint.startsWith("/")) {
+        this.alternatePaths.putIfAbsent(urlOrEndpoint, new Route<>(this.order++, target));
+      } else {
+        this.alternateUris.putIfAbsent(URI.create(urlOrEndpoint), new Route<>(this.order++, target));
+      }
+      return this;
+    }
+
+    /**
+     * @return immutable routing table
+     */
+    public RoutingTable<T> build() {
+      return new RoutingTable<>(this.strict, this.routes, this.alternatePaths, this.alternateUris);
+    }
+  }
+
+  private record RouteKey(String host, String path) {
+  }
+
+  private record Route<T>(int order, T target) {
+  }
+}
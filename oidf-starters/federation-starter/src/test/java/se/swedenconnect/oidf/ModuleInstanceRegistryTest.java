@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustAnchorProperties;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustMarkOwner;
+import se.swedenconnect.oidf.common.entity.entity.integration.registry.records.PolicyRecord;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+class ModuleInstanceRegistryTest {
+
+  private record Properties(String entityId, String setting) {
+  }
+
+  private final ModuleInstanceRegistry<Properties, Object> registry =
+      new ModuleInstanceRegistry<>(Properties::entityId, Properties::setting, properties -> new Object());
+
+  @Test
+  void sameConfigurationReusesInstance() {
+    final Properties properties = new Properties("https://a.example.com", "one");
+    final Object first = this.registry.get(properties);
+
+    Assertions.assertSame(first, this.registry.get(properties));
+    Assertions.assertSame(first, this.registry.get(new Properties("https://a.example.com", "one")));
+    Assertions.assertEquals(1, this.registry.getCreated());
+  }
+
+  @Test
+  void changedConfigurationReplacesInstance() {
+    final Object first = this.registry.get(new Properties("https://a.example.com", "one"));
+    final Object second = this.registry.get(new Properties("https://a.example.com", "two"));
+
+    Assertions.assertNotSame(first, second);
+    Assertions.assertEquals(1, this.registry.size());
+    Assertions.assertEquals(2, this.registry.getCreated());
+  }
+
+  @Test
+  void removedModulesAreEvicted() {
+    this.registry.get(new Properties("https://a.example.com", "one"));
+    this.registry.get(new Properties("https://b.example.com", "one"));
+
+    this.registry.retain(List.of("https://b.example.com"));
+
+    Assertions.assertEquals(1, this.registry.size());
+  }
+
+  @Test
+  void equalPropertiesReuseInstance() throws Exception {
+    final ECKey key = new ECKeyGenerator(Curve.P_256).keyID("key").generate().toPublicJWK();
+    final ModuleInstanceRegistry<TrustAnchorProperties, Object> trustAnchors = new ModuleInstanceRegistry<>(
+        properties -> properties.getEntityIdentifier().getValue(), Function.identity(), properties -> new Object());
+
+    final Object first = trustAnchors.get(trustAnchor(key, "https://tm.example.com"));
+
+    Assertions.assertSame(first, trustAnchors.get(trustAnchor(key, "https://tm.example.com")));
+    Assertions.assertNotSame(first, trustAnchors.get(trustAnchor(key, "https://other.example.com")));
+    Assertions.assertEquals(2, trustAnchors.getCreated());
+  }
+
+  private static TrustAnchorProperties trustAnchor(final ECKey key, final String trustMark) {
+    return TrustAnchorProperties.builder()
+        .entityIdentifier(new EntityID("https://ta.example.com"))
+        .trustMarkIssuers(Map.of(new EntityID(trustMark), List.of(new EntityID("https://tmi.example.com"))))
+        .trustMarkOwners(List.of(TrustMarkOwner.builder()
+            .sub(new EntityID("https://owner.example.com"))
+            .jwks(new JWKSet(key))
+            .trustmarkIdentifier(new EntityID(trustMark))
+            .build()))
+        .subordinates(List.of(TrustAnchorProperties.SubordinateListingProperty.builder()
+            .entityIdentifier(new EntityID("https://sub.example.com"))
+            .jwks(new JWKSet(key))
+            .policy(new PolicyRecord("policy", Map.of("metadata", Map.of())))
+            .build()))
+        .build();
+  }
+}
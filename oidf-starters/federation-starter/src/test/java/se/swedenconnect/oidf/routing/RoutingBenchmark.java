@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.routing;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.servlet.function.RequestPredicate;
+import org.springframework.web.servlet.function.ServerRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast a request is routed to one of {@code entities} hosted entities.
+ * <p>
+ * {@link #predicates()} creates one route predicate per entity, combines them with {@code or} and searches for the
+ * matching entity the way the routers used to on every request. {@link #routingTable()} matches and resolves the
+ * entity through a {@link CachedRoutingTable}, including the check for changed records. Run with {@code main} from
+ * the test classpath, the gc profiler reports allocation per request ({@code gc.alloc.rate.norm}).
+ *
+ * @author Felix Hellman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+  private static final String ENDPOINT = "/.well-known/openid-federation";
+
+  @Param({"10", "1000", "10000"})
+  public int entities;
+
+  private RouteFactory factory;
+  private List<EntityID> records;
+  private CachedRoutingTable<EntityID> routes;
+  private final List<ServerRequest> requests = new ArrayList<>();
+  private int next;
+
+  /**
+   * Creates the entities and one request per entity.
+   */
+  @Setup
+  public void setup() {
+    this.factory = RoutingTableTest.routeFactory(RouterProperties.DomainEvaluationMode.STRICT);
+    final List<EntityID> entityIds = new ArrayList<>();
+    for (int i = 0; i < this.entities; i++) {
+      final String host = "entity%d.example.com".formatted(i % 100);
+      entityIds.add(new EntityID("https://%s/entity%d".formatted(host, i)));
+      this.requests.add(RoutingTableTest.request(host, "/entity%d%s".formatted(i, ENDPOINT)));
+    }
+    this.records = List.copyOf(entityIds);
+    this.routes = new CachedRoutingTable<>(() -> this.records, current -> {
+      final RoutingTable.Builder<EntityID> table = this.factory.routingTable();
+      current.forEach(entity -> table.route(entity, ENDPOINT, entity));
+      return table.build();
+    });
+  }
+
+  /**
+   * @return entity found by testing one predicate per entity
+   */
+  @Benchmark
+  public Object predicates() {
+    final ServerRequest request = this.nextRequest();
+    final boolean matches = this.records.stream()
+        .map(entity -> this.factory.createRoute(entity, ENDPOINT))
+        .reduce(p -> false, RequestPredicate::or)
+        .test(request);
+    if (!matches) {
+      throw new IllegalStateException();
+    }
+    return this.records.stream()
+        .filter(entity -> this.factory.createRoute(entity, ENDPOINT).test(request))
+        .findFirst()
+        .get();
+  }
+
+  /**
+   * @return entity found through the routing table
+   */
+  @Benchmark
+  public Object routingTable() {
+    final ServerRequest request = this.nextRequest();
+    if (!this.routes.predicate().test(request)) {
+      throw new IllegalStateException();
+    }
+    return this.routes.find(request).get();
+  }
+
+  private ServerRequest nextRequest() {
+    final ServerRequest request = this.requests.get(this.next);
+    this.next = (this.next + 1) % this.requests.size();
+    return request;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args ignored
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(RoutingBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.routing;
+
+import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.servlet.function.RequestPredicate;
+import org.springframework.web.servlet.function.ServerRequest;
+import se.swedenconnect.oidf.FederationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RoutingTableTest {
+
+  @Test
+  void routesMatchSameRequestsAsPredicates() {
+    final RouteFactory factory = routeFactory(RouterProperties.DomainEvaluationMode.IGNORING);
+    final List<String> entities = List.of("https://a.example.com/one", "https://b.example.com/two",
+        "https://c.example.com/one");
+    final RoutingTable.Builder<String> builder = factory.routingTable();
+    entities.forEach(entity -> builder.route(new EntityID(entity), "/resolve", entity));
+    final RoutingTable<String> table = builder.build();
+
+    for (final String path : List.of("/one/resolve", "/two/resolve", "/three/resolve", "/one/fetch")) {
+      final ServerRequest request = request("a.example.com", path);
+      final Optional<String> expected = entities.stream()
+          .filter(entity -> factory.createRoute(new EntityID(entity), "/resolve").test(request))
+          .findFirst();
+      Assertions.assertEquals(expected, table.find(request), path);
+    }
+  }
+
+  @Test
+  void strictModeMatchesHost() {
+    final RouteFactory factory = routeFactory(RouterProperties.DomainEvaluationMode.STRICT);
+    final RoutingTable<String> table = factory.<String>routingTable()
+        .route(new EntityID("https://a.example.com/one"), "/resolve", "a")
+        .route(new EntityID("https://b.example.com/one"), "/resolve", "b")
+        .build();
+    Assertions.assertEquals(Optional.of("b"), table.find(request("b.example.com", "/one/resolve")));
+    Assertions.assertEquals(Optional.empty(), table.find(request("c.example.com", "/one/resolve")));
+  }
+
+  @Test
+  void firstMatchingRecordIsSelected() {
+    final RouteFactory factory = routeFactory(RouterProperties.DomainEvaluationMode.IGNORING);
+    final RoutingTable<String> table = factory.<String>routingTable()
+        .alternateRoute("/custom/ec", "a")
+        .route(new EntityID("https://a.example.com/one"), "/.well-known/openid-federation", "a", false)
+        .route(new EntityID("https://b.example.com/custom"), "/ec", "b")
+        .alternateRoute("/one/.well-known/openid-federation", "c")
+        .build();
+    Assertions.assertEquals(Optional.of("a"), table.find(request("b.example.com", "/custom/ec")));
+    Assertions.assertEquals(Optional.of("a"),
+        table.find(request("b.example.com", "/one/.well-known/openid-federation")));
+  }
+
+  @Test
+  void tableIsRebuiltWhenRecordsChange() {
+    final RouteFactory factory = routeFactory(RouterProperties.DomainEvaluationMode.IGNORING);
+    final List<String> records = new ArrayList<>(List.of("https://a.example.com/one"));
+    final AtomicInteger builds = new AtomicInteger();
+    final CachedRoutingTable<String> routes = new CachedRoutingTable<>(() -> List.copyOf(records), current -> {
+      builds.incrementAndGet();
+      final RoutingTable.Builder<String> builder = factory.routingTable();
+      current.forEach(entity -> builder.route(new EntityID(entity), "/fetch", entity));
+      return builder.build();
+    });
+    final RequestPredicate predicate = routes.predicate();
+
+    Assertions.assertTrue(predicate.test(request("a.example.com", "/one/fetch")));
+    Assertions.assertFalse(predicate.test(request("a.example.com", "/two/fetch")));
+    Assertions.assertEquals(1, builds.get());
+
+    records.add("https://a.example.com/two");
+    Assertions.assertTrue(predicate.test(request("a.example.com", "/two/fetch")));
+    Assertions.assertEquals(2, builds.get());
+  }
+
+  static RouteFactory routeFactory(final RouterProperties.DomainEvaluationMode mode) {
+    final RouterProperties routing = new RouterProperties();
+    routing.setMode(mode);
+    final FederationProperties properties = new FederationProperties();
+    properties.setRouting(routing);
+    return new RouteFactory(new MockServletContext(), properties);
+  }
+
+  static ServerRequest request(final String host, final String path) {
+    final MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+    request.setServerName(host);
+    request.addHeader("host", host);
+    return ServerRequest.create(request, List.of());
+  }
+}
@@ -19,11 +19,20 @@ package se.swedenconnect.oidf.resolver;
 import org.springframework.context.ApplicationEventPublisher;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+import se.swedenconnect.oidf.common.entity.tree.scraping.FetchExecutor;
+import se.swedenconnect.oidf.common.entity.tree.scraping.HostPermits;
+import se.swedenconnect.oidf.common.entity.tree.scraping.TrustMarkStatusService;
 import se.swedenconnect.oidf.resolver.tree.EntityStatementTreeLoader;
+import se.swedenconnect.oidf.resolver.tree.InstrumentedFederationClient;
+import se.swedenconnect.oidf.resolver.tree.resolution.BackoffStepRecoveryScheduler;
 import se.swedenconnect.oidf.resolver.tree.resolution.ErrorContextFactory;
 import se.swedenconnect.oidf.resolver.tree.resolution.ExecutionStrategy;
-import se.swedenconnect.oidf.resolver.tree.resolution.ScheduledStepRecoveryStrategy;
+import se.swedenconnect.oidf.resolver.tree.resolution.ParallelExecution;
+import se.swedenconnect.oidf.resolver.tree.resolution.TreeLoaderMetrics;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 /**
@@ -36,6 +45,12 @@ public class EntityStatementTreeLoaderFactory {
   private final ExecutionStrategy executionStrategy;
   private final ErrorContextFactory errorContextFactory;
   private final ApplicationEventPublisher publisher;
+  private final Duration trustMarkStatusFreshness;
+  private final TreeLoaderMetrics metrics;
+  private final BackoffStepRecoveryScheduler recoveryScheduler;
+  private Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+  private HostPermits fetchHostPermits =
+      new HostPermits(ParallelExecution.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST);
 
   /**
    * @param client              for fetching entities
@@ -47,10 +62,89 @@ public class EntityStatementTreeLoaderFactory {
                                           final ExecutionStrategy executionStrategy,
                                           final ErrorContextFactory errorContextFactory,
                                           final ApplicationEventPublisher publisher) {
+    this(client, executionStrategy, errorContextFactory, publisher, TrustMarkStatusService.DEFAULT_FRESHNESS);
+  }
+
+  /**
+   * @param client                   for fetching entities
+   * @param executionStrategy        for executing iterations
+   * @param errorContextFactory      for creating error context
+   * @param publisher                publisher of events.
+   * @param trustMarkStatusFreshness time a trust mark status from an earlier reload may be reused
+   */
+  public EntityStatementTreeLoaderFactory(final FederationClient client,
+                                          final ExecutionStrategy executionStrategy,
+                                          final ErrorContextFactory errorContextFactory,
+                                          final ApplicationEventPublisher publisher,
+                                          final Duration trustMarkStatusFreshness) {
+    this(client, executionStrategy, errorContextFactory, publisher, trustMarkStatusFreshness,
+        TreeLoaderMetrics.NOOP);
+  }
+
+  /**
+   * @param client                   for fetching entities
+   * @param executionStrategy        for executing iterations
+   * @param errorContextFactory      for creating error context
+   * @param publisher                publisher of events.
+   * @param trustMarkStatusFreshness time a trust mark status from an earlier reload may be reused
+   * @param metrics                  to record step timings, request latencies and retries with
+   */
+  public EntityStatementTreeLoaderFactory(final FederationClient client,
+                                          final ExecutionStrategy executionStrategy,
+                                          final ErrorContextFactory errorContextFactory,
+                                          final ApplicationEventPublisher publisher,
+                                          final Duration trustMarkStatusFreshness,
+                                          final TreeLoaderMetrics metrics) {
+    this(client, executionStrategy, errorContextFactory, publisher, trustMarkStatusFreshness, metrics,
+        new BackoffStepRecoveryScheduler(Executors.newSingleThreadScheduledExecutor(), metrics));
+  }
+
+  /**
+   * @param client                   for fetching entities
+   * @param executionStrategy        for executing iterations
+   * @param errorContextFactory      for creating error context
+   * @param publisher                publisher of events.
+   * @param trustMarkStatusFreshness time a trust mark status from an earlier reload may be reused
+   * @param metrics                  to record step timings, request latencies and retries with
+   * @param recoveryScheduler        to retry failed steps with, shared by every created loader
+   */
+  public EntityStatementTreeLoaderFactory(final FederationClient client,
+                                          final ExecutionStrategy executionStrategy,
+                                          final ErrorContextFactory errorContextFactory,
+                                          final ApplicationEventPublisher publisher,
+                                          final Duration trustMarkStatusFreshness,
+                                          final TreeLoaderMetrics metrics,
+                                          final BackoffStepRecoveryScheduler recoveryScheduler) {
     this.client = client;
     this.executionStrategy = executionStrategy;
     this.errorContextFactory = errorContextFactory;
     this.publisher = publisher;
+    this.trustMarkStatusFreshness = trustMarkStatusFreshness;
+    this.metrics = metrics;
+    this.recoveryScheduler = recoveryScheduler;
+  }
+
+  /**
+   * Sets the executor that subordinates and trust mark statuses are fetched upon, shared by every created loader.
+   * Defaults to a new virtual thread per fetch.
+   *
+   * @param executor to fetch upon
+   * @return this
+   */
+  public EntityStatementTreeLoaderFactory withExecutor(final Executor executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  /**
+   * Limits the subordinate fetches made at the same time towards a single host, shared by every created loader.
+   *
+   * @param maxConcurrentFetchesPerHost number of fetches in flight towards a single host
+   * @return this
+   */
+  public EntityStatementTreeLoaderFactory withMaxConcurrentFetchesPerHost(final int maxConcurrentFetchesPerHost) {
+    this.fetchHostPermits = new HostPermits(maxConcurrentFetchesPerHost);
+    return this;
   }
 
   /**
@@ -60,9 +154,14 @@ public class EntityStatementTreeLoaderFactory {
    * @return new instance of a tree loader
    */
   public EntityStatementTreeLoader create(final ResolverProperties properties) {
-    return new EntityStatementTreeLoader(this.client, this.executionStrategy,
-        new ScheduledStepRecoveryStrategy(Executors.newSingleThreadScheduledExecutor(), properties),
-        this.errorContextFactory)
+    final FederationClient instrumented = new InstrumentedFederationClient(this.client, this.metrics);
+    return new EntityStatementTreeLoader(instrumented, this.executionStrategy,
+        this.recoveryScheduler.forResolver(properties),
+        this.errorContextFactory,
+        FetchExecutor.logging(this.executor, Optional.ofNullable(properties.getMaxConcurrentFetches())
+            .orElse(FetchExecutor.DEFAULT_MAX_CONCURRENT_FETCHES), this.fetchHostPermits),
+        new TrustMarkStatusService(instrumented, this.executor, this.trustMarkStatusFreshness),
+        this.metrics)
         .withAdditionalPostHook(() -> this.publisher.publishEvent(
             new TreeUpdatedEvent(properties.getEntityIdentifier())
         ));
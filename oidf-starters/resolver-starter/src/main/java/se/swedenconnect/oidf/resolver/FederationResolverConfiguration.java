@@ -24,15 +24,26 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import se.swedenconnect.oidf.FederationProperties;
+import se.swedenconnect.oidf.ResolverConfigurationProperties;
 import se.swedenconnect.oidf.common.entity.entity.integration.CompositeRecordSource;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
 import se.swedenconnect.oidf.common.entity.jwt.SignerFactory;
+import se.swedenconnect.oidf.common.entity.tree.VersionedInMemoryCache;
+import se.swedenconnect.oidf.common.entity.tree.scraping.TrustMarkStatusService;
 import se.swedenconnect.oidf.resolver.metadata.MetadataProcessor;
 import se.swedenconnect.oidf.resolver.metadata.OIDFPolicyOperationFactory;
+import se.swedenconnect.oidf.resolver.tree.resolution.BackoffStepRecoveryScheduler;
 import se.swedenconnect.oidf.resolver.tree.resolution.DFSExecution;
 import se.swedenconnect.oidf.resolver.tree.resolution.ErrorContextFactory;
+import se.swedenconnect.oidf.resolver.tree.resolution.ExecutionStrategy;
+import se.swedenconnect.oidf.resolver.tree.resolution.ParallelExecution;
+import se.swedenconnect.oidf.resolver.tree.resolution.TreeLoaderMetrics;
 
+import java.time.Clock;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 /**
@@ -52,7 +63,8 @@ public class FederationResolverConfiguration {
       final ResolverCacheRegistry resolverCacheRegistry,
       final SignerFactory signerFactory,
       final List<Function<Resolver, Resolver>> transformers,
-      final CompositeRecordSource compositeRecordSource
+      final CompositeRecordSource compositeRecordSource,
+      final FederationProperties properties
       ) {
     return new ResolverFactory(
         cacheFactory,
@@ -61,20 +73,25 @@ public class FederationResolverConfiguration {
         resolverCacheRegistry,
         signerFactory,
         transformers,
-        compositeRecordSource
+        compositeRecordSource,
+        Optional.ofNullable(properties.getResolver())
+            .map(ResolverConfigurationProperties::getPrecomputeParallelism)
+            .orElse(0)
     );
   }
 
   @Bean
   @ConditionalOnMissingBean
-  ResolverCacheRegistry resolverCacheRegistry() {
-    return new ResolverCacheRegistry();
+  ResolverCacheRegistry resolverCacheRegistry(final TreeLoaderMetrics treeLoaderMetrics) {
+    return new ResolverCacheRegistry(treeLoaderMetrics);
   }
 
   @Bean
   @ConditionalOnMissingBean
-  ResolverCacheFactory inMemoryResolverCacheFactory() {
-    return new InMemoryResolverCacheFactory();
+  ResolverCacheFactory inMemoryResolverCacheFactory(final FederationProperties properties) {
+    return new InMemoryResolverCacheFactory(Optional.ofNullable(properties.getResolver())
+        .map(ResolverConfigurationProperties::getRetainedVersions)
+        .orElse(VersionedInMemoryCache.DEFAULT_RETAINED_VERSIONS));
   }
 
   @Bean
@@ -101,9 +118,61 @@ public class FederationResolverConfiguration {
   @ConditionalOnMissingBean
   EntityStatementTreeLoaderFactory entityStatementTreeLoaderFactory(
       final FederationClient client,
+      final ExecutionStrategy executionStrategy,
       final ErrorContextFactory errorContextFactory,
-      final ApplicationEventPublisher publisher) {
-    return new EntityStatementTreeLoaderFactory(client, new DFSExecution(), errorContextFactory, publisher);
+      final ApplicationEventPublisher publisher,
+      final FederationProperties properties,
+      final TreeLoaderMetrics treeLoaderMetrics,
+      final BackoffStepRecoveryScheduler recoveryScheduler) {
+    return new EntityStatementTreeLoaderFactory(client, executionStrategy, errorContextFactory, publisher,
+        Optional.ofNullable(properties.getResolver())
+            .map(ResolverConfigurationProperties::getTrustMarkStatusFreshness)
+            .orElse(TrustMarkStatusService.DEFAULT_FRESHNESS),
+        treeLoaderMetrics,
+        recoveryScheduler)
+        .withMaxConcurrentFetchesPerHost(Optional.ofNullable(properties.getResolver())
+            .map(ResolverConfigurationProperties::getMaxConcurrentRequestsPerHost)
+            .orElse(ParallelExecution.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST));
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  BackoffStepRecoveryScheduler backoffStepRecoveryScheduler(
+      final FederationProperties properties,
+      final TreeLoaderMetrics treeLoaderMetrics) {
+    final Optional<ResolverConfigurationProperties> resolver = Optional.ofNullable(properties.getResolver());
+    return new BackoffStepRecoveryScheduler(
+        Executors.newSingleThreadScheduledExecutor(),
+        resolver.map(ResolverConfigurationProperties::getStepRetryMaxAttempts)
+            .orElse(BackoffStepRecoveryScheduler.DEFAULT_MAX_ATTEMPTS),
+        resolver.map(ResolverConfigurationProperties::getStepRetryMaxDelay)
+            .orElse(BackoffStepRecoveryScheduler.DEFAULT_MAX_DELAY),
+        resolver.map(ResolverConfigurationProperties::getStepRetryQueueSize)
+            .orElse(BackoffStepRecoveryScheduler.DEFAULT_MAX_QUEUED),
+        resolver.map(ResolverConfigurationProperties::getHostFailureThreshold)
+            .orElse(BackoffStepRecoveryScheduler.DEFAULT_FAILURE_THRESHOLD),
+        resolver.map(ResolverConfigurationProperties::getHostCircuitOpenDuration)
+            .orElse(BackoffStepRecoveryScheduler.DEFAULT_OPEN_DURATION),
+        treeLoaderMetrics,
+        Clock.systemUTC(),
+        BackoffStepRecoveryScheduler.DEFAULT_JITTER,
+        Executors.newVirtualThreadPerTaskExecutor());
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  ExecutionStrategy executionStrategy(final FederationProperties properties) {
+    final Optional<ResolverConfigurationProperties> resolver = Optional.ofNullable(properties.getResolver());
+    if (!resolver.map(ResolverConfigurationProperties::getParallelExecution).orElse(true)) {
+      return new DFSExecution();
+    }
+    return new ParallelExecution(
+        resolver.map(ResolverConfigurationProperties::getMaxConcurrentRequests)
+            .orElse(ParallelExecution.DEFAULT_MAX_CONCURRENT_REQUESTS),
+        resolver.map(ResolverConfigurationProperties::getMaxConcurrentRequestsPerHost)
+            .orElse(ParallelExecution.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST),
+        resolver.map(ResolverConfigurationProperties::getReloadDeadline)
+            .orElse(ParallelExecution.DEFAULT_RELOAD_DEADLINE));
   }
 
   @Bean
@@ -112,6 +181,12 @@ public class FederationResolverConfiguration {
     return new ObservableErrorContextFactory(registry);
   }
 
+  @Bean
+  @ConditionalOnMissingBean
+  TreeLoaderMetrics treeLoaderMetrics(final MeterRegistry registry) {
+    return new MicrometerTreeLoaderMetrics(registry);
+  }
+
   @Bean
   @ConditionalOnMissingBean
   CacheEventListener cacheEventListener(final ResolverCacheRegistry registry) {
@@ -17,6 +17,7 @@
 package se.swedenconnect.oidf.resolver;
 
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+import se.swedenconnect.oidf.common.entity.tree.IndexedInMemoryCache;
 import se.swedenconnect.oidf.common.entity.tree.ResolverCache;
 import se.swedenconnect.oidf.common.entity.tree.VersionedInMemoryCache;
 
@@ -27,8 +28,26 @@ import se.swedenconnect.oidf.common.entity.tree.VersionedInMemoryCache;
  */
 public class InMemoryResolverCacheFactory implements ResolverCacheFactory {
 
+  private final int retainedVersions;
+
+  /**
+   * Constructor retaining {@link VersionedInMemoryCache#DEFAULT_RETAINED_VERSIONS} previous versions.
+   */
+  public InMemoryResolverCacheFactory() {
+    this(VersionedInMemoryCache.DEFAULT_RETAINED_VERSIONS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param retainedVersions number of previous tree versions each cache should keep
+   */
+  public InMemoryResolverCacheFactory(final int retainedVersions) {
+    this.retainedVersions = retainedVersions;
+  }
+
   @Override
   public ResolverCache create(final ResolverProperties properties) {
-    return new VersionedInMemoryCache();
+    return new IndexedInMemoryCache(this.retainedVersions);
   }
 }
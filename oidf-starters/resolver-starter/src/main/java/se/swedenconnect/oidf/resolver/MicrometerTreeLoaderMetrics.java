@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import se.swedenconnect.oidf.resolver.tree.EntityStatementTreeLoader;
+import se.swedenconnect.oidf.resolver.tree.resolution.BackoffStepRecoveryScheduler;
+import se.swedenconnect.oidf.resolver.tree.resolution.TreeLoaderMetrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Implementation of {@link TreeLoaderMetrics} that exposes the measurements of the tree loader as Micrometer meters.
+ * <p>
+ * Outbound requests and circuits are tagged by remote host only, entity identifiers are never used as tags. The
+ * circuit gauge reports the ordinal of {@link BackoffStepRecoveryScheduler.CircuitState}, 0 closed, 1 open and
+ * 2 half open.
+ *
+ * @author Felix Hellman
+ */
+public class MicrometerTreeLoaderMetrics implements TreeLoaderMetrics {
+
+  private final MeterRegistry registry;
+  private final Map<String, SnapshotState> snapshots = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> circuits = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   * @param registry for managing meters
+   */
+  public MicrometerTreeLoaderMetrics(final MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void step(final EntityStatementTreeLoader.StepName stepName, final Duration duration,
+      final boolean success) {
+    Timer.builder("resolver_tree_step")
+        .tags(List.of(Tag.of("step", stepName.name()), outcome(success)))
+        .register(this.registry)
+        .record(duration);
+  }
+
+  @Override
+  public void request(final String host, final Duration duration, final boolean success) {
+    Timer.builder("resolver_tree_request")
+        .tags(List.of(Tag.of("host", host), outcome(success)))
+        .publishPercentileHistogram()
+        .register(this.registry)
+        .record(duration);
+  }
+
+  @Override
+  public void retryScheduled(final EntityStatementTreeLoader.StepName stepName) {
+    this.registry.counter("resolver_tree_step_retry", List.of(Tag.of("step", stepName.name()))).increment();
+  }
+
+  @Override
+  public void retryDropped(final EntityStatementTreeLoader.StepName stepName, final String reason) {
+    this.registry.counter("resolver_tree_step_retry_dropped",
+        List.of(Tag.of("step", stepName.name()), Tag.of("reason", reason))).increment();
+  }
+
+  @Override
+  public void retryQueue(final IntSupplier depth) {
+    Gauge.builder("resolver_tree_retry_queue", depth::getAsInt).register(this.registry);
+  }
+
+  @Override
+  public void circuitState(final String host, final BackoffStepRecoveryScheduler.CircuitState state) {
+    this.circuits.computeIfAbsent(host, h -> this.registry.gauge("resolver_tree_host_circuit",
+            List.of(Tag.of("host", h)), new AtomicInteger()))
+        .set(state.ordinal());
+  }
+
+  @Override
+  public void snapshotPublished(final String resolver, final int nodes, final int intermediates,
+      final int maxDepth) {
+    final SnapshotState state = this.snapshots.computeIfAbsent(resolver, this::register);
+    state.nodes = nodes;
+    state.intermediates = intermediates;
+    state.maxDepth = maxDepth;
+    state.publishedAt = this.registry.config().clock().wallTime();
+  }
+
+  private SnapshotState register(final String resolver) {
+    final SnapshotState state = new SnapshotState();
+    final List<Tag> tags = List.of(Tag.of("resolver", resolver));
+    Gauge.builder("resolver_snapshot_nodes", state, s -> s.nodes).tags(tags).register(this.registry);
+    Gauge.builder("resolver_snapshot_intermediates", state, s -> s.intermediates).tags(tags).register(this.registry);
+    Gauge.builder("resolver_snapshot_max_depth", state, s -> s.maxDepth).tags(tags).register(this.registry);
+    TimeGauge.builder("resolver_snapshot_age", state, TimeUnit.MILLISECONDS,
+            s -> this.registry.config().clock().wallTime() - s.publishedAt)
+        .tags(tags)
+        .register(this.registry);
+    return state;
+  }
+
+  private static Tag outcome(final boolean success) {
+    return Tag.of("outcome", success ? "success" : "failure");
+  }
+
+  /**
+   * Values of the latest published snapshot of a resolver, read by the registered gauges.
+   */
+  private static final class SnapshotState {
+    private volatile int nodes;
+    private volatile int intermediates;
+    private volatile int maxDepth;
+    private volatile long publishedAt;
+  }
+}
@@ -18,18 +18,37 @@ package se.swedenconnect.oidf.resolver;
 
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 import se.swedenconnect.oidf.common.entity.tree.ResolverCache;
+import se.swedenconnect.oidf.resolver.chain.SignatureVerificationCache;
 import se.swedenconnect.oidf.resolver.tree.EntityStatementTree;
 import se.swedenconnect.oidf.resolver.tree.EntityStatementTreeLoader;
 
 /**
  * Registration of a cache.
  *
- * @param tree       of the cache
- * @param loader     for the cache
- * @param cache      the actual cache
- * @param properties properties for the cache
+ * @param tree              of the cache
+ * @param loader            for the cache
+ * @param cache             the actual cache
+ * @param properties        properties for the cache
+ * @param verificationCache verified signatures, shared by every resolver instance created for the cache
+ * @param precomputed       resolve responses computed when a snapshot is loaded, shared by every resolver instance
+ *                          created for the cache
  * @author Felix Hellman
  */
 public record ResolverCacheRegistration(EntityStatementTree tree, EntityStatementTreeLoader loader,
-                                        ResolverCache cache, ResolverProperties properties) {
+                                        ResolverCache cache, ResolverProperties properties,
+                                        SignatureVerificationCache verificationCache,
+                                        PrecomputedResolutions precomputed) {
+
+  /**
+   * Constructor with a new signature verification cache and no precomputed responses.
+   *
+   * @param tree       of the cache
+   * @param loader     for the cache
+   * @param cache      the actual cache
+   * @param properties properties for the cache
+   */
+  public ResolverCacheRegistration(final EntityStatementTree tree, final EntityStatementTreeLoader loader,
+                                   final ResolverCache cache, final ResolverProperties properties) {
+    this(tree, loader, cache, properties, new SignatureVerificationCache(), new PrecomputedResolutions());
+  }
 }
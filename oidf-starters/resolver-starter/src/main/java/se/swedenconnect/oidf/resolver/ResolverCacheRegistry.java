@@ -17,12 +17,16 @@
 package se.swedenconnect.oidf.resolver;
 
 import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
 import se.swedenconnect.oidf.common.entity.tree.FederationTreeSource;
 import se.swedenconnect.oidf.common.entity.tree.Tree;
 import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
+import se.swedenconnect.oidf.resolver.tree.SubjectIndex;
+import se.swedenconnect.oidf.resolver.tree.resolution.TreeLoaderMetrics;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -34,6 +38,23 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ResolverCacheRegistry implements FederationTreeSource {
   private final Map<String, ResolverCacheRegistration> registrations = new ConcurrentHashMap<>();
+  private final TreeLoaderMetrics metrics;
+
+  /**
+   * Constructor.
+   */
+  public ResolverCacheRegistry() {
+    this(TreeLoaderMetrics.NOOP);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param metrics to record published snapshots with
+   */
+  public ResolverCacheRegistry(final TreeLoaderMetrics metrics) {
+    this.metrics = metrics;
+  }
 
   /**
    * @param entityId     of the cache to register
@@ -44,12 +65,21 @@ public class ResolverCacheRegistry implements FederationTreeSource {
   }
 
   /**
-   * Updates the version for a given entityId.
+   * Updates the version for a given entityId and indexes the new version.
    *
    * @param entityId to update
    */
   public void updateVersion(final String entityId) {
-    this.getRegistration(entityId).ifPresent(c -> c.cache().useNextVersion());
+    this.getRegistration(entityId).ifPresent(c -> {
+      c.cache().useNextVersion();
+      c.tree().indexCurrentSnapshot();
+      try (CacheSnapshot<ScrapedEntity> snapshot = c.tree().getCurrentSnapshot()) {
+        if (Objects.nonNull(snapshot.getRoot())) {
+          final SubjectIndex index = c.tree().getSubjectIndex(snapshot);
+          this.metrics.snapshotPublished(entityId, index.size(), index.getIntermediateCount(), index.getMaxDepth());
+        }
+      }
+    });
   }
 
   /**
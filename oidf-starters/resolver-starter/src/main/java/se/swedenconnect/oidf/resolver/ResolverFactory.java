@@ -16,20 +16,30 @@
  */
 package se.swedenconnect.oidf.resolver;
 
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.oidf.ModuleInstanceRegistry;
 import se.swedenconnect.oidf.common.entity.entity.integration.CompositeRecordSource;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 import se.swedenconnect.oidf.common.entity.jwt.SignerFactory;
+import se.swedenconnect.oidf.common.entity.tree.CacheSnapshot;
 import se.swedenconnect.oidf.common.entity.tree.ResolverCache;
 import se.swedenconnect.oidf.common.entity.tree.Tree;
+import se.swedenconnect.oidf.common.entity.tree.scraping.ScrapedEntity;
 import se.swedenconnect.oidf.resolver.chain.ChainValidator;
 import se.swedenconnect.oidf.resolver.chain.ConstraintsValidationStep;
 import se.swedenconnect.oidf.resolver.chain.CriticalClaimsValidationStep;
 import se.swedenconnect.oidf.resolver.chain.SignatureValidationStep;
+import se.swedenconnect.oidf.resolver.chain.SignatureVerificationCache;
 import se.swedenconnect.oidf.resolver.metadata.MetadataProcessor;
 import se.swedenconnect.oidf.resolver.tree.EntityStatementTree;
+import se.swedenconnect.oidf.resolver.tree.EntityStatementTreeLoader;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -37,6 +47,7 @@ import java.util.function.Function;
  *
  * @author Felix Hellman
  */
+@Slf4j
 public class ResolverFactory {
 
   private final ResolverCacheFactory resolverCacheFactory;
@@ -46,9 +57,13 @@ public class ResolverFactory {
   private final SignerFactory signerFactory;
   private final List<Function<Resolver, Resolver>> transformers;
   private final CompositeRecordSource compositeRecordSource;
+  private final int precomputeParallelism;
+  private final ThreadPoolExecutor precomputeWorkers;
+  private final ModuleInstanceRegistry<ResolverProperties, Resolver> resolvers =
+      new ModuleInstanceRegistry<>(ResolverProperties::getEntityIdentifier, Function.identity(), this::build);
 
   /**
-   * Constructor.
+   * Constructor without precomputation of resolve responses.
    *
    * @param resolverCacheFactory  factory for creating snap resolver caches
    * @param processor             to use for metadata
@@ -66,6 +81,32 @@ public class ResolverFactory {
       final SignerFactory signerFactory,
       final List<Function<Resolver, Resolver>> transformers,
       final CompositeRecordSource compositeRecordSource) {
+    this(resolverCacheFactory, processor, treeLoaderFactory, registry, signerFactory, transformers,
+        compositeRecordSource, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param resolverCacheFactory  factory for creating snap resolver caches
+   * @param processor             to use for metadata
+   * @param treeLoaderFactory     to use for creating tree loaders
+   * @param registry              for caches
+   * @param signerFactory         to use
+   * @param transformers          functions to apply on resolver
+   * @param compositeRecordSource to find entity
+   * @param precomputeParallelism number of subjects to resolve at the same time when a new snapshot has been loaded,
+   *                              0 to resolve every request on demand
+   */
+  public ResolverFactory(
+      final ResolverCacheFactory resolverCacheFactory,
+      final MetadataProcessor processor,
+      final EntityStatementTreeLoaderFactory treeLoaderFactory,
+      final ResolverCacheRegistry registry,
+      final SignerFactory signerFactory,
+      final List<Function<Resolver, Resolver>> transformers,
+      final CompositeRecordSource compositeRecordSource,
+      final int precomputeParallelism) {
 
     this.resolverCacheFactory = resolverCacheFactory;
     this.processor = processor;
@@ -74,16 +115,42 @@ public class ResolverFactory {
     this.signerFactory = signerFactory;
     this.transformers = transformers;
     this.compositeRecordSource = compositeRecordSource;
+    this.precomputeParallelism = precomputeParallelism;
+    //One pool shared by every resolver and snapshot, its threads are only kept while responses are precomputed
+    this.precomputeWorkers = new ThreadPoolExecutor(Math.max(1, precomputeParallelism),
+        Math.max(1, precomputeParallelism), 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        Thread.ofPlatform().name("resolver-precompute-", 0).daemon().factory());
+    this.precomputeWorkers.allowCoreThreadTimeOut(true);
   }
 
 
+  /**
+   * Returns the {@link ValidatingResolver} for the properties. Resolvers are built once per resolver configuration
+   * and shared by all requests, see {@link ModuleInstanceRegistry}.
+   *
+   * @param properties to create a module from
+   * @return resolver for the properties
+   */
+  public Resolver create(final ResolverProperties properties) {
+    return this.resolvers.get(properties);
+  }
+
+  /**
+   * Removes resolvers that are no longer configured.
+   */
+  public void evictRemovedModules() {
+    this.resolvers.retain(this.compositeRecordSource.getResolverProperties().stream()
+        .map(ResolverProperties::getEntityIdentifier)
+        .toList());
+  }
+
   /**
    * Creates a new instance of a {@link ValidatingResolver}
    *
    * @param properties to create a module from
    * @return new instance
    */
-  public Resolver create(final ResolverProperties properties) {
+  Resolver build(final ResolverProperties properties) {
     if (this.registry.getRegistration(properties.getEntityIdentifier()).isEmpty()) {
       final ResolverCache entityStatementSnapshotSource = this.resolverCacheFactory.create(properties);
       final EntityStatementTree entityStatementTree =
@@ -95,35 +162,59 @@ public class ResolverFactory {
         .getRegistration(properties.getEntityIdentifier())
         .get();
 
-    final ValidatingResolver resolver = new ValidatingResolver(
+    return this.transformers.stream()
+        .reduce(t -> t, Function::andThen)
+        .apply(this.createValidatingResolver(properties, registration));
+  }
+
+  private ValidatingResolver createValidatingResolver(
+      final ResolverProperties properties,
+      final ResolverCacheRegistration registration) {
+    final SignatureVerificationCache verificationCache = registration.verificationCache();
+    return new ValidatingResolver(
         properties,
-        this.createChainValidator(properties),
+        this.createChainValidator(properties, verificationCache),
         registration.tree(),
         this.processor,
-        this.resolverResponseFactory(properties, this.compositeRecordSource)
+        this.resolverResponseFactory(properties, this.compositeRecordSource),
+        verificationCache,
+        registration.precomputed()
     );
+  }
 
-    return this.transformers.stream()
-        .reduce(t -> t, Function::andThen)
-        .apply(resolver);
+  private void precompute(final ResolverProperties properties, final CacheSnapshot<ScrapedEntity> snapshot) {
+    this.registry.getRegistration(properties.getEntityIdentifier()).ifPresent(registration -> {
+      final long start = System.nanoTime();
+      final int resolved = this.createValidatingResolver(properties, registration)
+          .precompute(snapshot, this.precomputeWorkers);
+      log.info("Precomputed {} resolve responses for {} version {} in {} ms", resolved,
+          properties.getEntityIdentifier(), snapshot.getVersion(),
+          Duration.ofNanos(System.nanoTime() - start).toMillis());
+    });
   }
 
   private void registerCache(
       final ResolverProperties properties,
       final EntityStatementTree entityStatementTree,
       final ResolverCache entityStatementSnapshotSource) {
+    final EntityStatementTreeLoader loader = this.treeLoaderFactory.create(properties);
+    if (this.precomputeParallelism > 0) {
+      loader.withSnapshotHook(snapshot -> this.precompute(properties, snapshot));
+    }
     this.registry.registerCache(properties.getEntityIdentifier(), new ResolverCacheRegistration(
         entityStatementTree,
-        this.treeLoaderFactory.create(properties),
+        loader,
         entityStatementSnapshotSource,
         properties
     ));
   }
 
-  private ChainValidator createChainValidator(final ResolverProperties properties) {
+  private ChainValidator createChainValidator(
+      final ResolverProperties properties,
+      final SignatureVerificationCache verificationCache) {
     return new ChainValidator(List.of(
-        new SignatureValidationStep(properties.getTrustedKeys()),
-        new ConstraintsValidationStep(),
+        new SignatureValidationStep(properties.getTrustedKeys(), verificationCache),
+        new ConstraintsValidationStep(verificationCache),
         new CriticalClaimsValidationStep()
     ));
   }
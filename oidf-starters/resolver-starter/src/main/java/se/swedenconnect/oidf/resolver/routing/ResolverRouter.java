@@ -20,8 +20,8 @@ import com.nimbusds.openid.connect.sdk.federation.entities.EntityID;
 import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.servlet.function.RequestPredicate;
 import org.springframework.web.servlet.function.RouterFunctions;
 import org.springframework.web.servlet.function.ServerRequest;
 import org.springframework.web.servlet.function.ServerResponse;
@@ -30,17 +30,19 @@ import se.swedenconnect.oidf.common.entity.entity.integration.ResolverResponseCa
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.ResolveRequest;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
 import se.swedenconnect.oidf.common.entity.exception.FederationException;
-import se.swedenconnect.oidf.common.entity.tree.scraping.CacheSnapshotVersionLookup;
 import se.swedenconnect.oidf.resolver.DiscoveryRequest;
 import se.swedenconnect.oidf.resolver.Resolver;
 import se.swedenconnect.oidf.resolver.ResolverFactory;
+import se.swedenconnect.oidf.routing.CachedRoutingTable;
 import se.swedenconnect.oidf.routing.RequireParameters;
 import se.swedenconnect.oidf.routing.RouteFactory;
 import se.swedenconnect.oidf.routing.Router;
+import se.swedenconnect.oidf.routing.RoutingTable;
 import se.swedenconnect.oidf.routing.ServerResponseErrorHandler;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Responsible for matching requests for any resolver module.
@@ -53,7 +55,6 @@ public class ResolverRouter implements Router {
   private final RouteFactory routeFactory;
   private final ServerResponseErrorHandler errorHandler;
   private final ResolverResponseCache resolverResponseCache;
-  private final CacheSnapshotVersionLookup lookup;
   private final ObservationRegistry observationRegistry;
 
   /**
@@ -62,33 +63,26 @@ public class ResolverRouter implements Router {
    * @param resolverFactory factory for creating resolvers
    * @param routeFactory factory for creating routes
    * @param errorHandler handler for server response errors
-   * @param resolverResponseCache cache for resolver responses
-   * @param lookup lookup for scraped entities
+   * @param resolverResponseCache cache for resolver responses, keyed by the tree version of each response
    * @param observationRegistry for recording observations
    */
   public ResolverRouter(final ResolverFactory resolverFactory,
                         final RouteFactory routeFactory,
                         final ServerResponseErrorHandler errorHandler,
                         final ResolverResponseCache resolverResponseCache,
-                        final CacheSnapshotVersionLookup lookup,
                         final ObservationRegistry observationRegistry) {
     this.resolverFactory = resolverFactory;
     this.routeFactory = routeFactory;
     this.errorHandler = errorHandler;
     this.resolverResponseCache = resolverResponseCache;
-    this.lookup = lookup;
     this.observationRegistry = observationRegistry;
   }
 
   @Override
   public void evaluateEndpoints(final CompositeRecordSource source, final RouterFunctions.Builder route) {
-    route.GET(request -> {
-          return source.getResolverProperties().stream()
-              .map(prop -> {
-                return this.routeFactory.createRoute(new EntityID(prop.getEntityIdentifier()), "/resolve");
-              }).reduce(p -> false, RequestPredicate::or)
-              .test(request);
-        }, request -> {
+    final CachedRoutingTable<ResolverProperties> resolveRoutes = this.createRoutes(source, "/resolve");
+    final CachedRoutingTable<ResolverProperties> discoveryRoutes = this.createRoutes(source, "/discovery");
+    route.GET(resolveRoutes.predicate(), request -> {
           try {
             final MultiValueMap<String, String> params = RequireParameters.validate(
                 request.params(),
@@ -96,11 +90,7 @@ public class ResolverRouter implements Router {
             );
 
             if (params.containsKey("explain") && Boolean.parseBoolean(params.getFirst("explain"))) {
-              final ResolverProperties resolverProperties = source.getResolverProperties().stream()
-                  .filter(prop -> this.routeFactory.createRoute(new EntityID(prop.getEntityIdentifier()), "/resolve")
-                      .test(request))
-                  .findFirst()
-                  .get();
+              final ResolverProperties resolverProperties = resolveRoutes.find(request).get();
               return ServerResponse.ok().body(this.resolverFactory.create(resolverProperties)
                   .explain(new ResolveRequest(
                   params.getFirst("sub"),
@@ -115,54 +105,57 @@ public class ResolverRouter implements Router {
                 params.getFirst("entity_type"),
                 false
             );
-            final Long snapshot = this.lookup.getLatestSnapshotVersion();
-            final Optional<ServerResponse> serverResponse =
-                this.handleResolveResponseCacheControl(request, resolveRequest, snapshot);
-            if (serverResponse.isPresent()) {
-              this.tagObservation("/resolve", true);
-              return serverResponse.get();
+            final Resolver resolver = this.resolverFactory.create(resolveRoutes.find(request).get());
+            final long snapshot = resolver.getCurrentVersion();
+            if (snapshot >= 0) {
+              final Optional<ServerResponse> serverResponse =
+                  this.handleResolveResponseCacheControl(request, resolveRequest, snapshot);
+              if (serverResponse.isPresent()) {
+                this.tagObservation("/resolve", true);
+                return serverResponse.get();
+              }
+            }
+            //Cached under the version that the response was resolved from, which may be newer than the one read
+            final AtomicLong resolvedVersion = new AtomicLong(-1);
+            final String resolveResponse = resolver.resolve(resolveRequest, resolvedVersion::set);
+            if (resolvedVersion.get() >= 0) {
+              this.resolverResponseCache.put(resolvedVersion.get(), resolveRequest, resolveResponse);
             }
-            final ResolverProperties resolverProperties = source.getResolverProperties().stream()
-                .filter(prop -> this.routeFactory.createRoute(new EntityID(prop.getEntityIdentifier()), "/resolve")
-                    .test(request))
-                .findFirst()
-                .get();
-            final String resolveResponse = this.resolverFactory.create(resolverProperties).resolve(resolveRequest);
-            this.resolverResponseCache.put(snapshot, resolveRequest, resolveResponse);
             this.tagObservation("/resolve", false);
             return ServerResponse.ok().body(resolveResponse);
           } catch (final FederationException e) {
             return this.errorHandler.handle(e);
           }
         })
-        .GET(request -> {
-          return source.getResolverProperties().stream()
-              .map(prop -> {
-                return this.routeFactory.createRoute(new EntityID(prop.getEntityIdentifier()), "/discovery");
-              }).reduce(p -> false, RequestPredicate::or)
-              .test(request);
-        }, request -> {
-          final ResolverProperties resolverProperties = source.getResolverProperties().stream()
-              .filter(prop -> this.routeFactory.createRoute(new EntityID(prop.getEntityIdentifier()), "/discovery")
-                  .test(request))
-              .findFirst()
-              .get();
+        .GET(discoveryRoutes.predicate(), request -> {
+          final ResolverProperties resolverProperties = discoveryRoutes.find(request).get();
           final Resolver resolver = this.resolverFactory.create(resolverProperties);
           try {
             final MultiValueMap<String, String> params = RequireParameters.validate(request.params(), List.of(
                 "trust_anchor"));
             this.tagObservation("/discovery", false);
-            return ServerResponse.ok().body(resolver.discovery(new DiscoveryRequest(
-                params.getFirst("trust_anchor"),
-                params.get("entity_type"),
-                params.get("trust_mark_type")
-            )).supportedEntities());
+            return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(resolver.serializedDiscovery(new DiscoveryRequest(
+                    params.getFirst("trust_anchor"),
+                    params.get("entity_type"),
+                    params.get("trust_mark_type")
+                )));
           } catch (final FederationException e) {
             return this.errorHandler.handle(e);
           }
         });
   }
 
+  private CachedRoutingTable<ResolverProperties> createRoutes(
+      final CompositeRecordSource source, final String endpoint) {
+    return new CachedRoutingTable<>(source::getResolverProperties, properties -> {
+      final RoutingTable.Builder<ResolverProperties> table = this.routeFactory.routingTable();
+      properties.forEach(prop -> table.route(new EntityID(prop.getEntityIdentifier()), endpoint, prop));
+      return table.build();
+    });
+  }
+
   private void tagObservation(final String endpoint, final boolean cached) {
     final Observation observation = this.observationRegistry.getCurrentObservation();
     if (observation != null) {
@@ -172,7 +165,7 @@ public class ResolverRouter implements Router {
   }
 
   private Optional<ServerResponse> handleResolveResponseCacheControl(final ServerRequest request,
-      final ResolveRequest resolveRequest, final Long snapshot) {
+      final ResolveRequest resolveRequest, final long snapshot) {
     final List<String> cacheControl = request.headers().header("cache-control");
     if (cacheControl.isEmpty() || !"no-cache".equals(cacheControl.getFirst())) {
       return this.resolverResponseCache.get(snapshot, resolveRequest)
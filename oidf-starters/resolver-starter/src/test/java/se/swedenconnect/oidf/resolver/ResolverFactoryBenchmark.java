@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package se.swedenconnect.oidf.resolver;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.openid.connect.sdk.federation.policy.operations.DefaultPolicyOperationCombinationValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se.swedenconnect.oidf.common.entity.entity.integration.CompositeRecordSource;
+import se.swedenconnect.oidf.common.entity.entity.integration.properties.ResolverProperties;
+import se.swedenconnect.oidf.common.entity.tree.IndexedInMemoryCache;
+import se.swedenconnect.oidf.common.entity.tree.Tree;
+import se.swedenconnect.oidf.resolver.metadata.MetadataProcessor;
+import se.swedenconnect.oidf.resolver.metadata.OIDFPolicyOperationFactory;
+import se.swedenconnect.oidf.resolver.tree.EntityStatementTree;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what it costs a resolve request to obtain its resolver.
+ * <p>
+ * {@link #perRequest()} builds the resolver, chain validator and response factory the way every request used to,
+ * {@link #registry()} returns the instance held by the factory. Sample time mode reports percentiles (p0.99) and the
+ * gc profiler reports allocation per request ({@code gc.alloc.rate.norm}). Run with {@code main} from the test
+ * classpath.
+ *
+ * @author Felix Hellman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolverFactoryBenchmark {
+
+  private ResolverFactory factory;
+  private ResolverProperties properties;
+
+  /**
+   * Creates a factory with a registered, empty resolver cache.
+   */
+  @Setup
+  public void setup() {
+    this.properties = new ResolverProperties("https://ta.example.com", Duration.ofHours(1), new JWKSet(),
+        "https://resolver.example.com", Duration.ofSeconds(10));
+    final ResolverCacheRegistry registry = new ResolverCacheRegistry();
+    final IndexedInMemoryCache cache = new IndexedInMemoryCache();
+    registry.registerCache(this.properties.getEntityIdentifier(), new ResolverCacheRegistration(
+        new EntityStatementTree(new Tree<>(cache)), null, cache, this.properties));
+    this.factory = new ResolverFactory(
+        new InMemoryResolverCacheFactory(),
+        new MetadataProcessor(new OIDFPolicyOperationFactory(), new DefaultPolicyOperationCombinationValidator()),
+        null,
+        registry,
+        entityRecord -> null,
+        List.of(),
+        new CompositeRecordSource(List.of()));
+  }
+
+  /**
+   * @return resolver built for this request
+   */
+  @Benchmark
+  public Object perRequest() {
+    return this.factory.build(this.properties);
+  }
+
+  /**
+   * @return resolver held by the factory
+   */
+  @Benchmark
+  public Object registry() {
+    return this.factory.create(this.properties);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args ignored
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(ResolverFactoryBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
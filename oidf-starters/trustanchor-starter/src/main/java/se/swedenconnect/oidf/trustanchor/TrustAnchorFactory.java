@@ -16,11 +16,14 @@
  */
 package se.swedenconnect.oidf.trustanchor;
 
+import se.swedenconnect.oidf.ModuleInstanceRegistry;
 import se.swedenconnect.oidf.common.entity.entity.integration.CompositeRecordSource;
 import se.swedenconnect.oidf.common.entity.entity.integration.federation.FederationClient;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustAnchorProperties;
 import se.swedenconnect.oidf.common.entity.jwt.SignerFactory;
 
+import java.util.function.Function;
+
 /**
  * Factory class for creating trust anchors.
  *
@@ -31,6 +34,9 @@ public class TrustAnchorFactory {
   private final CompositeRecordSource source;
   private final FederationClient client;
   private final SignerFactory signerFactory;
+  private final ModuleInstanceRegistry<TrustAnchorProperties, TrustAnchor> trustAnchors =
+      new ModuleInstanceRegistry<>(
+          properties -> properties.getEntityIdentifier().getValue(), Function.identity(), this::build);
 
   /**
    * Constructor.
@@ -50,11 +56,27 @@ public class TrustAnchorFactory {
   }
 
   /**
+   * Returns the trust anchor for the properties, trust anchors are built once per configuration and shared by all
+   * requests.
+   *
    * @param properties for trust anchor
-   * @return new instance
+   * @return trust anchor for the properties
    */
   public TrustAnchor create(
       final TrustAnchorProperties properties) {
+    return this.trustAnchors.get(properties);
+  }
+
+  /**
+   * Removes trust anchors that are no longer configured.
+   */
+  public void evictRemovedModules() {
+    this.trustAnchors.retain(this.source.getTrustAnchorProperties().stream()
+        .map(properties -> properties.getEntityIdentifier().getValue())
+        .toList());
+  }
+
+  private TrustAnchor build(final TrustAnchorProperties properties) {
     return new DefaultTrustAnchor(this.source, properties,
         new SubordinateStatementFactory(this.signerFactory),
         this.client
@@ -21,7 +21,6 @@ import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.servlet.function.RequestPredicate;
 import org.springframework.web.servlet.function.RouterFunctions;
 import org.springframework.web.servlet.function.ServerRequest;
 import org.springframework.web.servlet.function.ServerResponse;
@@ -32,9 +31,11 @@ import se.swedenconnect.oidf.common.entity.entity.integration.federation.Subordi
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustAnchorProperties;
 import se.swedenconnect.oidf.common.entity.exception.FederationException;
 import se.swedenconnect.oidf.common.entity.tree.scraping.CacheSnapshotVersionLookup;
+import se.swedenconnect.oidf.routing.CachedRoutingTable;
 import se.swedenconnect.oidf.routing.RequireParameters;
 import se.swedenconnect.oidf.routing.RouteFactory;
 import se.swedenconnect.oidf.routing.Router;
+import se.swedenconnect.oidf.routing.RoutingTable;
 import se.swedenconnect.oidf.routing.ServerResponseErrorHandler;
 import se.swedenconnect.oidf.trustanchor.TrustAnchor;
 import se.swedenconnect.oidf.trustanchor.TrustAnchorFactory;
@@ -84,13 +85,16 @@ public class TrustAnchorRouter implements Router {
 
   @Override
   public void evaluateEndpoints(final CompositeRecordSource source, final RouterFunctions.Builder route) {
-    route.GET(this.getRequestPredicate(source, "/fetch"),
-            request -> this.handleFetchEntityStatement(source, request))
-        .GET(this.getRequestPredicate(source, "/subordinate_listing"),
-            request -> this.handleSubordinateListing(source, request));
+    final CachedRoutingTable<TrustAnchorProperties> fetchRoutes = this.createRoutes(source, "/fetch");
+    final CachedRoutingTable<TrustAnchorProperties> listingRoutes = this.createRoutes(source, "/subordinate_listing");
+    route.GET(fetchRoutes.predicate(),
+            request -> this.handleFetchEntityStatement(fetchRoutes, request))
+        .GET(listingRoutes.predicate(),
+            request -> this.handleSubordinateListing(listingRoutes, request));
   }
 
-  private ServerResponse handleFetchEntityStatement(final CompositeRecordSource source, final ServerRequest request) {
+  private ServerResponse handleFetchEntityStatement(
+      final CachedRoutingTable<TrustAnchorProperties> routes, final ServerRequest request) {
     try {
       final MultiValueMap<String, String> params = RequireParameters.validate(request.params(), List.of("sub"));
       final FetchRequest fetchRequest = new FetchRequest(params.getFirst("sub"));
@@ -102,7 +106,7 @@ public class TrustAnchorRouter implements Router {
         return cached.get();
       }
 
-      final TrustAnchorProperties trustAnchorProperties = this.getPropertyByRequest(source, request, "/fetch");
+      final TrustAnchorProperties trustAnchorProperties = routes.find(request).get();
       final TrustAnchor trustAnchor = this.trustAnchorFactory.create(trustAnchorProperties);
       final String response = trustAnchor.fetchEntityStatement(fetchRequest);
       this.fetchCache.put(snapshot, fetchRequest, response);
@@ -132,8 +136,9 @@ public class TrustAnchorRouter implements Router {
     }
   }
 
-  private ServerResponse handleSubordinateListing(final CompositeRecordSource source, final ServerRequest request) {
-    final TrustAnchorProperties properties = this.getPropertyByRequest(source, request, "/subordinate_listing");
+  private ServerResponse handleSubordinateListing(
+      final CachedRoutingTable<TrustAnchorProperties> routes, final ServerRequest request) {
+    final TrustAnchorProperties properties = routes.find(request).get();
     final TrustAnchor trustAnchor = this.trustAnchorFactory.create(properties);
     try {
       final MultiValueMap<String, String> params = request.params();
@@ -153,22 +158,12 @@ public class TrustAnchorRouter implements Router {
     }
   }
 
-  private RequestPredicate getRequestPredicate(final CompositeRecordSource source, final String endpoint) {
-    return request -> {
-      return source.getTrustAnchorProperties().stream()
-          .map(prop -> this.routeFactory.createRoute(prop.getEntityIdentifier(), endpoint))
-          .reduce(p -> false, RequestPredicate::or)
-          .test(request);
-    };
-  }
-
-  private TrustAnchorProperties getPropertyByRequest(
-      final CompositeRecordSource source,
-      final ServerRequest request,
-      final String endpoint) {
-    return source.getTrustAnchorProperties().stream()
-        .filter(prop -> this.routeFactory.createRoute(prop.getEntityIdentifier(), endpoint).test(request))
-        .findFirst()
-        .get();
+  private CachedRoutingTable<TrustAnchorProperties> createRoutes(
+      final CompositeRecordSource source, final String endpoint) {
+    return new CachedRoutingTable<>(source::getTrustAnchorProperties, properties -> {
+      final RoutingTable.Builder<TrustAnchorProperties> table = this.routeFactory.routingTable();
+      properties.forEach(prop -> table.route(prop.getEntityIdentifier(), endpoint, prop));
+      return table.build();
+    });
   }
 }
@@ -17,12 +17,14 @@
 package se.swedenconnect.oidf.trustmarkissuer.starter;
 
 
+import se.swedenconnect.oidf.ModuleInstanceRegistry;
 import se.swedenconnect.oidf.common.entity.entity.integration.CompositeRecordSource;
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustMarkIssuerProperties;
 import se.swedenconnect.oidf.trustmarkissuer.TrustMarkIssuer;
 import se.swedenconnect.oidf.trustmarkissuer.TrustMarkSigner;
 
 import java.time.Clock;
+import java.util.function.Function;
 
 /**
  * Factory class for creating trust mark issuers.
@@ -34,6 +36,9 @@ public class TrustMarkIssuerFactory {
   private final TrustMarkSigner signer;
   private final CompositeRecordSource source;
   private final Clock clock;
+  private final ModuleInstanceRegistry<TrustMarkIssuerProperties, TrustMarkIssuer> issuers =
+      new ModuleInstanceRegistry<>(
+          properties -> properties.entityIdentifier().getValue(), Function.identity(), this::build);
 
   /**
    * @param signer to use
@@ -50,12 +55,26 @@ public class TrustMarkIssuerFactory {
   }
 
   /**
-   * Creates new instance of a TrustMarkIssuer
+   * Returns the TrustMarkIssuer for the properties, issuers are built once per configuration and shared by all
+   * requests.
    *
    * @param properties to create instance from
-   * @return new instance
+   * @return trust mark issuer for the properties
    */
   public TrustMarkIssuer create(final TrustMarkIssuerProperties properties) {
+    return this.issuers.get(properties);
+  }
+
+  /**
+   * Removes trust mark issuers that are no longer configured.
+   */
+  public void evictRemovedModules() {
+    this.issuers.retain(this.source.getTrustMarkIssuerProperties().stream()
+        .map(properties -> properties.entityIdentifier().getValue())
+        .toList());
+  }
+
+  private TrustMarkIssuer build(final TrustMarkIssuerProperties properties) {
     return new TrustMarkIssuer(properties, this.signer, this.source, this.clock);
   }
 }
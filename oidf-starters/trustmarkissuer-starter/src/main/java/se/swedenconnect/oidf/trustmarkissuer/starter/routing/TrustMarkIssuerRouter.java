@@ -23,7 +23,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.servlet.function.RequestPredicate;
 import org.springframework.web.servlet.function.RouterFunctions;
 import org.springframework.web.servlet.function.ServerRequest;
 import org.springframework.web.servlet.function.ServerResponse;
@@ -34,9 +33,11 @@ import se.swedenconnect.oidf.common.entity.entity.integration.federation.TrustMa
 import se.swedenconnect.oidf.common.entity.entity.integration.properties.TrustMarkIssuerProperties;
 import se.swedenconnect.oidf.common.entity.exception.FederationException;
 import se.swedenconnect.oidf.common.entity.tree.scraping.CacheSnapshotVersionLookup;
+import se.swedenconnect.oidf.routing.CachedRoutingTable;
 import se.swedenconnect.oidf.routing.RequireParameters;
 import se.swedenconnect.oidf.routing.RouteFactory;
 import se.swedenconnect.oidf.routing.Router;
+import se.swedenconnect.oidf.routing.RoutingTable;
 import se.swedenconnect.oidf.routing.ServerResponseErrorHandler;
 import se.swedenconnect.oidf.trustmarkissuer.TrustMarkIssuer;
 import se.swedenconnect.oidf.trustmarkissuer.TrustMarkRequest;
@@ -93,15 +94,20 @@ public class TrustMarkIssuerRouter implements Router {
 
   @Override
   public void evaluateEndpoints(final CompositeRecordSource source, final RouterFunctions.Builder route) {
-    route.GET(this.getRequestPredicate(source, "/trust_mark"),
-            request -> this.handleTrustMarkRequest(source, request))
-        .GET(this.getRequestPredicate(source, "/trust_mark_status"),
-            request -> this.handleTrustMarkStatus(source, request))
-        .GET(this.getRequestPredicate(source, "/trust_mark_listing"), request -> this.handleTrustMarkListing(source,
+    final CachedRoutingTable<TrustMarkIssuerProperties> trustMarkRoutes = this.createRoutes(source, "/trust_mark");
+    final CachedRoutingTable<TrustMarkIssuerProperties> statusRoutes = this.createRoutes(source, "/trust_mark_status");
+    final CachedRoutingTable<TrustMarkIssuerProperties> listingRoutes =
+        this.createRoutes(source, "/trust_mark_listing");
+    route.GET(trustMarkRoutes.predicate(),
+            request -> this.handleTrustMarkRequest(trustMarkRoutes, request))
+        .GET(statusRoutes.predicate(),
+            request -> this.handleTrustMarkStatus(statusRoutes, request))
+        .GET(listingRoutes.predicate(), request -> this.handleTrustMarkListing(listingRoutes,
             request));
   }
 
-  private ServerResponse handleTrustMarkStatus(final CompositeRecordSource source, final ServerRequest request) {
+  private ServerResponse handleTrustMarkStatus(
+      final CachedRoutingTable<TrustMarkIssuerProperties> routes, final ServerRequest request) {
     try {
       final MultiValueMap<String, String> params = RequireParameters.validate(request.params(),
           List.of("trust_mark"));
@@ -113,8 +119,7 @@ public class TrustMarkIssuerRouter implements Router {
         this.tagObservation("/trust_mark_status", true);
         return serverResponse.get();
       }
-      final TrustMarkIssuerProperties propertyByRequest =
-          this.getPropertyByRequest(source, request, "/trust_mark_status");
+      final TrustMarkIssuerProperties propertyByRequest = routes.find(request).get();
       final TrustMarkIssuer trustMarkIssuer = this.factory.create(propertyByRequest);
       try {
         final String trustMarkStatus = trustMarkIssuer.trustMarkStatus(new TrustMarkStatusRequest(trustMarkJwt));
@@ -131,8 +136,9 @@ public class TrustMarkIssuerRouter implements Router {
     }
   }
 
-  private ServerResponse handleTrustMarkListing(final CompositeRecordSource source, final ServerRequest request) {
-    final TrustMarkIssuerProperties property = this.getPropertyByRequest(source, request, "/trust_mark_listing");
+  private ServerResponse handleTrustMarkListing(
+      final CachedRoutingTable<TrustMarkIssuerProperties> routes, final ServerRequest request) {
+    final TrustMarkIssuerProperties property = routes.find(request).get();
     final TrustMarkIssuer trustMarkIssuer = this.factory.create(property);
     try {
       final MultiValueMap<String, String> params = RequireParameters.validate(request.params(),
@@ -149,7 +155,8 @@ public class TrustMarkIssuerRouter implements Router {
     }
   }
 
-  private ServerResponse handleTrustMarkRequest(final CompositeRecordSource source, final ServerRequest request) {
+  private ServerResponse handleTrustMarkRequest(
+      final CachedRoutingTable<TrustMarkIssuerProperties> routes, final ServerRequest request) {
     final MultiValueMap<String, String> params = request.params();
     final String trustMarkType = params.getFirst("trust_mark_type");
     log.debug("Handling trust mark request {}", params);
@@ -162,7 +169,7 @@ public class TrustMarkIssuerRouter implements Router {
       return cached.get();
     }
 
-    final TrustMarkIssuerProperties property = this.getPropertyByRequest(source, request, "/trust_mark");
+    final TrustMarkIssuerProperties property = routes.find(request).get();
     final TrustMarkIssuer trustMarkIssuer = this.factory.create(property);
     try {
       log.debug("Using fresh trust mark for {} {} {}", params, property, request.headers());
@@ -203,21 +210,12 @@ public class TrustMarkIssuerRouter implements Router {
     return Optional.empty();
   }
 
-  private RequestPredicate getRequestPredicate(final CompositeRecordSource source, final String endpoint) {
-    return request -> {
-      return source.getTrustMarkIssuerProperties().stream()
-          .map(prop -> this.routeFactory.createRoute(prop.entityIdentifier(), endpoint))
-          .reduce(p -> false, RequestPredicate::or)
-          .test(request);
-    };
-  }
-
-  private TrustMarkIssuerProperties getPropertyByRequest(final CompositeRecordSource source,
-                                                         final ServerRequest request,
-                                                         final String endpoint) {
-    return source.getTrustMarkIssuerProperties().stream()
-        .filter(prop -> this.routeFactory.createRoute(prop.entityIdentifier(), endpoint).test(request))
-        .findFirst()
-        .get();
+  private CachedRoutingTable<TrustMarkIssuerProperties> createRoutes(
+      final CompositeRecordSource source, final String endpoint) {
+    return new CachedRoutingTable<>(source::getTrustMarkIssuerProperties, properties -> {
+      final RoutingTable.Builder<TrustMarkIssuerProperties> table = this.routeFactory.routingTable();
+      properties.forEach(prop -> table.route(prop.entityIdentifier(), endpoint, prop));
+      return table.build();
+    });
   }
 }